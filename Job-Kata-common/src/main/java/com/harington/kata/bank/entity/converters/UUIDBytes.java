@@ -0,0 +1,37 @@
+package com.harington.kata.bank.entity.converters;
+
+import java.util.UUID;
+
+/**
+ * UUIDs as 16 big-endian bytes, the {@code BINARY(16)} columns of both applications
+ */
+public final class UUIDBytes {
+    public static final int UUID_BYTES = 16;
+
+    private UUIDBytes() {
+    }
+
+    public static byte[] toBytes(UUID uuid) {
+        byte[] bytes = new byte[UUID_BYTES];
+        long msb = uuid.getMostSignificantBits();
+        long lsb = uuid.getLeastSignificantBits();
+        for (int i = 0; i < 8; i++) {
+            bytes[i] = (byte) (msb >>> (56 - 8 * i));
+            bytes[8 + i] = (byte) (lsb >>> (56 - 8 * i));
+        }
+        return bytes;
+    }
+
+    public static UUID fromBytes(byte[] bytes) {
+        if (bytes == null) return null;
+        if (bytes.length != UUID_BYTES)
+            throw new IllegalArgumentException("A binary UUID must have " + UUID_BYTES + " bytes, got " + bytes.length);
+        long msb = 0;
+        long lsb = 0;
+        for (int i = 0; i < 8; i++) {
+            msb = (msb << 8) | (bytes[i] & 0xff);
+            lsb = (lsb << 8) | (bytes[8 + i] & 0xff);
+        }
+        return new UUID(msb, lsb);
+    }
+}
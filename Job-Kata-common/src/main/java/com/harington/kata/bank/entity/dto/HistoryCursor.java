@@ -0,0 +1,40 @@
+package com.harington.kata.bank.entity.dto;
+
+import com.harington.kata.bank.exceptions.InvalidOperationException;
+import lombok.Value;
+
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDateTime;
+import java.time.format.DateTimeParseException;
+import java.util.Base64;
+
+/**
+ * Opaque keyset cursor of the transactions history : the {@code (transactionAt, id)} of the last
+ * transaction of a page. The next page starts strictly after it in {@code (transactionAt, id)}
+ * descending order.
+ */
+@Value
+public class HistoryCursor {
+    private static final String SEPARATOR = "|";
+
+    LocalDateTime transactionAt;
+    long id;
+
+    public String encode() {
+        return Base64.getUrlEncoder().withoutPadding()
+                .encodeToString((transactionAt + SEPARATOR + id).getBytes(StandardCharsets.UTF_8));
+    }
+
+    public static HistoryCursor decode(String cursor) {
+        try {
+            String decoded = new String(Base64.getUrlDecoder().decode(cursor), StandardCharsets.UTF_8);
+            int sep = decoded.lastIndexOf(SEPARATOR);
+            if (sep < 0)
+                throw new InvalidOperationException("Invalid history cursor");
+            return new HistoryCursor(LocalDateTime.parse(decoded.substring(0, sep)),
+                    Long.parseLong(decoded.substring(sep + 1)));
+        } catch (IllegalArgumentException | DateTimeParseException e) {
+            throw new InvalidOperationException("Invalid history cursor");
+        }
+    }
+}
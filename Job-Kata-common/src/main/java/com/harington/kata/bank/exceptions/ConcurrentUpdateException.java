@@ -0,0 +1,10 @@
+package com.harington.kata.bank.exceptions;
+
+/**
+ * The account was updated by someone else since the version the operation was based on
+ */
+public class ConcurrentUpdateException extends InvalidOperationException {
+    public ConcurrentUpdateException(String message) {
+        super(message);
+    }
+}
@@ -0,0 +1,10 @@
+package com.harington.kata.bank.exceptions;
+
+/**
+ * The account's balance is lower than the amount of a withdrawal
+ */
+public class InsufficientFundsException extends InvalidOperationException {
+    public InsufficientFundsException(String message) {
+        super(message);
+    }
+}
@@ -0,0 +1,72 @@
+package com.harington.kata.bank.formatters;
+
+/**
+ * Formats amounts in cents as {@code [-]units.cents€} (e.g. {@code -12.05€}).
+ * <p>
+ * Digits are written by hand : {@link #appendCents(StringBuilder, int)} and
+ * {@link #writeCents(char[], int, int)} don't allocate, so callers formatting many rows can reuse
+ * their builder or buffer (or hand the buffer to a JSON generator).
+ */
+public final class AmountFormatter {
+    private final static char CURRENCY = '€';
+    /**
+     * Length of the longest output : {@code -21474836.48€}
+     */
+    public final static int MAX_LENGTH = 13;
+
+    /**
+     * @param amountInCents
+     * @return
+     */
+    public static String formatCents(int amountInCents) {
+        char[] buffer = new char[MAX_LENGTH];
+        return new String(buffer, 0, writeCents(buffer, 0, amountInCents));
+    }
+
+    /**
+     * Appends the formatted amount to {@code sb}
+     *
+     * @return sb
+     */
+    public static StringBuilder appendCents(StringBuilder sb, int amountInCents) {
+        long amount = amountInCents;
+        if (amount < 0) {
+            sb.append('-');
+            amount = -amount;
+        }
+        sb.append(amount / 100).append('.');
+        int cents = (int) (amount % 100);
+        return sb.append((char) ('0' + cents / 10))
+                .append((char) ('0' + cents % 10))
+                .append(CURRENCY);
+    }
+
+    /**
+     * Writes the formatted amount into {@code buffer} starting at {@code offset}, which must leave
+     * room for {@link #MAX_LENGTH} chars.
+     *
+     * @return the offset following the last written char
+     */
+    public static int writeCents(char[] buffer, int offset, int amountInCents) {
+        long amount = amountInCents;
+        if (amount < 0) {
+            buffer[offset++] = '-';
+            amount = -amount;
+        }
+        long units = amount / 100;
+        int cents = (int) (amount % 100);
+        int digits = 1;
+        for (long rest = units / 10; rest != 0; rest /= 10)
+            digits++;
+        for (int i = offset + digits - 1; i >= offset; i--) {
+            buffer[i] = (char) ('0' + units % 10);
+            units /= 10;
+        }
+        offset += digits;
+        buffer[offset++] = '.';
+        buffer[offset++] = (char) ('0' + cents / 10);
+        buffer[offset++] = (char) ('0' + cents % 10);
+        buffer[offset++] = CURRENCY;
+        return offset;
+    }
+}
@@ -0,0 +1,119 @@
+package com.harington.kata.bank.formatters;
+
+import java.time.LocalDateTime;
+import java.time.ZoneOffset;
+import java.time.format.DateTimeFormatter;
+
+/**
+ * Formats dates as {@code dd/MM/yyyy} and date-times as {@code dd/MM/yyyy HH:mm:ss}.
+ * <p>
+ * Date-time digits are written by hand for years 1 to 9999 (other years go through
+ * {@link DateTimeFormatter}) and {@link #format(LocalDateTime)} remembers the last formatted
+ * second, as consecutive history rows are often posted within the same second.
+ * {@link #writeDateTime(char[], int, LocalDateTime)} and
+ * {@link #appendDateTime(StringBuilder, LocalDateTime)} don't allocate for streaming writers.
+ */
+public final class DatesFormatter {
+    private final static DateTimeFormatter DATE_FORMAT = DateTimeFormatter.ofPattern("dd/MM/yyyy");
+    private final static DateTimeFormatter DATE_TIME_FORMAT = DateTimeFormatter.ofPattern("dd/MM/yyyy HH:mm:ss");
+    /**
+     * Length of a formatted date-time for years 1 to 9999
+     */
+    public final static int DATE_TIME_LENGTH = 19;
+    /**
+     * Length of the longest formatted date-time (years of more than 4 digits are signed)
+     */
+    public final static int MAX_DATE_TIME_LENGTH = 26;
+
+    private static volatile FormattedSecond lastFormatted = new FormattedSecond(Long.MIN_VALUE, "");
+
+    public static String format(LocalDateTime dateTime){
+        if(dateTime==null) return "";
+        if (!isFourDigitsYear(dateTime)) return dateTime.format(DATE_TIME_FORMAT);
+        long second = dateTime.toEpochSecond(ZoneOffset.UTC);
+        FormattedSecond last = lastFormatted;
+        if (last.second == second) return last.text;
+        char[] buffer = new char[DATE_TIME_LENGTH];
+        String text = new String(buffer, 0, writeDigits(buffer, 0, dateTime));
+        lastFormatted = new FormattedSecond(second, text);
+        return text;
+    }
+
+    public static String formatOnlyDate(LocalDateTime dateTime){
+        if(dateTime==null) return "";
+        return dateTime.toLocalDate().format(DATE_FORMAT);
+    }
+
+    /**
+     * Writes the formatted date-time (nothing when null) into {@code buffer} starting at
+     * {@code offset}, which must leave room for {@link #MAX_DATE_TIME_LENGTH} chars.
+     *
+     * @return the offset following the last written char
+     */
+    public static int writeDateTime(char[] buffer, int offset, LocalDateTime dateTime) {
+        if (dateTime == null) return offset;
+        if (isFourDigitsYear(dateTime)) return writeDigits(buffer, offset, dateTime);
+        String text = dateTime.format(DATE_TIME_FORMAT);
+        text.getChars(0, text.length(), buffer, offset);
+        return offset + text.length();
+    }
+
+    /**
+     * Appends the formatted date-time (nothing when null) to {@code sb}
+     *
+     * @return sb
+     */
+    public static StringBuilder appendDateTime(StringBuilder sb, LocalDateTime dateTime) {
+        if (dateTime == null) return sb;
+        if (!isFourDigitsYear(dateTime)) return sb.append(dateTime.format(DATE_TIME_FORMAT));
+        append2Digits(sb, dateTime.getDayOfMonth()).append('/');
+        append2Digits(sb, dateTime.getMonthValue()).append('/');
+        append2Digits(sb, dateTime.getYear() / 100);
+        append2Digits(sb, dateTime.getYear() % 100).append(' ');
+        append2Digits(sb, dateTime.getHour()).append(':');
+        append2Digits(sb, dateTime.getMinute()).append(':');
+        return append2Digits(sb, dateTime.getSecond());
+    }
+
+    private static boolean isFourDigitsYear(LocalDateTime dateTime) {
+        return dateTime.getYear() >= 1 && dateTime.getYear() <= 9999;
+    }
+
+    private static int writeDigits(char[] buffer, int offset, LocalDateTime dateTime) {
+        offset = write2Digits(buffer, offset, dateTime.getDayOfMonth());
+        buffer[offset++] = '/';
+        offset = write2Digits(buffer, offset, dateTime.getMonthValue());
+        buffer[offset++] = '/';
+        offset = write2Digits(buffer, offset, dateTime.getYear() / 100);
+        offset = write2Digits(buffer, offset, dateTime.getYear() % 100);
+        buffer[offset++] = ' ';
+        offset = write2Digits(buffer, offset, dateTime.getHour());
+        buffer[offset++] = ':';
+        offset = write2Digits(buffer, offset, dateTime.getMinute());
+        buffer[offset++] = ':';
+        return write2Digits(buffer, offset, dateTime.getSecond());
+    }
+
+    private static int write2Digits(char[] buffer, int offset, int value) {
+        buffer[offset] = (char) ('0' + value / 10);
+        buffer[offset + 1] = (char) ('0' + value % 10);
+        return offset + 2;
+    }
+
+    private static StringBuilder append2Digits(StringBuilder sb, int value) {
+        return sb.append((char) ('0' + value / 10)).append((char) ('0' + value % 10));
+    }
+
+    /**
+     * Last formatted second, published as a whole through a volatile reference
+     */
+    private static final class FormattedSecond {
+        final long second;
+        final String text;
+
+        FormattedSecond(long second, String text) {
+            this.second = second;
+            this.text = text;
+        }
+    }
+}
@@ -0,0 +1,45 @@
+package com.harington.kata.bank.formatters;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class AmountFormatterTest {
+
+    @Test
+    public void should_return_correct_format(){
+        assertEquals("-0.01€", AmountFormatter.formatCents(-1));
+        assertEquals("0.00€", AmountFormatter.formatCents(0));
+        assertEquals("0.01€", AmountFormatter.formatCents(1));
+        assertEquals("0.10€", AmountFormatter.formatCents(10));
+        assertEquals("1.00€", AmountFormatter.formatCents(100));
+        assertEquals("10.00€", AmountFormatter.formatCents(10_00));
+        assertEquals("-12.05€", AmountFormatter.formatCents(-12_05));
+        assertEquals("21474836.47€", AmountFormatter.formatCents(Integer.MAX_VALUE));
+        assertEquals("-21474836.48€", AmountFormatter.formatCents(Integer.MIN_VALUE));
+    }
+
+    @Test
+    public void should_return_same_format_as_string_format(){
+        Random random = new Random(42);
+        for (int i = 0; i < 10_000; i++) {
+            int amount = random.nextInt(Integer.MAX_VALUE) * (random.nextBoolean() ? 1 : -1);
+            String expected = String.format("%s%d.%02d€", amount < 0 ? "-" : "", Math.abs(amount) / 100, Math.abs(amount) % 100);
+            assertEquals(expected, AmountFormatter.formatCents(amount));
+        }
+    }
+
+    @Test
+    public void should_append_to_reused_builder_and_buffer(){
+        StringBuilder sb = new StringBuilder("Balance : ");
+        AmountFormatter.appendCents(sb, 1_234_56);
+        assertEquals("Balance : 1234.56€", sb.toString());
+
+        char[] buffer = new char[2 * AmountFormatter.MAX_LENGTH];
+        int end = AmountFormatter.writeCents(buffer, 0, -5);
+        end = AmountFormatter.writeCents(buffer, end, Integer.MIN_VALUE);
+        assertEquals("-0.05€-21474836.48€", new String(buffer, 0, end));
+    }
+}
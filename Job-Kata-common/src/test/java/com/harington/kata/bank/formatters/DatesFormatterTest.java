@@ -0,0 +1,70 @@
+package com.harington.kata.bank.formatters;
+
+import org.junit.jupiter.api.Test;
+
+import java.time.LocalDateTime;
+import java.time.ZoneOffset;
+import java.time.format.DateTimeFormatter;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class DatesFormatterTest {
+
+    @Test
+    public void should_return_empty_when_null_given(){
+        assertEquals("", DatesFormatter.format(null));
+        assertEquals("", DatesFormatter.formatOnlyDate(null));
+        assertEquals("", DatesFormatter.appendDateTime(new StringBuilder(), null).toString());
+        assertEquals(3, DatesFormatter.writeDateTime(new char[DatesFormatter.MAX_DATE_TIME_LENGTH], 3, null));
+    }
+
+    @Test
+    public void should_return_correct_format(){
+        LocalDateTime date = LocalDateTime.of(2022, 11, 12, 4, 20, 20);
+        assertEquals("12/11/2022 04:20:20", DatesFormatter.format(date));
+        assertEquals("12/11/2022", DatesFormatter.formatOnlyDate(date));
+
+        LocalDateTime date2 = LocalDateTime.of(2022, 11, 1, 4, 20, 20);
+        assertEquals("01/11/2022 04:20:20", DatesFormatter.format(date2));
+        assertEquals("01/11/2022", DatesFormatter.formatOnlyDate(date2));
+
+        LocalDateTime date3 = LocalDateTime.of(2022, 11, 1, 12, 5, 20);
+        assertEquals("01/11/2022 12:05:20", DatesFormatter.format(date3));
+    }
+
+    @Test
+    public void should_return_same_format_as_date_time_formatter(){
+        DateTimeFormatter reference = DateTimeFormatter.ofPattern("dd/MM/yyyy HH:mm:ss");
+        Random random = new Random(42);
+        long from = LocalDateTime.of(1, 1, 1, 0, 0, 0).toEpochSecond(ZoneOffset.UTC);
+        long to = LocalDateTime.of(9999, 12, 31, 23, 59, 59).toEpochSecond(ZoneOffset.UTC);
+        LocalDateTime dateTime = LocalDateTime.now();
+        for (int i = 0; i < 10_000; i++) {
+            // Same second (cache hit) about once out of four
+            if (random.nextInt(4) != 0)
+                dateTime = LocalDateTime.ofEpochSecond(from + (long) (random.nextDouble() * (to - from)),
+                        random.nextInt(1_000_000_000), ZoneOffset.UTC);
+            String expected = dateTime.format(reference);
+            assertEquals(expected, DatesFormatter.format(dateTime));
+            assertEquals(expected, DatesFormatter.appendDateTime(new StringBuilder(), dateTime).toString());
+            char[] buffer = new char[DatesFormatter.MAX_DATE_TIME_LENGTH];
+            assertEquals(expected, new String(buffer, 0, DatesFormatter.writeDateTime(buffer, 0, dateTime)));
+        }
+    }
+
+    @Test
+    public void should_fall_back_to_date_time_formatter_for_years_out_of_four_digits(){
+        DateTimeFormatter reference = DateTimeFormatter.ofPattern("dd/MM/yyyy HH:mm:ss");
+        for (LocalDateTime dateTime : new LocalDateTime[]{
+                LocalDateTime.of(10_000, 1, 2, 3, 4, 5),
+                LocalDateTime.of(0, 1, 2, 3, 4, 5),
+                LocalDateTime.MAX,
+                LocalDateTime.MIN}) {
+            assertEquals(dateTime.format(reference), DatesFormatter.format(dateTime));
+            char[] buffer = new char[DatesFormatter.MAX_DATE_TIME_LENGTH];
+            assertEquals(dateTime.format(reference),
+                    new String(buffer, 0, DatesFormatter.writeDateTime(buffer, 0, dateTime)));
+        }
+    }
+}
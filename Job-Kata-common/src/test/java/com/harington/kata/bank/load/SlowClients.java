@@ -0,0 +1,163 @@
+package com.harington.kata.bank.load;
+
+import java.io.IOException;
+import java.lang.management.ManagementFactory;
+import java.net.InetSocketAddress;
+import java.net.StandardSocketOptions;
+import java.nio.ByteBuffer;
+import java.nio.channels.SocketChannel;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.IntSupplier;
+
+/**
+ * {@value #CLIENTS} slow clients of the {@code SlowClientsLoadTest} of both applications : they read
+ * a same response {@value #BYTES_PER_TICK} bytes every {@value #TICK_MILLIS} ms through a small
+ * receive buffer, so that the server cannot write it at once. Server threads, connections in use
+ * and requests in flight are sampled during the load.
+ * <p>
+ * The clients are driven by the calling thread alone, so that they don't add threads to the JVM.
+ */
+public final class SlowClients {
+    public static final int CLIENTS = 2_000;
+    public static final int BYTES_PER_TICK = 2_048;
+    public static final int TICK_MILLIS = 10;
+    public static final int RECEIVE_BUFFER = 4_096;
+
+    private SlowClients() {
+    }
+
+    /**
+     * @param maxInFlight       most requests handled at the same time, maintained by the application's probe
+     * @param activeConnections database connections in use
+     */
+    public static LoadResult load(int port, String path, String accept, AtomicInteger maxInFlight,
+                                  IntSupplier activeConnections) throws IOException, InterruptedException {
+        maxInFlight.set(0);
+        int baselineThreads = ManagementFactory.getThreadMXBean().getThreadCount();
+        Sampler sampler = new Sampler(activeConnections);
+        sampler.start();
+        long begin = System.nanoTime();
+        int ok = run(port, path, accept);
+        long elapsed = System.nanoTime() - begin;
+        sampler.stop();
+        // The sampler is the only thread added by the test
+        return new LoadResult(ok, elapsed, baselineThreads, sampler.maxThreads.get() - 1,
+                sampler.maxConnections.get(), maxInFlight.get());
+    }
+
+    public static String header() {
+        return String.format("%-20s %8s %10s %8s %12s %12s %14s", "response", "clients", "ok", "seconds",
+                "threads", "max conns", "max in-flight");
+    }
+
+    /**
+     * @return the number of clients that read a whole 200 response
+     */
+    private static int run(int port, String path, String accept) throws IOException, InterruptedException {
+        // The servlet API consumes JSON, GET requests included
+        byte[] request = ("GET " + path + " HTTP/1.1\r\nHost: localhost\r\nAccept: " + accept
+                + "\r\nContent-Type: application/json\r\nConnection: close\r\n\r\n").getBytes(StandardCharsets.US_ASCII);
+        List<SocketChannel> open = new ArrayList<>();
+        List<byte[]> statusLines = new ArrayList<>();
+        for (int i = 0; i < CLIENTS; i++) {
+            SocketChannel channel = SocketChannel.open();
+            channel.setOption(StandardSocketOptions.SO_RCVBUF, RECEIVE_BUFFER);
+            channel.connect(new InetSocketAddress("localhost", port));
+            channel.write(ByteBuffer.wrap(request));
+            channel.configureBlocking(false);
+            open.add(channel);
+            statusLines.add(new byte[0]);
+        }
+        ByteBuffer buffer = ByteBuffer.allocate(BYTES_PER_TICK);
+        byte[] expectedStatus = "HTTP/1.1 200".getBytes(StandardCharsets.US_ASCII);
+        int ok = 0;
+        int remaining = CLIENTS;
+        while (remaining > 0) {
+            Thread.sleep(TICK_MILLIS);
+            for (int i = 0; i < open.size(); i++) {
+                SocketChannel channel = open.get(i);
+                if (channel == null) continue;
+                buffer.clear();
+                int read = channel.read(buffer);
+                if (read > 0 && statusLines.get(i).length < expectedStatus.length) {
+                    byte[] status = new byte[Math.min(expectedStatus.length, statusLines.get(i).length + read)];
+                    System.arraycopy(statusLines.get(i), 0, status, 0, statusLines.get(i).length);
+                    System.arraycopy(buffer.array(), 0, status, statusLines.get(i).length, status.length - statusLines.get(i).length);
+                    statusLines.set(i, status);
+                }
+                if (read < 0) {
+                    channel.close();
+                    open.set(i, null);
+                    remaining--;
+                    if (Arrays.equals(statusLines.get(i), expectedStatus)) ok++;
+                }
+            }
+        }
+        return ok;
+    }
+
+    public static class LoadResult {
+        public final int ok;
+        public final long elapsedNanos;
+        public final int baselineThreads;
+        public final int maxThreads;
+        public final int maxConnections;
+        public final int maxInFlight;
+
+        LoadResult(int ok, long elapsedNanos, int baselineThreads, int maxThreads, int maxConnections, int maxInFlight) {
+            this.ok = ok;
+            this.elapsedNanos = elapsedNanos;
+            this.baselineThreads = baselineThreads;
+            this.maxThreads = maxThreads;
+            this.maxConnections = maxConnections;
+            this.maxInFlight = maxInFlight;
+        }
+
+        public String format(String response) {
+            return String.format("%-20s %8d %10d %8.1f %5d -> %4d %12d %14d", response, CLIENTS, ok, elapsedNanos / 1e9,
+                    baselineThreads, maxThreads, maxConnections, maxInFlight);
+        }
+    }
+
+    /**
+     * Samples the live threads of the JVM and the connections in use
+     */
+    private static class Sampler implements Runnable {
+        final IntSupplier connections;
+        final AtomicInteger maxThreads = new AtomicInteger();
+        final AtomicInteger maxConnections = new AtomicInteger();
+        final AtomicBoolean running = new AtomicBoolean(true);
+        final Thread thread = new Thread(this, "load-sampler");
+
+        Sampler(IntSupplier connections) {
+            this.connections = connections;
+        }
+
+        void start() {
+            thread.start();
+        }
+
+        void stop() throws InterruptedException {
+            running.set(false);
+            thread.join();
+        }
+
+        @Override
+        public void run() {
+            while (running.get()) {
+                maxThreads.accumulateAndGet(ManagementFactory.getThreadMXBean().getThreadCount(), Math::max);
+                maxConnections.accumulateAndGet(connections.getAsInt(), Math::max);
+                try {
+                    Thread.sleep(TICK_MILLIS);
+                } catch (InterruptedException e) {
+                    return;
+                }
+            }
+        }
+    }
+}
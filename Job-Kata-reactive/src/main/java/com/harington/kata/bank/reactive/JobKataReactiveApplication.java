@@ -0,0 +1,39 @@
+package com.harington.kata.bank.reactive;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.SpringApplication;
+import org.springframework.boot.autoconfigure.SpringBootApplication;
+import org.springframework.context.annotation.Bean;
+import org.springframework.web.cors.CorsConfiguration;
+import org.springframework.web.cors.reactive.CorsWebFilter;
+import org.springframework.web.cors.reactive.UrlBasedCorsConfigurationSource;
+
+import java.util.List;
+
+/**
+ * The accounts API of the servlet application, on WebFlux with R2DBC
+ */
+@SpringBootApplication
+public class JobKataReactiveApplication {
+
+        public static void main(String[] args) {
+                SpringApplication.run(JobKataReactiveApplication.class, args);
+        }
+
+        @Bean
+        public CorsWebFilter corsFilter(@Value("${frontend.app.url}") String frontendAppUrl) {
+                var corsConfig = new CorsConfiguration();
+                corsConfig.setAllowCredentials(true);
+                corsConfig.setAllowedOrigins(List.of(frontendAppUrl));
+                corsConfig.setAllowedHeaders(List.of(
+                                "Origin", "Content-Type", "Accept", "Authorization",
+                                "If-None-Match", "If-Match"));
+                corsConfig.setExposedHeaders(List.of(
+                                "Link", "X-Next-Cursor", "X-Total-Count", "ETag"));
+                corsConfig.setAllowedMethods(List.of(
+                                "GET", "POST", "OPTIONS"));
+                var usrCorsConfig = new UrlBasedCorsConfigurationSource();
+                usrCorsConfig.registerCorsConfiguration("/**", corsConfig);
+                return new CorsWebFilter(usrCorsConfig);
+        }
+}
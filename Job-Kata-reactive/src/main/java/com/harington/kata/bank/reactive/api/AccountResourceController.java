@@ -0,0 +1,176 @@
+package com.harington.kata.bank.reactive.api;
+
+import com.harington.kata.bank.exceptions.ConcurrentUpdateException;
+import com.harington.kata.bank.exceptions.InvalidOperationException;
+import com.harington.kata.bank.exceptions.PreconditionFailedException;
+import com.harington.kata.bank.reactive.dto.AccountDto;
+import com.harington.kata.bank.reactive.dto.AccountRequestDto;
+import com.harington.kata.bank.reactive.dto.TransactionDto;
+import com.harington.kata.bank.reactive.dto.TransactionRequestDto;
+import com.harington.kata.bank.reactive.entity.Transaction.TxType;
+import com.harington.kata.bank.reactive.service.AccountService;
+import com.harington.kata.bank.reactive.service.TransactionService;
+import lombok.RequiredArgsConstructor;
+import org.springframework.http.CacheControl;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.*;
+import org.springframework.web.server.ServerWebExchange;
+import org.springframework.web.util.UriComponentsBuilder;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+import javax.validation.Valid;
+import java.net.URI;
+import java.util.List;
+import java.util.UUID;
+
+/**
+ * The {@code /api/v1/accounts} contract of the servlet application, without the bulk and batch
+ * endpoints nor the {@code X-Retry-On-Conflict} and {@code Idempotency-Key} headers. The history
+ * can also be streamed whole as {@code application/x-ndjson}.
+ */
+@RestController
+@RequestMapping(value = AccountResourceController.API_V_1_ACCOUNTS, produces = {MediaType.APPLICATION_JSON_VALUE})
+@RequiredArgsConstructor
+public class AccountResourceController {
+    public static final String API_V_1_ACCOUNTS = "/api/v1/accounts";
+    public static final String NEXT_CURSOR_HEADER = "X-Next-Cursor";
+    public static final String TOTAL_COUNT_HEADER = "X-Total-Count";
+    public static final String DEFAULT_ACCOUNTS_PAGE_SIZE = "20";
+    public static final int MAX_ACCOUNTS_PAGE_SIZE = 500;
+    public static final String DEFAULT_HISTORY_PAGE_SIZE = "50";
+    private final AccountService accountService;
+    private final TransactionService transactionService;
+
+    @GetMapping("")
+    public Mono<ResponseEntity<List<AccountDto>>> getAllAccounts(
+            @RequestParam(value = "page", defaultValue = "0") int page,
+            @RequestParam(value = "size", defaultValue = DEFAULT_ACCOUNTS_PAGE_SIZE) int size,
+            ServerWebExchange exchange) {
+        if (page < 0 || size < 1 || size > MAX_ACCOUNTS_PAGE_SIZE)
+            return Mono.error(new InvalidOperationException(String.format("Page size must be between 1 and %d", MAX_ACCOUNTS_PAGE_SIZE)));
+        return accountService.getAllAccounts(page, size)
+                .map(accounts -> {
+                    ResponseEntity.BodyBuilder response = ResponseEntity.ok()
+                            .header(TOTAL_COUNT_HEADER, String.valueOf(accounts.getTotalElements()));
+                    if (accounts.hasNext())
+                        response.header(HttpHeaders.LINK, "<" + UriComponentsBuilder.fromHttpRequest(exchange.getRequest())
+                                .replaceQueryParam("page", page + 1)
+                                .replaceQueryParam("size", size)
+                                .toUriString() + ">; rel=\"next\"");
+                    return response.body(accounts.getContent());
+                });
+    }
+
+    @PostMapping(value = "", consumes = {MediaType.APPLICATION_JSON_VALUE})
+    public Mono<ResponseEntity<AccountDto>> createNewAccount(@Valid @RequestBody AccountRequestDto request) {
+        return accountService.createNewAccount(request.getOwnerName(), request.getInitialBalanceInCents())
+                .map(dto -> ResponseEntity.created(URI.create("/api/v1/accounts/" + dto.getAccountNumber())).body(dto));
+    }
+
+    /**
+     * Returns the account with its version as strong ETag, 304 for an {@code If-None-Match} header
+     * holding the current version.
+     */
+    @GetMapping("/{accountNumber}")
+    public Mono<ResponseEntity<AccountDto>> getAccountByNumber(@PathVariable("accountNumber") UUID accountNumber,
+                                                               ServerWebExchange exchange) {
+        return accountService.findByAccountNumber(accountNumber)
+                .map(dto -> exchange.checkNotModified(etagOf(dto.getVersion()))
+                        ? ResponseEntity.status(HttpStatus.NOT_MODIFIED).eTag(etagOf(dto.getVersion())).<AccountDto>build()
+                        : withETag(ResponseEntity.ok(), dto.getVersion()).body(dto))
+                .defaultIfEmpty(ResponseEntity.notFound().build());
+    }
+
+    /**
+     * Returns a page of the account's history, with the account's version as strong ETag.
+     */
+    @GetMapping("/{accountNumber}/transactions")
+    public Mono<ResponseEntity<List<TransactionDto>>> getAllTransactionsByAccount(
+            @PathVariable("accountNumber") UUID accountNumber,
+            @RequestParam(value = "cursor", required = false) String cursor,
+            @RequestParam(value = "size", defaultValue = DEFAULT_HISTORY_PAGE_SIZE) int size,
+            ServerWebExchange exchange) {
+        return transactionService.getTransactionsHistoryFor(accountNumber, cursor, size)
+                .map(page -> {
+                    if (exchange.checkNotModified(etagOf(page.getAccountVersion())))
+                        return ResponseEntity.status(HttpStatus.NOT_MODIFIED).eTag(etagOf(page.getAccountVersion())).build();
+                    ResponseEntity.BodyBuilder response = withETag(ResponseEntity.ok(), page.getAccountVersion());
+                    if (page.getNextCursor() == null)
+                        return response.body(page.getTransactions());
+                    String next = UriComponentsBuilder.fromHttpRequest(exchange.getRequest())
+                            .replaceQueryParam("cursor", page.getNextCursor())
+                            .replaceQueryParam("size", size)
+                            .toUriString();
+                    return response
+                            .header(NEXT_CURSOR_HEADER, page.getNextCursor())
+                            .header(HttpHeaders.LINK, "<" + next + ">; rel=\"next\"")
+                            .body(page.getTransactions());
+                });
+    }
+
+    /**
+     * Streams the whole history of the account, newest first, at the pace of the client, see
+     * {@link TransactionService#streamTransactionsHistoryFor(UUID)}
+     */
+    @GetMapping(value = "/{accountNumber}/transactions", produces = {MediaType.APPLICATION_NDJSON_VALUE})
+    public Flux<TransactionDto> streamTransactionsByAccount(@PathVariable("accountNumber") UUID accountNumber) {
+        return transactionService.streamTransactionsHistoryFor(accountNumber);
+    }
+
+    /**
+     * Posts a deposit or a withdrawal based on the {@code accountVersion} of the request. An
+     * {@code If-Match} header (the account's ETag, or *) replaces it : a stale version is then
+     * answered with 412.
+     */
+    @PostMapping(value = "/transactions", consumes = {MediaType.APPLICATION_JSON_VALUE})
+    public Mono<ResponseEntity<TransactionDto>> doOperation(
+            @Valid @RequestBody TransactionRequestDto request,
+            @RequestHeader(value = HttpHeaders.IF_MATCH, required = false) String ifMatch) {
+        Integer accountVersion;
+        try {
+            accountVersion = ifMatch == null ? Integer.valueOf(request.getAccountVersion()) : versionOf(ifMatch);
+        } catch (InvalidOperationException e) {
+            return Mono.error(e);
+        }
+        Mono<TransactionDto> tx = request.getOperation() == TxType.DEPOSIT
+                ? transactionService.doDepositOn(request.getAccountNumber(), request.getAmountInCents(),
+                request.getDescription(), accountVersion)
+                : transactionService.doWithdrawalOn(request.getAccountNumber(), request.getAmountInCents(),
+                request.getDescription(), accountVersion);
+        if (ifMatch != null)
+            tx = tx.onErrorMap(ConcurrentUpdateException.class, e -> new PreconditionFailedException(e.getMessage()));
+        return tx.map(dto -> ResponseEntity
+                .created(URI.create("/api/v1/accounts/" + request.getAccountNumber() + "/transactions"))
+                .body(dto));
+    }
+
+    static String etagOf(int version) {
+        return "\"" + version + "\"";
+    }
+
+    /**
+     * Sets the ETag, with {@code no-cache} so that browsers revalidate their copy on each request
+     */
+    private static ResponseEntity.BodyBuilder withETag(ResponseEntity.BodyBuilder response, Integer version) {
+        return version == null ? response : response.eTag(etagOf(version)).cacheControl(CacheControl.noCache());
+    }
+
+    /**
+     * @return the version held by a single strong ETag, null for *
+     */
+    private static Integer versionOf(String ifMatch) {
+        String etag = ifMatch.trim();
+        if (etag.equals("*")) return null;
+        if (etag.length() > 2 && etag.startsWith("\"") && etag.endsWith("\""))
+            try {
+                return Integer.valueOf(etag.substring(1, etag.length() - 1));
+            } catch (NumberFormatException e) {
+                // Reported below
+            }
+        throw new InvalidOperationException("If-Match must hold a single ETag of the account");
+    }
+}
@@ -0,0 +1,30 @@
+package com.harington.kata.bank.reactive.dto;
+
+import com.harington.kata.bank.formatters.AmountFormatter;
+import com.harington.kata.bank.formatters.DatesFormatter;
+import com.harington.kata.bank.reactive.entity.Account;
+import lombok.Builder;
+import lombok.Value;
+
+@Value
+@Builder
+public class AccountDto {
+    String accountNumber;
+    String currentBalance;
+    String ownerName;
+    String createdAt;
+    /**
+     * {@link Account#getVersion()}, also sent as ETag
+     */
+    Integer version;
+
+    public static AccountDto fromEntity(Account account) {
+        return AccountDto.builder()
+                .currentBalance(AmountFormatter.formatCents(account.getCurrentBalanceInCents()))
+                .ownerName(account.getOwnerName())
+                .createdAt(DatesFormatter.format(account.getCreatedAt()))
+                .accountNumber(account.getAccountNumber().toString())
+                .version(account.getVersion())
+                .build();
+    }
+}
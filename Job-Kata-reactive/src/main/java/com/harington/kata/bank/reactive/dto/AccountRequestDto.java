@@ -0,0 +1,20 @@
+package com.harington.kata.bank.reactive.dto;
+
+import lombok.Builder;
+import lombok.Value;
+
+import javax.validation.constraints.Min;
+import javax.validation.constraints.NotEmpty;
+import javax.validation.constraints.NotNull;
+import javax.validation.constraints.Size;
+
+@Value
+@Builder
+public class AccountRequestDto {
+    @Min(0)
+    int initialBalanceInCents;
+    @NotNull
+    @NotEmpty
+    @Size(min = 3)
+    String ownerName;
+}
@@ -0,0 +1,33 @@
+package com.harington.kata.bank.reactive.dto;
+
+import com.harington.kata.bank.formatters.AmountFormatter;
+import com.harington.kata.bank.formatters.DatesFormatter;
+import com.harington.kata.bank.reactive.entity.Transaction;
+import lombok.Builder;
+import lombok.Value;
+
+import java.util.UUID;
+
+@Value
+@Builder
+public class TransactionDto {
+    String txRef;
+    String accountBalance;
+    String amount;
+    String transactionAt;
+    String description;
+    String accountNumber;
+    String operation;
+
+    public static TransactionDto fromEntity(Transaction tx, UUID accountNumber) {
+        return TransactionDto.builder()
+                .txRef(tx.getTxRef().toString())
+                .transactionAt(DatesFormatter.format(tx.getTransactionAt()))
+                .amount(AmountFormatter.formatCents(tx.getAmountInCents()))
+                .accountBalance(AmountFormatter.formatCents(tx.getPostTxAccountBalanceInCents()))
+                .operation(tx.getTxType().name())
+                .description(tx.getDescription())
+                .accountNumber(accountNumber.toString())
+                .build();
+    }
+}
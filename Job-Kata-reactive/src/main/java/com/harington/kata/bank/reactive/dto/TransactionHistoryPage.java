@@ -0,0 +1,20 @@
+package com.harington.kata.bank.reactive.dto;
+
+import lombok.Builder;
+import lombok.Value;
+
+import java.util.List;
+
+@Value
+@Builder
+public class TransactionHistoryPage {
+    List<TransactionDto> transactions;
+    /**
+     * Cursor of the next (older) page, null on the last page
+     */
+    String nextCursor;
+    /**
+     * Version of the account when the page was read
+     */
+    Integer accountVersion;
+}
@@ -0,0 +1,22 @@
+package com.harington.kata.bank.reactive.entity;
+
+import lombok.Builder;
+import lombok.Value;
+
+import java.time.LocalDateTime;
+import java.util.UUID;
+
+/**
+ * Row of the {@code account} table
+ */
+@Value
+@Builder
+public class Account {
+    Long id;
+    Integer version;
+    UUID accountNumber;
+    int initialBalanceInCents;
+    int currentBalanceInCents;
+    String ownerName;
+    LocalDateTime createdAt;
+}
@@ -0,0 +1,30 @@
+package com.harington.kata.bank.reactive.entity;
+
+import lombok.Builder;
+import lombok.Value;
+
+import java.time.LocalDateTime;
+import java.util.UUID;
+
+/**
+ * Row of the {@code transaction} table
+ */
+@Value
+@Builder
+public class Transaction {
+    Long id;
+    UUID txRef;
+    int postTxAccountBalanceInCents;
+    int amountInCents;
+    LocalDateTime transactionAt;
+    String description;
+    Long accountId;
+    TxType txType;
+
+    /**
+     * Stored by ordinal, as the servlet application does
+     */
+    public enum TxType {
+        DEPOSIT, WITHDRAWAL
+    }
+}
@@ -0,0 +1,93 @@
+package com.harington.kata.bank.reactive.repository;
+
+import com.harington.kata.bank.entity.converters.UUIDBytes;
+import com.harington.kata.bank.reactive.entity.Account;
+import io.r2dbc.spi.Row;
+import lombok.RequiredArgsConstructor;
+import org.springframework.r2dbc.core.DatabaseClient;
+import org.springframework.stereotype.Repository;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+import java.time.LocalDateTime;
+import java.util.UUID;
+
+@Repository
+@RequiredArgsConstructor
+public class AccountRepository {
+    private static final String COLUMNS = "id, version, account_number, initial_balance_in_cents, " +
+            "current_balance_in_cents, owner_name, created_at";
+    /**
+     * Applies {@code :delta} unless the balance would go negative, and returns the updated row (H2's
+     * data change delta table) : a single round trip, no row when nothing was updated
+     */
+    private static final String APPLY_DELTA = "SELECT " + COLUMNS + " FROM FINAL TABLE (" +
+            "UPDATE account SET current_balance_in_cents = current_balance_in_cents + :delta, version = version + 1 " +
+            "WHERE account_number = :accountNumber AND current_balance_in_cents + :delta >= 0";
+    private final DatabaseClient databaseClient;
+
+    public Mono<Account> findByAccountNumber(UUID accountNumber) {
+        return databaseClient.sql("SELECT " + COLUMNS + " FROM account WHERE account_number = :accountNumber")
+                .bind("accountNumber", UUIDBytes.toBytes(accountNumber))
+                .map((row, metadata) -> fromRow(row))
+                .one();
+    }
+
+    public Flux<Account> findPage(int page, int size) {
+        return databaseClient.sql("SELECT " + COLUMNS + " FROM account ORDER BY id LIMIT :size OFFSET :offset")
+                .bind("size", size)
+                .bind("offset", (long) page * size)
+                .map((row, metadata) -> fromRow(row))
+                .all();
+    }
+
+    public Mono<Long> count() {
+        return databaseClient.sql("SELECT COUNT(*) FROM account")
+                .map((row, metadata) -> row.get(0, Long.class))
+                .one();
+    }
+
+    /**
+     * Inserts the account with an id of the {@code ACCOUNTS_ID_SEQ} sequence and version 0
+     */
+    public Mono<Account> insert(Account account) {
+        return databaseClient.sql("SELECT " + COLUMNS + " FROM FINAL TABLE (" +
+                        "INSERT INTO account (" + COLUMNS + ") VALUES (NEXT VALUE FOR ACCOUNTS_ID_SEQ, 0, " +
+                        ":accountNumber, :initialBalance, :currentBalance, :ownerName, :createdAt))")
+                .bind("accountNumber", UUIDBytes.toBytes(account.getAccountNumber()))
+                .bind("initialBalance", account.getInitialBalanceInCents())
+                .bind("currentBalance", account.getCurrentBalanceInCents())
+                .bind("ownerName", account.getOwnerName())
+                .bind("createdAt", account.getCreatedAt())
+                .map((row, metadata) -> fromRow(row))
+                .one();
+    }
+
+    /**
+     * Adds {@code delta} (negative for a withdrawal) to the balance and increments the version, when
+     * the balance stays positive and, unless {@code expectedVersion} is null, the version matches.
+     *
+     * @return the updated account, empty when it wasn't updated
+     */
+    public Mono<Account> applyDelta(UUID accountNumber, int delta, Integer expectedVersion) {
+        DatabaseClient.GenericExecuteSpec spec = databaseClient
+                .sql(expectedVersion == null ? APPLY_DELTA + ")" : APPLY_DELTA + " AND version = :version)")
+                .bind("delta", delta)
+                .bind("accountNumber", UUIDBytes.toBytes(accountNumber));
+        if (expectedVersion != null)
+            spec = spec.bind("version", expectedVersion);
+        return spec.map((row, metadata) -> fromRow(row)).one();
+    }
+
+    private static Account fromRow(Row row) {
+        return Account.builder()
+                .id(row.get("id", Long.class))
+                .version(row.get("version", Integer.class))
+                .accountNumber(UUIDBytes.fromBytes(row.get("account_number", byte[].class)))
+                .initialBalanceInCents(row.get("initial_balance_in_cents", Integer.class))
+                .currentBalanceInCents(row.get("current_balance_in_cents", Integer.class))
+                .ownerName(row.get("owner_name", String.class))
+                .createdAt(row.get("created_at", LocalDateTime.class))
+                .build();
+    }
+}
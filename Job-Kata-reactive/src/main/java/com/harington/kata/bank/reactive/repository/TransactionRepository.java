@@ -0,0 +1,76 @@
+package com.harington.kata.bank.reactive.repository;
+
+import com.harington.kata.bank.entity.converters.UUIDBytes;
+import com.harington.kata.bank.entity.dto.HistoryCursor;
+import com.harington.kata.bank.reactive.entity.Transaction;
+import io.r2dbc.spi.Row;
+import lombok.RequiredArgsConstructor;
+import org.springframework.r2dbc.core.DatabaseClient;
+import org.springframework.stereotype.Repository;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+import java.time.LocalDateTime;
+
+@Repository
+@RequiredArgsConstructor
+public class TransactionRepository {
+    private static final String COLUMNS = "id, tx_ref, post_tx_account_balance_in_cents, amount_in_cents, " +
+            "transaction_at, description, account_id, tx_type";
+    private final DatabaseClient databaseClient;
+
+    /**
+     * Inserts the transaction with an id of the {@code TRANSACTIONS_ID_SEQ} sequence
+     */
+    public Mono<Transaction> insert(Transaction tx) {
+        DatabaseClient.GenericExecuteSpec spec = databaseClient.sql("SELECT " + COLUMNS + " FROM FINAL TABLE (" +
+                        "INSERT INTO transaction (" + COLUMNS + ") VALUES (NEXT VALUE FOR TRANSACTIONS_ID_SEQ, " +
+                        ":txRef, :balance, :amount, :transactionAt, :description, :accountId, :txType))")
+                .bind("txRef", UUIDBytes.toBytes(tx.getTxRef()))
+                .bind("balance", tx.getPostTxAccountBalanceInCents())
+                .bind("amount", tx.getAmountInCents())
+                .bind("transactionAt", tx.getTransactionAt())
+                .bind("accountId", tx.getAccountId())
+                .bind("txType", tx.getTxType().ordinal());
+        spec = tx.getDescription() == null
+                ? spec.bindNull("description", String.class)
+                : spec.bind("description", tx.getDescription());
+        return spec.map((row, metadata) -> fromRow(row)).one();
+    }
+
+    /**
+     * Transactions of the account, newest first (ties broken by id), starting strictly after
+     * {@code after} when it isn't null
+     */
+    public Flux<Transaction> findLatest(long accountId, HistoryCursor after, int limit) {
+        if (after == null)
+            return databaseClient.sql("SELECT " + COLUMNS + " FROM transaction WHERE account_id = :accountId " +
+                            "ORDER BY transaction_at DESC, id DESC LIMIT :limit")
+                    .bind("accountId", accountId)
+                    .bind("limit", limit)
+                    .map((row, metadata) -> fromRow(row))
+                    .all();
+        return databaseClient.sql("SELECT " + COLUMNS + " FROM transaction WHERE account_id = :accountId " +
+                        "AND (transaction_at < :at OR (transaction_at = :at AND id < :id)) " +
+                        "ORDER BY transaction_at DESC, id DESC LIMIT :limit")
+                .bind("accountId", accountId)
+                .bind("at", after.getTransactionAt())
+                .bind("id", after.getId())
+                .bind("limit", limit)
+                .map((row, metadata) -> fromRow(row))
+                .all();
+    }
+
+    private static Transaction fromRow(Row row) {
+        return Transaction.builder()
+                .id(row.get("id", Long.class))
+                .txRef(UUIDBytes.fromBytes(row.get("tx_ref", byte[].class)))
+                .postTxAccountBalanceInCents(row.get("post_tx_account_balance_in_cents", Integer.class))
+                .amountInCents(row.get("amount_in_cents", Integer.class))
+                .transactionAt(row.get("transaction_at", LocalDateTime.class))
+                .description(row.get("description", String.class))
+                .accountId(row.get("account_id", Long.class))
+                .txType(Transaction.TxType.values()[row.get("tx_type", Integer.class)])
+                .build();
+    }
+}
@@ -0,0 +1,47 @@
+package com.harington.kata.bank.reactive.service;
+
+import com.harington.kata.bank.reactive.dto.AccountDto;
+import com.harington.kata.bank.reactive.entity.Account;
+import com.harington.kata.bank.reactive.repository.AccountRepository;
+import lombok.RequiredArgsConstructor;
+import org.springframework.data.domain.Page;
+import org.springframework.data.domain.PageImpl;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.stereotype.Service;
+import reactor.core.publisher.Mono;
+
+import java.time.LocalDateTime;
+import java.util.UUID;
+
+@Service
+@RequiredArgsConstructor
+public class AccountService {
+    private final AccountRepository accountRepository;
+
+    public Mono<AccountDto> createNewAccount(String ownerName, int initialBalanceInCents) {
+        return accountRepository.insert(Account.builder()
+                        .createdAt(LocalDateTime.now())
+                        .ownerName(ownerName)
+                        .currentBalanceInCents(initialBalanceInCents)
+                        .initialBalanceInCents(initialBalanceInCents)
+                        .accountNumber(UUID.randomUUID())
+                        .build())
+                .map(AccountDto::fromEntity);
+    }
+
+    /**
+     * Returns a page of accounts ordered by id
+     */
+    public Mono<Page<AccountDto>> getAllAccounts(int page, int size) {
+        return accountRepository.findPage(page, size)
+                .map(AccountDto::fromEntity)
+                .collectList()
+                .zipWith(accountRepository.count(),
+                        (accounts, total) -> new PageImpl<>(accounts, PageRequest.of(page, size), total));
+    }
+
+    public Mono<AccountDto> findByAccountNumber(UUID accountNumber) {
+        return accountRepository.findByAccountNumber(accountNumber)
+                .map(AccountDto::fromEntity);
+    }
+}
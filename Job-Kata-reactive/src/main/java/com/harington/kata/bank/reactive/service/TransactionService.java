@@ -0,0 +1,153 @@
+package com.harington.kata.bank.reactive.service;
+
+import com.harington.kata.bank.entity.dto.HistoryCursor;
+import com.harington.kata.bank.exceptions.ConcurrentUpdateException;
+import com.harington.kata.bank.exceptions.EntityNotFoundException;
+import com.harington.kata.bank.exceptions.InsufficientFundsException;
+import com.harington.kata.bank.exceptions.InvalidOperationException;
+import com.harington.kata.bank.reactive.dto.TransactionDto;
+import com.harington.kata.bank.reactive.dto.TransactionHistoryPage;
+import com.harington.kata.bank.reactive.entity.Account;
+import com.harington.kata.bank.reactive.entity.Transaction;
+import com.harington.kata.bank.reactive.repository.AccountRepository;
+import com.harington.kata.bank.reactive.repository.TransactionRepository;
+import lombok.RequiredArgsConstructor;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.UUID;
+import java.util.stream.Collectors;
+
+@Service
+@RequiredArgsConstructor
+public class TransactionService {
+    public static final int MAX_HISTORY_PAGE_SIZE = 500;
+    /**
+     * Transactions read per query by {@link #streamTransactionsHistoryFor(UUID)}
+     */
+    public static final int HISTORY_STREAM_PAGE_SIZE = 100;
+    private final AccountRepository accountRepository;
+    private final TransactionRepository transactionRepository;
+
+    /**
+     * Credits the account and inserts the transaction. A null {@code accountVersion} skips the version check.
+     */
+    @Transactional
+    public Mono<TransactionDto> doDepositOn(UUID accountNumber, int amountInCents, String description,
+                                            Integer accountVersion) {
+        return post(accountNumber, Transaction.TxType.DEPOSIT, amountInCents, description, accountVersion);
+    }
+
+    /**
+     * Debits the account when its balance is enough and inserts the transaction. A null
+     * {@code accountVersion} skips the version check.
+     */
+    @Transactional
+    public Mono<TransactionDto> doWithdrawalOn(UUID accountNumber, int amountInCents, String description,
+                                               Integer accountVersion) {
+        return post(accountNumber, Transaction.TxType.WITHDRAWAL, amountInCents, description, accountVersion);
+    }
+
+    /**
+     * The balance is updated by a single conditional update (version and balance checked by the
+     * database) returning the new balance ; the account is only read when nothing was updated, to
+     * tell why.
+     */
+    private Mono<TransactionDto> post(UUID accountNumber, Transaction.TxType type, int amountInCents,
+                                      String description, Integer accountVersion) {
+        int delta = type == Transaction.TxType.DEPOSIT ? amountInCents : -amountInCents;
+        return accountRepository.applyDelta(accountNumber, delta, accountVersion)
+                .switchIfEmpty(Mono.defer(() -> rejected(accountNumber, accountVersion)))
+                .flatMap(acc -> transactionRepository.insert(Transaction.builder()
+                        .txRef(UUID.randomUUID())
+                        .transactionAt(LocalDateTime.now())
+                        .description(description)
+                        .txType(type)
+                        .amountInCents(amountInCents)
+                        .postTxAccountBalanceInCents(acc.getCurrentBalanceInCents())
+                        .accountId(acc.getId())
+                        .build()))
+                .map(tx -> TransactionDto.fromEntity(tx, accountNumber));
+    }
+
+    private Mono<Account> rejected(UUID accountNumber, Integer accountVersion) {
+        return findAccount(accountNumber)
+                .flatMap(acc -> Mono.error(accountVersion != null && !accountVersion.equals(acc.getVersion())
+                        ? new ConcurrentUpdateException(String.format("Account with ID %s is no longer valid. Please refresh the page", acc.getId()))
+                        : new InsufficientFundsException(String.format("Account's (ID %s) balance is not enough", acc.getId()))));
+    }
+
+    /**
+     * Returns a page of an account's transactions ordered by creation datetime in the
+     * decreasing order (ties broken by id).
+     *
+     * @param accountNumber
+     * @param cursor        {@link TransactionHistoryPage#getNextCursor()} of the previous page, null for the first one
+     * @param size          maximum number of transactions of the page
+     * @return
+     */
+    public Mono<TransactionHistoryPage> getTransactionsHistoryFor(UUID accountNumber, String cursor, int size) {
+        if (size < 1 || size > MAX_HISTORY_PAGE_SIZE)
+            return Mono.error(new InvalidOperationException(String.format("History page size must be between 1 and %d", MAX_HISTORY_PAGE_SIZE)));
+        HistoryCursor after;
+        try {
+            after = cursor == null ? null : HistoryCursor.decode(cursor);
+        } catch (InvalidOperationException e) {
+            return Mono.error(e);
+        }
+        // One extra row tells whether an older page exists
+        return findAccount(accountNumber)
+                .flatMap(account -> transactionRepository.findLatest(account.getId(), after, size + 1)
+                        .collectList()
+                        .map(txs -> historyPage(account, txs, size)));
+    }
+
+    private static TransactionHistoryPage historyPage(Account account, List<Transaction> txs, int size) {
+        String nextCursor = null;
+        if (txs.size() > size) {
+            txs = txs.subList(0, size);
+            Transaction last = txs.get(size - 1);
+            nextCursor = new HistoryCursor(last.getTransactionAt(), last.getId()).encode();
+        }
+        return TransactionHistoryPage.builder()
+                .transactions(txs.stream()
+                        .map(tx -> TransactionDto.fromEntity(tx, account.getAccountNumber()))
+                        .collect(Collectors.toList()))
+                .nextCursor(nextCursor)
+                .accountVersion(account.getVersion())
+                .build();
+    }
+
+    /**
+     * Streams the whole history of an account, newest first. Transactions are read
+     * {@link #HISTORY_STREAM_PAGE_SIZE} at a time and the next page is only queried when the
+     * subscriber has consumed the previous one : a slow client holds no connection between pages.
+     */
+    public Flux<TransactionDto> streamTransactionsHistoryFor(UUID accountNumber) {
+        return findAccount(accountNumber)
+                .flatMapMany(account -> historyPage(account.getId(), null)
+                        .expand(page -> page.size() < HISTORY_STREAM_PAGE_SIZE
+                                ? Mono.empty()
+                                : historyPage(account.getId(), cursorAfter(page)))
+                        .concatMapIterable(page -> page, 1)
+                        .map(tx -> TransactionDto.fromEntity(tx, accountNumber)));
+    }
+
+    private Mono<List<Transaction>> historyPage(long accountId, HistoryCursor after) {
+        return transactionRepository.findLatest(accountId, after, HISTORY_STREAM_PAGE_SIZE).collectList();
+    }
+
+    private static HistoryCursor cursorAfter(List<Transaction> page) {
+        Transaction last = page.get(page.size() - 1);
+        return new HistoryCursor(last.getTransactionAt(), last.getId());
+    }
+
+    private Mono<Account> findAccount(UUID accountNumber) {
+        return accountRepository.findByAccountNumber(accountNumber)
+                .switchIfEmpty(Mono.error(EntityNotFoundException::new));
+    }
+}
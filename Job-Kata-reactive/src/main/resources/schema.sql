@@ -0,0 +1,45 @@
+-- Same tables as the servlet application (Hibernate's DDL), so that both can share a database. This
+-- application posts like the servlet one does with bank.event-sourcing.enabled=false : it leaves
+-- transaction.sequence NULL and never reads account_snapshot.
+CREATE SEQUENCE IF NOT EXISTS ACCOUNTS_ID_SEQ START WITH 1 INCREMENT BY 50;
+CREATE SEQUENCE IF NOT EXISTS TRANSACTIONS_ID_SEQ START WITH 1 INCREMENT BY 50;
+
+CREATE TABLE IF NOT EXISTS account (
+    id BIGINT NOT NULL PRIMARY KEY,
+    version INTEGER,
+    account_number BINARY(16),
+    created_at TIMESTAMP,
+    current_balance_in_cents INTEGER NOT NULL,
+    initial_balance_in_cents INTEGER NOT NULL,
+    owner_name VARCHAR(255),
+    CONSTRAINT ACCOUNTS_ACCOUNT_NUMBER_UK UNIQUE (account_number)
+);
+CREATE INDEX IF NOT EXISTS ACCOUNTS_CURRENT_BALANCE_IDX ON account (current_balance_in_cents);
+
+CREATE TABLE IF NOT EXISTS transaction (
+    id BIGINT NOT NULL PRIMARY KEY,
+    amount_in_cents INTEGER NOT NULL,
+    description VARCHAR(255),
+    idempotency_key VARCHAR(64),
+    post_tx_account_balance_in_cents INTEGER NOT NULL,
+    transaction_at TIMESTAMP,
+    tx_ref BINARY(16),
+    -- Ordinal of the transaction type : 0 deposit, 1 withdrawal
+    tx_type INTEGER NOT NULL,
+    account_id BIGINT REFERENCES account (id),
+    -- Position in the account's event stream (event-sourced mode)
+    sequence INTEGER,
+    CONSTRAINT TRANSACTIONS_IDEMPOTENCY_KEY_UK UNIQUE (idempotency_key),
+    CONSTRAINT TRANSACTIONS_ACCOUNT_SEQUENCE_UK UNIQUE (account_id, sequence)
+);
+CREATE INDEX IF NOT EXISTS TRANSACTIONS_ACCOUNT_AT_ID_IDX ON transaction (account_id, transaction_at DESC, id DESC);
+
+CREATE SEQUENCE IF NOT EXISTS ACCOUNT_SNAPSHOTS_ID_SEQ START WITH 1 INCREMENT BY 50;
+CREATE TABLE IF NOT EXISTS account_snapshot (
+    id BIGINT NOT NULL PRIMARY KEY,
+    account_id BIGINT REFERENCES account (id),
+    sequence INTEGER NOT NULL,
+    balance_in_cents INTEGER NOT NULL,
+    taken_at TIMESTAMP,
+    CONSTRAINT ACCOUNT_SNAPSHOTS_ACCOUNT_SEQUENCE_UK UNIQUE (account_id, sequence)
+);
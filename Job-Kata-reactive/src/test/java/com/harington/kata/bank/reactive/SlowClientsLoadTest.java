@@ -0,0 +1,93 @@
+package com.harington.kata.bank.reactive;
+
+import com.harington.kata.bank.load.SlowClients;
+import com.harington.kata.bank.load.SlowClients.LoadResult;
+import com.harington.kata.bank.reactive.dto.AccountDto;
+import com.harington.kata.bank.reactive.service.AccountService;
+import com.harington.kata.bank.reactive.service.TransactionService;
+import io.r2dbc.pool.ConnectionPool;
+import io.r2dbc.pool.PoolMetrics;
+import io.r2dbc.spi.ConnectionFactory;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.context.ConfigurableApplicationContext;
+import org.springframework.web.server.ServerWebExchange;
+import org.springframework.web.server.WebFilter;
+import org.springframework.web.server.WebFilterChain;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+import java.util.UUID;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.IntSupplier;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * {@link SlowClients} read the history of a same account of {@value #HISTORY_SIZE} transactions,
+ * as a JSON page and as an ndjson stream. Connections acquired from the pool are sampled.
+ * <p>
+ * The servlet application's {@code SlowClientsLoadTest} drives the same clients. Run with
+ * {@code mvn -Pload test}.
+ */
+@Tag("load")
+class SlowClientsLoadTest {
+    static final int HISTORY_SIZE = 1_000;
+    static final int PAGE_SIZE = 500;
+    static final int POOL_MAX_SIZE = 10;
+
+    @Test
+    void slow_clients_hold_neither_threads_nor_connections() throws Exception {
+        InFlightProbe probe = new InFlightProbe();
+        try (ConfigurableApplicationContext context = new SpringApplicationBuilder(JobKataReactiveApplication.class)
+                .initializers(ctx -> ctx.getBeanFactory().registerSingleton("inFlightProbe", probe))
+                // Command-line arguments, to override application.properties
+                .run("--server.port=0",
+                        "--spring.jmx.enabled=false",
+                        "--spring.r2dbc.pool.max-size=" + POOL_MAX_SIZE)) {
+            UUID accountNumber = createAccountWithHistory(context);
+            int port = Integer.parseInt(context.getEnvironment().getProperty("local.server.port"));
+            ConnectionPool pool = (ConnectionPool) context.getBean(ConnectionFactory.class);
+            IntSupplier acquiredConnections = () -> pool.getMetrics().map(PoolMetrics::acquiredSize).orElse(0);
+            String path = "/api/v1/accounts/" + accountNumber + "/transactions";
+
+            LoadResult page = SlowClients.load(port, path + "?size=" + PAGE_SIZE, "application/json",
+                    probe.maxInFlight, acquiredConnections);
+            LoadResult stream = SlowClients.load(port, path, "application/x-ndjson", probe.maxInFlight, acquiredConnections);
+
+            System.out.println(SlowClients.header());
+            System.out.println(page.format("json page of " + PAGE_SIZE));
+            System.out.println(stream.format("ndjson stream"));
+            for (LoadResult result : new LoadResult[]{page, stream}) {
+                assertEquals(SlowClients.CLIENTS, result.ok);
+                assertTrue(result.maxConnections <= POOL_MAX_SIZE);
+            }
+        }
+    }
+
+    UUID createAccountWithHistory(ConfigurableApplicationContext context) {
+        AccountDto account = context.getBean(AccountService.class).createNewAccount("Slow clients", 0).block();
+        UUID accountNumber = UUID.fromString(account.getAccountNumber());
+        TransactionService transactionService = context.getBean(TransactionService.class);
+        Flux.range(0, HISTORY_SIZE)
+                .concatMap(i -> transactionService.doDepositOn(accountNumber, 1_00, "Deposit " + i, null))
+                .blockLast();
+        return accountNumber;
+    }
+
+    /**
+     * Requests being handled by the application at the same time, until their response is written
+     */
+    static class InFlightProbe implements WebFilter {
+        final AtomicInteger inFlight = new AtomicInteger();
+        final AtomicInteger maxInFlight = new AtomicInteger();
+
+        @Override
+        public Mono<Void> filter(ServerWebExchange exchange, WebFilterChain chain) {
+            maxInFlight.accumulateAndGet(inFlight.incrementAndGet(), Math::max);
+            return chain.filter(exchange).doFinally(signal -> inFlight.decrementAndGet());
+        }
+    }
+}
@@ -0,0 +1,207 @@
+package com.harington.kata.bank.reactive.api;
+
+import com.harington.kata.bank.formatters.AmountFormatter;
+import com.harington.kata.bank.reactive.dto.AccountDto;
+import com.harington.kata.bank.reactive.dto.AccountRequestDto;
+import com.harington.kata.bank.reactive.dto.TransactionDto;
+import com.harington.kata.bank.reactive.dto.TransactionRequestDto;
+import com.harington.kata.bank.reactive.entity.Transaction;
+import com.harington.kata.bank.reactive.service.TransactionService;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.reactive.AutoConfigureWebTestClient;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.test.web.reactive.server.WebTestClient;
+import reactor.core.publisher.Flux;
+import reactor.test.StepVerifier;
+
+import java.util.List;
+import java.util.UUID;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+@SpringBootTest
+@AutoConfigureWebTestClient
+public class AccountResourceControllerIntegrationTest {
+    final static String API_BASE_URL = "/api/v1/accounts/";
+    @Autowired
+    WebTestClient webTestClient;
+
+    AccountDto account;
+
+    @BeforeEach
+    void setup() {
+        account = createAccount(100_00);
+    }
+
+    @Test
+    public void should_create_account_and_get_it_by_number() {
+        assertEquals("100.00€", account.getCurrentBalance());
+        assertEquals(0, account.getVersion());
+
+        webTestClient.get().uri(API_BASE_URL + account.getAccountNumber())
+                .exchange()
+                .expectStatus().isOk()
+                .expectHeader().valueEquals(HttpHeaders.ETAG, "\"0\"")
+                .expectBody()
+                .jsonPath("$.ownerName").isEqualTo("Owner")
+                .jsonPath("$.currentBalance").isEqualTo("100.00€");
+
+        webTestClient.get().uri(API_BASE_URL + account.getAccountNumber())
+                .header(HttpHeaders.IF_NONE_MATCH, "\"0\"")
+                .exchange()
+                .expectStatus().isNotModified();
+
+        webTestClient.get().uri(API_BASE_URL + UUID.randomUUID())
+                .exchange()
+                .expectStatus().isNotFound();
+    }
+
+    @Test
+    public void should_reject_invalid_account_request() {
+        webTestClient.post().uri(API_BASE_URL)
+                .contentType(MediaType.APPLICATION_JSON)
+                .bodyValue(AccountRequestDto.builder().ownerName("O").initialBalanceInCents(0).build())
+                .exchange()
+                .expectStatus().isBadRequest();
+    }
+
+    @Test
+    public void should_page_accounts_with_total_count() {
+        createAccount(0);
+        webTestClient.get().uri(API_BASE_URL.substring(0, API_BASE_URL.length() - 1) + "?page=0&size=1")
+                .exchange()
+                .expectStatus().isOk()
+                .expectHeader().exists(AccountResourceController.TOTAL_COUNT_HEADER)
+                .expectHeader().valueMatches(HttpHeaders.LINK, ".*page=1&size=1>; rel=\"next\"")
+                .expectBodyList(AccountDto.class).hasSize(1);
+    }
+
+    @Test
+    public void should_deposit_and_withdraw() {
+        TransactionDto deposit = operation(Transaction.TxType.DEPOSIT, 0, 20_00, null)
+                .expectStatus().isCreated()
+                .expectBody(TransactionDto.class).returnResult().getResponseBody();
+        assertNotNull(deposit);
+        assertEquals("120.00€", deposit.getAccountBalance());
+
+        operation(Transaction.TxType.WITHDRAWAL, 1, 30_00, null)
+                .expectStatus().isCreated()
+                .expectBody().jsonPath("$.accountBalance").isEqualTo("90.00€");
+
+        webTestClient.get().uri(API_BASE_URL + account.getAccountNumber())
+                .exchange()
+                .expectHeader().valueEquals(HttpHeaders.ETAG, "\"2\"")
+                .expectBody().jsonPath("$.currentBalance").isEqualTo("90.00€");
+    }
+
+    @Test
+    public void should_reject_withdrawal_above_balance_and_stale_version() {
+        operation(Transaction.TxType.WITHDRAWAL, 0, 100_01, null)
+                .expectStatus().isBadRequest();
+        operation(Transaction.TxType.DEPOSIT, 0, 1_00, null)
+                .expectStatus().isCreated();
+        operation(Transaction.TxType.DEPOSIT, 0, 1_00, null)
+                .expectStatus().isBadRequest();
+        operation(Transaction.TxType.DEPOSIT, 0, 1_00, "\"0\"")
+                .expectStatus().isEqualTo(HttpStatus.PRECONDITION_FAILED);
+        operation(Transaction.TxType.DEPOSIT, 0, 1_00, "*")
+                .expectStatus().isCreated();
+        operation(Transaction.TxType.DEPOSIT, 0, 1_00, "W/\"2\"")
+                .expectStatus().isBadRequest();
+        operation(Transaction.TxType.DEPOSIT, 0, 0, null)
+                .expectStatus().isBadRequest();
+    }
+
+    @Test
+    public void should_page_history_with_cursor() {
+        for (int i = 0; i < 3; i++)
+            operation(Transaction.TxType.DEPOSIT, i, 1_00, null).expectStatus().isCreated();
+
+        WebTestClient.ResponseSpec first = webTestClient.get()
+                .uri(API_BASE_URL + account.getAccountNumber() + "/transactions?size=2")
+                .accept(MediaType.APPLICATION_JSON)
+                .exchange()
+                .expectStatus().isOk()
+                .expectHeader().valueEquals(HttpHeaders.ETAG, "\"3\"")
+                .expectHeader().exists(AccountResourceController.NEXT_CURSOR_HEADER);
+        List<TransactionDto> page1 = first.expectBodyList(TransactionDto.class).returnResult().getResponseBody();
+        assertNotNull(page1);
+        assertEquals("103.00€", page1.get(0).getAccountBalance());
+        assertEquals("102.00€", page1.get(1).getAccountBalance());
+        String cursor = first.returnResult(TransactionDto.class).getResponseHeaders()
+                .getFirst(AccountResourceController.NEXT_CURSOR_HEADER);
+
+        webTestClient.get()
+                .uri(API_BASE_URL + account.getAccountNumber() + "/transactions?size=2&cursor=" + cursor)
+                .accept(MediaType.APPLICATION_JSON)
+                .exchange()
+                .expectStatus().isOk()
+                .expectHeader().doesNotExist(AccountResourceController.NEXT_CURSOR_HEADER)
+                .expectBodyList(TransactionDto.class).hasSize(1);
+
+        webTestClient.get()
+                .uri(API_BASE_URL + account.getAccountNumber() + "/transactions?size=" + (TransactionService.MAX_HISTORY_PAGE_SIZE + 1))
+                .accept(MediaType.APPLICATION_JSON)
+                .exchange()
+                .expectStatus().isBadRequest();
+    }
+
+    @Test
+    public void should_stream_whole_history_as_ndjson() {
+        int count = TransactionService.HISTORY_STREAM_PAGE_SIZE * 2 + 5;
+        for (int i = 0; i < count; i++)
+            operation(Transaction.TxType.DEPOSIT, i, 1, "*").expectStatus().isCreated();
+
+        Flux<TransactionDto> history = webTestClient.get()
+                .uri(API_BASE_URL + account.getAccountNumber() + "/transactions")
+                .accept(MediaType.APPLICATION_NDJSON)
+                .exchange()
+                .expectStatus().isOk()
+                .expectHeader().contentTypeCompatibleWith(MediaType.APPLICATION_NDJSON)
+                .returnResult(TransactionDto.class)
+                .getResponseBody();
+
+        StepVerifier.create(history, 1)
+                .assertNext(tx -> assertEquals(AmountFormatter.formatCents(100_00 + count), tx.getAccountBalance()))
+                .thenRequest(count)
+                .expectNextCount(count - 1)
+                .verifyComplete();
+
+        webTestClient.get()
+                .uri(API_BASE_URL + UUID.randomUUID() + "/transactions")
+                .accept(MediaType.APPLICATION_NDJSON)
+                .exchange()
+                .expectStatus().isNotFound();
+    }
+
+    private AccountDto createAccount(int initialBalanceInCents) {
+        AccountDto dto = webTestClient.post().uri(API_BASE_URL)
+                .contentType(MediaType.APPLICATION_JSON)
+                .bodyValue(AccountRequestDto.builder().ownerName("Owner").initialBalanceInCents(initialBalanceInCents).build())
+                .exchange()
+                .expectStatus().isCreated()
+                .expectHeader().exists(HttpHeaders.LOCATION)
+                .expectBody(AccountDto.class).returnResult().getResponseBody();
+        assertNotNull(dto);
+        return dto;
+    }
+
+    private WebTestClient.ResponseSpec operation(Transaction.TxType type, int version, int amountInCents, String ifMatch) {
+        WebTestClient.RequestBodySpec request = webTestClient.post().uri(API_BASE_URL + "transactions")
+                .contentType(MediaType.APPLICATION_JSON);
+        if (ifMatch != null) request.header(HttpHeaders.IF_MATCH, ifMatch);
+        return request.bodyValue(TransactionRequestDto.builder()
+                        .accountNumber(UUID.fromString(account.getAccountNumber()))
+                        .accountVersion(version)
+                        .amountInCents(amountInCents)
+                        .operation(type)
+                        .description("test")
+                        .build())
+                .exchange();
+    }
+}
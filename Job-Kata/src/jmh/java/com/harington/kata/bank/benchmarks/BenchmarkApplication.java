@@ -0,0 +1,80 @@
+package com.harington.kata.bank.benchmarks;
+
+import com.harington.kata.bank.JobKataApplication;
+import com.harington.kata.bank.entity.Account;
+import com.harington.kata.bank.entity.Transaction;
+import com.harington.kata.bank.repository.AccountRepository;
+import com.harington.kata.bank.repository.TransactionRepository;
+import org.springframework.boot.WebApplicationType;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.context.ConfigurableApplicationContext;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.UUID;
+
+/**
+ * Boots the application (without the web layer) against an embedded in-memory H2
+ * and seeds accounts for the benchmarks.
+ */
+final class BenchmarkApplication {
+    private static final int SEED_CHUNK_SIZE = 10_000;
+
+    private BenchmarkApplication() {
+    }
+
+    static ConfigurableApplicationContext start(String... properties) {
+        return new SpringApplicationBuilder(JobKataApplication.class)
+                .web(WebApplicationType.NONE)
+                .properties("spring.main.banner-mode=off",
+                        "logging.level.root=WARN",
+                        "spring.datasource.url=jdbc:h2:mem:bench-" + UUID.randomUUID() + ";DB_CLOSE_DELAY=-1",
+                        "spring.jpa.properties.hibernate.jdbc.batch_size=" + SEED_CHUNK_SIZE)
+                // As command line arguments, so that they override application.properties
+                .run(Arrays.stream(properties).map(property -> "--" + property).toArray(String[]::new));
+    }
+
+    /**
+     * Creates an account holding {@code balanceInCents} and {@code historySize} past deposits.
+     *
+     * @return the account number of the seeded account
+     */
+    static UUID seedAccount(ConfigurableApplicationContext context, int balanceInCents, int historySize) {
+        AccountRepository accountRepository = context.getBean(AccountRepository.class);
+        TransactionRepository transactionRepository = context.getBean(TransactionRepository.class);
+        TransactionTemplate tx = new TransactionTemplate(context.getBean(PlatformTransactionManager.class));
+        UUID accountNumber = UUID.randomUUID();
+        Long id = accountRepository.save(Account.builder()
+                        .accountNumber(accountNumber)
+                        .initialBalanceInCents(balanceInCents)
+                        .currentBalanceInCents(balanceInCents)
+                        .ownerName("Benchmark")
+                        .createdAt(LocalDateTime.now().minusYears(1))
+                        .build())
+                .getId();
+        for (int from = 0; from < historySize; from += SEED_CHUNK_SIZE) {
+            int to = Math.min(historySize, from + SEED_CHUNK_SIZE);
+            int start = from;
+            tx.executeWithoutResult(status -> {
+                Account account = accountRepository.findById(id).orElseThrow();
+                List<Transaction> txs = new ArrayList<>(to - start);
+                for (int i = start; i < to; i++)
+                    txs.add(Transaction.builder()
+                            .txRef(UUID.randomUUID())
+                            .txType(Transaction.TxType.DEPOSIT)
+                            .amountInCents(1)
+                            .postTxAccountBalanceInCents(balanceInCents)
+                            .description("Seed " + i)
+                            .transactionAt(LocalDateTime.now().minusMinutes(historySize - i))
+                            .account(account)
+                            .build());
+                transactionRepository.saveAll(txs);
+            });
+        }
+        return accountNumber;
+    }
+}
@@ -0,0 +1,53 @@
+package com.harington.kata.bank.benchmarks;
+
+import com.harington.kata.bank.entity.dto.AccountDto;
+import com.harington.kata.bank.entity.dto.AccountRequestDto;
+import com.harington.kata.bank.service.AccountService;
+import org.openjdk.jmh.annotations.*;
+import org.springframework.context.ConfigurableApplicationContext;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Time to create {@code accounts} accounts through {@link AccountService#createNewAccounts(List)},
+ * with the application's JDBC batch size.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@Threads(1)
+public class BulkAccountCreationBenchmark {
+    @Param({"10000"})
+    int accounts;
+
+    ConfigurableApplicationContext context;
+    AccountService accountService;
+    List<AccountRequestDto> requests;
+
+    @Setup(Level.Trial)
+    public void setup() {
+        context = BenchmarkApplication.start("spring.jpa.properties.hibernate.jdbc.batch_size=50");
+        accountService = context.getBean(AccountService.class);
+        requests = new ArrayList<>(accounts);
+        for (int i = 0; i < accounts; i++)
+            requests.add(AccountRequestDto.builder()
+                    .ownerName("Benchmark " + i)
+                    .initialBalanceInCents(i)
+                    .build());
+    }
+
+    @TearDown(Level.Trial)
+    public void teardown() {
+        context.close();
+    }
+
+    @Benchmark
+    public List<AccountDto> createNewAccounts() {
+        return accountService.createNewAccounts(requests);
+    }
+}
@@ -0,0 +1,62 @@
+package com.harington.kata.bank.benchmarks;
+
+import com.harington.kata.bank.entity.dto.TransactionDto;
+import com.harington.kata.bank.repository.AccountRepository;
+import com.harington.kata.bank.service.TransactionService;
+import org.openjdk.jmh.annotations.*;
+import org.springframework.context.ConfigurableApplicationContext;
+
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Cost of posting one operation through {@link TransactionService} depending on the size of the
+ * account's existing history.
+ * <p>
+ * Every invocation appends a transaction, so the history grows slightly during a run; compared to
+ * the seeded sizes this is negligible except for the empty account.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@Threads(1)
+public class DepositWithdrawalBenchmark {
+    private static final int INITIAL_BALANCE_IN_CENTS = 1_000_000_00;
+
+    @Param({"0", "1000", "100000"})
+    int historySize;
+
+    ConfigurableApplicationContext context;
+    TransactionService transactionService;
+    UUID accountNumber;
+    int accountVersion;
+
+    @Setup(Level.Trial)
+    public void setup() {
+        context = BenchmarkApplication.start();
+        transactionService = context.getBean(TransactionService.class);
+        accountNumber = BenchmarkApplication.seedAccount(context, INITIAL_BALANCE_IN_CENTS, historySize);
+        accountVersion = context.getBean(AccountRepository.class)
+                .findOneByAccountNumber(accountNumber)
+                .orElseThrow()
+                .getVersion();
+    }
+
+    @TearDown(Level.Trial)
+    public void teardown() {
+        context.close();
+    }
+
+    @Benchmark
+    public TransactionDto deposit() {
+        return transactionService.doDepositOn(accountNumber, 1_00, "Benchmark deposit", accountVersion++, null);
+    }
+
+    @Benchmark
+    public TransactionDto withdrawal() {
+        return transactionService.doWithdrawalOn(accountNumber, 1, "Benchmark withdrawal", accountVersion++, null);
+    }
+}
@@ -0,0 +1,113 @@
+package com.harington.kata.bank.benchmarks;
+
+import com.harington.kata.bank.entity.Account;
+import com.harington.kata.bank.entity.Transaction;
+import com.harington.kata.bank.entity.dto.TransactionDto;
+import com.harington.kata.bank.formatters.AmountFormatter;
+import com.harington.kata.bank.formatters.DatesFormatter;
+import org.openjdk.jmh.annotations.*;
+
+import java.time.LocalDateTime;
+import java.time.format.DateTimeFormatter;
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Per-row formatting cost of the history and account responses.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class FormattersBenchmark {
+    int amountInCents;
+    LocalDateTime dateTime;
+    Transaction transaction;
+    final StringBuilder reusedBuilder = new StringBuilder(64);
+    final char[] reusedBuffer = new char[DatesFormatter.MAX_DATE_TIME_LENGTH];
+    final DateTimeFormatter dateTimeFormatter = DateTimeFormatter.ofPattern("dd/MM/yyyy HH:mm:ss");
+    /**
+     * One date-time per second, so that every call misses the last formatted second
+     */
+    final LocalDateTime[] distinctSeconds = new LocalDateTime[1024];
+    int next;
+
+    @Setup(Level.Trial)
+    public void setup() {
+        amountInCents = 1_234_56;
+        dateTime = LocalDateTime.of(2022, 11, 12, 4, 20, 20);
+        for (int i = 0; i < distinctSeconds.length; i++)
+            distinctSeconds[i] = dateTime.plusSeconds(i);
+        Account account = Account.builder()
+                .accountNumber(UUID.randomUUID())
+                .ownerName("Benchmark")
+                .build();
+        transaction = Transaction.builder()
+                .txRef(UUID.randomUUID())
+                .txType(Transaction.TxType.DEPOSIT)
+                .amountInCents(10_00)
+                .postTxAccountBalanceInCents(amountInCents)
+                .description("Benchmark deposit")
+                .transactionAt(dateTime)
+                .build();
+        account.addTx(transaction);
+    }
+
+    @Benchmark
+    public String formatCents() {
+        return AmountFormatter.formatCents(amountInCents);
+    }
+
+    /**
+     * Former implementation of {@link AmountFormatter#formatCents(int)}, kept as a baseline
+     */
+    @Benchmark
+    public String formatCentsWithStringFormat() {
+        int amount = amountInCents;
+        String sign = amount < 0 ? "-" : "";
+        amount = amount < 0 ? (amount * -1) : amount;
+        if (amount < 100) return String.format("%s%d.%02d€", sign, 0, amount);
+        return String.format("%s%d.%02d€", sign, amount / 100, amount % 100);
+    }
+
+    @Benchmark
+    public StringBuilder appendCentsToReusedBuilder() {
+        reusedBuilder.setLength(0);
+        return AmountFormatter.appendCents(reusedBuilder, amountInCents);
+    }
+
+    @Benchmark
+    public int writeCentsToReusedBuffer() {
+        return AmountFormatter.writeCents(reusedBuffer, 0, amountInCents);
+    }
+
+    @Benchmark
+    public String formatDateTime() {
+        return DatesFormatter.format(dateTime);
+    }
+
+    /**
+     * Former implementation of {@link DatesFormatter#format(LocalDateTime)}, kept as a baseline
+     */
+    @Benchmark
+    public String formatDateTimeWithDateTimeFormatter() {
+        return dateTime.format(dateTimeFormatter);
+    }
+
+    @Benchmark
+    public String formatDateTimeDistinctSeconds() {
+        return DatesFormatter.format(distinctSeconds[next++ & (distinctSeconds.length - 1)]);
+    }
+
+    @Benchmark
+    public int writeDateTimeToReusedBuffer() {
+        return DatesFormatter.writeDateTime(reusedBuffer, 0, dateTime);
+    }
+
+    @Benchmark
+    public TransactionDto transactionDtoFromEntity() {
+        return TransactionDto.fromEntity(transaction);
+    }
+}
@@ -0,0 +1,89 @@
+package com.harington.kata.bank.benchmarks;
+
+import com.harington.kata.bank.entity.Transaction;
+import com.harington.kata.bank.entity.dto.TransactionDto;
+import com.harington.kata.bank.monitoring.LedgerMetrics;
+import com.harington.kata.bank.repository.TransactionRepository;
+import com.harington.kata.bank.service.AccountWriteSerializer;
+import com.harington.kata.bank.service.ConflictRetryExecutor;
+import com.harington.kata.bank.service.TransactionService;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.openjdk.jmh.annotations.*;
+import org.springframework.context.ConfigurableApplicationContext;
+
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Deposits of concurrent writers on a single account, either racing on the account version
+ * (retried by {@link ConflictRetryExecutor}) or serialized by {@link AccountWriteSerializer} before
+ * their DB transaction opens. The number of conflicts per deposit is printed at the end of a trial.
+ * Hibernate and H2 need about 30s of warmup to reach a steady state.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 8, time = 5)
+@Measurement(iterations = 5, time = 3)
+@Fork(1)
+public class HotAccountWritersBenchmark {
+    @Param({"optimistic", "serialized"})
+    String mode;
+
+    ConfigurableApplicationContext context;
+    TransactionService transactionService;
+    ConflictRetryExecutor conflictRetryExecutor;
+    AccountWriteSerializer accountWriteSerializer;
+    MeterRegistry meterRegistry;
+    UUID accountNumber;
+
+    @Setup(Level.Trial)
+    public void setup() {
+        context = BenchmarkApplication.start("bank.write-serialization.enabled=true",
+                "bank.write-serialization.max-wait-ms=60000",
+                "bank.retry.max-attempts=1000000",
+                "spring.datasource.hikari.maximum-pool-size=64",
+                "logging.level.org.hibernate.engine.jdbc.batch.internal.BatchingBatch=OFF");
+        transactionService = context.getBean(TransactionService.class);
+        conflictRetryExecutor = context.getBean(ConflictRetryExecutor.class);
+        accountWriteSerializer = context.getBean(AccountWriteSerializer.class);
+        meterRegistry = context.getBean(MeterRegistry.class);
+        accountNumber = BenchmarkApplication.seedAccount(context, 0, 0);
+    }
+
+    @TearDown(Level.Trial)
+    public void teardown() {
+        Counter counter = meterRegistry.find(LedgerMetrics.CONFLICTS_COUNTER).counter();
+        double conflicts = counter == null ? 0 : counter.count();
+        long deposits = context.getBean(TransactionRepository.class).count();
+        System.out.printf("%n%s : %.3f conflicts per deposit%n", mode, conflicts / Math.max(1, deposits));
+        context.close();
+    }
+
+    @Benchmark
+    @Threads(1)
+    public TransactionDto oneWriter() {
+        return deposit();
+    }
+
+    @Benchmark
+    @Threads(8)
+    public TransactionDto eightWriters() {
+        return deposit();
+    }
+
+    @Benchmark
+    @Threads(64)
+    public TransactionDto sixtyFourWriters() {
+        return deposit();
+    }
+
+    private TransactionDto deposit() {
+        if ("serialized".equals(mode))
+            return accountWriteSerializer.execute(accountNumber,
+                    () -> transactionService.doDepositOn(accountNumber, 1, "Benchmark deposit", null, null));
+        return conflictRetryExecutor.execute(LedgerMetrics.tagOf(Transaction.TxType.DEPOSIT),
+                () -> transactionService.doDepositOn(accountNumber, 1, "Benchmark deposit", null, null));
+    }
+}
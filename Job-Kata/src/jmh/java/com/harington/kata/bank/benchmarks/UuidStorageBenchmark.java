@@ -0,0 +1,107 @@
+package com.harington.kata.bank.benchmarks;
+
+import com.harington.kata.bank.entity.converters.UUIDBinaryConverter;
+import org.openjdk.jmh.annotations.*;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.sql.*;
+import java.util.UUID;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Lookup latency and on-disk size of a unique UUID key stored as the former 36 chars VARCHAR
+ * (canonical string form) versus BINARY(16) ({@link UUIDBinaryConverter}), on a file H2 database
+ * so that {@code DISK_SPACE_USED} reports the table and index size (printed at setup).
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class UuidStorageBenchmark {
+    private static final String TABLE = "UUID_KEYS";
+
+    public enum Storage {
+        VARCHAR_36("VARCHAR(36)"), BINARY_16(UUIDBinaryConverter.COLUMN_DEFINITION);
+
+        final String columnDefinition;
+
+        Storage(String columnDefinition) {
+            this.columnDefinition = columnDefinition;
+        }
+    }
+
+    @Param({"VARCHAR_36", "BINARY_16"})
+    Storage storage;
+
+    @Param({"100000"})
+    int rows;
+
+    final UUIDBinaryConverter binaryConverter = new UUIDBinaryConverter();
+    Path directory;
+    Connection connection;
+    PreparedStatement lookup;
+    UUID[] keys;
+
+    @Setup(Level.Trial)
+    public void setup() throws IOException, SQLException {
+        directory = Files.createTempDirectory("uuid-storage-bench");
+        connection = DriverManager.getConnection("jdbc:h2:file:" + directory.resolve("db"));
+        try (Statement ddl = connection.createStatement()) {
+            ddl.execute("create table " + TABLE + " (id bigint primary key, uuid_key " + storage.columnDefinition
+                    + " not null, constraint UUID_KEYS_UK unique (uuid_key))");
+        }
+        keys = new UUID[rows];
+        connection.setAutoCommit(false);
+        try (PreparedStatement insert = connection.prepareStatement(
+                "insert into " + TABLE + " (id, uuid_key) values (?, ?)")) {
+            for (int i = 0; i < rows; i++) {
+                keys[i] = UUID.randomUUID();
+                insert.setLong(1, i);
+                bind(insert, 2, keys[i]);
+                insert.addBatch();
+                if (i % 1_000 == 999)
+                    insert.executeBatch();
+            }
+            insert.executeBatch();
+        }
+        connection.commit();
+        connection.setAutoCommit(true);
+        try (Statement checkpoint = connection.createStatement()) {
+            checkpoint.execute("checkpoint sync");
+            try (ResultSet rs = checkpoint.executeQuery("select disk_space_used('" + TABLE + "')")) {
+                rs.next();
+                System.out.printf("%n%s : %d rows, table + unique index = %d bytes%n", storage, rows, rs.getLong(1));
+            }
+        }
+        lookup = connection.prepareStatement("select id from " + TABLE + " where uuid_key = ?");
+    }
+
+    @TearDown(Level.Trial)
+    public void teardown() throws IOException, SQLException {
+        connection.close();
+        try (var files = Files.walk(directory)) {
+            files.sorted((a, b) -> b.compareTo(a)).forEach(path -> path.toFile().delete());
+        }
+    }
+
+    private void bind(PreparedStatement statement, int index, UUID key) throws SQLException {
+        if (storage == Storage.BINARY_16)
+            statement.setBytes(index, binaryConverter.convertToDatabaseColumn(key));
+        else
+            statement.setString(index, key.toString());
+    }
+
+    @Benchmark
+    public long lookupByKey() throws SQLException {
+        bind(lookup, 1, keys[ThreadLocalRandom.current().nextInt(rows)]);
+        try (ResultSet rs = lookup.executeQuery()) {
+            rs.next();
+            return rs.getLong(1);
+        }
+    }
+}
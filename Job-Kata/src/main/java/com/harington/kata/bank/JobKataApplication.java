@@ -39,11 +39,14 @@ public class JobKataApplication {
                                 "Content-Type", "Accept", "Authorization",
                                 "Origin, Accept", "X-Request-With",
                                 "Access-Control-Request-Method",
-                                "Access-Control-Request-Headers"));
+                                "Access-Control-Request-Headers",
+                                "X-Retry-On-Conflict", "Idempotency-Key",
+                                "If-None-Match", "If-Match"));
                 corsConfig.setExposedHeaders(List.of(
                                 "Origin", "Content-Type", "Accept", "Authorization",
                                 "Access-Control-Allow-Origin",
-                                "Access-Control-Allow-Credentials"));
+                                "Access-Control-Allow-Credentials",
+                                "Link", "X-Next-Cursor", "X-Total-Count", "ETag"));
                 corsConfig.setAllowedMethods(List.of(
                                 "GET", "POST", "PUT", "DELETE", "OPTIONS"));
                 var usrCorsConfig = new UrlBasedCorsConfigurationSource();
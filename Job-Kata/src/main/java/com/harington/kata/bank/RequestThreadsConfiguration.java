@@ -0,0 +1,53 @@
+package com.harington.kata.bank;
+
+import lombok.extern.slf4j.Slf4j;
+import org.apache.coyote.ProtocolHandler;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.web.embedded.tomcat.TomcatProtocolHandlerCustomizer;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+import java.lang.reflect.Method;
+import java.util.Optional;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/**
+ * Threads running the requests (controllers and services) : Tomcat's pool of platform threads, or one
+ * virtual thread per request with {@code bank.virtual-threads.enabled=true} on Java 21+.
+ * <p>
+ * Virtual threads lift the {@code server.tomcat.threads.max} cap on in-flight requests, the
+ * database connections pool ({@code spring.datasource.hikari.maximum-pool-size}) becomes the limit.
+ * The application code has no {@code synchronized} block, but H2 waits for row locks inside
+ * {@code synchronized} methods, which pins the carrier thread (see {@code -Djdk.tracePinnedThreads}).
+ */
+@Slf4j
+@Configuration
+public class RequestThreadsConfiguration {
+
+    @Bean
+    public TomcatProtocolHandlerCustomizer<ProtocolHandler> virtualThreadsRequestExecutor(
+            @Value("${bank.virtual-threads.enabled:false}") boolean enabled) {
+        return protocolHandler -> {
+            if (!enabled) return;
+            newVirtualThreadPerTaskExecutor().ifPresentOrElse(
+                    protocolHandler::setExecutor,
+                    () -> log.warn("Virtual threads need Java 21+ (running {}), requests stay on platform threads",
+                            System.getProperty("java.version")));
+        };
+    }
+
+    /**
+     * {@code Executors.newVirtualThreadPerTaskExecutor()}, looked up at runtime as the project targets Java 11
+     */
+    static Optional<ExecutorService> newVirtualThreadPerTaskExecutor() {
+        try {
+            Method factory = Executors.class.getMethod("newVirtualThreadPerTaskExecutor");
+            return Optional.of((ExecutorService) factory.invoke(null));
+        } catch (NoSuchMethodException e) {
+            return Optional.empty();
+        } catch (ReflectiveOperationException e) {
+            throw new IllegalStateException("Can't create the virtual threads executor", e);
+        }
+    }
+}
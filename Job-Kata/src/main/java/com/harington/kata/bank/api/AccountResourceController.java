@@ -3,19 +3,46 @@ package com.harington.kata.bank.api;
 import com.harington.kata.bank.entity.Transaction.TxType;
 import com.harington.kata.bank.entity.dto.AccountDto;
 import com.harington.kata.bank.entity.dto.AccountRequestDto;
+import com.harington.kata.bank.entity.dto.BatchItemResultDto;
 import com.harington.kata.bank.entity.dto.TransactionDto;
+import com.harington.kata.bank.entity.dto.TransactionHistoryPage;
 import com.harington.kata.bank.entity.dto.TransactionRequestDto;
+import com.harington.kata.bank.entity.dto.TransferDto;
+import com.harington.kata.bank.entity.dto.TransferRequestDto;
+import com.harington.kata.bank.exceptions.ConcurrentUpdateException;
+import com.harington.kata.bank.exceptions.InvalidOperationException;
+import com.harington.kata.bank.exceptions.PreconditionFailedException;
+import com.harington.kata.bank.monitoring.LedgerMetrics;
 import com.harington.kata.bank.service.AccountService;
+import com.harington.kata.bank.service.AccountWriteSerializer;
+import com.harington.kata.bank.service.ConflictRetryExecutor;
+import com.harington.kata.bank.service.IdempotencyService;
+import com.harington.kata.bank.service.TransactionExportService;
 import com.harington.kata.bank.service.TransactionService;
 import lombok.RequiredArgsConstructor;
+import org.springframework.dao.OptimisticLockingFailureException;
+import org.springframework.data.domain.Page;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.web.PageableDefault;
+import org.springframework.http.CacheControl;
+import org.springframework.http.ContentDisposition;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
 import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.context.request.WebRequest;
+import org.springframework.web.servlet.support.ServletUriComponentsBuilder;
 
+import javax.servlet.http.HttpServletResponse;
 import javax.validation.Valid;
+import java.io.IOException;
 import java.net.URI;
+import java.nio.charset.StandardCharsets;
 import java.util.List;
+import java.util.Optional;
 import java.util.UUID;
+import java.util.function.Supplier;
 
 @RestController
 @RequestMapping(value = AccountResourceController.API_V_1_ACCOUNTS, consumes = {MediaType.APPLICATION_JSON_VALUE}, produces = {
@@ -24,12 +51,34 @@ import java.util.UUID;
 public class AccountResourceController {
     public static final String API_V_1_ACCOUNTS = "/api/v1/accounts";
     public static final String API_V_1_CLIENTS_ID = API_V_1_ACCOUNTS + "/{id}";
+    public static final String NEXT_CURSOR_HEADER = "X-Next-Cursor";
+    public static final String TOTAL_COUNT_HEADER = "X-Total-Count";
+    public static final String RETRY_ON_CONFLICT_HEADER = "X-Retry-On-Conflict";
+    public static final String IDEMPOTENCY_KEY_HEADER = "Idempotency-Key";
+    public static final int DEFAULT_ACCOUNTS_PAGE_SIZE = 20;
+    public static final String DEFAULT_HISTORY_PAGE_SIZE = "50";
     private final AccountService accountService;
     private final TransactionService transactionService;
+    private final ConflictRetryExecutor conflictRetryExecutor;
+    private final AccountWriteSerializer accountWriteSerializer;
+    private final IdempotencyService idempotencyService;
+    private final TransactionExportService transactionExportService;
 
     @GetMapping("")
-    public ResponseEntity<List<AccountDto>> getAllAccounts() {
-        return ResponseEntity.ok(accountService.getAllAccounts());
+    public ResponseEntity<List<AccountDto>> getAllAccounts(
+            @RequestParam(value = "minBalanceInCents", required = false) Integer minBalanceInCents,
+            @PageableDefault(size = DEFAULT_ACCOUNTS_PAGE_SIZE, sort = "id") Pageable pageable) {
+        Page<AccountDto> page = minBalanceInCents == null
+                ? accountService.getAllAccounts(pageable)
+                : accountService.getAccountsWithBalanceAtLeast(minBalanceInCents, pageable);
+        ResponseEntity.BodyBuilder response = ResponseEntity.ok()
+                .header(TOTAL_COUNT_HEADER, String.valueOf(page.getTotalElements()));
+        if (page.hasNext())
+            response.header(HttpHeaders.LINK, "<" + ServletUriComponentsBuilder.fromCurrentRequest()
+                    .replaceQueryParam("page", page.getNumber() + 1)
+                    .replaceQueryParam("size", page.getSize())
+                    .toUriString() + ">; rel=\"next\"");
+        return response.body(page.getContent());
     }
 
     @PostMapping("")
@@ -38,35 +87,202 @@ public class AccountResourceController {
         return ResponseEntity.created(URI.create("/api/v1/accounts/" + dto.getAccountNumber())).body(dto);
     }
 
+    /**
+     * Creates many accounts at once (onboarding migrations), see {@link AccountService#createNewAccounts(List)}
+     */
+    @PostMapping("/bulk")
+    public ResponseEntity<List<AccountDto>> createNewAccounts(@RequestBody List<AccountRequestDto> requests) {
+        return ResponseEntity.status(HttpStatus.CREATED).body(accountService.createNewAccounts(requests));
+    }
+
+    /**
+     * Returns the account with its version as strong ETag. An {@code If-None-Match} header holding the
+     * current version is answered with 304, checked without loading the account.
+     */
     @GetMapping("/{accountNumber}")
-    public ResponseEntity<AccountDto> getAccountByNumber(@PathVariable("accountNumber") UUID accountNumber) {
+    public ResponseEntity<AccountDto> getAccountByNumber(@PathVariable("accountNumber") UUID accountNumber,
+                                                         WebRequest webRequest) {
+        if (webRequest.getHeader(HttpHeaders.IF_NONE_MATCH) != null) {
+            Optional<Integer> version = accountService.findVersionByAccountNumber(accountNumber);
+            if (version.isEmpty())
+                return ResponseEntity.notFound().build();
+            if (webRequest.checkNotModified(etagOf(version.get())))
+                return ResponseEntity.status(HttpStatus.NOT_MODIFIED).eTag(etagOf(version.get())).build();
+        }
         return accountService.findByAccountNumber(accountNumber)
-                .map(ResponseEntity::ok)
+                .map(dto -> withETag(ResponseEntity.ok(), dto.getVersion()).body(dto))
                 .orElse(ResponseEntity.notFound().build());
     }
 
+    /**
+     * Returns a page of the account's history. The version of the account is used as strong ETag
+     * (every operation changes it), so an {@code If-None-Match} header holding it is answered with 304
+     * without reading the transactions.
+     */
     @GetMapping("/{accountNumber}/transactions")
     public ResponseEntity<List<TransactionDto>> getAllTransactionsByAccount(
-            @PathVariable("accountNumber") UUID accountNumber) {
-        return ResponseEntity.ok(transactionService.getTransactionsHistoryFor(accountNumber));
+            @PathVariable("accountNumber") UUID accountNumber,
+            @RequestParam(value = "cursor", required = false) String cursor,
+            @RequestParam(value = "size", defaultValue = DEFAULT_HISTORY_PAGE_SIZE) int size,
+            WebRequest webRequest) {
+        if (webRequest.getHeader(HttpHeaders.IF_NONE_MATCH) != null) {
+            Optional<Integer> version = accountService.findVersionByAccountNumber(accountNumber);
+            if (version.isPresent() && webRequest.checkNotModified(etagOf(version.get())))
+                return ResponseEntity.status(HttpStatus.NOT_MODIFIED).eTag(etagOf(version.get())).build();
+        }
+        TransactionHistoryPage page = transactionService.getTransactionsHistoryFor(accountNumber, cursor, size);
+        ResponseEntity.BodyBuilder response = withETag(ResponseEntity.ok(), page.getAccountVersion());
+        if (page.getNextCursor() == null)
+            return response.body(page.getTransactions());
+        String next = ServletUriComponentsBuilder.fromCurrentRequest()
+                .replaceQueryParam("cursor", page.getNextCursor())
+                .replaceQueryParam("size", size)
+                .toUriString();
+        return response
+                .header(NEXT_CURSOR_HEADER, page.getNextCursor())
+                .header(HttpHeaders.LINK, "<" + next + ">; rel=\"next\"")
+                .body(page.getTransactions());
+    }
+
+    /**
+     * Streams the account's whole history, newest first, as NDJSON or CSV ({@code format}), see
+     * {@link TransactionExportService}. Written on the request thread straight to the response, so
+     * that a long export is not cut by the async requests timeout.
+     */
+    @GetMapping(value = "/{accountNumber}/transactions/export", produces = {
+            TransactionExportService.NDJSON_MEDIA_TYPE, TransactionExportService.CSV_MEDIA_TYPE})
+    public void exportTransactions(@PathVariable("accountNumber") UUID accountNumber,
+                                   @RequestParam(value = "format", defaultValue = "ndjson") String format,
+                                   HttpServletResponse response) throws IOException {
+        TransactionExportService.Format exportFormat = TransactionExportService.Format.fromParameter(format);
+        response.setContentType(exportFormat.getMediaType());
+        response.setCharacterEncoding(StandardCharsets.UTF_8.name());
+        response.setHeader(HttpHeaders.CONTENT_DISPOSITION, ContentDisposition.attachment()
+                .filename("transactions-" + accountNumber + "." + exportFormat.getExtension())
+                .build()
+                .toString());
+        transactionExportService.export(accountNumber, exportFormat, response.getOutputStream());
     }
 
+    /**
+     * Posts a deposit or a withdrawal. With the {@value #RETRY_ON_CONFLICT_HEADER} header set to
+     * true the account version of the request is ignored : the operation is based on the current
+     * account and retried with backoff when a concurrent update wins the race. Writes on a same
+     * account may also be serialized in-process, see {@link AccountWriteSerializer}. The retries of a
+     * request sent with an {@value #IDEMPOTENCY_KEY_HEADER} header get the transaction posted the
+     * first time, see {@link IdempotencyService}.
+     * <p>
+     * An {@code If-Match} header (the account's ETag, or *) replaces the {@code accountVersion} field
+     * and disables the retries : a stale version is answered with 412.
+     */
     @PostMapping("/transactions")
 //    @PostMapping("/{accountNumber}/transactions")
-    public ResponseEntity<TransactionDto> doOperation(@Valid @RequestBody TransactionRequestDto request) {
+    public ResponseEntity<TransactionDto> doOperation(
+            @Valid @RequestBody TransactionRequestDto request,
+            @RequestHeader(value = RETRY_ON_CONFLICT_HEADER, defaultValue = "false") boolean retryOnConflict,
+            @RequestHeader(value = IDEMPOTENCY_KEY_HEADER, required = false) String idempotencyKey,
+            @RequestHeader(value = HttpHeaders.IF_MATCH, required = false) String ifMatch) {
+        Integer accountVersion = ifMatch == null ? Integer.valueOf(request.getAccountVersion()) : versionOf(ifMatch);
+        boolean retry = retryOnConflict && ifMatch == null;
         TransactionDto tx;
-        if (request.getOperation() == TxType.DEPOSIT)
-            tx = transactionService.doDepositOn(request.getAccountNumber(), request.getAmountInCents(),
-                    request.getDescription(), request.getAccountVersion());
-        else
-            tx = transactionService.doWithdrawalOn(request.getAccountNumber(),
-                    request.getAmountInCents(),
-                    request.getDescription(),
-                    request.getAccountVersion());
+        try {
+            tx = idempotencyKey == null
+                    ? post(request, retry, accountVersion, null)
+                    : idempotencyService.execute(idempotencyKey, request,
+                    () -> post(request, retry, accountVersion, idempotencyKey));
+        } catch (ConcurrentUpdateException e) {
+            if (ifMatch == null) throw e;
+            throw new PreconditionFailedException(e.getMessage());
+        }
         /*final URI location = ServletUriComponentsBuilder.fromCurrentServletMapping()
                 .path(API_V_1_CLIENTS_ID).build().expand(request.getAccountNumber()).toUri();*/
         return ResponseEntity
                 .created(URI.create("/api/v1/accounts/" + request.getAccountNumber() + "/transactions"))
                 .body(tx);
     }
+
+    private TransactionDto post(TransactionRequestDto request, boolean retryOnConflict, Integer accountVersion,
+                                String idempotencyKey) {
+        if (retryOnConflict)
+            return conflictRetryExecutor.execute(LedgerMetrics.tagOf(request.getOperation()),
+                    () -> accountWriteSerializer.execute(request.getAccountNumber(),
+                            () -> postOnce(request, null, idempotencyKey)));
+        return accountWriteSerializer.execute(request.getAccountNumber(),
+                () -> postOnce(request, accountVersion, idempotencyKey));
+    }
+
+    /**
+     * A deposit losing the race for the account row is only detected at commit, by its version : it is
+     * reported like a stale {@code accountVersion}
+     */
+    private TransactionDto postOnce(TransactionRequestDto request, Integer accountVersion, String idempotencyKey) {
+        try {
+            if (request.getOperation() == TxType.DEPOSIT)
+                return transactionService.doDepositOn(request.getAccountNumber(), request.getAmountInCents(),
+                        request.getDescription(), accountVersion, idempotencyKey);
+            return transactionService.doWithdrawalOn(request.getAccountNumber(),
+                    request.getAmountInCents(),
+                    request.getDescription(),
+                    accountVersion,
+                    idempotencyKey);
+        } catch (OptimisticLockingFailureException e) {
+            throw new ConcurrentUpdateException(String.format(
+                    "Account %s was updated concurrently. Please refresh the page", request.getAccountNumber()));
+        }
+    }
+
+    /**
+     * Posts many operations at once, see {@link TransactionService#doBatch(List)}. Answers 200 with
+     * a result for each operation, whether it was posted or rejected.
+     */
+    @PostMapping("/transactions/batch")
+    public ResponseEntity<List<BatchItemResultDto>> doOperations(@RequestBody List<TransactionRequestDto> requests) {
+        return ResponseEntity.ok(transactionService.doBatch(requests));
+    }
+
+    /**
+     * Moves money between two accounts in one DB transaction, see {@link TransactionService#doTransfer(TransferRequestDto)}.
+     * With the {@value #RETRY_ON_CONFLICT_HEADER} header set to true a transfer conflicting with a
+     * concurrent update (event-sourced mode, lock timeout) is retried with backoff. Transfers are
+     * serialized with the other writes of both accounts, see {@link AccountWriteSerializer}.
+     */
+    @PostMapping("/transfers")
+    public ResponseEntity<TransferDto> doTransfer(
+            @Valid @RequestBody TransferRequestDto request,
+            @RequestHeader(value = RETRY_ON_CONFLICT_HEADER, defaultValue = "false") boolean retryOnConflict) {
+        Supplier<TransferDto> transferOnce = () -> accountWriteSerializer.execute(request.getFromAccountNumber(),
+                request.getToAccountNumber(), () -> transactionService.doTransfer(request));
+        TransferDto transfer = retryOnConflict
+                ? conflictRetryExecutor.execute(LedgerMetrics.TRANSFER, transferOnce)
+                : transferOnce.get();
+        return ResponseEntity
+                .created(URI.create("/api/v1/accounts/" + request.getFromAccountNumber() + "/transactions"))
+                .body(transfer);
+    }
+
+    static String etagOf(int version) {
+        return "\"" + version + "\"";
+    }
+
+    /**
+     * Sets the ETag, with {@code no-cache} so that browsers revalidate their copy on each request
+     */
+    private static ResponseEntity.BodyBuilder withETag(ResponseEntity.BodyBuilder response, Integer version) {
+        return version == null ? response : response.eTag(etagOf(version)).cacheControl(CacheControl.noCache());
+    }
+
+    /**
+     * @return the version held by a single strong ETag, null for *
+     */
+    private static Integer versionOf(String ifMatch) {
+        String etag = ifMatch.trim();
+        if (etag.equals("*")) return null;
+        if (etag.length() > 2 && etag.startsWith("\"") && etag.endsWith("\""))
+            try {
+                return Integer.valueOf(etag.substring(1, etag.length() - 1));
+            } catch (NumberFormatException e) {
+                // Reported below
+            }
+        throw new InvalidOperationException("If-Match must hold a single ETag of the account");
+    }
 }
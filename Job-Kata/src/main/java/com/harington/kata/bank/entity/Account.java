@@ -1,5 +1,6 @@
 package com.harington.kata.bank.entity;
 
+import com.harington.kata.bank.entity.converters.UUIDBinaryConverter;
 import lombok.*;
 
 import javax.persistence.*;
@@ -12,6 +13,8 @@ import java.util.UUID;
 @Entity
 @Table(uniqueConstraints = {
         @UniqueConstraint(name = "ACCOUNTS_ACCOUNT_NUMBER_UK", columnNames = {Account.ACCOUNT_NUMBER_COL})
+}, indexes = {
+        @Index(name = Account.CURRENT_BALANCE_IDX, columnList = "currentBalanceInCents")
 })
 @Getter
 @Setter
@@ -21,12 +24,19 @@ import java.util.UUID;
 @ToString
 public class Account {
     public static final String ACCOUNT_NUMBER_COL = "ACCOUNT_NUMBER";
+    public static final String CURRENT_BALANCE_IDX = "ACCOUNTS_CURRENT_BALANCE_IDX";
+    public static final String ID_SEQUENCE = "ACCOUNTS_ID_SEQ";
+    /**
+     * Ids reserved per sequence call (pooled optimizer), aligned with the JDBC batch size
+     */
+    public static final int ID_ALLOCATION_SIZE = 50;
     @Version
     private Integer version;
     @Id
-    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    @GeneratedValue(strategy = GenerationType.SEQUENCE, generator = ID_SEQUENCE)
+    @SequenceGenerator(name = ID_SEQUENCE, sequenceName = ID_SEQUENCE, allocationSize = ID_ALLOCATION_SIZE)
     private Long id;
-    @Column(name = ACCOUNT_NUMBER_COL)
+    @Column(name = ACCOUNT_NUMBER_COL, columnDefinition = UUIDBinaryConverter.COLUMN_DEFINITION)
     private UUID accountNumber;
     @Min(0)
     private int initialBalanceInCents;
@@ -39,7 +49,7 @@ public class Account {
     @PastOrPresent
     private LocalDateTime createdAt;
 
-    @OneToMany(fetch = FetchType.EAGER, cascade = CascadeType.ALL)
+    @OneToMany(mappedBy = "account", fetch = FetchType.LAZY, cascade = CascadeType.ALL)
     @Builder.Default
     @ToString.Exclude
     private Set<Transaction> transactions = new HashSet<>();
@@ -0,0 +1,33 @@
+package com.harington.kata.bank.entity;
+
+import lombok.*;
+
+import javax.persistence.*;
+import java.time.LocalDateTime;
+
+/**
+ * Balance of an account once the events of its stream up to {@link #sequence} are applied
+ * (event-sourced mode) : rebuilding the account's projection only folds the events that follow.
+ */
+@Entity
+@Table(uniqueConstraints = {
+        @UniqueConstraint(name = AccountSnapshot.ACCOUNT_SEQUENCE_UK, columnNames = {"account_id", "sequence"})
+})
+@Getter
+@Setter
+@NoArgsConstructor
+@AllArgsConstructor
+@Builder
+public class AccountSnapshot {
+    public static final String ACCOUNT_SEQUENCE_UK = "ACCOUNT_SNAPSHOTS_ACCOUNT_SEQUENCE_UK";
+    public static final String ID_SEQUENCE = "ACCOUNT_SNAPSHOTS_ID_SEQ";
+    @Id
+    @GeneratedValue(strategy = GenerationType.SEQUENCE, generator = ID_SEQUENCE)
+    @SequenceGenerator(name = ID_SEQUENCE, sequenceName = ID_SEQUENCE, allocationSize = Account.ID_ALLOCATION_SIZE)
+    private Long id;
+    @ManyToOne(fetch = FetchType.LAZY)
+    private Account account;
+    private int sequence;
+    private int balanceInCents;
+    private LocalDateTime takenAt;
+}
@@ -1,27 +1,47 @@
 package com.harington.kata.bank.entity;
 
+import com.harington.kata.bank.entity.converters.UUIDBinaryConverter;
 import lombok.*;
 
 import javax.persistence.*;
 import javax.validation.constraints.Min;
 import javax.validation.constraints.NotNull;
 import javax.validation.constraints.PastOrPresent;
+import javax.validation.constraints.Size;
 import java.time.LocalDateTime;
 import java.util.Objects;
 import java.util.UUID;
 
 @Entity
+@Table(uniqueConstraints = {
+        @UniqueConstraint(name = Transaction.IDEMPOTENCY_KEY_UK, columnNames = {"idempotencyKey"}),
+        @UniqueConstraint(name = Transaction.ACCOUNT_SEQUENCE_UK, columnNames = {"account_id", "sequence"})
+}, indexes = {
+        @Index(name = Transaction.ACCOUNT_AT_ID_IDX, columnList = "account_id, transactionAt DESC, id DESC")
+})
 @Getter
 @Setter
 @NoArgsConstructor
 @AllArgsConstructor
 @Builder
 public class Transaction {
+    public static final String ACCOUNT_AT_ID_IDX = "TRANSACTIONS_ACCOUNT_AT_ID_IDX";
+    public static final String ID_SEQUENCE = "TRANSACTIONS_ID_SEQ";
+    public static final String IDEMPOTENCY_KEY_UK = "TRANSACTIONS_IDEMPOTENCY_KEY_UK";
+    /**
+     * One transaction per position of an account's event stream : concurrent appends at a same
+     * position conflict, it also serves the stream head lookup
+     */
+    public static final String ACCOUNT_SEQUENCE_UK = "TRANSACTIONS_ACCOUNT_SEQUENCE_UK";
+    public static final int IDEMPOTENCY_KEY_MAX_LENGTH = 64;
+    public static final int DESCRIPTION_MAX_LENGTH = 255;
     @Id
-    @GeneratedValue(strategy = GenerationType.AUTO)
+    @GeneratedValue(strategy = GenerationType.SEQUENCE, generator = ID_SEQUENCE)
+    @SequenceGenerator(name = ID_SEQUENCE, sequenceName = ID_SEQUENCE, allocationSize = Account.ID_ALLOCATION_SIZE)
     protected Long id;
 
     @NotNull
+    @Column(columnDefinition = UUIDBinaryConverter.COLUMN_DEFINITION)
     protected UUID txRef;
 
     @Min(0)
@@ -30,7 +50,20 @@ public class Transaction {
     protected int amountInCents;
     @PastOrPresent
     protected LocalDateTime transactionAt;
+    @Size(max = DESCRIPTION_MAX_LENGTH)
+    @Column(length = DESCRIPTION_MAX_LENGTH)
     protected String description;
+    /**
+     * Idempotency-Key header of the request that posted the transaction, if any
+     */
+    @Size(max = IDEMPOTENCY_KEY_MAX_LENGTH)
+    @Column(length = IDEMPOTENCY_KEY_MAX_LENGTH)
+    protected String idempotencyKey;
+    /**
+     * Position of the transaction in its account's event stream (event-sourced mode, see
+     * {@code EventSourcedLedger}), null for the transactions posted by updating the account
+     */
+    protected Integer sequence;
     @ManyToOne
     protected Account account;
     @NotNull
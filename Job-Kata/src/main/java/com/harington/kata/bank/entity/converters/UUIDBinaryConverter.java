@@ -0,0 +1,26 @@
+package com.harington.kata.bank.entity.converters;
+
+import javax.persistence.AttributeConverter;
+import javax.persistence.Converter;
+import java.util.UUID;
+
+/**
+ * Stores UUIDs as 16 big-endian bytes ({@code BINARY(16)}), so that binary keys sort like their
+ * canonical string form. Replaces the former 36 chars VARCHAR mapping of UUIDs,
+ * see {@code db/migration/uuid-varchar-to-binary.sql} for existing string data.
+ */
+@Converter(autoApply = true)
+public class UUIDBinaryConverter implements AttributeConverter<UUID, byte[]> {
+    public static final int UUID_BYTES = UUIDBytes.UUID_BYTES;
+    public static final String COLUMN_DEFINITION = "BINARY(" + UUID_BYTES + ")";
+
+    @Override
+    public byte[] convertToDatabaseColumn(UUID attribute) {
+        return attribute == null ? null : UUIDBytes.toBytes(attribute);
+    }
+
+    @Override
+    public UUID convertToEntityAttribute(byte[] dbData) {
+        return UUIDBytes.fromBytes(dbData);
+    }
+}
@@ -1,18 +0,0 @@
-package com.harington.kata.bank.entity.converters;
-
-import javax.persistence.AttributeConverter;
-import javax.persistence.Converter;
-import java.util.UUID;
-
-@Converter(autoApply = true)
-public class UUIDConverter implements AttributeConverter<UUID, String> {
-    @Override
-    public String convertToDatabaseColumn(UUID attribute) {
-        return attribute == null ? null : attribute.toString();
-    }
-
-    @Override
-    public UUID convertToEntityAttribute(String dbData) {
-        return dbData == null ? null : UUID.fromString(dbData);
-    }
-}
@@ -12,4 +12,8 @@ public class AccountDto {
     String currentBalance;
     String ownerName;
     String createdAt;
+    /**
+     * {@link com.harington.kata.bank.entity.Account#getVersion()}, also sent as ETag
+     */
+    Integer version;
 }
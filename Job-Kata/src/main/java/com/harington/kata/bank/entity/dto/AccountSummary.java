@@ -0,0 +1,19 @@
+package com.harington.kata.bank.entity.dto;
+
+import lombok.Value;
+
+import java.time.LocalDateTime;
+import java.util.UUID;
+
+/**
+ * Read-only projection of the account columns listed by the API, built by JPQL constructor
+ * expressions so that listings never hydrate {@link com.harington.kata.bank.entity.Account} entities.
+ */
+@Value
+public class AccountSummary {
+    UUID accountNumber;
+    int currentBalanceInCents;
+    String ownerName;
+    LocalDateTime createdAt;
+    Integer version;
+}
@@ -0,0 +1,34 @@
+package com.harington.kata.bank.entity.dto;
+
+import lombok.Builder;
+import lombok.Value;
+
+/**
+ * Outcome of one operation of a batch, at the same {@code index} as in the request
+ */
+@Value
+@Builder
+public class BatchItemResultDto {
+    int index;
+    Status status;
+    /**
+     * Posted transaction, null when rejected
+     */
+    TransactionDto transaction;
+    /**
+     * Reason of the rejection, null when posted
+     */
+    String error;
+
+    public enum Status {
+        POSTED, REJECTED
+    }
+
+    public static BatchItemResultDto posted(int index, TransactionDto transaction) {
+        return BatchItemResultDto.builder().index(index).status(Status.POSTED).transaction(transaction).build();
+    }
+
+    public static BatchItemResultDto rejected(int index, String error) {
+        return BatchItemResultDto.builder().index(index).status(Status.REJECTED).error(error).build();
+    }
+}
@@ -2,21 +2,23 @@ package com.harington.kata.bank.entity.dto;
 
 import com.harington.kata.bank.entity.Transaction;
 import lombok.Builder;
-import lombok.NonNull;
 import lombok.Value;
 
 import javax.validation.constraints.Min;
+import javax.validation.constraints.NotNull;
+import javax.validation.constraints.Size;
 import java.util.UUID;
 
 @Builder
 @Value
 public class TransactionRequestDto {
-    @NonNull
+    @NotNull
     UUID accountNumber;
     int accountVersion;
     @Min(1)
     int amountInCents;
+    @Size(max = Transaction.DESCRIPTION_MAX_LENGTH)
     String description;
-    @NonNull
+    @NotNull
     Transaction.TxType operation;
 }
@@ -0,0 +1,20 @@
+package com.harington.kata.bank.entity.dto;
+
+import lombok.Builder;
+import lombok.Value;
+
+/**
+ * Both legs of a transfer, posted in the same DB transaction
+ */
+@Value
+@Builder
+public class TransferDto {
+    /**
+     * Withdrawal from the source account
+     */
+    TransactionDto debit;
+    /**
+     * Deposit on the target account
+     */
+    TransactionDto credit;
+}
@@ -0,0 +1,23 @@
+package com.harington.kata.bank.entity.dto;
+
+import com.harington.kata.bank.entity.Transaction;
+import lombok.Builder;
+import lombok.NonNull;
+import lombok.Value;
+
+import javax.validation.constraints.Min;
+import javax.validation.constraints.Size;
+import java.util.UUID;
+
+@Builder
+@Value
+public class TransferRequestDto {
+    @NonNull
+    UUID fromAccountNumber;
+    @NonNull
+    UUID toAccountNumber;
+    @Min(1)
+    int amountInCents;
+    @Size(max = Transaction.DESCRIPTION_MAX_LENGTH)
+    String description;
+}
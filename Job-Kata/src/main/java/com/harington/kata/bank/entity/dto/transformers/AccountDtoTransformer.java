@@ -2,6 +2,7 @@ package com.harington.kata.bank.entity.dto.transformers;
 
 import com.harington.kata.bank.entity.Account;
 import com.harington.kata.bank.entity.dto.AccountDto;
+import com.harington.kata.bank.entity.dto.AccountSummary;
 import com.harington.kata.bank.formatters.AmountFormatter;
 import com.harington.kata.bank.formatters.DatesFormatter;
 
@@ -11,11 +12,32 @@ public class AccountDtoTransformer {
     public static AccountDto fromEntity(Account account) {
         if (account == null)
             return null;
+        return fromEntity(account, account.getCurrentBalanceInCents(), account.getVersion());
+    }
+
+    /**
+     * @param balanceInCents balance to expose instead of the account's one (event stream head)
+     * @param version        version to expose instead of the account's one (event stream head)
+     */
+    public static AccountDto fromEntity(Account account, int balanceInCents, Integer version) {
         return AccountDto.builder()
-                .currentBalance(AmountFormatter.formatCents(account.getCurrentBalanceInCents()))
+                .currentBalance(AmountFormatter.formatCents(balanceInCents))
                 .ownerName(account.getOwnerName())
                 .createdAt(DatesFormatter.format(account.getCreatedAt()))
                 .accountNumber(account.getAccountNumber().toString())
+                .version(version)
+                .build();
+    }
+
+    public static AccountDto fromSummary(AccountSummary summary) {
+        if (summary == null)
+            return null;
+        return AccountDto.builder()
+                .currentBalance(AmountFormatter.formatCents(summary.getCurrentBalanceInCents()))
+                .ownerName(summary.getOwnerName())
+                .createdAt(DatesFormatter.format(summary.getCreatedAt()))
+                .accountNumber(summary.getAccountNumber().toString())
+                .version(summary.getVersion())
                 .build();
     }
 }
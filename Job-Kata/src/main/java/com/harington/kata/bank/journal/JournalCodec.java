@@ -0,0 +1,153 @@
+package com.harington.kata.bank.journal;
+
+import com.harington.kata.bank.entity.Account;
+import com.harington.kata.bank.entity.Transaction;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDateTime;
+import java.time.ZoneOffset;
+import java.util.UUID;
+
+/**
+ * Binary format of the journal records : a type byte, then the fields in a fixed order. UUIDs are
+ * written as two longs, date-times as UTC epoch seconds and nanos, strings as their UTF-8 length
+ * (-1 for null) and bytes.
+ */
+public final class JournalCodec {
+    static final byte ACCOUNT_OPENED = 1;
+    static final byte TRANSACTION_POSTED = 2;
+    /**
+     * {@link Transaction#getSequence()} of the transactions posted by updating their account
+     */
+    private static final int NO_SEQUENCE = 0;
+
+    /**
+     * Receives the decoded records
+     */
+    public interface Handler {
+        /**
+         * @param account the account as created, without id nor transactions
+         */
+        void accountOpened(Account account);
+
+        /**
+         * @param transaction the transaction, without id nor account
+         */
+        void transactionPosted(UUID accountNumber, Transaction transaction);
+    }
+
+    private JournalCodec() {
+    }
+
+    public static byte[] encode(Account account) {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream(64);
+        try (DataOutputStream out = new DataOutputStream(bytes)) {
+            out.writeByte(ACCOUNT_OPENED);
+            writeUUID(out, account.getAccountNumber());
+            out.writeInt(account.getInitialBalanceInCents());
+            writeDateTime(out, account.getCreatedAt());
+            writeString(out, account.getOwnerName());
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        return bytes.toByteArray();
+    }
+
+    public static byte[] encode(Transaction tx) {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream(96);
+        try (DataOutputStream out = new DataOutputStream(bytes)) {
+            out.writeByte(TRANSACTION_POSTED);
+            writeUUID(out, tx.getAccount().getAccountNumber());
+            writeUUID(out, tx.getTxRef());
+            out.writeByte(tx.getTxType().ordinal());
+            out.writeInt(tx.getAmountInCents());
+            out.writeInt(tx.getPostTxAccountBalanceInCents());
+            out.writeInt(tx.getSequence() == null ? NO_SEQUENCE : tx.getSequence());
+            writeDateTime(out, tx.getTransactionAt());
+            writeString(out, tx.getDescription());
+            writeString(out, tx.getIdempotencyKey());
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        return bytes.toByteArray();
+    }
+
+    /**
+     * Decodes the record held by {@code record} (from its position to its limit)
+     */
+    public static void decode(ByteBuffer record, Handler handler) {
+        byte type = record.get();
+        switch (type) {
+            case ACCOUNT_OPENED:
+                UUID accountNumber = readUUID(record);
+                int initialBalance = record.getInt();
+                handler.accountOpened(Account.builder()
+                        .accountNumber(accountNumber)
+                        .initialBalanceInCents(initialBalance)
+                        .currentBalanceInCents(initialBalance)
+                        .createdAt(readDateTime(record))
+                        .ownerName(readString(record))
+                        .build());
+                break;
+            case TRANSACTION_POSTED:
+                UUID txAccountNumber = readUUID(record);
+                Transaction.TxType[] types = Transaction.TxType.values();
+                Transaction.TransactionBuilder tx = Transaction.builder()
+                        .txRef(readUUID(record))
+                        .txType(types[record.get()])
+                        .amountInCents(record.getInt())
+                        .postTxAccountBalanceInCents(record.getInt());
+                int sequence = record.getInt();
+                handler.transactionPosted(txAccountNumber, tx
+                        .sequence(sequence == NO_SEQUENCE ? null : sequence)
+                        .transactionAt(readDateTime(record))
+                        .description(readString(record))
+                        .idempotencyKey(readString(record))
+                        .build());
+                break;
+            default:
+                throw new IllegalStateException("Unknown journal record type " + type);
+        }
+    }
+
+    private static void writeUUID(DataOutputStream out, UUID uuid) throws IOException {
+        out.writeLong(uuid.getMostSignificantBits());
+        out.writeLong(uuid.getLeastSignificantBits());
+    }
+
+    private static UUID readUUID(ByteBuffer in) {
+        return new UUID(in.getLong(), in.getLong());
+    }
+
+    private static void writeDateTime(DataOutputStream out, LocalDateTime dateTime) throws IOException {
+        out.writeLong(dateTime.toEpochSecond(ZoneOffset.UTC));
+        out.writeInt(dateTime.getNano());
+    }
+
+    private static LocalDateTime readDateTime(ByteBuffer in) {
+        return LocalDateTime.ofEpochSecond(in.getLong(), in.getInt(), ZoneOffset.UTC);
+    }
+
+    private static void writeString(DataOutputStream out, String value) throws IOException {
+        if (value == null) {
+            out.writeInt(-1);
+            return;
+        }
+        byte[] utf8 = value.getBytes(StandardCharsets.UTF_8);
+        out.writeInt(utf8.length);
+        out.write(utf8);
+    }
+
+    private static String readString(ByteBuffer in) {
+        int length = in.getInt();
+        if (length < 0) return null;
+        byte[] utf8 = new byte[length];
+        in.get(utf8);
+        return new String(utf8, StandardCharsets.UTF_8);
+    }
+}
@@ -0,0 +1,53 @@
+package com.harington.kata.bank.journal;
+
+import com.harington.kata.bank.repository.AccountRepository;
+import com.harington.kata.bank.repository.TransactionRepository;
+import lombok.extern.slf4j.Slf4j;
+import org.hibernate.event.service.spi.EventListenerRegistry;
+import org.hibernate.event.spi.EventType;
+import org.hibernate.internal.SessionFactoryImpl;
+import org.springframework.beans.factory.SmartInitializingSingleton;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import javax.persistence.EntityManager;
+import javax.persistence.EntityManagerFactory;
+
+/**
+ * Replays the {@link TransactionJournal} into the repositories before the application serves
+ * requests, then journals the accounts and transactions inserted from then on ({@link JournalRecorder}).
+ * The journal is only replayed into an empty database.
+ */
+@Configuration
+@Slf4j
+public class JournalConfiguration {
+
+    @Bean
+    public SmartInitializingSingleton transactionJournalStartup(TransactionJournal journal,
+                                                                EntityManagerFactory entityManagerFactory,
+                                                                EntityManager entityManager,
+                                                                TransactionTemplate transactionTemplate,
+                                                                AccountRepository accountRepository,
+                                                                TransactionRepository transactionRepository) {
+        return () -> {
+            if (!journal.isEnabled()) return;
+            if (accountRepository.count() == 0) {
+                long begin = System.nanoTime();
+                JournalReplayer replayer = new JournalReplayer(accountRepository, transactionRepository,
+                        transactionTemplate, entityManager);
+                long records = journal.open(record -> JournalCodec.decode(record, replayer));
+                replayer.finish();
+                log.info("Replayed {} journal records in {} ms", records, (System.nanoTime() - begin) / 1_000_000);
+            } else {
+                log.warn("Database is not empty, the journal is appended to without being replayed");
+                journal.open(record -> {
+                });
+            }
+            entityManagerFactory.unwrap(SessionFactoryImpl.class)
+                    .getServiceRegistry()
+                    .getService(EventListenerRegistry.class)
+                    .appendListeners(EventType.POST_INSERT, new JournalRecorder(journal));
+        };
+    }
+}
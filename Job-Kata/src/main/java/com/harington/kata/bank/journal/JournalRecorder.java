@@ -0,0 +1,83 @@
+package com.harington.kata.bank.journal;
+
+import com.harington.kata.bank.entity.Account;
+import com.harington.kata.bank.entity.Transaction;
+import org.hibernate.event.spi.PostInsertEvent;
+import org.hibernate.event.spi.PostInsertEventListener;
+import org.hibernate.persister.entity.EntityPersister;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Encodes the accounts and transactions inserted by a DB transaction, and appends them to the
+ * journal once it commits. The commit returns when they are forced to disk (with
+ * {@code bank.journal.fsync}) : a posted operation is never acknowledged before it is journaled.
+ * Records are appended after the database commit, not ahead of it : a crash in between loses the
+ * operation from the journal, though the database holds it.
+ */
+class JournalRecorder implements PostInsertEventListener {
+    private final TransactionJournal journal;
+
+    JournalRecorder(TransactionJournal journal) {
+        this.journal = journal;
+    }
+
+    @Override
+    public void onPostInsert(PostInsertEvent event) {
+        byte[] record;
+        if (event.getEntity() instanceof Transaction)
+            record = JournalCodec.encode((Transaction) event.getEntity());
+        else if (event.getEntity() instanceof Account)
+            record = JournalCodec.encode((Account) event.getEntity());
+        else
+            return;
+        if (!TransactionSynchronizationManager.isSynchronizationActive()) {
+            journal.awaitForced(journal.append(List.of(record)));
+            return;
+        }
+        recordsOfCurrentTransaction().records.add(record);
+    }
+
+    /**
+     * Looked up among the synchronizations, which are suspended with their DB transaction
+     */
+    private CommittedRecords recordsOfCurrentTransaction() {
+        for (TransactionSynchronization synchronization : TransactionSynchronizationManager.getSynchronizations())
+            if (synchronization instanceof CommittedRecords && ((CommittedRecords) synchronization).journal == journal)
+                return (CommittedRecords) synchronization;
+        CommittedRecords records = new CommittedRecords(journal);
+        TransactionSynchronizationManager.registerSynchronization(records);
+        return records;
+    }
+
+    @Override
+    public boolean requiresPostCommitHandling(EntityPersister persister) {
+        return false;
+    }
+
+    /**
+     * Still abstract in Hibernate 5.6, never called : {@link #requiresPostCommitHandling(EntityPersister)} replaces it
+     */
+    @Override
+    @Deprecated
+    public boolean requiresPostCommitHanding(EntityPersister persister) {
+        return requiresPostCommitHandling(persister);
+    }
+
+    private static final class CommittedRecords implements TransactionSynchronization {
+        final TransactionJournal journal;
+        final List<byte[]> records = new ArrayList<>();
+
+        CommittedRecords(TransactionJournal journal) {
+            this.journal = journal;
+        }
+
+        @Override
+        public void afterCommit() {
+            journal.awaitForced(journal.append(records));
+        }
+    }
+}
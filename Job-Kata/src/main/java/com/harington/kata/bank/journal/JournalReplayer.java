@@ -0,0 +1,97 @@
+package com.harington.kata.bank.journal;
+
+import com.harington.kata.bank.entity.Account;
+import com.harington.kata.bank.entity.Transaction;
+import com.harington.kata.bank.repository.AccountRepository;
+import com.harington.kata.bank.repository.TransactionRepository;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import javax.persistence.EntityManager;
+import java.util.*;
+
+/**
+ * Inserts the journal's records back into the repositories, {@value #CHUNK_SIZE} records per DB
+ * transaction (sent as JDBC batches), then sets the balance and version of each account from all its
+ * transactions.
+ * <p>
+ * Records are appended once their DB transaction has committed, so two operations on an account may
+ * be journaled in either order : the balance is the initial one plus the signed amounts, rather than
+ * the balance after the last transaction replayed. The version is the highest sequence in event-sourced
+ * mode, otherwise the number of transactions (a batch chunk may have bumped the version once for
+ * several of them).
+ */
+class JournalReplayer implements JournalCodec.Handler {
+    static final int CHUNK_SIZE = 1_000;
+    private final AccountRepository accountRepository;
+    private final TransactionRepository transactionRepository;
+    private final TransactionTemplate transactionTemplate;
+    private final EntityManager entityManager;
+    private final Map<UUID, Long> accountIds = new HashMap<>();
+    private final Map<UUID, Integer> initialBalances = new HashMap<>();
+    /**
+     * Sum of the signed amounts and version of the accounts with transactions
+     */
+    private final Map<UUID, int[]> heads = new LinkedHashMap<>();
+    private final List<Account> accounts = new ArrayList<>();
+    private final List<Transaction> transactions = new ArrayList<>();
+    private final List<UUID> transactionAccounts = new ArrayList<>();
+
+    JournalReplayer(AccountRepository accountRepository, TransactionRepository transactionRepository,
+                    TransactionTemplate transactionTemplate, EntityManager entityManager) {
+        this.accountRepository = accountRepository;
+        this.transactionRepository = transactionRepository;
+        this.transactionTemplate = transactionTemplate;
+        this.entityManager = entityManager;
+    }
+
+    @Override
+    public void accountOpened(Account account) {
+        accounts.add(account);
+        initialBalances.put(account.getAccountNumber(), account.getInitialBalanceInCents());
+        if (accounts.size() + transactions.size() >= CHUNK_SIZE) insertChunk();
+    }
+
+    @Override
+    public void transactionPosted(UUID accountNumber, Transaction transaction) {
+        transactions.add(transaction);
+        transactionAccounts.add(accountNumber);
+        int[] head = heads.computeIfAbsent(accountNumber, number -> new int[2]);
+        head[0] += transaction.getTxType() == Transaction.TxType.DEPOSIT
+                ? transaction.getAmountInCents() : -transaction.getAmountInCents();
+        head[1] = transaction.getSequence() != null ? Math.max(head[1], transaction.getSequence()) : head[1] + 1;
+        if (accounts.size() + transactions.size() >= CHUNK_SIZE) insertChunk();
+    }
+
+    /**
+     * Inserts the remaining records and sets the balances
+     */
+    void finish() {
+        insertChunk();
+        List<Map.Entry<UUID, int[]>> entries = new ArrayList<>(heads.entrySet());
+        for (int from = 0; from < entries.size(); from += CHUNK_SIZE) {
+            List<Map.Entry<UUID, int[]>> chunk = entries.subList(from, Math.min(from + CHUNK_SIZE, entries.size()));
+            transactionTemplate.executeWithoutResult(status -> chunk.forEach(entry ->
+                    accountRepository.resetBalance(accountIds.get(entry.getKey()),
+                            initialBalances.get(entry.getKey()) + entry.getValue()[0], entry.getValue()[1])));
+        }
+    }
+
+    private void insertChunk() {
+        if (accounts.isEmpty() && transactions.isEmpty()) return;
+        transactionTemplate.executeWithoutResult(status -> {
+            accountRepository.saveAll(accounts).forEach(account -> accountIds.put(account.getAccountNumber(), account.getId()));
+            for (int i = 0; i < transactions.size(); i++) {
+                Long accountId = accountIds.get(transactionAccounts.get(i));
+                if (accountId == null)
+                    throw new IllegalStateException("Journal holds a transaction of the unknown account " + transactionAccounts.get(i));
+                transactions.get(i).setAccount(accountRepository.getReferenceById(accountId));
+            }
+            transactionRepository.saveAll(transactions);
+            entityManager.flush();
+            entityManager.clear();
+        });
+        accounts.clear();
+        transactions.clear();
+        transactionAccounts.clear();
+    }
+}
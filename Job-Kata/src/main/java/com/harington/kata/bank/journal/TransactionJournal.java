@@ -0,0 +1,298 @@
+package com.harington.kata.bank.journal;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import javax.annotation.PreDestroy;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.Consumer;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+import java.util.zip.CRC32;
+
+/**
+ * Append-only journal of the committed accounts and transactions (see {@link JournalCodec}),
+ * written to memory-mapped segment files of {@code bank.journal.segment-size-mb} in
+ * {@code bank.journal.directory}. Disabled by default ({@code bank.journal.enabled}).
+ * <p>
+ * It is a commit log, not a write-ahead log : records are appended once their DB transaction has
+ * committed (see {@link JournalRecorder}), so a crash between the commit and the append loses the
+ * operation from the journal.
+ * <p>
+ * Each record is its length, the CRC32 of its bytes and its bytes : replay stops at the first
+ * record that is empty or doesn't match its CRC (the tail torn by a crash), where the next appends
+ * start. A single thread forces the mapped segments to disk, all the records appended while it was
+ * forcing the previous ones at once (group fsync) ; with {@code bank.journal.fsync} writers wait
+ * for their records to be forced.
+ */
+@Component
+@Slf4j
+public class TransactionJournal {
+    static final String SEGMENT_PREFIX = "ledger-";
+    static final String SEGMENT_SUFFIX = ".journal";
+    static final int SEGMENT_MAGIC = 0x424B4A31;
+    /**
+     * Magic number then format version
+     */
+    static final int SEGMENT_HEADER_SIZE = 8;
+    static final int FORMAT_VERSION = 1;
+    /**
+     * Length then CRC32 of the record
+     */
+    static final int RECORD_HEADER_SIZE = 8;
+    private final boolean enabled;
+    private final Path directory;
+    private final int segmentSize;
+    private final boolean fsync;
+    private final ReentrantLock lock = new ReentrantLock();
+    private final Condition appended = lock.newCondition();
+    private final Condition forced = lock.newCondition();
+    /**
+     * Full segments not forced yet, then the current one
+     */
+    private final List<MappedByteBuffer> unforced = new ArrayList<>();
+    private MappedByteBuffer segment;
+    private int segmentIndex;
+    private long appendedRecords;
+    private long forcedRecords;
+    private boolean closed;
+    private RuntimeException flushFailure;
+    private Thread flusher;
+
+    @Autowired
+    public TransactionJournal(@Value("${bank.journal.enabled:false}") boolean enabled,
+                              @Value("${bank.journal.directory:./data/journal}") String directory,
+                              @Value("${bank.journal.segment-size-mb:64}") int segmentSizeMb,
+                              @Value("${bank.journal.fsync:true}") boolean fsync) {
+        this(enabled, Paths.get(directory), segmentSizeMb * 1024 * 1024, fsync);
+    }
+
+    TransactionJournal(boolean enabled, Path directory, int segmentSize, boolean fsync) {
+        if (segmentSize <= SEGMENT_HEADER_SIZE + RECORD_HEADER_SIZE)
+            throw new IllegalArgumentException("bank.journal.segment-size-mb is too small");
+        this.enabled = enabled;
+        this.directory = directory;
+        this.segmentSize = segmentSize;
+        this.fsync = fsync;
+    }
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    /**
+     * Replays the journal's records, in the order they were appended, then opens it for appends.
+     *
+     * @param replay receives each record, positioned on its first byte
+     * @return the number of records replayed
+     */
+    public long open(Consumer<ByteBuffer> replay) {
+        if (!enabled) return 0;
+        try {
+            Files.createDirectories(directory);
+            List<Path> segments;
+            try (Stream<Path> files = Files.list(directory)) {
+                segments = files.filter(file -> file.getFileName().toString().startsWith(SEGMENT_PREFIX)
+                                && file.getFileName().toString().endsWith(SEGMENT_SUFFIX))
+                        .sorted()
+                        .collect(Collectors.toList());
+            }
+            long[] records = {0};
+            Consumer<ByteBuffer> counted = record -> {
+                replay.accept(record);
+                records[0]++;
+            };
+            int end = SEGMENT_HEADER_SIZE;
+            for (Path file : segments) {
+                segment = map(file);
+                segmentIndex = indexOf(file);
+                end = replaySegment(segment, file, counted);
+            }
+            if (segment == null)
+                segment = newSegment(0);
+            segment.position(end);
+            appendedRecords = records[0];
+            forcedRecords = records[0];
+            flusher = new Thread(this::flushLoop, "journal-flusher");
+            flusher.setDaemon(true);
+            flusher.start();
+            return records[0];
+        } catch (IOException e) {
+            throw new UncheckedIOException("Can't open the journal in " + directory, e);
+        }
+    }
+
+    /**
+     * @return the offset following the last valid record of the segment
+     */
+    private int replaySegment(MappedByteBuffer segment, Path file, Consumer<ByteBuffer> replay) {
+        if (segment.getInt(0) != SEGMENT_MAGIC || segment.getInt(4) != FORMAT_VERSION)
+            throw new IllegalStateException(file + " is not a journal segment of version " + FORMAT_VERSION);
+        int offset = SEGMENT_HEADER_SIZE;
+        CRC32 crc = new CRC32();
+        while (offset + RECORD_HEADER_SIZE <= segment.capacity()) {
+            int length = segment.getInt(offset);
+            if (length <= 0 || offset + RECORD_HEADER_SIZE + length > segment.capacity()) break;
+            ByteBuffer record = segment.duplicate();
+            record.position(offset + RECORD_HEADER_SIZE).limit(offset + RECORD_HEADER_SIZE + length);
+            crc.reset();
+            crc.update(record.duplicate());
+            if ((int) crc.getValue() != segment.getInt(offset + 4)) {
+                log.warn("Journal {} ends with a torn record at offset {}", file, offset);
+                break;
+            }
+            replay.accept(record);
+            offset += RECORD_HEADER_SIZE + length;
+        }
+        return offset;
+    }
+
+    /**
+     * Appends the records, in order, without waiting for them to be forced to disk
+     *
+     * @return the position to wait for with {@link #awaitForced(long)}
+     */
+    public long append(List<byte[]> records) {
+        CRC32 crc = new CRC32();
+        lock.lock();
+        try {
+            if (closed) throw new IllegalStateException("The journal is closed");
+            for (byte[] record : records) {
+                if (RECORD_HEADER_SIZE + record.length > segmentSize - SEGMENT_HEADER_SIZE)
+                    throw new IllegalArgumentException("Journal record of " + record.length + " bytes exceeds a segment");
+                if (segment.remaining() < RECORD_HEADER_SIZE + record.length)
+                    roll();
+                crc.reset();
+                crc.update(record);
+                segment.putInt(record.length).putInt((int) crc.getValue()).put(record);
+            }
+            appendedRecords += records.size();
+            appended.signal();
+            return appendedRecords;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Waits for the records appended up to {@code position} to be forced to disk, when {@code bank.journal.fsync}
+     */
+    public void awaitForced(long position) {
+        if (!fsync) return;
+        lock.lock();
+        try {
+            while (forcedRecords < position) {
+                if (flushFailure != null)
+                    throw new IllegalStateException("The journal can't be forced to disk", flushFailure);
+                forced.await();
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Interrupted while waiting for the journal", e);
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    private void flushLoop() {
+        while (true) {
+            long target;
+            List<MappedByteBuffer> toForce;
+            lock.lock();
+            try {
+                while (forcedRecords == appendedRecords && !closed)
+                    appended.await(1, TimeUnit.SECONDS);
+                if (forcedRecords == appendedRecords) return;
+                target = appendedRecords;
+                toForce = new ArrayList<>(unforced);
+                unforced.clear();
+                toForce.add(segment);
+            } catch (InterruptedException e) {
+                return;
+            } finally {
+                lock.unlock();
+            }
+            try {
+                // Appends go on while forcing : they make the next group
+                toForce.forEach(MappedByteBuffer::force);
+            } catch (RuntimeException e) {
+                log.error("Journal can't be forced to disk", e);
+                lock.lock();
+                try {
+                    flushFailure = e;
+                    forced.signalAll();
+                } finally {
+                    lock.unlock();
+                }
+                return;
+            }
+            lock.lock();
+            try {
+                forcedRecords = target;
+                forced.signalAll();
+            } finally {
+                lock.unlock();
+            }
+        }
+    }
+
+    private void roll() {
+        unforced.add(segment);
+        try {
+            segment = newSegment(segmentIndex + 1);
+        } catch (IOException e) {
+            throw new UncheckedIOException("Can't create a journal segment in " + directory, e);
+        }
+    }
+
+    private MappedByteBuffer newSegment(int index) throws IOException {
+        segmentIndex = index;
+        MappedByteBuffer buffer = map(directory.resolve(String.format("%s%09d%s", SEGMENT_PREFIX, index, SEGMENT_SUFFIX)));
+        buffer.putInt(SEGMENT_MAGIC).putInt(FORMAT_VERSION);
+        return buffer;
+    }
+
+    private MappedByteBuffer map(Path file) throws IOException {
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.CREATE, StandardOpenOption.READ,
+                StandardOpenOption.WRITE)) {
+            // The mapping outlives the channel
+            return channel.map(FileChannel.MapMode.READ_WRITE, 0, Math.max(channel.size(), segmentSize));
+        }
+    }
+
+    private static int indexOf(Path file) {
+        String name = file.getFileName().toString();
+        return Integer.parseInt(name.substring(SEGMENT_PREFIX.length(), name.length() - SEGMENT_SUFFIX.length()));
+    }
+
+    /**
+     * Forces the appended records to disk and stops the flusher
+     */
+    @PreDestroy
+    public void close() throws InterruptedException {
+        if (flusher == null) return;
+        lock.lock();
+        try {
+            closed = true;
+            appended.signal();
+        } finally {
+            lock.unlock();
+        }
+        flusher.join();
+    }
+}
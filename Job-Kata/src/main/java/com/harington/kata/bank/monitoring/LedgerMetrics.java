@@ -0,0 +1,174 @@
+package com.harington.kata.bank.monitoring;
+
+import com.harington.kata.bank.entity.Transaction;
+import com.harington.kata.bank.exceptions.ConcurrentUpdateException;
+import com.harington.kata.bank.exceptions.EntityNotFoundException;
+import com.harington.kata.bank.exceptions.InsufficientFundsException;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import lombok.RequiredArgsConstructor;
+import org.springframework.dao.OptimisticLockingFailureException;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.util.Locale;
+import java.util.function.Supplier;
+
+/**
+ * Business metrics of the ledger, all tagged by {@value #OPERATION_TAG} ({@code deposit},
+ * {@code withdrawal}, {@value #TRANSFER}, {@value #ACCOUNT_READ} or {@value #HISTORY_READ}) :
+ * <ul>
+ *     <li>{@value #OPERATIONS_TIMER} : latency of the deposits, withdrawals and transfers up to their commit,
+ *     also tagged by {@value #OUTCOME_TAG}, with a percentiles histogram</li>
+ *     <li>{@value #INSUFFICIENT_FUNDS_COUNTER}, {@value #CONFLICTS_COUNTER} and
+ *     {@value #NOT_FOUND_COUNTER} : rejected operations and lookups</li>
+ *     <li>{@value #RETRIES_COUNTER} and {@value #RETRIES_EXHAUSTED_COUNTER} : conflicting operations run
+ *     again, and given up, by {@code ConflictRetryExecutor}</li>
+ *     <li>{@value #HISTORY_SIZE_SUMMARY} : transactions returned per history read</li>
+ * </ul>
+ */
+@Component
+@RequiredArgsConstructor
+public class LedgerMetrics {
+    public static final String OPERATIONS_TIMER = "bank.ledger.operations";
+    public static final String INSUFFICIENT_FUNDS_COUNTER = "bank.ledger.insufficient.funds";
+    public static final String CONFLICTS_COUNTER = "bank.ledger.version.conflicts";
+    public static final String NOT_FOUND_COUNTER = "bank.ledger.not.found";
+    public static final String RETRIES_COUNTER = "bank.ledger.retries";
+    public static final String RETRIES_EXHAUSTED_COUNTER = "bank.ledger.retries.exhausted";
+    public static final String HISTORY_SIZE_SUMMARY = "bank.ledger.history.size";
+    public static final String OPERATION_TAG = "operation";
+    public static final String OUTCOME_TAG = "outcome";
+    public static final String ACCOUNT_READ = "account_read";
+    public static final String HISTORY_READ = "history_read";
+    public static final String TRANSFER = "transfer";
+    private final MeterRegistry meterRegistry;
+
+    /**
+     * Runs and times a deposit or a withdrawal, its outcome told by the exception it throws. Inside a DB
+     * transaction the timer stops when it completes : a transaction rolled back after the body returned
+     * is reported as {@code rolled_back}, whatever the cause. Bodies flush their writes, so that
+     * conflicts and constraint violations are thrown from them rather than at commit.
+     */
+    public <T> T record(Transaction.TxType operation, Supplier<T> body) {
+        return record(tagOf(operation), body);
+    }
+
+    /**
+     * @param operation {@link #TRANSFER} or the tag of a {@link Transaction.TxType}
+     */
+    public <T> T record(String operation, Supplier<T> body) {
+        Timer.Sample sample = Timer.start(meterRegistry);
+        T result;
+        try {
+            result = body.get();
+        } catch (RuntimeException e) {
+            stop(sample, operation, outcomeOf(e));
+            throw e;
+        }
+        if (!TransactionSynchronizationManager.isSynchronizationActive()) {
+            stop(sample, operation, Outcome.POSTED);
+            return result;
+        }
+        TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+            @Override
+            public void afterCompletion(int status) {
+                stop(sample, operation, status == STATUS_COMMITTED ? Outcome.POSTED : Outcome.ROLLED_BACK);
+            }
+        });
+        return result;
+    }
+
+    public void insufficientFunds(Transaction.TxType operation) {
+        insufficientFunds(tagOf(operation));
+    }
+
+    public void insufficientFunds(String operation) {
+        counter(INSUFFICIENT_FUNDS_COUNTER, operation).increment();
+    }
+
+    public void conflict(Transaction.TxType operation) {
+        conflict(tagOf(operation));
+    }
+
+    public void conflict(String operation) {
+        counter(CONFLICTS_COUNTER, operation).increment();
+    }
+
+    /**
+     * @param operation {@link #TRANSFER} or the tag of a {@link Transaction.TxType}
+     */
+    public void retry(String operation) {
+        counter(RETRIES_COUNTER, operation).increment();
+    }
+
+    /**
+     * @param operation {@link #TRANSFER} or the tag of a {@link Transaction.TxType}
+     */
+    public void retriesExhausted(String operation) {
+        counter(RETRIES_EXHAUSTED_COUNTER, operation).increment();
+    }
+
+    /**
+     * @param operation {@link #ACCOUNT_READ}, {@link #HISTORY_READ}, {@link #TRANSFER} or the tag of a
+     *                  {@link Transaction.TxType}
+     */
+    public void notFound(String operation) {
+        counter(NOT_FOUND_COUNTER, operation).increment();
+    }
+
+    public void notFound(Transaction.TxType operation) {
+        notFound(tagOf(operation));
+    }
+
+    public void historyRead(int transactions) {
+        DistributionSummary.builder(HISTORY_SIZE_SUMMARY)
+                .description("Transactions returned per history read")
+                .tag(OPERATION_TAG, HISTORY_READ)
+                .publishPercentileHistogram()
+                .register(meterRegistry)
+                .record(transactions);
+    }
+
+    private void stop(Timer.Sample sample, String operation, Outcome outcome) {
+        sample.stop(Timer.builder(OPERATIONS_TIMER)
+                .description("Deposits and withdrawals latency, up to their commit")
+                .tag(OPERATION_TAG, operation)
+                .tag(OUTCOME_TAG, outcome.tag)
+                .publishPercentileHistogram()
+                .register(meterRegistry));
+        if (outcome == Outcome.INSUFFICIENT_FUNDS) insufficientFunds(operation);
+        else if (outcome == Outcome.CONFLICT) conflict(operation);
+        else if (outcome == Outcome.NOT_FOUND) notFound(operation);
+    }
+
+    private Counter counter(String name, String operation) {
+        return meterRegistry.counter(name, OPERATION_TAG, operation);
+    }
+
+    private static Outcome outcomeOf(RuntimeException e) {
+        if (e instanceof InsufficientFundsException) return Outcome.INSUFFICIENT_FUNDS;
+        if (e instanceof ConcurrentUpdateException || e instanceof OptimisticLockingFailureException)
+            return Outcome.CONFLICT;
+        if (e instanceof EntityNotFoundException) return Outcome.NOT_FOUND;
+        return Outcome.ERROR;
+    }
+
+    public static String tagOf(Transaction.TxType operation) {
+        return operation.name().toLowerCase(Locale.ROOT);
+    }
+
+    private enum Outcome {
+        POSTED("posted"), INSUFFICIENT_FUNDS("insufficient_funds"), CONFLICT("conflict"),
+        NOT_FOUND("not_found"), ROLLED_BACK("rolled_back"), ERROR("error");
+
+        final String tag;
+
+        Outcome(String tag) {
+            this.tag = tag;
+        }
+    }
+}
@@ -0,0 +1,68 @@
+package com.harington.kata.bank.monitoring;
+
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Tags;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import org.springframework.web.filter.OncePerRequestFilter;
+import org.springframework.web.servlet.HandlerMapping;
+
+import javax.servlet.FilterChain;
+import javax.servlet.ServletException;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+import java.io.IOException;
+
+/**
+ * Counts the SQL work of each HTTP request ({@link SqlStatistics}), publishes it per method and
+ * URI pattern and logs the requests running more than {@code bank.sql.statement-budget} statements,
+ * which usually means an N+1 select. The counts are also left in the {@value #STATISTICS_ATTRIBUTE}
+ * request attribute for tests.
+ */
+@Slf4j
+@Component
+public class SqlBudgetFilter extends OncePerRequestFilter {
+    public static final String STATISTICS_ATTRIBUTE = SqlBudgetFilter.class.getName() + ".statistics";
+    public static final String STATEMENTS_SUMMARY = "bank.http.sql.statements";
+    public static final String ENTITIES_LOADED_SUMMARY = "bank.http.sql.entities.loaded";
+    public static final String COLLECTIONS_FETCHED_SUMMARY = "bank.http.sql.collections.fetched";
+    public static final String BUDGET_EXCEEDED_COUNTER = "bank.http.sql.budget.exceeded";
+    private final int statementBudget;
+    private final MeterRegistry meterRegistry;
+
+    public SqlBudgetFilter(@Value("${bank.sql.statement-budget:20}") int statementBudget,
+                           MeterRegistry meterRegistry) {
+        this.statementBudget = statementBudget;
+        this.meterRegistry = meterRegistry;
+    }
+
+    @Override
+    protected void doFilterInternal(HttpServletRequest request, HttpServletResponse response, FilterChain filterChain)
+            throws ServletException, IOException {
+        SqlStatistics.begin();
+        SqlStatistics.Snapshot statistics;
+        try {
+            filterChain.doFilter(request, response);
+        } finally {
+            statistics = SqlStatistics.end();
+        }
+        request.setAttribute(STATISTICS_ATTRIBUTE, statistics);
+        Object pattern = request.getAttribute(HandlerMapping.BEST_MATCHING_PATTERN_ATTRIBUTE);
+        Tags tags = Tags.of("method", request.getMethod(), "uri", pattern == null ? "UNKNOWN" : pattern.toString());
+        summary(STATEMENTS_SUMMARY, tags).record(statistics.getStatements());
+        summary(ENTITIES_LOADED_SUMMARY, tags).record(statistics.getEntitiesLoaded());
+        summary(COLLECTIONS_FETCHED_SUMMARY, tags).record(statistics.getCollectionsFetched());
+        if (statistics.getStatements() > statementBudget) {
+            meterRegistry.counter(BUDGET_EXCEEDED_COUNTER, tags).increment();
+            log.warn("{} {} ran {} SQL statements (budget {}), loaded {} entities and fetched {} collections",
+                    request.getMethod(), request.getRequestURI(), statistics.getStatements(), statementBudget,
+                    statistics.getEntitiesLoaded(), statistics.getCollectionsFetched());
+        }
+    }
+
+    private DistributionSummary summary(String name, Tags tags) {
+        return DistributionSummary.builder(name).tags(tags).register(meterRegistry);
+    }
+}
@@ -0,0 +1,69 @@
+package com.harington.kata.bank.monitoring;
+
+import lombok.Value;
+
+/**
+ * SQL work done by the current thread between {@link #begin()} and {@link #end()}, counted by the
+ * Hibernate hooks of {@link SqlStatisticsConfiguration} : statements prepared (a JDBC batch counts
+ * once), among them the id sequence calls, entities loaded and lazy collections fetched. Nothing
+ * is counted outside of a {@code begin()}/{@code end()} pair.
+ */
+public final class SqlStatistics {
+    private static final ThreadLocal<Counts> CURRENT = new ThreadLocal<>();
+
+    private SqlStatistics() {
+    }
+
+    public static void begin() {
+        CURRENT.set(new Counts());
+    }
+
+    /**
+     * @return the counts since {@link #begin()}, all zero when it wasn't called
+     */
+    public static Snapshot end() {
+        Counts counts = CURRENT.get();
+        CURRENT.remove();
+        return counts == null ? new Snapshot(0, 0, 0, 0) : counts.snapshot();
+    }
+
+    static void statementPrepared(boolean idAllocation) {
+        Counts counts = CURRENT.get();
+        if (counts == null) return;
+        counts.statements++;
+        if (idAllocation) counts.idAllocations++;
+    }
+
+    static void entityLoaded() {
+        Counts counts = CURRENT.get();
+        if (counts != null) counts.entitiesLoaded++;
+    }
+
+    static void collectionFetched() {
+        Counts counts = CURRENT.get();
+        if (counts != null) counts.collectionsFetched++;
+    }
+
+    private static final class Counts {
+        int statements;
+        int idAllocations;
+        int entitiesLoaded;
+        int collectionsFetched;
+
+        Snapshot snapshot() {
+            return new Snapshot(statements, idAllocations, entitiesLoaded, collectionsFetched);
+        }
+    }
+
+    @Value
+    public static class Snapshot {
+        int statements;
+        /**
+         * Id sequence calls among the statements : made once every {@link com.harington.kata.bank.entity.Account#ID_ALLOCATION_SIZE}
+         * inserts, whichever request happens to run out of pooled ids
+         */
+        int idAllocations;
+        int entitiesLoaded;
+        int collectionsFetched;
+    }
+}
@@ -0,0 +1,49 @@
+package com.harington.kata.bank.monitoring;
+
+import org.hibernate.cfg.AvailableSettings;
+import org.hibernate.event.service.spi.EventListenerRegistry;
+import org.hibernate.event.spi.EventType;
+import org.hibernate.event.spi.InitializeCollectionEventListener;
+import org.hibernate.event.spi.PostLoadEventListener;
+import org.hibernate.internal.SessionFactoryImpl;
+import org.hibernate.resource.jdbc.spi.StatementInspector;
+import org.springframework.beans.factory.SmartInitializingSingleton;
+import org.springframework.boot.autoconfigure.orm.jpa.HibernatePropertiesCustomizer;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+import javax.persistence.EntityManagerFactory;
+
+/**
+ * Hooks {@link SqlStatistics} into Hibernate : a {@link StatementInspector} for the statements and
+ * post-load / collection initialization listeners for the entities and collections.
+ */
+@Configuration
+public class SqlStatisticsConfiguration {
+    /**
+     * How H2 statements fetching the next ids of a sequence start
+     */
+    private static final String SEQUENCE_CALL = "call next value for";
+
+    @Bean
+    public HibernatePropertiesCustomizer sqlStatementsCounter() {
+        StatementInspector inspector = sql -> {
+            SqlStatistics.statementPrepared(sql.regionMatches(true, 0, SEQUENCE_CALL, 0, SEQUENCE_CALL.length()));
+            return sql;
+        };
+        return properties -> properties.put(AvailableSettings.STATEMENT_INSPECTOR, inspector);
+    }
+
+    @Bean
+    public SmartInitializingSingleton sqlLoadsCounter(EntityManagerFactory entityManagerFactory) {
+        return () -> {
+            EventListenerRegistry registry = entityManagerFactory.unwrap(SessionFactoryImpl.class)
+                    .getServiceRegistry()
+                    .getService(EventListenerRegistry.class);
+            registry.appendListeners(EventType.POST_LOAD,
+                    (PostLoadEventListener) event -> SqlStatistics.entityLoaded());
+            registry.appendListeners(EventType.INIT_COLLECTION,
+                    (InitializeCollectionEventListener) event -> SqlStatistics.collectionFetched());
+        };
+    }
+}
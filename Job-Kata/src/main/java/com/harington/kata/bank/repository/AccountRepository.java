@@ -1,13 +1,65 @@
 package com.harington.kata.bank.repository;
 
 import com.harington.kata.bank.entity.Account;
+import com.harington.kata.bank.entity.dto.AccountSummary;
+import org.springframework.data.domain.Page;
+import org.springframework.data.domain.Pageable;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
+import org.springframework.transaction.annotation.Transactional;
 
+import java.util.Collection;
+import java.util.List;
 import java.util.Optional;
 import java.util.UUID;
 
 @Repository
 public interface AccountRepository extends JpaRepository<Account, Long>, CustomAccountRepository {
+    String SUMMARY_PROJECTION = "select new com.harington.kata.bank.entity.dto.AccountSummary("
+            + "a.accountNumber, a.currentBalanceInCents, a.ownerName, a.createdAt, a.version) from Account a";
+
     Optional<Account> findOneByAccountNumber(UUID number);
+
+    List<Account> findAllByAccountNumberIn(Collection<UUID> numbers);
+
+    /**
+     * Version of the account, without loading it (conditional requests)
+     */
+    @Query("select a.version from Account a where a.accountNumber = :accountNumber")
+    Optional<Integer> findVersionByAccountNumber(@Param("accountNumber") UUID accountNumber);
+
+    @Query("select a.id from Account a")
+    List<Long> findAllIds();
+
+    @Query(value = SUMMARY_PROJECTION, countQuery = "select count(a) from Account a")
+    Page<AccountSummary> findAllSummaries(Pageable pageable);
+
+    /**
+     * Sets the balance projected from the account's event stream up to {@code sequence}, which
+     * becomes the account's version. Projections older than the current one are ignored.
+     *
+     * @return 1 when the projection moved forward
+     */
+    @Transactional
+    @Modifying(flushAutomatically = true, clearAutomatically = true)
+    @Query("update Account a set a.currentBalanceInCents = :balanceInCents, a.version = :sequence"
+            + " where a.id = :id and a.version < :sequence")
+    int projectBalance(@Param("id") long id,
+                       @Param("balanceInCents") int balanceInCents,
+                       @Param("sequence") int sequence);
+
+    /**
+     * Overwrites the balance projected up to {@code sequence} (projection rebuild), unless the
+     * account was projected further in the meantime
+     */
+    @Transactional
+    @Modifying(flushAutomatically = true, clearAutomatically = true)
+    @Query("update Account a set a.currentBalanceInCents = :balanceInCents, a.version = :sequence"
+            + " where a.id = :id and a.version <= :sequence")
+    int resetBalance(@Param("id") long id,
+                     @Param("balanceInCents") int balanceInCents,
+                     @Param("sequence") int sequence);
 }
@@ -0,0 +1,17 @@
+package com.harington.kata.bank.repository;
+
+import com.harington.kata.bank.entity.Account;
+import com.harington.kata.bank.entity.AccountSnapshot;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.stereotype.Repository;
+
+import java.util.Optional;
+
+@Repository
+public interface AccountSnapshotRepository extends JpaRepository<AccountSnapshot, Long> {
+
+    /**
+     * Latest snapshot of the account, served by the {@link AccountSnapshot#ACCOUNT_SEQUENCE_UK} index
+     */
+    Optional<AccountSnapshot> findFirstByAccountOrderBySequenceDesc(Account account);
+}
@@ -1,10 +1,28 @@
 package com.harington.kata.bank.repository;
 
 import com.harington.kata.bank.entity.Account;
+import com.harington.kata.bank.entity.dto.AccountSummary;
+import org.springframework.data.domain.Page;
+import org.springframework.data.domain.Pageable;
+import org.springframework.transaction.annotation.Transactional;
 
-import java.util.List;
+import java.util.Optional;
 import java.util.UUID;
 
 public interface CustomAccountRepository {
-    List<Account> trouverAccountsBalance(UUID number, int minBalance);
+    /**
+     * Accounts whose current balance is greater or equal to {@code minBalanceInCents}. Served by the
+     * {@link com.harington.kata.bank.entity.Account#CURRENT_BALANCE_IDX} index.
+     */
+    Page<AccountSummary> findAccountsWithBalanceAtLeast(int minBalanceInCents, Pageable pageable);
+
+    /**
+     * Debits {@code amountInCents} and increments the version in a single statement, provided the
+     * account holds at least that amount and, unless {@code version} is null, is still at {@code version}.
+     * The account is read from the updated row (H2's {@code FINAL TABLE}), without another statement.
+     *
+     * @return the debited account, empty when it doesn't exist, has changed or lacks funds
+     */
+    @Transactional
+    Optional<Account> withdrawIfEnoughFunds(UUID accountNumber, int amountInCents, Integer version);
 }
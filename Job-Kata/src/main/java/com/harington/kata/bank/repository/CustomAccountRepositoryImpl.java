@@ -1,18 +1,64 @@
 package com.harington.kata.bank.repository;
 
 import com.harington.kata.bank.entity.Account;
+import com.harington.kata.bank.entity.converters.UUIDBinaryConverter;
+import com.harington.kata.bank.entity.dto.AccountSummary;
+import org.hibernate.query.NativeQuery;
+import org.hibernate.type.IntegerType;
+import org.springframework.data.domain.Page;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.jpa.repository.query.QueryUtils;
+import org.springframework.data.support.PageableExecutionUtils;
 
 import javax.persistence.EntityManager;
 import javax.persistence.PersistenceContext;
 import java.util.List;
+import java.util.Optional;
 import java.util.UUID;
 
 public class CustomAccountRepositoryImpl implements CustomAccountRepository {
+    private static final String MIN_BALANCE_CONDITION = " where a.currentBalanceInCents >= :minBalance";
+    private static final String WITHDRAW = "select a.*, a.version as debited_version from final table ("
+            + "update account set current_balance_in_cents = current_balance_in_cents - :amountInCents,"
+            + " version = version + 1"
+            + " where " + Account.ACCOUNT_NUMBER_COL + " = :accountNumber and current_balance_in_cents >= :amountInCents";
+    private static final UUIDBinaryConverter UUID_CONVERTER = new UUIDBinaryConverter();
+
     @PersistenceContext
     EntityManager entityManager;
 
     @Override
-    public List<Account> trouverAccountsBalance(UUID number, int minBalance) {
-        return entityManager.createQuery("select a from Account a").getResultList();
+    public Page<AccountSummary> findAccountsWithBalanceAtLeast(int minBalanceInCents, Pageable pageable) {
+        List<AccountSummary> content = entityManager.createQuery(
+                        QueryUtils.applySorting(AccountRepository.SUMMARY_PROJECTION + MIN_BALANCE_CONDITION,
+                                pageable.getSort(), "a"), AccountSummary.class)
+                .setParameter("minBalance", minBalanceInCents)
+                .setFirstResult((int) pageable.getOffset())
+                .setMaxResults(pageable.getPageSize())
+                .getResultList();
+        return PageableExecutionUtils.getPage(content, pageable, () -> entityManager.createQuery(
+                        "select count(a) from Account a" + MIN_BALANCE_CONDITION, Long.class)
+                .setParameter("minBalance", minBalanceInCents)
+                .getSingleResult());
+    }
+
+    @Override
+    public Optional<Account> withdrawIfEnoughFunds(UUID accountNumber, int amountInCents, Integer version) {
+        NativeQuery<?> query = entityManager.createNativeQuery(version == null ? WITHDRAW + ") a" : WITHDRAW + " and version = :version) a")
+                .unwrap(NativeQuery.class)
+                .addEntity("a", Account.class)
+                .addScalar("debited_version", IntegerType.INSTANCE)
+                .setParameter("amountInCents", amountInCents)
+                .setParameter("accountNumber", UUID_CONVERTER.convertToDatabaseColumn(accountNumber));
+        if (version != null)
+            query.setParameter("version", version);
+        List<?> rows = query.getResultList();
+        if (rows.isEmpty()) return Optional.empty();
+        Object[] row = (Object[]) rows.get(0);
+        Account account = (Account) row[0];
+        // Already in the persistence context, with the state it had before the debit
+        if (!account.getVersion().equals(row[1]))
+            entityManager.refresh(account);
+        return Optional.of(account);
     }
 }
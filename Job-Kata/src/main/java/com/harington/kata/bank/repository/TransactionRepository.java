@@ -1,9 +1,100 @@
 package com.harington.kata.bank.repository;
 
+import com.harington.kata.bank.entity.Account;
 import com.harington.kata.bank.entity.Transaction;
+import org.springframework.data.domain.Pageable;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.jpa.repository.QueryHints;
+import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 
+import javax.persistence.QueryHint;
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.Optional;
+import java.util.UUID;
+import java.util.stream.Stream;
+
+import static org.hibernate.jpa.QueryHints.HINT_FETCH_SIZE;
+import static org.hibernate.jpa.QueryHints.HINT_READONLY;
+
 @Repository
 public interface TransactionRepository extends JpaRepository<Transaction, Long> {
+    int EXPORT_FETCH_SIZE = 500;
+
+    Optional<Transaction> findOneByIdempotencyKey(String idempotencyKey);
+
+    /**
+     * Head of an account's event stream : its transaction of greatest {@link Transaction#getSequence()}.
+     * Served by the {@link Transaction#ACCOUNT_SEQUENCE_UK} index.
+     */
+    Optional<Transaction> findFirstByAccountAndSequenceNotNullOrderBySequenceDesc(Account account);
+
+    /**
+     * Sequence of the head of an account's event stream, without loading the account. Empty when
+     * nothing was appended to it (or it doesn't exist).
+     */
+    @Query("select max(t.sequence) from Transaction t where t.account.accountNumber = :accountNumber")
+    Optional<Integer> findLastSequenceByAccountNumber(@Param("accountNumber") UUID accountNumber);
+
+    /**
+     * Sum of the signed amounts of all the account's transactions
+     */
+    @Query("select coalesce(sum(case when t.txType = com.harington.kata.bank.entity.Transaction$TxType.DEPOSIT"
+            + " then t.amountInCents else -t.amountInCents end), 0) as deltaInCents,"
+            + " max(t.sequence) as lastSequence from Transaction t where t.account = :account")
+    StreamFold foldAll(@Param("account") Account account);
+
+    /**
+     * Sum of the signed amounts of the account's transactions that follow {@code sequence} in its stream
+     */
+    @Query("select coalesce(sum(case when t.txType = com.harington.kata.bank.entity.Transaction$TxType.DEPOSIT"
+            + " then t.amountInCents else -t.amountInCents end), 0) as deltaInCents,"
+            + " max(t.sequence) as lastSequence from Transaction t where t.account = :account and t.sequence > :sequence")
+    StreamFold foldAfter(@Param("account") Account account, @Param("sequence") int sequence);
+
+    /**
+     * First page of an account's history, newest first. Served by the
+     * {@link Transaction#ACCOUNT_AT_ID_IDX} index.
+     */
+    @Query("select t from Transaction t where t.account = :account"
+            + " order by t.transactionAt desc, t.id desc")
+    List<Transaction> findLatestByAccount(@Param("account") Account account, Pageable pageable);
+
+    /**
+     * Keyset page of an account's history : the transactions strictly older than
+     * {@code (transactionAt, id)}, newest first.
+     */
+    @Query("select t from Transaction t where t.account = :account"
+            + " and (t.transactionAt < :transactionAt or (t.transactionAt = :transactionAt and t.id < :id))"
+            + " order by t.transactionAt desc, t.id desc")
+    List<Transaction> findByAccountBefore(@Param("account") Account account,
+                                          @Param("transactionAt") LocalDateTime transactionAt,
+                                          @Param("id") long id,
+                                          Pageable pageable);
+
+    /**
+     * All of an account's history, newest first, read through a forward-only cursor fetching
+     * {@value #EXPORT_FETCH_SIZE} rows at a time. Must be consumed, and closed, within a DB transaction.
+     */
+    @QueryHints({
+            @QueryHint(name = HINT_FETCH_SIZE, value = "" + EXPORT_FETCH_SIZE),
+            @QueryHint(name = HINT_READONLY, value = "true")
+    })
+    @Query("select t from Transaction t where t.account = :account"
+            + " order by t.transactionAt desc, t.id desc")
+    Stream<Transaction> streamAllByAccount(@Param("account") Account account);
+
+    /**
+     * Balance change brought by a range of an account's transactions
+     */
+    interface StreamFold {
+        Number getDeltaInCents();
+
+        /**
+         * @return the greatest {@link Transaction#getSequence()} of the range, null when none
+         */
+        Integer getLastSequence();
+    }
 }
@@ -0,0 +1,73 @@
+package com.harington.kata.bank.service;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.harington.kata.bank.entity.dto.AccountDto;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.cache.CaffeineCacheMetrics;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.time.Duration;
+import java.util.Optional;
+import java.util.UUID;
+import java.util.function.Function;
+
+/**
+ * Bounded, time-evicted cache of the {@link AccountDto} read by account number.
+ * <p>
+ * Writers evict the account once their DB transaction is over ({@link #evictAfterCompletion(UUID)}).
+ * Loads and evictions of a same account are atomic : a load that read the account before a write
+ * committed can't be stored after the write's eviction, so a node never serves a balance older than
+ * its own last write. Writes of other nodes are only seen after {@code bank.account-cache.ttl-seconds}.
+ * Statistics are published under the {@value #CACHE_NAME} cache name.
+ */
+@Component
+public class AccountCache {
+    public static final String CACHE_NAME = "accounts";
+    private final Cache<UUID, AccountDto> accounts;
+
+    public AccountCache(@Value("${bank.account-cache.size:10000}") long size,
+                        @Value("${bank.account-cache.ttl-seconds:60}") long ttlSeconds,
+                        MeterRegistry meterRegistry) {
+        this.accounts = Caffeine.newBuilder()
+                .maximumSize(size)
+                .expireAfterWrite(Duration.ofSeconds(ttlSeconds))
+                .recordStats()
+                .build();
+        CaffeineCacheMetrics.monitor(meterRegistry, accounts, CACHE_NAME);
+    }
+
+    /**
+     * Returns the cached account, or loads it with {@code loader} (missing accounts are not cached)
+     */
+    public Optional<AccountDto> get(UUID accountNumber, Function<UUID, Optional<AccountDto>> loader) {
+        return Optional.ofNullable(accounts.get(accountNumber, number -> loader.apply(number).orElse(null)));
+    }
+
+    public Optional<AccountDto> getIfPresent(UUID accountNumber) {
+        return Optional.ofNullable(accounts.getIfPresent(accountNumber));
+    }
+
+    /**
+     * Evicts the account when the current DB transaction completes, or right away outside of a transaction
+     */
+    public void evictAfterCompletion(UUID accountNumber) {
+        if (!TransactionSynchronizationManager.isSynchronizationActive()) {
+            accounts.invalidate(accountNumber);
+            return;
+        }
+        TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+            @Override
+            public void afterCompletion(int status) {
+                accounts.invalidate(accountNumber);
+            }
+        });
+    }
+
+    public void evictAll() {
+        accounts.invalidateAll();
+    }
+}
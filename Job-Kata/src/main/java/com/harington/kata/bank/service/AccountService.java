@@ -2,52 +2,166 @@ package com.harington.kata.bank.service;
 
 import com.harington.kata.bank.entity.Account;
 import com.harington.kata.bank.entity.dto.AccountDto;
+import com.harington.kata.bank.entity.dto.AccountRequestDto;
 import com.harington.kata.bank.entity.dto.transformers.AccountDtoTransformer;
+import com.harington.kata.bank.exceptions.InvalidOperationException;
+import com.harington.kata.bank.monitoring.LedgerMetrics;
 import com.harington.kata.bank.repository.AccountRepository;
 import lombok.RequiredArgsConstructor;
+import org.springframework.data.domain.Page;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.domain.Sort;
 import org.springframework.lang.NonNull;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
 import org.springframework.validation.annotation.Validated;
 
+import javax.persistence.EntityManager;
+import javax.validation.ConstraintViolation;
+import javax.validation.Validator;
 import javax.validation.constraints.Min;
 import javax.validation.constraints.NotEmpty;
 import javax.validation.constraints.NotNull;
 import javax.validation.constraints.Size;
 import java.time.LocalDateTime;
-import java.util.List;
-import java.util.Optional;
-import java.util.UUID;
+import java.util.*;
 import java.util.stream.Collectors;
 
 @Service
 @RequiredArgsConstructor
 @Validated
 public class AccountService {
+    private static final String ID_PROPERTY = "id";
+    public static final Set<String> SORTABLE_PROPERTIES = Set.of(ID_PROPERTY, "accountNumber", "ownerName",
+            "createdAt", "currentBalanceInCents");
+    public static final int MAX_BULK_SIZE = 100_000;
+    /**
+     * Accounts inserted per flush by {@link #createNewAccounts(List)}
+     */
+    public static final int BULK_CHUNK_SIZE = 1_000;
     private final AccountRepository accountRepository;
+    private final EntityManager entityManager;
+    private final AccountCache accountCache;
+    private final LedgerMetrics ledgerMetrics;
+    private final Validator validator;
+    private final EventSourcedLedger eventSourcedLedger;
 
     public @NonNull AccountDto createNewAccount(
             @NotNull @NotEmpty @Size(min = 3) String ownerName,
             @Min(0) int initialBalanceInCents) {
-        Account account = accountRepository.save(Account.builder()
+        Account account = accountRepository.save(newAccount(ownerName, initialBalanceInCents));
+        return AccountDtoTransformer.fromEntity(account);
+    }
+
+    /**
+     * Creates many accounts at once, all or none. Every request is validated before the first
+     * insert, then accounts are saved {@link #BULK_CHUNK_SIZE} at a time : each chunk is flushed as
+     * JDBC batches (ids come from a pooled sequence) and detached so that the persistence context
+     * stays small.
+     *
+     * @param requests
+     * @return the created accounts, in the requests order
+     */
+    @Transactional
+    public List<AccountDto> createNewAccounts(@NotNull List<AccountRequestDto> requests) {
+        if (requests.size() > MAX_BULK_SIZE)
+            throw new InvalidOperationException(String.format("At most %d accounts can be created at once", MAX_BULK_SIZE));
+        for (int i = 0; i < requests.size(); i++) {
+            if (requests.get(i) == null)
+                throw new InvalidOperationException(String.format("Account #%d : request is missing", i));
+            Set<ConstraintViolation<AccountRequestDto>> violations = validator.validate(requests.get(i));
+            if (!violations.isEmpty())
+                throw new InvalidOperationException(String.format("Account #%d : %s", i, violations.stream()
+                        .map(v -> v.getPropertyPath() + " " + v.getMessage())
+                        .collect(Collectors.joining(", "))));
+        }
+        List<AccountDto> created = new ArrayList<>(requests.size());
+        for (int from = 0; from < requests.size(); from += BULK_CHUNK_SIZE) {
+            List<Account> chunk = requests.subList(from, Math.min(from + BULK_CHUNK_SIZE, requests.size()))
+                    .stream()
+                    .map(request -> newAccount(request.getOwnerName(), request.getInitialBalanceInCents()))
+                    .collect(Collectors.toList());
+            accountRepository.saveAll(chunk);
+            accountRepository.flush();
+            entityManager.clear();
+            chunk.forEach(account -> created.add(AccountDtoTransformer.fromEntity(account)));
+        }
+        return created;
+    }
+
+    private static Account newAccount(String ownerName, int initialBalanceInCents) {
+        return Account.builder()
                 .createdAt(LocalDateTime.now())
                 .ownerName(ownerName)
                 .currentBalanceInCents(initialBalanceInCents)
                 .initialBalanceInCents(initialBalanceInCents)
                 .accountNumber(UUID.randomUUID())
-                .build());
-        return AccountDtoTransformer.fromEntity(account);
+                .build();
     }
 
-    public List<AccountDto> getAllAccounts() {
-        return accountRepository.findAll()
-                .stream()
-                .map(AccountDtoTransformer::fromEntity)
-                .collect(Collectors.toList());
+    /**
+     * Returns a page of accounts. Only the listed columns are read, sorting is restricted to
+     * {@link #SORTABLE_PROPERTIES} and always ends with the id so that pages are stable.
+     *
+     * @param pageable
+     * @return
+     */
+    public Page<AccountDto> getAllAccounts(@NotNull Pageable pageable) {
+        return accountRepository.findAllSummaries(withStableSort(pageable))
+                .map(AccountDtoTransformer::fromSummary);
     }
 
+    /**
+     * Returns a page of the accounts whose current balance is at least {@code minBalanceInCents}.
+     *
+     * @param minBalanceInCents
+     * @param pageable
+     * @return
+     */
+    public Page<AccountDto> getAccountsWithBalanceAtLeast(int minBalanceInCents, @NotNull Pageable pageable) {
+        if (minBalanceInCents < 0)
+            throw new InvalidOperationException("Minimum balance must be positive");
+        return accountRepository.findAccountsWithBalanceAtLeast(minBalanceInCents, withStableSort(pageable))
+                .map(AccountDtoTransformer::fromSummary);
+    }
+
+    private static Pageable withStableSort(Pageable pageable) {
+        Sort sort = pageable.getSort();
+        for (Sort.Order order : sort)
+            if (!SORTABLE_PROPERTIES.contains(order.getProperty()))
+                throw new InvalidOperationException(String.format("Accounts can not be sorted by %s", order.getProperty()));
+        if (sort.getOrderFor(ID_PROPERTY) == null)
+            sort = sort.and(Sort.by(ID_PROPERTY));
+        return PageRequest.of(pageable.getPageNumber(), pageable.getPageSize(), sort);
+    }
+
+    /**
+     * Returns the account, served from {@link AccountCache} when it was read recently. In
+     * event-sourced mode its balance and version are those of its stream head, see {@link EventSourcedLedger#toDto(Account)}.
+     *
+     * @param accountNumber
+     * @return
+     */
     public Optional<AccountDto> findByAccountNumber(UUID accountNumber) {
-        var x = accountRepository.trouverAccountsBalance(accountNumber, 100_00);
-        return accountRepository.findOneByAccountNumber(accountNumber)
-                .map(AccountDtoTransformer::fromEntity);
+        Optional<AccountDto> account = accountCache.get(accountNumber, number -> accountRepository.findOneByAccountNumber(number)
+                .map(eventSourcedLedger.isEnabled() ? eventSourcedLedger::toDto : AccountDtoTransformer::fromEntity));
+        if (account.isEmpty())
+            ledgerMetrics.notFound(LedgerMetrics.ACCOUNT_READ);
+        return account;
+    }
+
+    /**
+     * Returns the version of the account, from {@link AccountCache} or else without loading the account
+     *
+     * @param accountNumber
+     * @return
+     */
+    public Optional<Integer> findVersionByAccountNumber(UUID accountNumber) {
+        return accountCache.getIfPresent(accountNumber)
+                .map(AccountDto::getVersion)
+                .or(() -> eventSourcedLedger.isEnabled()
+                        ? eventSourcedLedger.findVersion(accountNumber)
+                        : accountRepository.findVersionByAccountNumber(accountNumber));
     }
 }
@@ -0,0 +1,108 @@
+package com.harington.kata.bank.service;
+
+import com.harington.kata.bank.exceptions.InvalidOperationException;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.Supplier;
+
+/**
+ * Serializes in-process the writes on a same account, so that concurrent operations wait for each
+ * other instead of running their DB transactions fully and failing on the account version.
+ * <p>
+ * Accounts are mapped on a fixed number of lock stripes (two accounts may share a stripe), the lock
+ * must be taken before the operation opens its DB transaction. Disabled by default
+ * ({@code bank.write-serialization.enabled}) : operations then run straight away and rely on
+ * optimistic locking only. Only serializes the requests of this instance.
+ * <p>
+ * Transfers take the stripes of both their accounts, always in stripe order. Batches are not
+ * serialized (a chunk may update hundreds of accounts) : an operation may still fail on the account
+ * version when a batch updated the account concurrently.
+ */
+@Component
+public class AccountWriteSerializer {
+    private final boolean enabled;
+    private final long maxWaitMs;
+    private final ReentrantLock[] stripes;
+
+    public AccountWriteSerializer(@Value("${bank.write-serialization.enabled:false}") boolean enabled,
+                                  @Value("${bank.write-serialization.stripes:1024}") int stripes,
+                                  @Value("${bank.write-serialization.max-wait-ms:5000}") long maxWaitMs) {
+        if (Integer.bitCount(stripes) != 1)
+            throw new IllegalArgumentException("bank.write-serialization.stripes must be a power of 2");
+        this.enabled = enabled;
+        this.maxWaitMs = maxWaitMs;
+        this.stripes = new ReentrantLock[stripes];
+        for (int i = 0; i < stripes; i++)
+            this.stripes[i] = new ReentrantLock();
+    }
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    /**
+     * Runs {@code operation} holding the lock of {@code accountNumber} when enabled.
+     *
+     * @throws InvalidOperationException when the lock can't be taken within {@code bank.write-serialization.max-wait-ms}
+     */
+    public <T> T execute(UUID accountNumber, Supplier<T> operation) {
+        if (!enabled) return operation.get();
+        ReentrantLock lock = stripeOf(accountNumber);
+        lock(lock);
+        try {
+            return operation.get();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Runs {@code operation} holding the locks of both accounts when enabled (transfers). Stripes are
+     * always locked in the same order, so that operations crossing each other can't deadlock.
+     *
+     * @throws InvalidOperationException when a lock can't be taken within {@code bank.write-serialization.max-wait-ms}
+     */
+    public <T> T execute(UUID accountNumber, UUID otherAccountNumber, Supplier<T> operation) {
+        if (!enabled) return operation.get();
+        int stripe = stripeIndexOf(accountNumber);
+        int otherStripe = stripeIndexOf(otherAccountNumber);
+        if (stripe == otherStripe)
+            return execute(accountNumber, operation);
+        ReentrantLock first = stripes[Math.min(stripe, otherStripe)];
+        ReentrantLock second = stripes[Math.max(stripe, otherStripe)];
+        lock(first);
+        try {
+            lock(second);
+            try {
+                return operation.get();
+            } finally {
+                second.unlock();
+            }
+        } finally {
+            first.unlock();
+        }
+    }
+
+    private void lock(ReentrantLock lock) {
+        try {
+            if (!lock.tryLock(maxWaitMs, TimeUnit.MILLISECONDS))
+                throw new InvalidOperationException("Account is too busy, please retry later");
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InvalidOperationException("Interrupted while waiting for the account");
+        }
+    }
+
+    private ReentrantLock stripeOf(UUID accountNumber) {
+        return stripes[stripeIndexOf(accountNumber)];
+    }
+
+    private int stripeIndexOf(UUID accountNumber) {
+        int hash = accountNumber.hashCode();
+        return (hash ^ (hash >>> 16)) & (stripes.length - 1);
+    }
+}
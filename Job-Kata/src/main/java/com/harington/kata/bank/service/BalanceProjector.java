@@ -0,0 +1,207 @@
+package com.harington.kata.bank.service;
+
+import com.harington.kata.bank.entity.Account;
+import com.harington.kata.bank.entity.AccountSnapshot;
+import com.harington.kata.bank.entity.Transaction;
+import com.harington.kata.bank.repository.AccountRepository;
+import com.harington.kata.bank.repository.AccountSnapshotRepository;
+import com.harington.kata.bank.repository.TransactionRepository;
+import com.harington.kata.bank.repository.TransactionRepository.StreamFold;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import javax.annotation.PreDestroy;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * Maintains the balance and version of the accounts from their event streams (event-sourced mode,
+ * see {@link EventSourcedLedger}).
+ * <p>
+ * Accounts appended to are queued once the append commits and brought up to their stream head by a
+ * single background thread : an account appended to many times between two passes is updated once.
+ * Every {@code bank.event-sourcing.snapshot-every} events the projected balance is also stored as an
+ * {@link AccountSnapshot}, so that {@link #rebuildAll()} only folds the events that follow the latest
+ * snapshot of each account. Queued accounts are lost on shutdown : projections are rebuilt at startup.
+ */
+@Component
+@Slf4j
+public class BalanceProjector {
+    /**
+     * Accounts rebuilt in a row by a thread of {@link #rebuildAll()}
+     */
+    public static final int REBUILD_CHUNK_SIZE = 1_000;
+    private final boolean enabled;
+    private final int snapshotEvery;
+    private final int rebuildThreads;
+    private final AccountRepository accountRepository;
+    private final TransactionRepository transactionRepository;
+    private final AccountSnapshotRepository snapshotRepository;
+    private final TransactionTemplate transactionTemplate;
+    private final AccountCache accountCache;
+    private final Set<Long> pending = ConcurrentHashMap.newKeySet();
+    private final AtomicBoolean passScheduled = new AtomicBoolean();
+    private final ExecutorService projectorThread = Executors.newSingleThreadExecutor(
+            runnable -> new Thread(runnable, "balance-projector"));
+
+    public BalanceProjector(@Value("${bank.event-sourcing.enabled:false}") boolean enabled,
+                            @Value("${bank.event-sourcing.snapshot-every:100}") int snapshotEvery,
+                            @Value("${bank.event-sourcing.rebuild-threads:4}") int rebuildThreads,
+                            AccountRepository accountRepository,
+                            TransactionRepository transactionRepository,
+                            AccountSnapshotRepository snapshotRepository,
+                            TransactionTemplate transactionTemplate,
+                            AccountCache accountCache) {
+        if (snapshotEvery < 1 || rebuildThreads < 1)
+            throw new IllegalArgumentException("bank.event-sourcing.snapshot-every and rebuild-threads must be positive");
+        this.enabled = enabled;
+        this.snapshotEvery = snapshotEvery;
+        this.rebuildThreads = rebuildThreads;
+        this.accountRepository = accountRepository;
+        this.transactionRepository = transactionRepository;
+        this.snapshotRepository = snapshotRepository;
+        this.transactionTemplate = transactionTemplate;
+        this.accountCache = accountCache;
+    }
+
+    /**
+     * Queues the account for projection once the current DB transaction commits
+     */
+    public void projectAfterCommit(long accountId) {
+        TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+            @Override
+            public void afterCommit() {
+                pending.add(accountId);
+                if (passScheduled.compareAndSet(false, true))
+                    projectorThread.execute(() -> {
+                        passScheduled.set(false);
+                        projectQueued();
+                    });
+            }
+        });
+    }
+
+    /**
+     * Runs a pass on the projector thread and waits for it : the passes already running or scheduled,
+     * which may hold accounts already taken off the queue, are over when it returns
+     */
+    void projectPending() {
+        try {
+            projectorThread.submit(this::projectQueued).get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Interrupted while projecting the balances", e);
+        } catch (ExecutionException e) {
+            throw new IllegalStateException("Balances projection failed", e.getCause());
+        }
+    }
+
+    private void projectQueued() {
+        for (Iterator<Long> it = pending.iterator(); it.hasNext(); ) {
+            long accountId = it.next();
+            it.remove();
+            try {
+                project(accountId);
+            } catch (RuntimeException e) {
+                // Caught up by its next append, or the next rebuild
+                log.warn("Projection of account {} failed", accountId, e);
+            }
+        }
+    }
+
+    private void project(long accountId) {
+        transactionTemplate.executeWithoutResult(status -> {
+            Account acc = accountRepository.findById(accountId).orElse(null);
+            if (acc == null) return;
+            Transaction head = transactionRepository.findFirstByAccountAndSequenceNotNullOrderBySequenceDesc(acc)
+                    .orElse(null);
+            if (head == null || head.getSequence() <= acc.getVersion()) return;
+            int projectedVersion = acc.getVersion();
+            if (accountRepository.projectBalance(accountId, head.getPostTxAccountBalanceInCents(), head.getSequence()) == 0)
+                return;
+            if (head.getSequence() / snapshotEvery > projectedVersion / snapshotEvery)
+                snapshotRepository.save(AccountSnapshot.builder()
+                        .account(accountRepository.getReferenceById(accountId))
+                        .sequence(head.getSequence())
+                        .balanceInCents(head.getPostTxAccountBalanceInCents())
+                        .takenAt(LocalDateTime.now())
+                        .build());
+            accountCache.evictAfterCompletion(acc.getAccountNumber());
+        });
+    }
+
+    /**
+     * Recomputes the balance and version of every account appended to in event-sourced mode, from its
+     * latest snapshot and the events that follow (from its initial balance and all its transactions
+     * without snapshot). Accounts are split between {@code bank.event-sourcing.rebuild-threads}
+     * threads, each account is rebuilt in its own DB transaction.
+     *
+     * @return the number of accounts read
+     */
+    public int rebuildAll() {
+        List<Long> ids = accountRepository.findAllIds();
+        ExecutorService threads = Executors.newFixedThreadPool(rebuildThreads,
+                runnable -> new Thread(runnable, "balance-rebuild"));
+        try {
+            List<Future<?>> chunks = new ArrayList<>();
+            for (int from = 0; from < ids.size(); from += REBUILD_CHUNK_SIZE) {
+                List<Long> chunk = ids.subList(from, Math.min(from + REBUILD_CHUNK_SIZE, ids.size()));
+                chunks.add(threads.submit(() -> chunk.forEach(this::rebuild)));
+            }
+            for (Future<?> chunk : chunks)
+                chunk.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Interrupted while rebuilding the balances", e);
+        } catch (ExecutionException e) {
+            throw new IllegalStateException("Balances rebuild failed", e.getCause());
+        } finally {
+            threads.shutdownNow();
+        }
+        return ids.size();
+    }
+
+    private void rebuild(long accountId) {
+        transactionTemplate.executeWithoutResult(status -> {
+            Account acc = accountRepository.findById(accountId).orElse(null);
+            if (acc == null) return;
+            Optional<AccountSnapshot> snapshot = snapshotRepository.findFirstByAccountOrderBySequenceDesc(acc);
+            StreamFold fold = snapshot.isPresent()
+                    ? transactionRepository.foldAfter(acc, snapshot.get().getSequence())
+                    : transactionRepository.foldAll(acc);
+            Integer lastSequence = fold.getLastSequence() != null ? fold.getLastSequence()
+                    : snapshot.map(AccountSnapshot::getSequence).orElse(null);
+            // Never appended to : the account row is the source of truth
+            if (lastSequence == null) return;
+            int balance = snapshot.map(AccountSnapshot::getBalanceInCents).orElse(acc.getInitialBalanceInCents())
+                    + fold.getDeltaInCents().intValue();
+            accountRepository.resetBalance(accountId, balance, lastSequence);
+            accountCache.evictAfterCompletion(acc.getAccountNumber());
+        });
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void rebuildAtStartup() {
+        if (!enabled) return;
+        long begin = System.nanoTime();
+        int accounts = rebuildAll();
+        log.info("Rebuilt the balances of {} accounts in {} ms", accounts, (System.nanoTime() - begin) / 1_000_000);
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        projectorThread.shutdown();
+    }
+}
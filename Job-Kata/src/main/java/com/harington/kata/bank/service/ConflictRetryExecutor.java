@@ -0,0 +1,71 @@
+package com.harington.kata.bank.service;
+
+import com.harington.kata.bank.exceptions.ConcurrentUpdateException;
+import com.harington.kata.bank.monitoring.LedgerMetrics;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.dao.OptimisticLockingFailureException;
+import org.springframework.stereotype.Component;
+
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.function.Supplier;
+
+/**
+ * Runs an operation again when it loses an optimistic-lock race on an account, waiting a random
+ * time bounded by an exponential backoff (full jitter) between attempts.
+ * <p>
+ * The operation must start its own DB transaction, so that each attempt re-reads the account.
+ * Retries and given up operations are counted in {@link LedgerMetrics}, which also counts the
+ * conflicts of each attempt.
+ */
+@Component
+public class ConflictRetryExecutor {
+    private final int maxAttempts;
+    private final long initialBackoffMs;
+    private final long maxBackoffMs;
+    private final LedgerMetrics ledgerMetrics;
+
+    public ConflictRetryExecutor(@Value("${bank.retry.max-attempts:5}") int maxAttempts,
+                                 @Value("${bank.retry.initial-backoff-ms:5}") long initialBackoffMs,
+                                 @Value("${bank.retry.max-backoff-ms:200}") long maxBackoffMs,
+                                 LedgerMetrics ledgerMetrics) {
+        if (maxAttempts < 1)
+            throw new IllegalArgumentException("bank.retry.max-attempts must be at least 1");
+        this.maxAttempts = maxAttempts;
+        this.initialBackoffMs = initialBackoffMs;
+        this.maxBackoffMs = maxBackoffMs;
+        this.ledgerMetrics = ledgerMetrics;
+    }
+
+    /**
+     * @param operationTag {@link LedgerMetrics#TRANSFER} or the tag of a deposit or a withdrawal, see {@link LedgerMetrics#tagOf}
+     * @param operation
+     * @return the result of the first attempt that didn't conflict
+     * @throws ConcurrentUpdateException when every attempt conflicted
+     */
+    public <T> T execute(String operationTag, Supplier<T> operation) {
+        for (int attempt = 1; ; attempt++) {
+            try {
+                return operation.get();
+            } catch (ConcurrentUpdateException | OptimisticLockingFailureException e) {
+                if (attempt >= maxAttempts) {
+                    ledgerMetrics.retriesExhausted(operationTag);
+                    throw new ConcurrentUpdateException(String.format(
+                            "Account is updated concurrently, operation given up after %d attempts", attempt));
+                }
+                ledgerMetrics.retry(operationTag);
+                backoff(attempt);
+            }
+        }
+    }
+
+    private void backoff(int attempt) {
+        long bound = Math.min(maxBackoffMs, initialBackoffMs << Math.min(attempt - 1, 20));
+        if (bound <= 0) return;
+        try {
+            Thread.sleep(ThreadLocalRandom.current().nextLong(bound + 1));
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new ConcurrentUpdateException("Interrupted while waiting to retry the operation");
+        }
+    }
+}
@@ -0,0 +1,156 @@
+package com.harington.kata.bank.service;
+
+import com.harington.kata.bank.entity.Account;
+import com.harington.kata.bank.entity.Transaction;
+import com.harington.kata.bank.entity.dto.AccountDto;
+import com.harington.kata.bank.entity.dto.TransactionDto;
+import com.harington.kata.bank.entity.dto.transformers.AccountDtoTransformer;
+import com.harington.kata.bank.exceptions.ConcurrentUpdateException;
+import com.harington.kata.bank.exceptions.EntityNotFoundException;
+import com.harington.kata.bank.exceptions.InsufficientFundsException;
+import com.harington.kata.bank.repository.AccountRepository;
+import com.harington.kata.bank.repository.TransactionRepository;
+import org.hibernate.exception.ConstraintViolationException;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.stereotype.Component;
+
+import java.time.LocalDateTime;
+import java.util.Locale;
+import java.util.Optional;
+import java.util.UUID;
+
+/**
+ * Append-only ledger (event-sourced mode, {@code bank.event-sourcing.enabled}) : deposits and
+ * withdrawals are appended to their account's event stream as {@link Transaction} rows numbered by
+ * {@link Transaction#getSequence()}, the account row is left untouched. The head of the stream holds
+ * the current balance ; the balance and version of the account are a projection brought up to date
+ * by {@link BalanceProjector} once the append is committed.
+ * <p>
+ * The version an operation is based on is the sequence of the stream head, two appends at a same
+ * position conflict on {@link Transaction#ACCOUNT_SEQUENCE_UK}. The stream of an account starts
+ * after the version and balance it had when the mode was enabled. Reads of an account, its ETag
+ * and its history's version are taken from the stream head too (see {@link #toDto(Account)}), so
+ * that a client never gets a version the projection hasn't reached yet rejected.
+ */
+@Component
+public class EventSourcedLedger {
+    private final boolean enabled;
+    private final AccountRepository accountRepository;
+    private final TransactionRepository transactionRepository;
+    private final BalanceProjector balanceProjector;
+    private final AccountCache accountCache;
+
+    public EventSourcedLedger(@Value("${bank.event-sourcing.enabled:false}") boolean enabled,
+                              AccountRepository accountRepository,
+                              TransactionRepository transactionRepository,
+                              BalanceProjector balanceProjector,
+                              AccountCache accountCache) {
+        this.enabled = enabled;
+        this.accountRepository = accountRepository;
+        this.transactionRepository = transactionRepository;
+        this.balanceProjector = balanceProjector;
+        this.accountCache = accountCache;
+    }
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    /**
+     * Appends a deposit or a withdrawal to the account's stream, within the current DB transaction.
+     * A null {@code accountVersion} stands for the current stream head.
+     *
+     * @throws ConcurrentUpdateException when {@code accountVersion} is not the head's sequence, or
+     *                                   another operation was appended at the same position
+     * @throws InsufficientFundsException when a withdrawal would leave a negative balance
+     */
+    public TransactionDto append(UUID accountNumber, Transaction.TxType type, int amountInCents,
+                                 String description, Integer accountVersion, String idempotencyKey) {
+        Account acc = accountRepository.findOneByAccountNumber(accountNumber)
+                .orElseThrow(EntityNotFoundException::new);
+        Transaction head = transactionRepository.findFirstByAccountAndSequenceNotNullOrderBySequenceDesc(acc)
+                .orElse(null);
+        int sequence = head == null ? acc.getVersion() : head.getSequence();
+        int balance = head == null ? acc.getCurrentBalanceInCents() : head.getPostTxAccountBalanceInCents();
+        if (accountVersion != null && accountVersion != sequence)
+            throw staleVersion(acc);
+        int postTxBalance = balance + (type == Transaction.TxType.DEPOSIT ? amountInCents : -amountInCents);
+        if (postTxBalance < 0)
+            throw new InsufficientFundsException(String.format("Account's (ID %s) balance is not enough", acc.getId()));
+        Transaction tx = Transaction.builder()
+                .txRef(UUID.randomUUID())
+                .transactionAt(LocalDateTime.now())
+                .description(description)
+                .idempotencyKey(idempotencyKey)
+                .txType(type)
+                .amountInCents(amountInCents)
+                .postTxAccountBalanceInCents(postTxBalance)
+                .sequence(sequence + 1)
+                .account(acc)
+                .build();
+        try {
+            // Conflicts surface here rather than at commit
+            transactionRepository.saveAndFlush(tx);
+        } catch (DataIntegrityViolationException e) {
+            if (isSequenceConflict(e)) throw staleVersion(acc);
+            throw e;
+        }
+        balanceProjector.projectAfterCommit(acc.getId());
+        accountCache.evictAfterCompletion(accountNumber);
+        return TransactionDto.fromEntity(tx);
+    }
+
+    /**
+     * Returns the account with the balance and version of its stream head, which its projection may
+     * not have reached yet
+     */
+    public AccountDto toDto(Account acc) {
+        return transactionRepository.findFirstByAccountAndSequenceNotNullOrderBySequenceDesc(acc)
+                .filter(head -> head.getSequence() > acc.getVersion())
+                .map(head -> AccountDtoTransformer.fromEntity(acc, head.getPostTxAccountBalanceInCents(), head.getSequence()))
+                .orElseGet(() -> AccountDtoTransformer.fromEntity(acc));
+    }
+
+    /**
+     * @return the sequence of the account's stream head, see {@link #toDto(Account)}
+     */
+    public Integer versionOf(Account acc) {
+        return transactionRepository.findFirstByAccountAndSequenceNotNullOrderBySequenceDesc(acc)
+                .map(head -> Math.max(head.getSequence(), acc.getVersion()))
+                .orElse(acc.getVersion());
+    }
+
+    /**
+     * @return the sequence of the account's stream head without loading the account, empty when the
+     * account doesn't exist
+     */
+    public Optional<Integer> findVersion(UUID accountNumber) {
+        return transactionRepository.findLastSequenceByAccountNumber(accountNumber)
+                .or(() -> accountRepository.findVersionByAccountNumber(accountNumber));
+    }
+
+    private static boolean isSequenceConflict(DataIntegrityViolationException e) {
+        if (!(e.getCause() instanceof ConstraintViolationException)) return false;
+        String constraint = ((ConstraintViolationException) e.getCause()).getConstraintName();
+        return constraint != null && Transaction.ACCOUNT_SEQUENCE_UK.equalsIgnoreCase(constraintNameOf(constraint));
+    }
+
+    /**
+     * Bare name of a constraint extracted by the Hibernate dialect. Hibernate's H2 extractor returns
+     * {@code "SCHEMA.<constraint>_INDEX_x ON ..."} with H2 2.x : the schema, the backing index suffix and
+     * what follows are dropped.
+     */
+    static String constraintNameOf(String extracted) {
+        String name = extracted.replace("\"", "").trim();
+        int end = name.indexOf(' ');
+        if (end >= 0) name = name.substring(0, end);
+        name = name.substring(name.lastIndexOf('.') + 1);
+        int index = name.toUpperCase(Locale.ROOT).lastIndexOf("_INDEX_");
+        return index > 0 ? name.substring(0, index) : name;
+    }
+
+    private static ConcurrentUpdateException staleVersion(Account acc) {
+        return new ConcurrentUpdateException(String.format("Account with ID %s is no longer valid. Please refresh the page", acc.getId()));
+    }
+}
@@ -0,0 +1,115 @@
+package com.harington.kata.bank.service;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.harington.kata.bank.entity.Transaction;
+import com.harington.kata.bank.entity.dto.TransactionDto;
+import com.harington.kata.bank.entity.dto.TransactionRequestDto;
+import com.harington.kata.bank.exceptions.InvalidOperationException;
+import com.harington.kata.bank.repository.TransactionRepository;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.cache.CaffeineCacheMetrics;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.stereotype.Service;
+
+import java.time.Duration;
+import java.util.Optional;
+import java.util.UUID;
+import java.util.function.Supplier;
+
+/**
+ * Answers the retries of a posted operation (same {@code Idempotency-Key} header) with the
+ * transaction created by the first request instead of posting it again.
+ * <p>
+ * Keys are stored with their transaction (unique column) and the most recent ones are kept in a
+ * bounded, time-evicted cache, so that most retries don't reach the database. A key evicted from
+ * the cache (or posted by another node) is looked up in the database before posting, so that the
+ * retry is not rejected on the version or the balance the first request changed. A key used by two
+ * requests at the same time is resolved by the unique constraint.
+ */
+@Service
+public class IdempotencyService {
+    public static final String CACHE_NAME = "idempotency-keys";
+    private final TransactionRepository transactionRepository;
+    private final Cache<String, PostedOperation> recentKeys;
+
+    public IdempotencyService(TransactionRepository transactionRepository,
+                              @Value("${bank.idempotency.cache-size:100000}") long cacheSize,
+                              @Value("${bank.idempotency.ttl-minutes:60}") long ttlMinutes,
+                              MeterRegistry meterRegistry) {
+        this.transactionRepository = transactionRepository;
+        this.recentKeys = Caffeine.newBuilder()
+                .maximumSize(cacheSize)
+                .expireAfterWrite(Duration.ofMinutes(ttlMinutes))
+                .recordStats()
+                .build();
+        CaffeineCacheMetrics.monitor(meterRegistry, recentKeys, CACHE_NAME);
+    }
+
+    /**
+     * Posts {@code request} through {@code operation}, unless {@code idempotencyKey} was already
+     * used : the transaction posted the first time is then returned.
+     *
+     * @param operation posts the request, storing {@code idempotencyKey} with the transaction
+     * @throws InvalidOperationException when the key is invalid or was used for another operation
+     */
+    public TransactionDto execute(String idempotencyKey, TransactionRequestDto request, Supplier<TransactionDto> operation) {
+        if (idempotencyKey.isBlank() || idempotencyKey.length() > Transaction.IDEMPOTENCY_KEY_MAX_LENGTH)
+            throw new InvalidOperationException(String.format("Idempotency-Key must hold 1 to %d chars", Transaction.IDEMPOTENCY_KEY_MAX_LENGTH));
+        PostedOperation posted = recentKeys.getIfPresent(idempotencyKey);
+        if (posted == null) {
+            // Evicted from the cache, or never used
+            posted = findPosted(idempotencyKey).orElse(null);
+            if (posted == null)
+                try {
+                    posted = PostedOperation.of(request, operation.get());
+                } catch (DataIntegrityViolationException e) {
+                    // Posted by a concurrent request
+                    posted = findPosted(idempotencyKey).orElseThrow(() -> e);
+                }
+            recentKeys.put(idempotencyKey, posted);
+        }
+        if (!posted.isSameOperation(request))
+            throw new InvalidOperationException("Idempotency-Key was already used for another operation");
+        return posted.transaction;
+    }
+
+    public void evictAll() {
+        recentKeys.invalidateAll();
+    }
+
+    private Optional<PostedOperation> findPosted(String idempotencyKey) {
+        return transactionRepository.findOneByIdempotencyKey(idempotencyKey)
+                .map(tx -> new PostedOperation(tx.getAccount().getAccountNumber(), tx.getAmountInCents(),
+                        tx.getTxType(), TransactionDto.fromEntity(tx)));
+    }
+
+    /**
+     * Operation posted with a key : what was requested and the resulting transaction
+     */
+    private static final class PostedOperation {
+        final UUID accountNumber;
+        final int amountInCents;
+        final Transaction.TxType operation;
+        final TransactionDto transaction;
+
+        PostedOperation(UUID accountNumber, int amountInCents, Transaction.TxType operation, TransactionDto transaction) {
+            this.accountNumber = accountNumber;
+            this.amountInCents = amountInCents;
+            this.operation = operation;
+            this.transaction = transaction;
+        }
+
+        static PostedOperation of(TransactionRequestDto request, TransactionDto transaction) {
+            return new PostedOperation(request.getAccountNumber(), request.getAmountInCents(),
+                    request.getOperation(), transaction);
+        }
+
+        boolean isSameOperation(TransactionRequestDto request) {
+            return accountNumber.equals(request.getAccountNumber())
+                    && amountInCents == request.getAmountInCents()
+                    && operation == request.getOperation();
+        }
+    }
+}
@@ -0,0 +1,174 @@
+package com.harington.kata.bank.service;
+
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.harington.kata.bank.entity.Account;
+import com.harington.kata.bank.entity.Transaction;
+import com.harington.kata.bank.exceptions.EntityNotFoundException;
+import com.harington.kata.bank.exceptions.InvalidOperationException;
+import com.harington.kata.bank.formatters.AmountFormatter;
+import com.harington.kata.bank.formatters.DatesFormatter;
+import com.harington.kata.bank.repository.AccountRepository;
+import com.harington.kata.bank.repository.TransactionRepository;
+import lombok.RequiredArgsConstructor;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+
+import javax.persistence.EntityManager;
+import javax.validation.constraints.NotNull;
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.util.Iterator;
+import java.util.Locale;
+import java.util.UUID;
+import java.util.stream.Stream;
+
+/**
+ * Writes an account's whole history, newest first, as it is read from the database : rows come
+ * from a forward-only cursor ({@link TransactionRepository#streamAllByAccount(Account)}), each one is
+ * formatted into a reused buffer then detached, so that memory use doesn't grow with the history.
+ * Rows hold the fields of {@link com.harington.kata.bank.entity.dto.TransactionDto}.
+ */
+@Service
+@RequiredArgsConstructor
+public class TransactionExportService {
+    public static final String NDJSON_MEDIA_TYPE = "application/x-ndjson";
+    public static final String CSV_MEDIA_TYPE = "text/csv";
+    static final String[] COLUMNS = {"txRef", "accountBalance", "amount", "transactionAt", "description",
+            "accountNumber", "operation"};
+    private final AccountRepository accountRepository;
+    private final TransactionRepository transactionRepository;
+    private final EntityManager entityManager;
+    private final ObjectMapper objectMapper;
+
+    public enum Format {
+        /**
+         * One JSON object per line
+         */
+        NDJSON(NDJSON_MEDIA_TYPE),
+        /**
+         * RFC 4180, with a header line
+         */
+        CSV(CSV_MEDIA_TYPE);
+
+        private final String mediaType;
+
+        Format(String mediaType) {
+            this.mediaType = mediaType;
+        }
+
+        public String getMediaType() {
+            return mediaType;
+        }
+
+        public String getExtension() {
+            return name().toLowerCase(Locale.ROOT);
+        }
+
+        public static Format fromParameter(String format) {
+            for (Format value : values())
+                if (value.name().equalsIgnoreCase(format)) return value;
+            throw new InvalidOperationException(String.format("Export format must be ndjson or csv, not %s", format));
+        }
+    }
+
+    /**
+     * @param out left open, flushed
+     * @return the number of exported transactions
+     */
+    @Transactional(readOnly = true)
+    public long export(@NotNull UUID accountNumber, @NotNull Format format, @NotNull OutputStream out) throws IOException {
+        Account account = accountRepository.findOneByAccountNumber(accountNumber)
+                .orElseThrow(EntityNotFoundException::new);
+        Writer writer = new BufferedWriter(new OutputStreamWriter(out, StandardCharsets.UTF_8));
+        try (Stream<Transaction> txs = transactionRepository.streamAllByAccount(account)) {
+            return format == Format.NDJSON
+                    ? writeNdjson(txs.iterator(), accountNumber.toString(), writer)
+                    : writeCsv(txs.iterator(), accountNumber.toString(), writer);
+        } finally {
+            writer.flush();
+        }
+    }
+
+    private long writeNdjson(Iterator<Transaction> txs, String accountNumber, Writer writer) throws IOException {
+        char[] buffer = new char[Math.max(AmountFormatter.MAX_LENGTH, DatesFormatter.MAX_DATE_TIME_LENGTH)];
+        long count = 0;
+        JsonGenerator json = objectMapper.getFactory().createGenerator(writer);
+        json.disable(JsonGenerator.Feature.AUTO_CLOSE_TARGET);
+        json.setRootValueSeparator(null);
+        while (txs.hasNext()) {
+            Transaction tx = txs.next();
+            json.writeStartObject();
+            json.writeStringField(COLUMNS[0], tx.getTxRef().toString());
+            json.writeFieldName(COLUMNS[1]);
+            json.writeString(buffer, 0, AmountFormatter.writeCents(buffer, 0, tx.getPostTxAccountBalanceInCents()));
+            json.writeFieldName(COLUMNS[2]);
+            json.writeString(buffer, 0, AmountFormatter.writeCents(buffer, 0, tx.getAmountInCents()));
+            json.writeFieldName(COLUMNS[3]);
+            json.writeString(buffer, 0, DatesFormatter.writeDateTime(buffer, 0, tx.getTransactionAt()));
+            json.writeStringField(COLUMNS[4], tx.getDescription());
+            json.writeStringField(COLUMNS[5], accountNumber);
+            json.writeStringField(COLUMNS[6], tx.getTxType().name());
+            json.writeEndObject();
+            json.writeRaw('\n');
+            entityManager.detach(tx);
+            count++;
+        }
+        json.close();
+        return count;
+    }
+
+    private long writeCsv(Iterator<Transaction> txs, String accountNumber, Writer writer) throws IOException {
+        char[] buffer = new char[Math.max(AmountFormatter.MAX_LENGTH, DatesFormatter.MAX_DATE_TIME_LENGTH)];
+        long count = 0;
+        writer.write(String.join(",", COLUMNS));
+        writer.write("\r\n");
+        while (txs.hasNext()) {
+            Transaction tx = txs.next();
+            writer.write(tx.getTxRef().toString());
+            writer.write(',');
+            writer.write(buffer, 0, AmountFormatter.writeCents(buffer, 0, tx.getPostTxAccountBalanceInCents()));
+            writer.write(',');
+            writer.write(buffer, 0, AmountFormatter.writeCents(buffer, 0, tx.getAmountInCents()));
+            writer.write(',');
+            writer.write(buffer, 0, DatesFormatter.writeDateTime(buffer, 0, tx.getTransactionAt()));
+            writer.write(',');
+            writeCsvField(writer, tx.getDescription());
+            writer.write(',');
+            writer.write(accountNumber);
+            writer.write(',');
+            writer.write(tx.getTxType().name());
+            writer.write("\r\n");
+            entityManager.detach(tx);
+            count++;
+        }
+        return count;
+    }
+
+    /**
+     * Quoted, with its quotes doubled, when holding a separator, a quote or a line break
+     */
+    static void writeCsvField(Writer writer, String value) throws IOException {
+        if (value == null) return;
+        boolean quoted = false;
+        for (int i = 0; i < value.length() && !quoted; i++) {
+            char c = value.charAt(i);
+            quoted = c == ',' || c == '"' || c == '\r' || c == '\n';
+        }
+        if (!quoted) {
+            writer.write(value);
+            return;
+        }
+        writer.write('"');
+        for (int i = 0; i < value.length(); i++) {
+            char c = value.charAt(i);
+            if (c == '"') writer.write('"');
+            writer.write(c);
+        }
+        writer.write('"');
+    }
+}
@@ -1,93 +1,429 @@
 package com.harington.kata.bank.service;
 
+import com.harington.kata.bank.entity.Account;
 import com.harington.kata.bank.entity.Transaction;
+import com.harington.kata.bank.entity.dto.BatchItemResultDto;
+import com.harington.kata.bank.entity.dto.HistoryCursor;
 import com.harington.kata.bank.entity.dto.TransactionDto;
+import com.harington.kata.bank.entity.dto.TransactionHistoryPage;
+import com.harington.kata.bank.entity.dto.TransactionRequestDto;
+import com.harington.kata.bank.entity.dto.TransferDto;
+import com.harington.kata.bank.entity.dto.TransferRequestDto;
+import com.harington.kata.bank.exceptions.ConcurrentUpdateException;
 import com.harington.kata.bank.exceptions.EntityNotFoundException;
+import com.harington.kata.bank.exceptions.InsufficientFundsException;
 import com.harington.kata.bank.exceptions.InvalidOperationException;
+import com.harington.kata.bank.monitoring.LedgerMetrics;
 import com.harington.kata.bank.repository.AccountRepository;
+import com.harington.kata.bank.repository.TransactionRepository;
 import lombok.RequiredArgsConstructor;
+import org.springframework.dao.DataAccessException;
+import org.springframework.dao.OptimisticLockingFailureException;
+import org.springframework.data.domain.PageRequest;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionTemplate;
 import org.springframework.validation.annotation.Validated;
 
+import javax.persistence.EntityManager;
+import javax.persistence.LockModeType;
+import javax.persistence.LockTimeoutException;
+import javax.persistence.PessimisticLockException;
+import javax.validation.ConstraintViolation;
+import javax.validation.Valid;
+import javax.validation.Validator;
 import javax.validation.constraints.Min;
 import javax.validation.constraints.NotNull;
 import java.time.LocalDateTime;
-import java.util.List;
-import java.util.UUID;
+import java.util.*;
 import java.util.stream.Collectors;
 
 @Service
 @RequiredArgsConstructor
 @Validated
 public class TransactionService {
+    public static final int MAX_HISTORY_PAGE_SIZE = 500;
+    public static final int MAX_BATCH_SIZE = 10_000;
+    /**
+     * Operations posted per DB transaction by {@link #doBatch(List)}
+     */
+    public static final int BATCH_CHUNK_SIZE = 500;
     private final AccountRepository accountRepository;
+    private final TransactionRepository transactionRepository;
+    private final TransactionTemplate transactionTemplate;
+    private final EntityManager entityManager;
+    private final AccountCache accountCache;
+    private final LedgerMetrics ledgerMetrics;
+    private final EventSourcedLedger eventSourcedLedger;
+    private final Validator validator;
 
+    /**
+     * Credits the account and inserts the transaction. A null {@code accountVersion} skips the
+     * version check, concurrent updates are then only detected at flush by {@link Account#getVersion()}.
+     * {@code idempotencyKey} (may be null) is stored with the transaction, see {@link IdempotencyService}.
+     * In event-sourced mode the deposit is appended to the account's stream, see {@link EventSourcedLedger}.
+     */
     @Transactional
     public TransactionDto doDepositOn(@NotNull UUID accountNumber,
                                       @Min(1) int amountInCents,
                                       @NotNull String description,
-                                      int accountVersion) {
+                                      Integer accountVersion,
+                                      String idempotencyKey) {
+        return ledgerMetrics.record(Transaction.TxType.DEPOSIT,
+                () -> deposit(accountNumber, amountInCents, description, accountVersion, idempotencyKey));
+    }
+
+    private TransactionDto deposit(UUID accountNumber, int amountInCents, String description,
+                                   Integer accountVersion, String idempotencyKey) {
+        if (eventSourcedLedger.isEnabled())
+            return eventSourcedLedger.append(accountNumber, Transaction.TxType.DEPOSIT, amountInCents, description,
+                    accountVersion, idempotencyKey);
         return accountRepository.findOneByAccountNumber(accountNumber)//A
                 .map(acc -> {
-                    if (acc.getVersion() != accountVersion)
-                        throw new InvalidOperationException(String.format("Account with ID %s is no longer valid. Please refresh the page", acc.getId()));
+                    if (accountVersion != null && !accountVersion.equals(acc.getVersion()))
+                        throw staleVersion(acc);
                     Transaction tx = Transaction.builder()
                             .txRef(UUID.randomUUID())
                             .transactionAt(LocalDateTime.now())
                             .description(description)
+                            .idempotencyKey(idempotencyKey)
                             .txType(Transaction.TxType.DEPOSIT)
                             .amountInCents(amountInCents)
                             .postTxAccountBalanceInCents(acc.getCurrentBalanceInCents() + amountInCents)
+                            .account(acc)
                             .build();
+                    // The account row is flushed by dirty checking : its history is never loaded
                     acc.incrementBalanceBy(amountInCents);
-                    acc.addTx(tx);
-                    accountRepository.save(acc);//B
+                    // Conflicts surface here rather than at commit
+                    transactionRepository.saveAndFlush(tx);//B
+                    accountCache.evictAfterCompletion(accountNumber);
 //                    (new MailingService()).sendNotification(new MsgDto("Msg : " + acc.getId()));
                     return TransactionDto.fromEntity(tx);
                 }).orElseThrow(EntityNotFoundException::new);
     }
 
+    /**
+     * Debits the account through a single conditional update (balance, and version when given,
+     * checked by the database) which returns the debited account, then inserts the transaction in
+     * the same DB transaction. The account is only read again to tell why nothing was debited.
+     * A null {@code accountVersion} skips the version check.
+     * {@code idempotencyKey} (may be null) is stored with the transaction, see {@link IdempotencyService}.
+     * In event-sourced mode the withdrawal is appended to the account's stream, see {@link EventSourcedLedger}.
+     */
     @Transactional
     public TransactionDto doWithdrawalOn(@NotNull UUID accountNumber,
                                          @Min(1) int amountInCents,
                                          @NotNull String description,
-                                         int accountVersion) {
-        return accountRepository.findOneByAccountNumber(accountNumber)
-                .map(acc -> {
-                    if (acc.getVersion() != accountVersion)
-                        throw new InvalidOperationException(String.format("Account with ID %s is no longer valid. Please refresh the page", acc.getId()));
-                    if (acc.getCurrentBalanceInCents() < amountInCents)
-                        throw new InvalidOperationException(String.format("Account's (ID %s) balance is not enough", acc.getId()));
+                                         Integer accountVersion,
+                                         String idempotencyKey) {
+        return ledgerMetrics.record(Transaction.TxType.WITHDRAWAL,
+                () -> withdraw(accountNumber, amountInCents, description, accountVersion, idempotencyKey));
+    }
 
-                    Transaction tx = Transaction.builder()
-                            .txRef(UUID.randomUUID())
-                            .transactionAt(LocalDateTime.now())
-                            .description(description)
-                            .txType(Transaction.TxType.WITHDRAWAL)
-                            .amountInCents(amountInCents)
-                            .postTxAccountBalanceInCents(acc.getCurrentBalanceInCents() - amountInCents)
-                            .build();
-                    acc.incrementBalanceBy(-amountInCents);
-                    acc.addTx(tx);
-                    accountRepository.save(acc);
-                    return TransactionDto.fromEntity(tx);
-                }).orElseThrow(EntityNotFoundException::new);
+    private TransactionDto withdraw(UUID accountNumber, int amountInCents, String description,
+                                    Integer accountVersion, String idempotencyKey) {
+        if (eventSourcedLedger.isEnabled())
+            return eventSourcedLedger.append(accountNumber, Transaction.TxType.WITHDRAWAL, amountInCents, description,
+                    accountVersion, idempotencyKey);
+        Account acc = accountRepository.withdrawIfEnoughFunds(accountNumber, amountInCents, accountVersion)
+                .orElseThrow(() -> rejectedWithdrawal(accountNumber, accountVersion));
+        accountCache.evictAfterCompletion(accountNumber);
+        Transaction tx = Transaction.builder()
+                .txRef(UUID.randomUUID())
+                .transactionAt(LocalDateTime.now())
+                .description(description)
+                .idempotencyKey(idempotencyKey)
+                .txType(Transaction.TxType.WITHDRAWAL)
+                .amountInCents(amountInCents)
+                .postTxAccountBalanceInCents(acc.getCurrentBalanceInCents())
+                .account(acc)
+                .build();
+        // Constraint violations surface here rather than at commit
+        transactionRepository.saveAndFlush(tx);
+        return TransactionDto.fromEntity(tx);
+    }
+
+    private RuntimeException rejectedWithdrawal(UUID accountNumber, Integer accountVersion) {
+        Account acc = accountRepository.findOneByAccountNumber(accountNumber)
+                .orElseThrow(EntityNotFoundException::new);
+        if (accountVersion != null && !accountVersion.equals(acc.getVersion()))
+            return staleVersion(acc);
+        return new InsufficientFundsException(String.format("Account's (ID %s) balance is not enough", acc.getId()));
+    }
+
+    private static ConcurrentUpdateException staleVersion(Account acc) {
+        return new ConcurrentUpdateException(String.format("Account with ID %s is no longer valid. Please refresh the page", acc.getId()));
+    }
+
+    /**
+     * Moves {@code amountInCents} from an account to another in a single DB transaction : both
+     * accounts are locked ({@code select ... for update}) then both legs are inserted in one JDBC batch.
+     * Locks are always taken in account id order, the order in which Hibernate flushes the updates
+     * of a batch chunk ({@code hibernate.order_updates}), so that transfers crossing each other or a
+     * batch wait for one another instead of deadlocking. Transfers are based on the current balances,
+     * no account version is checked.
+     * In event-sourced mode both legs are appended to their account's stream, in the same order.
+     */
+    @Transactional
+    public TransferDto doTransfer(@NotNull @Valid TransferRequestDto request) {
+        return ledgerMetrics.record(LedgerMetrics.TRANSFER, () -> transfer(request));
+    }
+
+    private TransferDto transfer(TransferRequestDto request) {
+        if (request.getFromAccountNumber().equals(request.getToAccountNumber()))
+            throw new InvalidOperationException("A transfer needs two different accounts");
+        List<Account> accounts = new ArrayList<>(accountRepository.findAllByAccountNumberIn(
+                List.of(request.getFromAccountNumber(), request.getToAccountNumber())));
+        if (accounts.size() != 2)
+            throw new EntityNotFoundException();
+        accounts.sort(Comparator.comparing(Account::getId));
+        if (eventSourcedLedger.isEnabled())
+            return appendTransfer(request, accounts);
+        try {
+            // Balances are read again with the locks
+            accounts.forEach(acc -> entityManager.refresh(acc, LockModeType.PESSIMISTIC_WRITE));
+        } catch (PessimisticLockException | LockTimeoutException e) {
+            throw new ConcurrentUpdateException("Accounts of the transfer are locked by other operations. Please retry");
+        }
+        Account from = accountOf(accounts, request.getFromAccountNumber());
+        Account to = accountOf(accounts, request.getToAccountNumber());
+        if (from.getCurrentBalanceInCents() < request.getAmountInCents())
+            throw new InsufficientFundsException(String.format("Account's (ID %s) balance is not enough", from.getId()));
+        from.incrementBalanceBy(-request.getAmountInCents());
+        to.incrementBalanceBy(request.getAmountInCents());
+        LocalDateTime now = LocalDateTime.now();
+        Transaction debit = transferLeg(from, Transaction.TxType.WITHDRAWAL, request,
+                descriptionOf(request, "Transfer to ", to), now);
+        Transaction credit = transferLeg(to, Transaction.TxType.DEPOSIT, request,
+                descriptionOf(request, "Transfer from ", from), now);
+        transactionRepository.saveAll(List.of(debit, credit));
+        // Conflicts surface here rather than at commit
+        transactionRepository.flush();
+        accountCache.evictAfterCompletion(from.getAccountNumber());
+        accountCache.evictAfterCompletion(to.getAccountNumber());
+        return TransferDto.builder()
+                .debit(TransactionDto.fromEntity(debit))
+                .credit(TransactionDto.fromEntity(credit))
+                .build();
+    }
+
+    private TransferDto appendTransfer(TransferRequestDto request, List<Account> accounts) {
+        Account from = accountOf(accounts, request.getFromAccountNumber());
+        Account to = accountOf(accounts, request.getToAccountNumber());
+        TransactionDto debit = null;
+        TransactionDto credit = null;
+        for (Account acc : accounts) {
+            if (acc == from)
+                debit = eventSourcedLedger.append(from.getAccountNumber(), Transaction.TxType.WITHDRAWAL,
+                        request.getAmountInCents(), descriptionOf(request, "Transfer to ", to), null, null);
+            else
+                credit = eventSourcedLedger.append(to.getAccountNumber(), Transaction.TxType.DEPOSIT,
+                        request.getAmountInCents(), descriptionOf(request, "Transfer from ", from), null, null);
+        }
+        return TransferDto.builder().debit(debit).credit(credit).build();
+    }
+
+    private static Account accountOf(List<Account> accounts, UUID accountNumber) {
+        return accounts.get(0).getAccountNumber().equals(accountNumber) ? accounts.get(0) : accounts.get(1);
+    }
+
+    private static String descriptionOf(TransferRequestDto request, String prefix, Account other) {
+        return request.getDescription() != null ? request.getDescription() : prefix + other.getAccountNumber();
+    }
+
+    private static Transaction transferLeg(Account acc, Transaction.TxType type, TransferRequestDto request,
+                                           String description, LocalDateTime at) {
+        return Transaction.builder()
+                .txRef(UUID.randomUUID())
+                .transactionAt(at)
+                .description(description)
+                .txType(type)
+                .amountInCents(request.getAmountInCents())
+                .postTxAccountBalanceInCents(acc.getCurrentBalanceInCents())
+                .account(acc)
+                .build();
     }
 
     /**
-     * Returns an account's list of transactions ordered by creation datetime in the
-     * decreasing order
+     * Posts a batch of deposits and withdrawals. Operations are split in chunks of
+     * {@link #BATCH_CHUNK_SIZE}, each one posted in its own DB transaction : the accounts of a chunk
+     * are loaded with a single query, its operations are applied in order per account and the
+     * inserts and updates are sent with JDBC batching.
+     * <p>
+     * Every operation is validated ({@link TransactionRequestDto} constraints, which include the
+     * columns limits) before the first chunk is posted. An invalid operation (null, constraint violated,
+     * unknown account, not enough funds...) is rejected alone. When a chunk can't be committed (e.g.
+     * an account updated concurrently) all its operations are rejected.
+     * {@link TransactionRequestDto#getAccountVersion()} is not checked, a feed can't know the
+     * version of an account it updates several times.
+     *
+     * @param operations
+     * @return a result for each operation, in the same order
+     */
+    public List<BatchItemResultDto> doBatch(@NotNull List<TransactionRequestDto> operations) {
+        if (operations.size() > MAX_BATCH_SIZE)
+            throw new InvalidOperationException(String.format("A batch can't hold more than %d operations", MAX_BATCH_SIZE));
+        String[] violations = new String[operations.size()];
+        for (int i = 0; i < operations.size(); i++) {
+            if (operations.get(i) == null) {
+                violations[i] = "Operation is missing";
+                continue;
+            }
+            Set<ConstraintViolation<TransactionRequestDto>> violated = validator.validate(operations.get(i));
+            if (!violated.isEmpty())
+                violations[i] = violated.stream()
+                        .map(v -> v.getPropertyPath() + " " + v.getMessage())
+                        .collect(Collectors.joining(", "));
+        }
+        List<BatchItemResultDto> results = new ArrayList<>(operations.size());
+        for (int from = 0; from < operations.size(); from += BATCH_CHUNK_SIZE) {
+            int to = Math.min(from + BATCH_CHUNK_SIZE, operations.size());
+            results.addAll(doBatchChunk(operations.subList(from, to), from, violations));
+        }
+        return results;
+    }
+
+    /**
+     * @param violations the constraint violations of every operation of the batch, null for valid ones
+     */
+    private List<BatchItemResultDto> doBatchChunk(List<TransactionRequestDto> chunk, int firstIndex, String[] violations) {
+        try {
+            return transactionTemplate.execute(status -> eventSourcedLedger.isEnabled()
+                    ? appendBatchChunk(chunk, firstIndex, violations)
+                    : postBatchChunk(chunk, firstIndex, violations));
+        } catch (DataAccessException e) {
+            List<BatchItemResultDto> rejected = new ArrayList<>(chunk.size());
+            for (int i = 0; i < chunk.size(); i++) {
+                if (e instanceof OptimisticLockingFailureException && violations[firstIndex + i] == null)
+                    ledgerMetrics.conflict(chunk.get(i).getOperation());
+                rejected.add(BatchItemResultDto.rejected(firstIndex + i,
+                        "Operation not posted, its batch chunk was rolled back. Please retry"));
+            }
+            return rejected;
+        } finally {
+            // Posted entities are not needed anymore, don't let them pile up in the request's persistence context
+            entityManager.clear();
+        }
+    }
+
+    private List<BatchItemResultDto> postBatchChunk(List<TransactionRequestDto> chunk, int firstIndex, String[] violations) {
+        Set<UUID> accountNumbers = new HashSet<>();
+        for (int i = 0; i < chunk.size(); i++)
+            if (violations[firstIndex + i] == null)
+                accountNumbers.add(chunk.get(i).getAccountNumber());
+        Map<UUID, Account> accounts = new HashMap<>();
+        accountRepository.findAllByAccountNumberIn(accountNumbers)
+                .forEach(acc -> accounts.put(acc.getAccountNumber(), acc));
+        LocalDateTime now = LocalDateTime.now();
+        BatchItemResultDto[] results = new BatchItemResultDto[chunk.size()];
+        List<Transaction> txs = new ArrayList<>(chunk.size());
+        for (int i = 0; i < chunk.size(); i++) {
+            if (violations[firstIndex + i] != null) {
+                results[i] = BatchItemResultDto.rejected(firstIndex + i, violations[firstIndex + i]);
+                continue;
+            }
+            TransactionRequestDto op = chunk.get(i);
+            Account acc = accounts.get(op.getAccountNumber());
+            String error = null;
+            if (acc == null) {
+                error = String.format("Account %s not found", op.getAccountNumber());
+                ledgerMetrics.notFound(op.getOperation());
+            } else if (op.getOperation() == Transaction.TxType.WITHDRAWAL && acc.getCurrentBalanceInCents() < op.getAmountInCents()) {
+                error = String.format("Account's (ID %s) balance is not enough", acc.getId());
+                ledgerMetrics.insufficientFunds(op.getOperation());
+            }
+            if (error != null) {
+                results[i] = BatchItemResultDto.rejected(firstIndex + i, error);
+                continue;
+            }
+            acc.incrementBalanceBy(op.getOperation() == Transaction.TxType.DEPOSIT ? op.getAmountInCents() : -op.getAmountInCents());
+            Transaction tx = Transaction.builder()
+                    .txRef(UUID.randomUUID())
+                    .transactionAt(now)
+                    .description(op.getDescription())
+                    .txType(op.getOperation())
+                    .amountInCents(op.getAmountInCents())
+                    .postTxAccountBalanceInCents(acc.getCurrentBalanceInCents())
+                    .account(acc)
+                    .build();
+            txs.add(tx);
+            results[i] = BatchItemResultDto.posted(firstIndex + i, TransactionDto.fromEntity(tx));
+        }
+        transactionRepository.saveAll(txs);
+        txs.stream()
+                .map(tx -> tx.getAccount().getAccountNumber())
+                .distinct()
+                .forEach(accountCache::evictAfterCompletion);
+        // Fails here rather than at commit, so that the chunk is reported as rejected
+        accountRepository.flush();
+        return Arrays.asList(results);
+    }
+
+    /**
+     * Event-sourced counterpart of {@link #postBatchChunk(List, int, String[])} : operations are appended
+     * one by one to their account's stream. A conflicting append rolls the whole chunk back.
+     */
+    private List<BatchItemResultDto> appendBatchChunk(List<TransactionRequestDto> chunk, int firstIndex, String[] violations) {
+        List<BatchItemResultDto> results = new ArrayList<>(chunk.size());
+        for (int i = 0; i < chunk.size(); i++) {
+            TransactionRequestDto op = chunk.get(i);
+            if (violations[firstIndex + i] != null) {
+                results.add(BatchItemResultDto.rejected(firstIndex + i, violations[firstIndex + i]));
+                continue;
+            }
+            try {
+                results.add(BatchItemResultDto.posted(firstIndex + i, eventSourcedLedger.append(op.getAccountNumber(),
+                        op.getOperation(), op.getAmountInCents(), op.getDescription(), null, null)));
+            } catch (ConcurrentUpdateException e) {
+                throw new OptimisticLockingFailureException(e.getMessage(), e);
+            } catch (EntityNotFoundException e) {
+                ledgerMetrics.notFound(op.getOperation());
+                results.add(BatchItemResultDto.rejected(firstIndex + i, String.format("Account %s not found", op.getAccountNumber())));
+            } catch (InvalidOperationException e) {
+                if (e instanceof InsufficientFundsException) ledgerMetrics.insufficientFunds(op.getOperation());
+                results.add(BatchItemResultDto.rejected(firstIndex + i, e.getMessage()));
+            }
+        }
+        return results;
+    }
+
+    /**
+     * Returns a page of an account's transactions ordered by creation datetime in the
+     * decreasing order (ties broken by id).
      *
      * @param accountNumber
+     * @param cursor        {@link TransactionHistoryPage#getNextCursor()} of the previous page, null for the first one
+     * @param size          maximum number of transactions of the page
      * @return
      */
-    public List<TransactionDto> getTransactionsHistoryFor(@NotNull UUID accountNumber) {
-        return accountRepository.findOneByAccountNumber(accountNumber)
-                .map(xs -> xs.getTransactions()
-                        .stream()
+    @Transactional(readOnly = true)
+    public TransactionHistoryPage getTransactionsHistoryFor(@NotNull UUID accountNumber, String cursor, int size) {
+        if (size < 1 || size > MAX_HISTORY_PAGE_SIZE)
+            throw new InvalidOperationException(String.format("History page size must be between 1 and %d", MAX_HISTORY_PAGE_SIZE));
+        HistoryCursor after = cursor == null ? null : HistoryCursor.decode(cursor);
+        Account account = accountRepository.findOneByAccountNumber(accountNumber)
+                .orElseThrow(() -> {
+                    ledgerMetrics.notFound(LedgerMetrics.HISTORY_READ);
+                    return new EntityNotFoundException();
+                });
+        // One extra row tells whether an older page exists
+        PageRequest limit = PageRequest.ofSize(size + 1);
+        List<Transaction> txs = after == null
+                ? transactionRepository.findLatestByAccount(account, limit)
+                : transactionRepository.findByAccountBefore(account, after.getTransactionAt(), after.getId(), limit);
+        String nextCursor = null;
+        if (txs.size() > size) {
+            txs = txs.subList(0, size);
+            Transaction last = txs.get(size - 1);
+            nextCursor = new HistoryCursor(last.getTransactionAt(), last.getId()).encode();
+        }
+        ledgerMetrics.historyRead(txs.size());
+        return TransactionHistoryPage.builder()
+                .transactions(txs.stream()
                         .map(TransactionDto::fromEntity)
                         .collect(Collectors.toList()))
-                .orElseThrow(EntityNotFoundException::new);
+                .nextCursor(nextCursor)
+                .accountVersion(eventSourcedLedger.isEnabled() ? eventSourcedLedger.versionOf(account) : account.getVersion())
+                .build();
     }
 }
@@ -0,0 +1,5 @@
+-- Adds ACCOUNTS_CURRENT_BALANCE_IDX, read by the minimum balance filter of the accounts list.
+-- H2 syntax, run once on a stopped file database :
+--   java -cp h2.jar org.h2.tools.RunScript -url jdbc:h2:file:<path> -script account-balance-index.sql
+
+CREATE INDEX IF NOT EXISTS ACCOUNTS_CURRENT_BALANCE_IDX ON account (current_balance_in_cents);
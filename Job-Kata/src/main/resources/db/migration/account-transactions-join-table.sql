@@ -0,0 +1,6 @@
+-- Drops ACCOUNT_TRANSACTIONS, the join table of the former unidirectional Account.transactions mapping.
+-- Transactions reference their account through TRANSACTION.ACCOUNT_ID only. H2 syntax, run once on a
+-- stopped file database :
+--   java -cp h2.jar org.h2.tools.RunScript -url jdbc:h2:file:<path> -script account-transactions-join-table.sql
+
+DROP TABLE IF EXISTS account_transactions;
@@ -0,0 +1,18 @@
+-- Adds TRANSACTION.SEQUENCE (position in the account's event stream) and the ACCOUNT_SNAPSHOT table
+-- of the event-sourced mode (bank.event-sourcing.enabled). H2 syntax, run once on a stopped file
+-- database :
+--   java -cp h2.jar org.h2.tools.RunScript -url jdbc:h2:file:<path> -script event-sourcing.sql
+-- Existing transactions keep a NULL sequence : the stream of an account starts after its version.
+
+ALTER TABLE transaction ADD COLUMN sequence INTEGER;
+ALTER TABLE transaction ADD CONSTRAINT TRANSACTIONS_ACCOUNT_SEQUENCE_UK UNIQUE (account_id, sequence);
+
+CREATE SEQUENCE ACCOUNT_SNAPSHOTS_ID_SEQ START WITH 1 INCREMENT BY 50;
+CREATE TABLE account_snapshot (
+    id               BIGINT  NOT NULL PRIMARY KEY,
+    account_id       BIGINT REFERENCES account (id),
+    sequence         INTEGER NOT NULL,
+    balance_in_cents INTEGER NOT NULL,
+    taken_at         TIMESTAMP,
+    CONSTRAINT ACCOUNT_SNAPSHOTS_ACCOUNT_SEQUENCE_UK UNIQUE (account_id, sequence)
+);
@@ -0,0 +1,16 @@
+-- Moves ACCOUNT.ID from an identity column and TRANSACTION.ID from hibernate_sequence to the pooled
+-- sequences of Account.ID_SEQUENCE and Transaction.ID_SEQUENCE (increment = ID_ALLOCATION_SIZE). H2
+-- syntax, run once on a stopped file database :
+--   java -cp h2.jar org.h2.tools.RunScript -url jdbc:h2:file:<path> -script ids-to-pooled-sequences.sql
+-- The pooled optimizer hands out the 50 ids below each sequence value, so both sequences restart at
+-- least 50 above the greatest existing id.
+
+-- ACCOUNT.ID
+CREATE SEQUENCE ACCOUNTS_ID_SEQ START WITH 1 INCREMENT BY 50;
+ALTER SEQUENCE ACCOUNTS_ID_SEQ RESTART WITH (SELECT COALESCE(MAX(id), 0) + 51 FROM account);
+ALTER TABLE account ALTER COLUMN id DROP IDENTITY;
+
+-- TRANSACTION.ID
+CREATE SEQUENCE TRANSACTIONS_ID_SEQ START WITH 1 INCREMENT BY 50;
+ALTER SEQUENCE TRANSACTIONS_ID_SEQ RESTART WITH (SELECT COALESCE(MAX(id), 0) + 51 FROM transaction);
+DROP SEQUENCE IF EXISTS hibernate_sequence;
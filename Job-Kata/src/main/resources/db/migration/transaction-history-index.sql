@@ -0,0 +1,5 @@
+-- Adds TRANSACTIONS_ACCOUNT_AT_ID_IDX, read by the keyset pages of the transactions history (newest first).
+-- H2 syntax, run once on a stopped file database :
+--   java -cp h2.jar org.h2.tools.RunScript -url jdbc:h2:file:<path> -script transaction-history-index.sql
+
+CREATE INDEX IF NOT EXISTS TRANSACTIONS_ACCOUNT_AT_ID_IDX ON transaction (account_id, transaction_at DESC, id DESC);
@@ -0,0 +1,6 @@
+-- Adds TRANSACTION.IDEMPOTENCY_KEY (Idempotency-Key header of the posting request). H2 syntax, run
+-- once on a stopped file database :
+--   java -cp h2.jar org.h2.tools.RunScript -url jdbc:h2:file:<path> -script transaction-idempotency-key.sql
+
+ALTER TABLE transaction ADD COLUMN idempotency_key VARCHAR(64);
+ALTER TABLE transaction ADD CONSTRAINT TRANSACTIONS_IDEMPOTENCY_KEY_UK UNIQUE (idempotency_key);
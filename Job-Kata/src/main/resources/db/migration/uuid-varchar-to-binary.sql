@@ -0,0 +1,18 @@
+-- Migrates UUID columns written by the former string converter (VARCHAR(255) holding the 36 chars canonical form)
+-- to the BINARY(16) layout of UUIDBinaryConverter. H2 syntax, run once on a stopped file database :
+--   java -cp h2.jar org.h2.tools.RunScript -url jdbc:h2:file:<path> -script uuid-varchar-to-binary.sql
+
+-- ACCOUNT.ACCOUNT_NUMBER
+ALTER TABLE account ADD COLUMN account_number_bin BINARY(16);
+UPDATE account SET account_number_bin = CAST(CAST(account_number AS UUID) AS BINARY(16));
+ALTER TABLE account DROP CONSTRAINT ACCOUNTS_ACCOUNT_NUMBER_UK;
+ALTER TABLE account DROP COLUMN account_number;
+ALTER TABLE account ALTER COLUMN account_number_bin RENAME TO account_number;
+ALTER TABLE account ADD CONSTRAINT ACCOUNTS_ACCOUNT_NUMBER_UK UNIQUE (account_number);
+
+-- TRANSACTION.TX_REF
+ALTER TABLE transaction ADD COLUMN tx_ref_bin BINARY(16);
+UPDATE transaction SET tx_ref_bin = CAST(CAST(tx_ref AS UUID) AS BINARY(16));
+ALTER TABLE transaction DROP COLUMN tx_ref;
+ALTER TABLE transaction ALTER COLUMN tx_ref_bin RENAME TO tx_ref;
+ALTER TABLE transaction ALTER COLUMN tx_ref SET NOT NULL;
@@ -0,0 +1,192 @@
+package com.harington.kata.bank;
+
+import com.fasterxml.jackson.databind.json.JsonMapper;
+import com.harington.kata.bank.entity.Transaction;
+import com.harington.kata.bank.entity.dto.AccountDto;
+import com.harington.kata.bank.entity.dto.AccountRequestDto;
+import com.harington.kata.bank.entity.dto.TransactionRequestDto;
+import com.harington.kata.bank.service.AccountService;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.context.ConfigurableApplicationContext;
+import org.springframework.web.filter.OncePerRequestFilter;
+
+import javax.servlet.FilterChain;
+import javax.servlet.ServletException;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+import java.io.IOException;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Compares Tomcat's platform threads pool with virtual threads under {@value #CLIENTS} concurrent
+ * clients, each reading the history of its own account then depositing on it.
+ * <p>
+ * With an in-memory H2 the requests barely block : virtual threads (which are not time-sliced) then
+ * run them nearly one at a time per core, where the platform threads share the cores between up to
+ * {@code server.tomcat.threads.max} requests.
+ * Run with {@code mvn -Pload test}, on Java 21 for the virtual threads :
+ * {@code mvn -Pload test -Djvm=<java 21 home>/bin/java}.
+ */
+@Tag("load")
+class RequestThreadsLoadTest {
+    static final int CLIENTS = 1_000;
+    static final int REQUESTS_PER_CLIENT = 10;
+    static final int ROUNDS = 2;
+    static final int TOMCAT_MAX_THREADS = 200;
+    static final int WARMUP_CLIENTS = 100;
+
+    @Test
+    void compare_platform_and_virtual_threads() throws Exception {
+        // Modes alternate, as the later runs of a same JVM are faster
+        List<String> rows = new ArrayList<>();
+        for (int round = 1; round <= ROUNDS; round++) {
+            LoadResult platform = run(false);
+            LoadResult virtual = run(true);
+            rows.add(platform.format("platform", round));
+            rows.add(virtual.format("virtual", round));
+
+            assertEquals(0, platform.failures);
+            assertEquals(0, virtual.failures);
+            assertTrue(platform.maxInFlight <= TOMCAT_MAX_THREADS);
+        }
+        System.out.printf("%-9s %5s %10s %10s %10s %10s %14s%n", "threads", "round", "req/s", "p50 ms", "p99 ms", "max ms", "max in-flight");
+        rows.forEach(System.out::println);
+    }
+
+    LoadResult run(boolean virtualThreads) throws Exception {
+        InFlightProbe probe = new InFlightProbe();
+        try (ConfigurableApplicationContext context = new SpringApplicationBuilder(JobKataApplication.class)
+                .initializers(ctx -> ctx.getBeanFactory().registerSingleton("inFlightProbe", probe))
+                // Command-line arguments, to override application.properties
+                .run("--server.port=0",
+                        "--server.tomcat.threads.max=" + TOMCAT_MAX_THREADS,
+                        "--spring.jmx.enabled=false",
+                        "--bank.virtual-threads.enabled=" + virtualThreads)) {
+            List<UUID> accounts = createAccounts(context.getBean(AccountService.class));
+            String baseUrl = "http://localhost:" + context.getEnvironment().getProperty("local.server.port") + "/api/v1/accounts/";
+            // JIT warm-up, so that the second mode measured doesn't run warmer code
+            load(baseUrl, accounts.subList(0, WARMUP_CLIENTS), probe);
+            probe.maxInFlight.set(0);
+            return load(baseUrl, accounts, probe);
+        }
+    }
+
+    List<UUID> createAccounts(AccountService accountService) {
+        List<AccountRequestDto> requests = IntStream.range(0, CLIENTS)
+                .mapToObj(i -> AccountRequestDto.builder().ownerName("Client " + i).initialBalanceInCents(100_00).build())
+                .collect(Collectors.toList());
+        return accountService.createNewAccounts(requests).stream()
+                .map(AccountDto::getAccountNumber)
+                .map(UUID::fromString)
+                .collect(Collectors.toList());
+    }
+
+    LoadResult load(String baseUrl, List<UUID> accounts, InFlightProbe probe) throws Exception {
+        HttpClient client = HttpClient.newBuilder().version(HttpClient.Version.HTTP_1_1).build();
+        JsonMapper jsonMapper = new JsonMapper();
+        long[] latencies = new long[accounts.size() * REQUESTS_PER_CLIENT];
+        AtomicInteger failures = new AtomicInteger();
+        CountDownLatch start = new CountDownLatch(1);
+        List<Thread> threads = new ArrayList<>();
+        for (int c = 0; c < accounts.size(); c++) {
+            int clientIndex = c;
+            UUID accountNumber = accounts.get(c);
+            String deposit = jsonMapper.writeValueAsString(TransactionRequestDto.builder()
+                    .accountNumber(accountNumber).amountInCents(1_00)
+                    .operation(Transaction.TxType.DEPOSIT).description("Load").build());
+            HttpRequest.Builder history = HttpRequest.newBuilder(URI.create(baseUrl + accountNumber + "/transactions"))
+                    .header("Content-Type", "application/json")
+                    .timeout(Duration.ofMinutes(1));
+            HttpRequest.Builder post = HttpRequest.newBuilder(URI.create(baseUrl + "transactions"))
+                    .header("Content-Type", "application/json")
+                    // Deposits without version check
+                    .header("If-Match", "*")
+                    .timeout(Duration.ofMinutes(1));
+            Thread thread = new Thread(() -> {
+                try {
+                    start.await();
+                    for (int r = 0; r < REQUESTS_PER_CLIENT; r++) {
+                        HttpRequest request = r % 2 == 0
+                                ? history.GET().build()
+                                : post.POST(HttpRequest.BodyPublishers.ofString(deposit)).build();
+                        long begin = System.nanoTime();
+                        HttpResponse<Void> response = client.send(request, HttpResponse.BodyHandlers.discarding());
+                        latencies[clientIndex * REQUESTS_PER_CLIENT + r] = System.nanoTime() - begin;
+                        if (response.statusCode() >= 300) failures.incrementAndGet();
+                    }
+                } catch (Exception e) {
+                    failures.incrementAndGet();
+                }
+            });
+            thread.start();
+            threads.add(thread);
+        }
+        long begin = System.nanoTime();
+        start.countDown();
+        for (Thread thread : threads)
+            thread.join();
+        long elapsed = System.nanoTime() - begin;
+        return new LoadResult(latencies, elapsed, failures.get(), probe.maxInFlight.get());
+    }
+
+    static class LoadResult {
+        final long[] latencies;
+        final long elapsedNanos;
+        final int failures;
+        final int maxInFlight;
+
+        LoadResult(long[] latencies, long elapsedNanos, int failures, int maxInFlight) {
+            this.latencies = latencies.clone();
+            Arrays.sort(this.latencies);
+            this.elapsedNanos = elapsedNanos;
+            this.failures = failures;
+            this.maxInFlight = maxInFlight;
+        }
+
+        double percentileMillis(double percentile) {
+            return latencies[(int) Math.ceil(percentile * latencies.length) - 1] / 1e6;
+        }
+
+        String format(String threads, int round) {
+            return String.format("%-9s %5d %10.0f %10.1f %10.1f %10.1f %14d", threads, round,
+                    latencies.length / (elapsedNanos / 1e9), percentileMillis(0.50), percentileMillis(0.99),
+                    percentileMillis(1.0), maxInFlight);
+        }
+    }
+
+    /**
+     * Requests being handled by the application at the same time
+     */
+    static class InFlightProbe extends OncePerRequestFilter {
+        final AtomicInteger inFlight = new AtomicInteger();
+        final AtomicInteger maxInFlight = new AtomicInteger();
+
+        @Override
+        protected void doFilterInternal(HttpServletRequest request, HttpServletResponse response, FilterChain filterChain)
+                throws ServletException, IOException {
+            maxInFlight.accumulateAndGet(inFlight.incrementAndGet(), Math::max);
+            try {
+                filterChain.doFilter(request, response);
+            } finally {
+                inFlight.decrementAndGet();
+            }
+        }
+    }
+}
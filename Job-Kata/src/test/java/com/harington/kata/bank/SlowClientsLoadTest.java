@@ -0,0 +1,93 @@
+package com.harington.kata.bank;
+
+import com.harington.kata.bank.entity.dto.AccountDto;
+import com.harington.kata.bank.load.SlowClients;
+import com.harington.kata.bank.load.SlowClients.LoadResult;
+import com.harington.kata.bank.service.AccountService;
+import com.harington.kata.bank.service.TransactionService;
+import com.zaxxer.hikari.HikariDataSource;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.context.ConfigurableApplicationContext;
+import org.springframework.web.filter.OncePerRequestFilter;
+
+import javax.servlet.FilterChain;
+import javax.servlet.ServletException;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+import javax.sql.DataSource;
+import java.io.IOException;
+import java.util.UUID;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.IntSupplier;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * {@link SlowClients} read the history of a same account of {@value #HISTORY_SIZE} transactions.
+ * Connections in use in the Hikari pool are sampled.
+ * <p>
+ * Each response being written holds a Tomcat thread : the reactive application's
+ * {@code SlowClientsLoadTest} drives the same clients. Run with {@code mvn -Pload test}.
+ */
+@Tag("load")
+class SlowClientsLoadTest {
+    static final int HISTORY_SIZE = 1_000;
+    static final int PAGE_SIZE = 500;
+    static final int TOMCAT_MAX_THREADS = 200;
+
+    @Test
+    void slow_clients_hold_tomcat_threads() throws Exception {
+        InFlightProbe probe = new InFlightProbe();
+        try (ConfigurableApplicationContext context = new SpringApplicationBuilder(JobKataApplication.class)
+                .initializers(ctx -> ctx.getBeanFactory().registerSingleton("inFlightProbe", probe))
+                // Command-line arguments, to override application.properties
+                .run("--server.port=0",
+                        "--server.tomcat.threads.max=" + TOMCAT_MAX_THREADS,
+                        "--spring.jmx.enabled=false")) {
+            UUID accountNumber = createAccountWithHistory(context);
+            int port = Integer.parseInt(context.getEnvironment().getProperty("local.server.port"));
+            HikariDataSource dataSource = context.getBean(DataSource.class).unwrap(HikariDataSource.class);
+            IntSupplier activeConnections = () -> dataSource.getHikariPoolMXBean().getActiveConnections();
+            String path = "/api/v1/accounts/" + accountNumber + "/transactions";
+
+            LoadResult page = SlowClients.load(port, path + "?size=" + PAGE_SIZE, "application/json",
+                    probe.maxInFlight, activeConnections);
+
+            System.out.println(SlowClients.header());
+            System.out.println(page.format("json page of " + PAGE_SIZE));
+            assertEquals(SlowClients.CLIENTS, page.ok);
+            assertTrue(page.maxInFlight <= TOMCAT_MAX_THREADS);
+        }
+    }
+
+    UUID createAccountWithHistory(ConfigurableApplicationContext context) {
+        AccountDto account = context.getBean(AccountService.class).createNewAccount("Slow clients", 0);
+        UUID accountNumber = UUID.fromString(account.getAccountNumber());
+        TransactionService transactionService = context.getBean(TransactionService.class);
+        for (int i = 0; i < HISTORY_SIZE; i++)
+            transactionService.doDepositOn(accountNumber, 1_00, "Deposit " + i, null, null);
+        return accountNumber;
+    }
+
+    /**
+     * Requests being handled by the application at the same time
+     */
+    static class InFlightProbe extends OncePerRequestFilter {
+        final AtomicInteger inFlight = new AtomicInteger();
+        final AtomicInteger maxInFlight = new AtomicInteger();
+
+        @Override
+        protected void doFilterInternal(HttpServletRequest request, HttpServletResponse response, FilterChain filterChain)
+                throws ServletException, IOException {
+            maxInFlight.accumulateAndGet(inFlight.incrementAndGet(), Math::max);
+            try {
+                filterChain.doFilter(request, response);
+            } finally {
+                inFlight.decrementAndGet();
+            }
+        }
+    }
+}
@@ -0,0 +1,146 @@
+package com.harington.kata.bank;
+
+import com.fasterxml.jackson.databind.json.JsonMapper;
+import com.harington.kata.bank.entity.dto.AccountDto;
+import com.harington.kata.bank.entity.dto.AccountRequestDto;
+import com.harington.kata.bank.entity.dto.TransferRequestDto;
+import com.harington.kata.bank.repository.AccountRepository;
+import com.harington.kata.bank.service.AccountService;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.context.ConfigurableApplicationContext;
+
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+import java.util.UUID;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+/**
+ * Throughput of {@code POST /api/v1/accounts/transfers} under {@value #CLIENTS} concurrent clients,
+ * each moving money back and forth between random pairs of a small set of hot accounts : the fewer
+ * the accounts, the more transfers wait for each other's row locks. No transfer may fail on a
+ * deadlock and the total balance of the hot accounts must not move.
+ * Run with {@code mvn -Pload test}.
+ */
+@Tag("load")
+class TransfersLoadTest {
+    static final int CLIENTS = 32;
+    static final int TRANSFERS_PER_CLIENT = 200;
+    static final int[] HOT_ACCOUNTS = {2, 8, 64};
+    static final int INITIAL_BALANCE_IN_CENTS = 1_000_000_00;
+
+    @Test
+    void criss_cross_transfers_between_hot_accounts() throws Exception {
+        List<String> rows = new ArrayList<>();
+        try (ConfigurableApplicationContext context = new SpringApplicationBuilder(JobKataApplication.class)
+                // Command-line arguments, to override application.properties
+                .run("--server.port=0", "--spring.jmx.enabled=false")) {
+            String url = "http://localhost:" + context.getEnvironment().getProperty("local.server.port") + "/api/v1/accounts/transfers";
+            // JIT warm-up
+            load(url, createAccounts(context.getBean(AccountService.class), 16));
+            for (int hotAccounts : HOT_ACCOUNTS) {
+                List<UUID> accounts = createAccounts(context.getBean(AccountService.class), hotAccounts);
+                LoadResult result = load(url, accounts);
+                rows.add(result.format(hotAccounts));
+
+                assertEquals(0, result.failures);
+                AccountRepository accountRepository = context.getBean(AccountRepository.class);
+                assertEquals((long) hotAccounts * INITIAL_BALANCE_IN_CENTS, accountRepository.findAllByAccountNumberIn(accounts).stream()
+                        .mapToLong(acc -> acc.getCurrentBalanceInCents())
+                        .sum());
+            }
+        }
+        System.out.printf("%-12s %10s %10s %10s %10s%n", "hot accounts", "transfers/s", "p50 ms", "p99 ms", "max ms");
+        rows.forEach(System.out::println);
+    }
+
+    List<UUID> createAccounts(AccountService accountService, int count) {
+        List<AccountRequestDto> requests = IntStream.range(0, count)
+                .mapToObj(i -> AccountRequestDto.builder().ownerName("Hot " + i).initialBalanceInCents(INITIAL_BALANCE_IN_CENTS).build())
+                .collect(Collectors.toList());
+        return accountService.createNewAccounts(requests).stream()
+                .map(AccountDto::getAccountNumber)
+                .map(UUID::fromString)
+                .collect(Collectors.toList());
+    }
+
+    LoadResult load(String url, List<UUID> accounts) throws Exception {
+        HttpClient client = HttpClient.newBuilder().version(HttpClient.Version.HTTP_1_1).build();
+        JsonMapper jsonMapper = new JsonMapper();
+        long[] latencies = new long[CLIENTS * TRANSFERS_PER_CLIENT];
+        AtomicInteger failures = new AtomicInteger();
+        CountDownLatch start = new CountDownLatch(1);
+        List<Thread> threads = new ArrayList<>();
+        for (int c = 0; c < CLIENTS; c++) {
+            int clientIndex = c;
+            Random random = new Random(c);
+            HttpRequest.Builder post = HttpRequest.newBuilder(URI.create(url))
+                    .header("Content-Type", "application/json")
+                    .timeout(Duration.ofMinutes(1));
+            Thread thread = new Thread(() -> {
+                try {
+                    start.await();
+                    for (int r = 0; r < TRANSFERS_PER_CLIENT; r++) {
+                        int from = random.nextInt(accounts.size());
+                        int to = (from + 1 + random.nextInt(accounts.size() - 1)) % accounts.size();
+                        String body = jsonMapper.writeValueAsString(TransferRequestDto.builder()
+                                .fromAccountNumber(accounts.get(from))
+                                .toAccountNumber(accounts.get(to))
+                                .amountInCents(1 + random.nextInt(10_00))
+                                .build());
+                        long begin = System.nanoTime();
+                        HttpResponse<Void> response = client.send(post.POST(HttpRequest.BodyPublishers.ofString(body)).build(),
+                                HttpResponse.BodyHandlers.discarding());
+                        latencies[clientIndex * TRANSFERS_PER_CLIENT + r] = System.nanoTime() - begin;
+                        if (response.statusCode() >= 300) failures.incrementAndGet();
+                    }
+                } catch (Exception e) {
+                    failures.incrementAndGet();
+                }
+            });
+            thread.start();
+            threads.add(thread);
+        }
+        long begin = System.nanoTime();
+        start.countDown();
+        for (Thread thread : threads)
+            thread.join();
+        return new LoadResult(latencies, System.nanoTime() - begin, failures.get());
+    }
+
+    static class LoadResult {
+        final long[] latencies;
+        final long elapsedNanos;
+        final int failures;
+
+        LoadResult(long[] latencies, long elapsedNanos, int failures) {
+            this.latencies = latencies.clone();
+            Arrays.sort(this.latencies);
+            this.elapsedNanos = elapsedNanos;
+            this.failures = failures;
+        }
+
+        double percentileMillis(double percentile) {
+            return latencies[(int) Math.ceil(percentile * latencies.length) - 1] / 1e6;
+        }
+
+        String format(int hotAccounts) {
+            return String.format("%-12d %10.0f %10.1f %10.1f %10.1f", hotAccounts,
+                    latencies.length / (elapsedNanos / 1e9), percentileMillis(0.50), percentileMillis(0.99),
+                    percentileMillis(1.0));
+        }
+    }
+}
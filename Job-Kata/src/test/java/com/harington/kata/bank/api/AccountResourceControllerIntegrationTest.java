@@ -1,32 +1,47 @@
 package com.harington.kata.bank.api;
 
+import com.fasterxml.jackson.databind.JsonNode;
 import com.fasterxml.jackson.databind.json.JsonMapper;
 import com.harington.kata.bank.entity.Account;
 import com.harington.kata.bank.entity.Transaction;
 import com.harington.kata.bank.entity.dto.AccountRequestDto;
+import com.harington.kata.bank.entity.dto.TransactionRequestDto;
 import com.harington.kata.bank.repository.AccountRepository;
 import com.harington.kata.bank.repository.TransactionRepository;
+import com.harington.kata.bank.service.AccountCache;
+import com.harington.kata.bank.service.IdempotencyService;
 import org.junit.jupiter.api.AfterEach;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.actuate.metrics.AutoConfigureMetrics;
 import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
 import org.springframework.boot.test.context.SpringBootTest;
 import org.springframework.http.HttpHeaders;
 import org.springframework.http.MediaType;
 import org.springframework.test.web.servlet.MockMvc;
 
+import java.nio.charset.StandardCharsets;
 import java.time.LocalDateTime;
+import java.util.ArrayList;
 import java.util.List;
 import java.util.UUID;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
 
 import static org.hamcrest.Matchers.*;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
 import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
 import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.post;
 import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.*;
 
-@SpringBootTest
+// Enough retries for the concurrent deposits test never to give up
+@SpringBootTest(properties = "bank.retry.max-attempts=100")
 @AutoConfigureMockMvc
+@AutoConfigureMetrics
 public class AccountResourceControllerIntegrationTest {
     final static String API_BASE_URL = "/api/v1/accounts/";
     @Autowired
@@ -36,12 +51,18 @@ public class AccountResourceControllerIntegrationTest {
     AccountRepository accountRepository;
     @Autowired
     TransactionRepository transactionRepository;
+    @Autowired
+    AccountCache accountCache;
+    @Autowired
+    IdempotencyService idempotencyService;
 
     final static UUID accountNumber1 = UUID.randomUUID();
     final static UUID accountNumber2 = UUID.randomUUID();
 
     @BeforeEach
     void setup() {
+        // Accounts are recreated behind the cache's back
+        accountCache.evictAll();
         if (accountRepository.count() != 0) {
             transactionRepository.deleteAll();
             accountRepository.deleteAll();
@@ -115,6 +136,34 @@ public class AccountResourceControllerIntegrationTest {
                 .andExpect(jsonPath("$[0].ownerName", is("Anis BESSA")));
     }
 
+    @Test
+    public void should_return_sorted_accounts_page() throws Exception {
+        mockMvc.perform(get(API_BASE_URL)
+                        .param("size", "1")
+                        .param("sort", "ownerName,desc")
+                        .contentType(MediaType.APPLICATION_JSON))
+                .andExpect(status().isOk())
+                .andExpect(header().string(AccountResourceController.TOTAL_COUNT_HEADER, "2"))
+                .andExpect(jsonPath("$", hasSize(1)))
+                .andExpect(jsonPath("$[0].accountNumber", is(accountNumber2.toString())))
+                .andExpect(jsonPath("$[0].ownerName", is("NOUNI EL Bachir")));
+    }
+
+    @Test
+    public void should_return_accounts_with_min_balance() throws Exception {
+        mockMvc.perform(get(API_BASE_URL)
+                        .param("minBalanceInCents", "10000")
+                        .contentType(MediaType.APPLICATION_JSON))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$", hasSize(2)));
+        mockMvc.perform(get(API_BASE_URL)
+                        .param("minBalanceInCents", "10001")
+                        .contentType(MediaType.APPLICATION_JSON))
+                .andExpect(status().isOk())
+                .andExpect(header().string(AccountResourceController.TOTAL_COUNT_HEADER, "0"))
+                .andExpect(jsonPath("$").isEmpty());
+    }
+
     @Test
     public void should_return_error_when_balance_negative() throws Exception {
         AccountRequestDto request = AccountRequestDto.builder()
@@ -174,6 +223,279 @@ public class AccountResourceControllerIntegrationTest {
                 .andExpect(jsonPath("$.ownerName", is("NOUNI EL Bachir")));
     }
 
+    @Test
+    public void should_return_created_accounts_in_requests_order() throws Exception {
+        List<AccountRequestDto> requests = List.of(
+                AccountRequestDto.builder().ownerName("Owner 1").initialBalanceInCents(1_00).build(),
+                AccountRequestDto.builder().ownerName("Owner 2").initialBalanceInCents(2_00).build(),
+                AccountRequestDto.builder().ownerName("Owner 3").initialBalanceInCents(3_00).build());
+
+        mockMvc.perform(post(API_BASE_URL + "bulk")
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content((new JsonMapper()).writeValueAsString(requests)))
+                .andExpect(status().isCreated())
+                .andExpect(jsonPath("$", hasSize(3)))
+                .andExpect(jsonPath("$[*].ownerName", contains("Owner 1", "Owner 2", "Owner 3")))
+                .andExpect(jsonPath("$[*].currentBalance", contains("1.00€", "2.00€", "3.00€")));
+        assertEquals(5, accountRepository.count());
+    }
+
+    @Test
+    public void should_create_no_account_when_one_bulk_request_is_invalid() throws Exception {
+        List<AccountRequestDto> requests = List.of(
+                AccountRequestDto.builder().ownerName("Owner 1").initialBalanceInCents(1_00).build(),
+                AccountRequestDto.builder().ownerName("Owner 2").initialBalanceInCents(-1).build());
+
+        mockMvc.perform(post(API_BASE_URL + "bulk")
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content((new JsonMapper()).writeValueAsString(requests)))
+                .andExpect(status().isBadRequest());
+        assertEquals(2, accountRepository.count());
+    }
+
+    @Test
+    public void should_create_no_account_when_one_bulk_request_is_null() throws Exception {
+        mockMvc.perform(post(API_BASE_URL + "bulk")
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content("[" + AccountRequestDto.builder().ownerName("Owner 1").initialBalanceInCents(1_00).build().asJson()
+                                + ", null]"))
+                .andExpect(status().isBadRequest())
+                .andExpect(result -> assertEquals("Account #1 : request is missing", result.getResolvedException().getMessage()));
+        assertEquals(2, accountRepository.count());
+    }
+
+    @Test
+    public void should_post_every_concurrent_deposit_when_retrying_on_conflict() throws Exception {
+        int threads = 4;
+        int depositsPerThread = 10;
+        String request = (new JsonMapper()).writeValueAsString(TransactionRequestDto.builder()
+                .accountNumber(accountNumber1)
+                .amountInCents(1_00)
+                .operation(Transaction.TxType.DEPOSIT)
+                .description("Concurrent deposit")
+                .build());
+        ExecutorService pool = Executors.newFixedThreadPool(threads);
+        try {
+            List<Future<?>> futures = new ArrayList<>();
+            for (int t = 0; t < threads; t++)
+                futures.add(pool.submit(() -> {
+                    for (int i = 0; i < depositsPerThread; i++)
+                        mockMvc.perform(post(API_BASE_URL + "transactions")
+                                        .header(AccountResourceController.RETRY_ON_CONFLICT_HEADER, "true")
+                                        .contentType(MediaType.APPLICATION_JSON)
+                                        .content(request))
+                                .andExpect(status().isCreated());
+                    return null;
+                }));
+            for (Future<?> future : futures)
+                future.get(1, TimeUnit.MINUTES);
+        } finally {
+            pool.shutdownNow();
+        }
+
+        assertEquals(100_00 + threads * depositsPerThread * 1_00,
+                accountRepository.findOneByAccountNumber(accountNumber1).orElseThrow().getCurrentBalanceInCents());
+    }
+
+    @Test
+    public void should_post_once_when_retried_with_same_idempotency_key() throws Exception {
+        String idempotencyKey = UUID.randomUUID().toString();
+        String request = (new JsonMapper()).writeValueAsString(TransactionRequestDto.builder()
+                .accountNumber(accountNumber1)
+                .amountInCents(10_00)
+                .operation(Transaction.TxType.DEPOSIT)
+                .description("Deposit")
+                .build());
+
+        String txRef = mockMvc.perform(post(API_BASE_URL + "transactions")
+                        .header(AccountResourceController.IDEMPOTENCY_KEY_HEADER, idempotencyKey)
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content(request))
+                .andExpect(status().isCreated())
+                .andReturn().getResponse().getContentAsString(StandardCharsets.UTF_8);
+        mockMvc.perform(post(API_BASE_URL + "transactions")
+                        .header(AccountResourceController.IDEMPOTENCY_KEY_HEADER, idempotencyKey)
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content(request))
+                .andExpect(status().isCreated())
+                .andExpect(content().json(txRef));
+
+        assertEquals(110_00,
+                accountRepository.findOneByAccountNumber(accountNumber1).orElseThrow().getCurrentBalanceInCents());
+        assertTrue(transactionRepository.findOneByIdempotencyKey(idempotencyKey).isPresent());
+    }
+
+    @Test
+    public void should_post_once_when_retried_with_same_idempotency_key_after_cache_eviction() throws Exception {
+        String idempotencyKey = UUID.randomUUID().toString();
+        String request = (new JsonMapper()).writeValueAsString(TransactionRequestDto.builder()
+                .accountNumber(accountNumber1)
+                .accountVersion(0)
+                .amountInCents(100_00)
+                .operation(Transaction.TxType.WITHDRAWAL)
+                .description("Withdrawal")
+                .build());
+
+        String txRef = mockMvc.perform(post(API_BASE_URL + "transactions")
+                        .header(AccountResourceController.IDEMPOTENCY_KEY_HEADER, idempotencyKey)
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content(request))
+                .andExpect(status().isCreated())
+                .andReturn().getResponse().getContentAsString(StandardCharsets.UTF_8);
+        // As after a restart : the retry's version is stale and the balance too low to post it again
+        idempotencyService.evictAll();
+        mockMvc.perform(post(API_BASE_URL + "transactions")
+                        .header(AccountResourceController.IDEMPOTENCY_KEY_HEADER, idempotencyKey)
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content(request))
+                .andExpect(status().isCreated())
+                .andExpect(content().json(txRef));
+
+        assertEquals(0,
+                accountRepository.findOneByAccountNumber(accountNumber1).orElseThrow().getCurrentBalanceInCents());
+    }
+
+    @Test
+    public void should_not_serve_cached_balance_after_a_write() throws Exception {
+        mockMvc.perform(get(API_BASE_URL + accountNumber1)
+                        .contentType(MediaType.APPLICATION_JSON))
+                .andExpect(jsonPath("$.currentBalance", is("100.00€")));
+        mockMvc.perform(post(API_BASE_URL + "transactions")
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content((new JsonMapper()).writeValueAsString(TransactionRequestDto.builder()
+                                .accountNumber(accountNumber1)
+                                .accountVersion(0)
+                                .amountInCents(30_00)
+                                .operation(Transaction.TxType.WITHDRAWAL)
+                                .description("Withdrawal")
+                                .build())))
+                .andExpect(status().isCreated());
+
+        mockMvc.perform(get(API_BASE_URL + accountNumber1)
+                        .contentType(MediaType.APPLICATION_JSON))
+                .andExpect(jsonPath("$.currentBalance", is("70.00€")));
+    }
+
+    @Test
+    public void should_answer_not_modified_until_account_changes() throws Exception {
+        String etag = mockMvc.perform(get(API_BASE_URL + accountNumber1)
+                        .contentType(MediaType.APPLICATION_JSON))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.version", is(0)))
+                .andExpect(header().string(HttpHeaders.ETAG, "\"0\""))
+                .andReturn().getResponse().getHeader(HttpHeaders.ETAG);
+        mockMvc.perform(get(API_BASE_URL + accountNumber1)
+                        .header(HttpHeaders.IF_NONE_MATCH, etag)
+                        .contentType(MediaType.APPLICATION_JSON))
+                .andExpect(status().isNotModified());
+        mockMvc.perform(get(API_BASE_URL + accountNumber1 + "/transactions")
+                        .header(HttpHeaders.IF_NONE_MATCH, etag)
+                        .contentType(MediaType.APPLICATION_JSON))
+                .andExpect(status().isNotModified());
+
+        mockMvc.perform(post(API_BASE_URL + "transactions")
+                        .header(HttpHeaders.IF_MATCH, etag)
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content((new JsonMapper()).writeValueAsString(TransactionRequestDto.builder()
+                                .accountNumber(accountNumber1)
+                                .amountInCents(10_00)
+                                .operation(Transaction.TxType.DEPOSIT)
+                                .description("Deposit")
+                                .build())))
+                .andExpect(status().isCreated());
+
+        mockMvc.perform(get(API_BASE_URL + accountNumber1)
+                        .header(HttpHeaders.IF_NONE_MATCH, etag)
+                        .contentType(MediaType.APPLICATION_JSON))
+                .andExpect(status().isOk())
+                .andExpect(header().string(HttpHeaders.ETAG, "\"1\""))
+                .andExpect(jsonPath("$.currentBalance", is("110.00€")));
+        mockMvc.perform(get(API_BASE_URL + accountNumber1 + "/transactions")
+                        .header(HttpHeaders.IF_NONE_MATCH, etag)
+                        .contentType(MediaType.APPLICATION_JSON))
+                .andExpect(status().isOk())
+                .andExpect(header().string(HttpHeaders.ETAG, "\"1\""))
+                .andExpect(jsonPath("$", hasSize(1)));
+    }
+
+    @Test
+    public void should_export_transactions_as_ndjson_and_csv() throws Exception {
+        String ndjson = mockMvc.perform(get(API_BASE_URL + accountNumber2 + "/transactions/export")
+                        .contentType(MediaType.APPLICATION_JSON))
+                .andExpect(status().isOk())
+                .andExpect(header().string(HttpHeaders.CONTENT_TYPE, startsWith("application/x-ndjson")))
+                .andExpect(header().string(HttpHeaders.CONTENT_DISPOSITION, containsString(accountNumber2 + ".ndjson")))
+                .andReturn().getResponse().getContentAsString(StandardCharsets.UTF_8);
+        String[] lines = ndjson.split("\n");
+        assertEquals(3, lines.length);
+        JsonNode newest = new JsonMapper().readTree(lines[0]);
+        assertEquals("100.00€", newest.get("accountBalance").asText());
+        assertEquals("20.00€", newest.get("amount").asText());
+        assertEquals("Withdrawal d'argent 1", newest.get("description").asText());
+        assertEquals(accountNumber2.toString(), newest.get("accountNumber").asText());
+        assertEquals("WITHDRAWAL", newest.get("operation").asText());
+
+        String csv = mockMvc.perform(get(API_BASE_URL + accountNumber2 + "/transactions/export?format=csv")
+                        .contentType(MediaType.APPLICATION_JSON))
+                .andExpect(status().isOk())
+                .andExpect(header().string(HttpHeaders.CONTENT_TYPE, startsWith("text/csv")))
+                .andReturn().getResponse().getContentAsString(StandardCharsets.UTF_8);
+        lines = csv.split("\r\n");
+        assertEquals(4, lines.length);
+        assertEquals("txRef,accountBalance,amount,transactionAt,description,accountNumber,operation", lines[0]);
+        assertTrue(lines[3].contains(",40.00€,40.00€,"));
+        assertTrue(lines[3].endsWith(",Depot d'argent 1," + accountNumber2 + ",DEPOSIT"));
+    }
+
+    @Test
+    public void should_return_error_when_export_requested_for_no_existing_account_or_format() throws Exception {
+        mockMvc.perform(get(API_BASE_URL + UUID.randomUUID() + "/transactions/export")
+                        .contentType(MediaType.APPLICATION_JSON))
+                .andExpect(status().isNotFound());
+        mockMvc.perform(get(API_BASE_URL + accountNumber2 + "/transactions/export?format=xml")
+                        .contentType(MediaType.APPLICATION_JSON))
+                .andExpect(status().isBadRequest());
+    }
+
+    @Test
+    public void should_return_precondition_failed_when_if_match_is_stale() throws Exception {
+        mockMvc.perform(post(API_BASE_URL + "transactions")
+                        .header(HttpHeaders.IF_MATCH, "\"7\"")
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content((new JsonMapper()).writeValueAsString(TransactionRequestDto.builder()
+                                .accountNumber(accountNumber1)
+                                .amountInCents(10_00)
+                                .operation(Transaction.TxType.WITHDRAWAL)
+                                .description("Withdrawal")
+                                .build())))
+                .andExpect(status().isPreconditionFailed());
+        mockMvc.perform(post(API_BASE_URL + "transactions")
+                        .header(HttpHeaders.IF_MATCH, "not-an-etag")
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content((new JsonMapper()).writeValueAsString(TransactionRequestDto.builder()
+                                .accountNumber(accountNumber1)
+                                .amountInCents(10_00)
+                                .operation(Transaction.TxType.WITHDRAWAL)
+                                .description("Withdrawal")
+                                .build())))
+                .andExpect(status().isBadRequest());
+    }
+
+    @Test
+    public void should_skip_version_check_when_if_match_is_any() throws Exception {
+        for (int i = 0; i < 2; i++)
+            mockMvc.perform(post(API_BASE_URL + "transactions")
+                            .header(HttpHeaders.IF_MATCH, "*")
+                            .contentType(MediaType.APPLICATION_JSON)
+                            .content((new JsonMapper()).writeValueAsString(TransactionRequestDto.builder()
+                                    .accountNumber(accountNumber1)
+                                    .amountInCents(10_00)
+                                    .operation(Transaction.TxType.DEPOSIT)
+                                    .description("Deposit")
+                                    .build())))
+                    .andExpect(status().isCreated());
+    }
+
     @Test
     public void should_return_not_found_when_no_existing_account_was_requested() throws Exception {
         mockMvc.perform(get(API_BASE_URL + UUID.randomUUID())
@@ -193,4 +515,121 @@ public class AccountResourceControllerIntegrationTest {
                 .andExpect(jsonPath("$.currentBalance", is("100.00€")))
                 .andExpect(jsonPath("$.ownerName", is("Anis BESSA")));
     }
+
+    @Test
+    public void should_return_transactions_history_newest_first_page_by_page() throws Exception {
+        String cursor = mockMvc.perform(get(API_BASE_URL + accountNumber2 + "/transactions")
+                        .param("size", "2")
+                        .contentType(MediaType.APPLICATION_JSON))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$", hasSize(2)))
+                .andExpect(jsonPath("$[0].description", is("Withdrawal d'argent 1")))
+                .andExpect(jsonPath("$[1].description", is("Depot d'argent 2")))
+                .andExpect(header().exists(AccountResourceController.NEXT_CURSOR_HEADER))
+                .andReturn().getResponse().getHeader(AccountResourceController.NEXT_CURSOR_HEADER);
+
+        mockMvc.perform(get(API_BASE_URL + accountNumber2 + "/transactions")
+                        .param("size", "2")
+                        .param("cursor", cursor)
+                        .contentType(MediaType.APPLICATION_JSON))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$", hasSize(1)))
+                .andExpect(jsonPath("$[0].description", is("Depot d'argent 1")))
+                .andExpect(header().doesNotExist(AccountResourceController.NEXT_CURSOR_HEADER));
+    }
+
+    @Test
+    public void should_post_batch_in_order_and_report_each_operation() throws Exception {
+        UUID unknownAccount = UUID.randomUUID();
+        List<TransactionRequestDto> batch = List.of(
+                TransactionRequestDto.builder().accountNumber(accountNumber1).amountInCents(150_00)
+                        .operation(Transaction.TxType.WITHDRAWAL).description("Too much").build(),
+                TransactionRequestDto.builder().accountNumber(accountNumber1).amountInCents(50_00)
+                        .operation(Transaction.TxType.DEPOSIT).description("Deposit").build(),
+                TransactionRequestDto.builder().accountNumber(accountNumber2).amountInCents(30_00)
+                        .operation(Transaction.TxType.WITHDRAWAL).description("Withdrawal").build(),
+                TransactionRequestDto.builder().accountNumber(accountNumber1).amountInCents(150_00)
+                        .operation(Transaction.TxType.WITHDRAWAL).description("Now enough").build(),
+                TransactionRequestDto.builder().accountNumber(unknownAccount).amountInCents(10_00)
+                        .operation(Transaction.TxType.DEPOSIT).description("Nobody").build());
+
+        mockMvc.perform(post(API_BASE_URL + "transactions/batch")
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content((new JsonMapper()).writeValueAsString(batch)))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$", hasSize(5)))
+                .andExpect(jsonPath("$[*].index", contains(0, 1, 2, 3, 4)))
+                .andExpect(jsonPath("$[*].status", contains("REJECTED", "POSTED", "POSTED", "POSTED", "REJECTED")))
+                .andExpect(jsonPath("$[1].transaction.accountBalance", is("150.00€")))
+                .andExpect(jsonPath("$[2].transaction.accountBalance", is("70.00€")))
+                .andExpect(jsonPath("$[3].transaction.accountBalance", is("0.00€")))
+                .andExpect(jsonPath("$[4].error", containsString(unknownAccount.toString())));
+
+        mockMvc.perform(get(API_BASE_URL + accountNumber1)
+                        .contentType(MediaType.APPLICATION_JSON))
+                .andExpect(jsonPath("$.currentBalance", is("0.00€")));
+        mockMvc.perform(get(API_BASE_URL + accountNumber1 + "/transactions")
+                        .contentType(MediaType.APPLICATION_JSON))
+                .andExpect(jsonPath("$", hasSize(2)));
+    }
+
+    @Test
+    public void should_reject_only_invalid_operations_of_a_batch() throws Exception {
+        List<TransactionRequestDto> batch = List.of(
+                TransactionRequestDto.builder().accountNumber(accountNumber1).amountInCents(10_00)
+                        .operation(Transaction.TxType.DEPOSIT).description("Deposit").build(),
+                TransactionRequestDto.builder().accountNumber(accountNumber1).amountInCents(10_00)
+                        .operation(Transaction.TxType.DEPOSIT).description("x".repeat(Transaction.DESCRIPTION_MAX_LENGTH + 1)).build(),
+                TransactionRequestDto.builder().accountNumber(accountNumber1).amountInCents(0)
+                        .operation(Transaction.TxType.DEPOSIT).description("Nothing").build(),
+                TransactionRequestDto.builder().accountNumber(accountNumber1).amountInCents(20_00)
+                        .operation(Transaction.TxType.WITHDRAWAL).description("Withdrawal").build());
+
+        mockMvc.perform(post(API_BASE_URL + "transactions/batch")
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content((new JsonMapper()).writeValueAsString(batch)))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$[*].status", contains("POSTED", "REJECTED", "REJECTED", "POSTED")))
+                .andExpect(jsonPath("$[1].error", containsString("description")))
+                .andExpect(jsonPath("$[2].error", containsString("amountInCents")))
+                .andExpect(jsonPath("$[3].transaction.accountBalance", is("90.00€")));
+    }
+
+    @Test
+    public void should_reject_null_operations_and_operations_without_account_of_a_batch() throws Exception {
+        TransactionRequestDto deposit = TransactionRequestDto.builder().accountNumber(accountNumber1).amountInCents(10_00)
+                .operation(Transaction.TxType.DEPOSIT).description("Deposit").build();
+
+        mockMvc.perform(post(API_BASE_URL + "transactions/batch")
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content("[" + (new JsonMapper()).writeValueAsString(deposit) + ", null,"
+                                + " {\"amountInCents\": 1000, \"operation\": \"DEPOSIT\", \"description\": \"No account\"}]"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$[*].status", contains("POSTED", "REJECTED", "REJECTED")))
+                .andExpect(jsonPath("$[1].error", containsString("missing")))
+                .andExpect(jsonPath("$[2].error", containsString("accountNumber")))
+                .andExpect(jsonPath("$[0].transaction.accountBalance", is("110.00€")));
+    }
+
+    @Test
+    public void should_expose_ledger_metrics_for_prometheus() throws Exception {
+        TransactionRequestDto tooMuch = TransactionRequestDto.builder().accountNumber(accountNumber1)
+                .amountInCents(1_000_00).operation(Transaction.TxType.WITHDRAWAL).description("Too much").build();
+        mockMvc.perform(post(API_BASE_URL + "transactions")
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content((new JsonMapper()).writeValueAsString(tooMuch)))
+                .andExpect(status().isBadRequest());
+        mockMvc.perform(get(API_BASE_URL + UUID.randomUUID())
+                        .contentType(MediaType.APPLICATION_JSON))
+                .andExpect(status().isNotFound());
+
+        mockMvc.perform(get("/actuator/prometheus"))
+                .andExpect(status().isOk())
+                .andExpect(content().string(containsString(
+                        "bank_ledger_insufficient_funds_total{operation=\"withdrawal\",}")))
+                .andExpect(content().string(containsString(
+                        "bank_ledger_not_found_total{operation=\"account_read\",}")))
+                .andExpect(content().string(containsString(
+                        "bank_ledger_operations_seconds_bucket{operation=\"withdrawal\",outcome=\"insufficient_funds\"")));
+    }
 }
@@ -0,0 +1,184 @@
+package com.harington.kata.bank.api;
+
+import com.fasterxml.jackson.databind.json.JsonMapper;
+import com.harington.kata.bank.entity.Account;
+import com.harington.kata.bank.entity.Transaction;
+import com.harington.kata.bank.entity.dto.AccountRequestDto;
+import com.harington.kata.bank.entity.dto.TransactionRequestDto;
+import com.harington.kata.bank.repository.AccountRepository;
+import com.harington.kata.bank.repository.TransactionRepository;
+import com.harington.kata.bank.service.AccountCache;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.http.MediaType;
+import org.springframework.test.web.servlet.MockMvc;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+
+import static com.harington.kata.bank.monitoring.SqlBudget.*;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.post;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+/**
+ * SQL statements budget of each endpoint, on accounts with a long history so that an N+1 select
+ * (one statement per account or per transaction) can't stay under budget. Budgets are the measured
+ * counts, id sequence calls aside : a single extra statement fails the build.
+ */
+@SpringBootTest
+@AutoConfigureMockMvc
+public class AccountResourceControllerSqlBudgetTest {
+    final static String API_BASE_URL = "/api/v1/accounts/";
+    final static int HISTORY_LENGTH = 50;
+    final static int ACCOUNTS = 20;
+
+    @Autowired
+    MockMvc mockMvc;
+    @Autowired
+    AccountRepository accountRepository;
+    @Autowired
+    TransactionRepository transactionRepository;
+    @Autowired
+    AccountCache accountCache;
+
+    final JsonMapper jsonMapper = new JsonMapper();
+    UUID accountNumber;
+
+    @BeforeEach
+    void setup() {
+        accountCache.evictAll();
+        transactionRepository.deleteAll();
+        accountRepository.deleteAll();
+        List<Account> accounts = new ArrayList<>();
+        for (int i = 0; i < ACCOUNTS; i++)
+            accounts.add(Account.builder()
+                    .accountNumber(UUID.randomUUID())
+                    .initialBalanceInCents(0)
+                    .currentBalanceInCents(HISTORY_LENGTH * 10_00)
+                    .ownerName("Owner " + i)
+                    .createdAt(LocalDateTime.now().minusMonths(1))
+                    .build());
+        accountRepository.saveAll(accounts);
+        Account account = accounts.get(0);
+        accountNumber = account.getAccountNumber();
+        List<Transaction> txs = new ArrayList<>();
+        for (int i = 0; i < HISTORY_LENGTH; i++)
+            txs.add(Transaction.builder()
+                    .txRef(UUID.randomUUID())
+                    .account(account)
+                    .txType(Transaction.TxType.DEPOSIT)
+                    .amountInCents(10_00)
+                    .description("Deposit " + i)
+                    .postTxAccountBalanceInCents((i + 1) * 10_00)
+                    .transactionAt(LocalDateTime.now().minusDays(HISTORY_LENGTH - i))
+                    .build());
+        transactionRepository.saveAll(txs);
+    }
+
+    @AfterEach
+    void teardown() {
+        transactionRepository.deleteAll();
+        accountRepository.deleteAll();
+    }
+
+    @Test
+    public void accounts_page_within_budget() throws Exception {
+        mockMvc.perform(get(API_BASE_URL).param("size", "10")
+                        .contentType(MediaType.APPLICATION_JSON))
+                .andExpect(status().isOk())
+                .andExpect(statementsAtMost(2))
+                .andExpect(entitiesLoadedAtMost(0))
+                .andExpect(noCollectionFetched());
+    }
+
+    @Test
+    public void account_within_budget() throws Exception {
+        mockMvc.perform(get(API_BASE_URL + accountNumber)
+                        .contentType(MediaType.APPLICATION_JSON))
+                .andExpect(status().isOk())
+                .andExpect(statementsAtMost(1))
+                .andExpect(entitiesLoadedAtMost(1))
+                .andExpect(noCollectionFetched());
+    }
+
+    @Test
+    public void history_within_budget() throws Exception {
+        mockMvc.perform(get(API_BASE_URL + accountNumber + "/transactions").param("size", "20")
+                        .contentType(MediaType.APPLICATION_JSON))
+                .andExpect(status().isOk())
+                .andExpect(statementsAtMost(2))
+                .andExpect(entitiesLoadedAtMost(1 + 21))
+                .andExpect(noCollectionFetched());
+    }
+
+    @Test
+    public void new_account_within_budget() throws Exception {
+        mockMvc.perform(post(API_BASE_URL)
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content(AccountRequestDto.builder().ownerName("New owner").initialBalanceInCents(10_00).build().asJson()))
+                .andExpect(status().isCreated())
+                .andExpect(statementsAtMost(1));
+    }
+
+    @Test
+    public void bulk_accounts_within_budget() throws Exception {
+        List<AccountRequestDto> requests = new ArrayList<>();
+        for (int i = 0; i < 100; i++)
+            requests.add(AccountRequestDto.builder().ownerName("Bulk owner " + i).initialBalanceInCents(i).build());
+        mockMvc.perform(post(API_BASE_URL + "bulk")
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content(jsonMapper.writeValueAsString(requests)))
+                .andExpect(status().isCreated())
+                // One insert, sent as two JDBC batches
+                .andExpect(statementsAtMost(1));
+    }
+
+    @Test
+    public void deposit_within_budget() throws Exception {
+        mockMvc.perform(post(API_BASE_URL + "transactions")
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content(jsonMapper.writeValueAsString(operation(Transaction.TxType.DEPOSIT))))
+                .andExpect(status().isCreated())
+                .andExpect(statementsAtMost(3))
+                .andExpect(noCollectionFetched());
+    }
+
+    @Test
+    public void withdrawal_within_budget() throws Exception {
+        mockMvc.perform(post(API_BASE_URL + "transactions")
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content(jsonMapper.writeValueAsString(operation(Transaction.TxType.WITHDRAWAL))))
+                .andExpect(status().isCreated())
+                .andExpect(statementsAtMost(2))
+                .andExpect(noCollectionFetched());
+    }
+
+    @Test
+    public void batch_within_budget() throws Exception {
+        List<TransactionRequestDto> batch = new ArrayList<>();
+        for (int i = 0; i < 100; i++)
+            batch.add(operation(i % 2 == 0 ? Transaction.TxType.DEPOSIT : Transaction.TxType.WITHDRAWAL));
+        mockMvc.perform(post(API_BASE_URL + "transactions/batch")
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content(jsonMapper.writeValueAsString(batch)))
+                .andExpect(status().isOk())
+                .andExpect(statementsAtMost(2))
+                .andExpect(noCollectionFetched());
+    }
+
+    TransactionRequestDto operation(Transaction.TxType type) {
+        return TransactionRequestDto.builder()
+                .accountNumber(accountNumber)
+                .amountInCents(1_00)
+                .operation(type)
+                .description(type.name())
+                .build();
+    }
+}
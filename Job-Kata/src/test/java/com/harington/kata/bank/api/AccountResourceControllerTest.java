@@ -12,6 +12,10 @@ import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
 import org.springframework.boot.test.context.SpringBootTest;
 import org.springframework.boot.test.mock.mockito.MockBean;
+import org.springframework.data.domain.Page;
+import org.springframework.data.domain.PageImpl;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.data.domain.Sort;
 import org.springframework.http.HttpHeaders;
 import org.springframework.http.MediaType;
 import org.springframework.test.web.servlet.MockMvc;
@@ -21,6 +25,7 @@ import java.util.List;
 import java.util.Optional;
 import java.util.UUID;
 
+import static org.hamcrest.Matchers.containsString;
 import static org.hamcrest.Matchers.hasSize;
 import static org.hamcrest.Matchers.is;
 import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
@@ -44,7 +49,7 @@ public class AccountResourceControllerTest {
 
         @Test
         public void should_return_empty_list() throws Exception {
-                Mockito.when(accountService.getAllAccounts()).thenReturn(List.of());
+                Mockito.when(accountService.getAllAccounts(Mockito.any())).thenReturn(Page.empty());
 
                 mockMvc.perform(get(API_BASE_URL)
                                 .contentType(MediaType.APPLICATION_JSON))
@@ -60,13 +65,13 @@ public class AccountResourceControllerTest {
                 //GIVEN
                 final String accNumber = UUID.randomUUID().toString();
                 final String createdAt = DatesFormatter.format(LocalDateTime.now().minusMonths(1));
-                Mockito.when(accountService.getAllAccounts()).thenReturn(List.of(
+                Mockito.when(accountService.getAllAccounts(Mockito.any())).thenReturn(new PageImpl<>(List.of(
                         AccountDto.builder()
                                 .accountNumber(accNumber)
                                 .currentBalance("100.00€")
                                 .ownerName("NOUNI EL Bachir")
                                 .createdAt(createdAt)
-                                .build()));
+                                .build())));
 
                 //WHEN
                 mockMvc.perform(get(API_BASE_URL)
@@ -193,4 +198,25 @@ public class AccountResourceControllerTest {
                         .andExpect(jsonPath("$.ownerName", is("Anis BESSA")))
                         .andExpect(jsonPath("$.createdAt", is("02/01/2021 10:30:00")));
         }
+
+        @Test
+        public void should_pass_page_request_and_return_paging_headers() throws Exception {
+                Mockito.when(accountService.getAllAccounts(PageRequest.of(0, 1, Sort.by(Sort.Direction.DESC, "createdAt"))))
+                        .thenReturn(new PageImpl<>(List.of(AccountDto.builder()
+                                .accountNumber(UUID.randomUUID().toString())
+                                .currentBalance("100.00€")
+                                .ownerName("NOUNI EL Bachir")
+                                .createdAt(DatesFormatter.format(LocalDateTime.now()))
+                                .build()), PageRequest.of(0, 1), 3));
+
+                mockMvc.perform(get(API_BASE_URL)
+                                .param("page", "0")
+                                .param("size", "1")
+                                .param("sort", "createdAt,desc")
+                                .contentType(MediaType.APPLICATION_JSON))
+                        .andExpect(status().isOk())
+                        .andExpect(jsonPath("$", hasSize(1)))
+                        .andExpect(header().string(AccountResourceController.TOTAL_COUNT_HEADER, "3"))
+                        .andExpect(header().string(HttpHeaders.LINK, containsString("page=1")));
+        }
 }
@@ -1,9 +1,14 @@
 package com.harington.kata.bank.api;
 
 import com.fasterxml.jackson.databind.ObjectMapper;
+import com.harington.kata.bank.entity.Account;
 import com.harington.kata.bank.entity.Transaction;
 import com.harington.kata.bank.entity.dto.TransactionDto;
+import com.harington.kata.bank.entity.dto.TransactionHistoryPage;
 import com.harington.kata.bank.entity.dto.TransactionRequestDto;
+import com.harington.kata.bank.entity.dto.TransferDto;
+import com.harington.kata.bank.entity.dto.TransferRequestDto;
+import com.harington.kata.bank.exceptions.ConcurrentUpdateException;
 import com.harington.kata.bank.exceptions.EntityNotFoundException;
 import com.harington.kata.bank.exceptions.InvalidOperationException;
 import com.harington.kata.bank.formatters.DatesFormatter;
@@ -15,6 +20,7 @@ import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMock
 import org.springframework.boot.test.context.SpringBootTest;
 import org.springframework.boot.test.mock.mockito.MockBean;
 import org.springframework.http.HttpHeaders;
+import org.springframework.orm.ObjectOptimisticLockingFailureException;
 import org.springframework.http.MediaType;
 import org.springframework.test.web.servlet.MockMvc;
 
@@ -69,7 +75,8 @@ public class AccountResourceControllerTransactionsTest {
                 Mockito.when(transactionService.doDepositOn(Mockito.any(),
                                 Mockito.anyInt(),
                                 Mockito.anyString(),
-                                Mockito.anyInt()))
+                                Mockito.anyInt(),
+                                Mockito.isNull()))
                                 .thenThrow(EntityNotFoundException.class);
 
                 mockMvc.perform(post(API_TX_BASE_URL)
@@ -102,7 +109,8 @@ public class AccountResourceControllerTransactionsTest {
                 Mockito.when(transactionService.doDepositOn(Mockito.eq(accountNumber),
                                 Mockito.eq(100_00),
                                 Mockito.eq(dto.getDescription()),
-                                Mockito.anyInt()))
+                                Mockito.anyInt(),
+                                Mockito.isNull()))
                         .thenReturn(dto);
 
                 mockMvc.perform(post(API_TX_BASE_URL)
@@ -122,6 +130,113 @@ public class AccountResourceControllerTransactionsTest {
                                 .andExpect(jsonPath("$.accountNumber", is(dto.getAccountNumber())));
         }
 
+        @Test
+        public void should_retry_deposit_on_conflict_when_requested() throws Exception {
+                UUID accountNumber = UUID.randomUUID();
+                TransactionRequestDto request = TransactionRequestDto.builder()
+                        .accountNumber(accountNumber)
+                        .accountVersion(3)
+                        .amountInCents(100_00)
+                        .operation(Transaction.TxType.DEPOSIT)
+                        .description("Dépôt N° 1")
+                        .build();
+                TransactionDto dto = TransactionDto.builder()
+                        .txRef(UUID.randomUUID().toString())
+                        .accountBalance("200.00€")
+                        .amount("100.00€")
+                        .accountNumber(accountNumber.toString())
+                        .description("Dépôt N° 1")
+                        .operation(Transaction.TxType.DEPOSIT.name())
+                        .build();
+                Mockito.when(transactionService.doDepositOn(accountNumber, 100_00, "Dépôt N° 1", null, null))
+                        .thenThrow(new ConcurrentUpdateException("Stale version"))
+                        .thenReturn(dto);
+
+                mockMvc.perform(post(API_TX_BASE_URL)
+                                .header(AccountResourceController.RETRY_ON_CONFLICT_HEADER, "true")
+                                .contentType(MediaType.APPLICATION_JSON)
+                                .content((new ObjectMapper()).writeValueAsString(request)))
+                        .andExpect(status().isCreated())
+                        .andExpect(jsonPath("$.txRef", is(dto.getTxRef())));
+                Mockito.verify(transactionService, Mockito.times(2))
+                        .doDepositOn(accountNumber, 100_00, "Dépôt N° 1", null, null);
+        }
+
+        @Test
+        public void should_return_precondition_failed_when_deposit_loses_the_race_at_commit() throws Exception {
+                UUID accountNumber = UUID.randomUUID();
+                TransactionRequestDto request = TransactionRequestDto.builder()
+                        .accountNumber(accountNumber)
+                        .amountInCents(100_00)
+                        .operation(Transaction.TxType.DEPOSIT)
+                        .description("Dépôt N° 1")
+                        .build();
+                Mockito.when(transactionService.doDepositOn(accountNumber, 100_00, "Dépôt N° 1", 3, null))
+                        .thenThrow(new ObjectOptimisticLockingFailureException(Account.class, 1L));
+
+                mockMvc.perform(post(API_TX_BASE_URL)
+                                .header(HttpHeaders.IF_MATCH, "\"3\"")
+                                .contentType(MediaType.APPLICATION_JSON)
+                                .content((new ObjectMapper()).writeValueAsString(request)))
+                        .andExpect(status().isPreconditionFailed());
+        }
+
+        @Test
+        public void should_post_both_legs_when_do_transfer() throws Exception {
+                UUID from = UUID.randomUUID();
+                UUID to = UUID.randomUUID();
+                TransferRequestDto request = TransferRequestDto.builder()
+                        .fromAccountNumber(from)
+                        .toAccountNumber(to)
+                        .amountInCents(25_00)
+                        .description("Loyer")
+                        .build();
+                TransferDto dto = TransferDto.builder()
+                        .debit(TransactionDto.builder()
+                                .txRef(UUID.randomUUID().toString())
+                                .accountBalance("75.00€")
+                                .amount("25.00€")
+                                .accountNumber(from.toString())
+                                .description("Loyer")
+                                .operation(Transaction.TxType.WITHDRAWAL.name())
+                                .build())
+                        .credit(TransactionDto.builder()
+                                .txRef(UUID.randomUUID().toString())
+                                .accountBalance("25.00€")
+                                .amount("25.00€")
+                                .accountNumber(to.toString())
+                                .description("Loyer")
+                                .operation(Transaction.TxType.DEPOSIT.name())
+                                .build())
+                        .build();
+                Mockito.when(transactionService.doTransfer(request)).thenReturn(dto);
+
+                mockMvc.perform(post(API_BASE_URL + "/transfers")
+                                .contentType(MediaType.APPLICATION_JSON)
+                                .content((new ObjectMapper()).writeValueAsString(request)))
+                        .andExpect(status().isCreated())
+                        .andExpect(header().string(HttpHeaders.LOCATION, "/api/v1/accounts/" + from + "/transactions"))
+                        .andExpect(jsonPath("$.debit.accountNumber", is(from.toString())))
+                        .andExpect(jsonPath("$.debit.accountBalance", is("75.00€")))
+                        .andExpect(jsonPath("$.credit.accountNumber", is(to.toString())))
+                        .andExpect(jsonPath("$.credit.accountBalance", is("25.00€")));
+        }
+
+        @Test
+        public void should_return_error_when_transfer_amount_is_negatif() throws Exception {
+                TransferRequestDto request = TransferRequestDto.builder()
+                        .fromAccountNumber(UUID.randomUUID())
+                        .toAccountNumber(UUID.randomUUID())
+                        .amountInCents(-1)
+                        .build();
+
+                mockMvc.perform(post(API_BASE_URL + "/transfers")
+                                .contentType(MediaType.APPLICATION_JSON)
+                                .content((new ObjectMapper()).writeValueAsString(request)))
+                        .andExpect(status().isBadRequest());
+                Mockito.verifyNoInteractions(transactionService);
+        }
+
         @Test
         public void should_update_account_balance_when_do_withdrawal_all() throws Exception {
                 UUID accountNumber = UUID.randomUUID();
@@ -146,7 +261,8 @@ public class AccountResourceControllerTransactionsTest {
                 Mockito.when(transactionService.doWithdrawalOn(Mockito.any(),
                                 Mockito.anyInt(),
                                 Mockito.anyString(),
-                                Mockito.anyInt()))
+                                Mockito.anyInt(),
+                                Mockito.isNull()))
                                 .thenReturn(dto);
 
                 mockMvc.perform(post(API_TX_BASE_URL)
@@ -190,7 +306,8 @@ public class AccountResourceControllerTransactionsTest {
                 Mockito.when(transactionService.doWithdrawalOn(Mockito.any(),
                                 Mockito.anyInt(),
                                 Mockito.anyString(),
-                                Mockito.anyInt()))
+                                Mockito.anyInt(),
+                                Mockito.isNull()))
                                 .thenReturn(dto);
 
                 mockMvc.perform(post(API_TX_BASE_URL)
@@ -223,7 +340,8 @@ public class AccountResourceControllerTransactionsTest {
                 Mockito.when(transactionService.doWithdrawalOn(Mockito.any(),
                                 Mockito.anyInt(),
                                 Mockito.anyString(),
-                                Mockito.anyInt()))
+                                Mockito.anyInt(),
+                                Mockito.isNull()))
                                 .thenThrow(InvalidOperationException.class);
 
                 mockMvc.perform(post(API_TX_BASE_URL)
@@ -236,8 +354,8 @@ public class AccountResourceControllerTransactionsTest {
         public void should_return_empty_list_when_no_transactions_history_found_for_an_existing_account()
                         throws Exception {
                 UUID accountNumber = UUID.randomUUID();
-                Mockito.when(transactionService.getTransactionsHistoryFor(Mockito.any()))
-                                .thenReturn(List.of());
+                Mockito.when(transactionService.getTransactionsHistoryFor(Mockito.any(), Mockito.any(), Mockito.anyInt()))
+                                .thenReturn(TransactionHistoryPage.builder().transactions(List.of()).build());
 
                 mockMvc.perform(get(String.format(API_ACCOUNT_TX_BASE_URL, accountNumber))
                                 .contentType(MediaType.APPLICATION_JSON))
@@ -250,7 +368,7 @@ public class AccountResourceControllerTransactionsTest {
         @Test
         public void should_return_error_when_transactions_history_requested_for_no_existing_account() throws Exception {
                 UUID accountNumber = UUID.randomUUID();
-                Mockito.when(transactionService.getTransactionsHistoryFor(Mockito.any()))
+                Mockito.when(transactionService.getTransactionsHistoryFor(Mockito.any(), Mockito.any(), Mockito.anyInt()))
                                 .thenThrow(EntityNotFoundException.class);
 
                 mockMvc.perform(get(String.format(API_ACCOUNT_TX_BASE_URL, accountNumber))
@@ -263,8 +381,8 @@ public class AccountResourceControllerTransactionsTest {
         public void should_return_empty_list_when_transactions_history_found() throws Exception {
                 UUID accountNumber = UUID.randomUUID();
                 LocalDateTime now = LocalDateTime.now();
-                Mockito.when(transactionService.getTransactionsHistoryFor(Mockito.any()))
-                                .thenReturn(List.of(
+                Mockito.when(transactionService.getTransactionsHistoryFor(Mockito.any(), Mockito.any(), Mockito.anyInt()))
+                                .thenReturn(TransactionHistoryPage.builder().transactions(List.of(
                                                 TransactionDto.builder()
                                                                 .txRef(UUID.randomUUID().toString())
                                                                 .accountNumber(accountNumber.toString())
@@ -301,7 +419,7 @@ public class AccountResourceControllerTransactionsTest {
                                                                 .description("Withdrawal of 60€")
                                                                 .transactionAt(DatesFormatter.format(now.minusDays(10)))
                                                                 .operation(Transaction.TxType.WITHDRAWAL.name())
-                                                                .build()));
+                                                                .build())).build());
 
                 mockMvc.perform(get(String.format(API_ACCOUNT_TX_BASE_URL, accountNumber))
                                 .contentType(MediaType.APPLICATION_JSON))
@@ -315,4 +433,31 @@ public class AccountResourceControllerTransactionsTest {
                                 .andExpect(jsonPath("$[3].operation", is(Transaction.TxType.WITHDRAWAL.name())));
 
         }
+
+        @Test
+        public void should_return_next_cursor_headers_when_older_transactions_exist() throws Exception {
+                UUID accountNumber = UUID.randomUUID();
+                Mockito.when(transactionService.getTransactionsHistoryFor(Mockito.eq(accountNumber),
+                                Mockito.isNull(), Mockito.eq(1)))
+                                .thenReturn(TransactionHistoryPage.builder()
+                                                .transactions(List.of(TransactionDto.builder()
+                                                                .txRef(UUID.randomUUID().toString())
+                                                                .accountNumber(accountNumber.toString())
+                                                                .amount("10.00€")
+                                                                .accountBalance("10.00€")
+                                                                .description("Deposit of 10€")
+                                                                .transactionAt(DatesFormatter.format(LocalDateTime.now()))
+                                                                .operation(Transaction.TxType.DEPOSIT.name())
+                                                                .build()))
+                                                .nextCursor("next-page")
+                                                .build());
+
+                mockMvc.perform(get(String.format(API_ACCOUNT_TX_BASE_URL, accountNumber))
+                                .param("size", "1")
+                                .contentType(MediaType.APPLICATION_JSON))
+                                .andExpect(status().isOk())
+                                .andExpect(jsonPath("$", hasSize(1)))
+                                .andExpect(header().string(AccountResourceController.NEXT_CURSOR_HEADER, "next-page"))
+                                .andExpect(header().string(HttpHeaders.LINK, containsString("cursor=next-page")));
+        }
 }
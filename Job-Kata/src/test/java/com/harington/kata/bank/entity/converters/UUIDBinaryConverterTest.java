@@ -0,0 +1,42 @@
+package com.harington.kata.bank.entity.converters;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.UUID;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class UUIDBinaryConverterTest {
+    final UUIDBinaryConverter converter = new UUIDBinaryConverter();
+
+    @Test
+    public void should_return_null_when_null_given() {
+        assertNull(converter.convertToDatabaseColumn(null));
+        assertNull(converter.convertToEntityAttribute(null));
+    }
+
+    @Test
+    public void should_write_16_big_endian_bytes() {
+        UUID uuid = UUID.fromString("0b9c3e36-5a2c-4a3b-9a8a-7c1a2b3c4d5e");
+        byte[] bytes = converter.convertToDatabaseColumn(uuid);
+        assertEquals(16, bytes.length);
+        assertEquals((byte) 0x0b, bytes[0]);
+        assertEquals((byte) 0x9a, bytes[8]);
+        assertEquals((byte) 0x5e, bytes[15]);
+    }
+
+    @Test
+    public void should_read_back_the_same_uuid() {
+        for (int i = 0; i < 100; i++) {
+            UUID uuid = UUID.randomUUID();
+            assertEquals(uuid, converter.convertToEntityAttribute(converter.convertToDatabaseColumn(uuid)));
+        }
+        UUID max = new UUID(-1L, -1L);
+        assertEquals(max, converter.convertToEntityAttribute(converter.convertToDatabaseColumn(max)));
+    }
+
+    @Test
+    public void should_return_error_when_not_16_bytes() {
+        assertThrows(IllegalArgumentException.class, () -> converter.convertToEntityAttribute(new byte[36]));
+    }
+}
@@ -0,0 +1,223 @@
+package com.harington.kata.bank.journal;
+
+import com.harington.kata.bank.JobKataApplication;
+import com.harington.kata.bank.entity.Account;
+import com.harington.kata.bank.entity.Transaction;
+import com.harington.kata.bank.entity.dto.AccountDto;
+import com.harington.kata.bank.entity.dto.TransactionDto;
+import com.harington.kata.bank.service.AccountService;
+import com.harington.kata.bank.service.TransactionService;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.context.ConfigurableApplicationContext;
+
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class TransactionJournalTest {
+    static final int SEGMENT_SIZE = 1024;
+
+    @Test
+    void should_replay_records_in_order_across_segments(@TempDir Path directory) throws Exception {
+        TransactionJournal journal = new TransactionJournal(true, directory, SEGMENT_SIZE, true);
+        assertEquals(0, journal.open(record -> fail("Empty journal")));
+        List<String> written = new ArrayList<>();
+        for (int i = 0; i < 100; i++) {
+            written.add("record " + i);
+            journal.awaitForced(journal.append(List.of(("record " + i).getBytes(StandardCharsets.UTF_8))));
+        }
+        journal.close();
+        try (Stream<Path> files = Files.list(directory)) {
+            assertTrue(files.count() > 1);
+        }
+
+        List<String> replayed = new ArrayList<>();
+        TransactionJournal reopened = new TransactionJournal(true, directory, SEGMENT_SIZE, true);
+        assertEquals(100, reopened.open(record -> replayed.add(text(record))));
+        assertEquals(written, replayed);
+        reopened.close();
+    }
+
+    @Test
+    void should_stop_replay_at_torn_record_and_append_after_the_last_valid_one(@TempDir Path directory) throws Exception {
+        TransactionJournal journal = new TransactionJournal(true, directory, SEGMENT_SIZE, true);
+        journal.open(record -> {
+        });
+        journal.awaitForced(journal.append(List.of(bytes("first"), bytes("second"))));
+        journal.close();
+        // Last byte of "second" lost
+        try (RandomAccessFile file = new RandomAccessFile(segment(directory).toFile(), "rw")) {
+            long offset = TransactionJournal.SEGMENT_HEADER_SIZE + 2L * TransactionJournal.RECORD_HEADER_SIZE
+                    + "first".length() + "second".length() - 1;
+            file.seek(offset);
+            file.write('X');
+        }
+
+        List<String> replayed = new ArrayList<>();
+        TransactionJournal reopened = new TransactionJournal(true, directory, SEGMENT_SIZE, true);
+        assertEquals(1, reopened.open(record -> replayed.add(text(record))));
+        assertEquals(List.of("first"), replayed);
+        reopened.awaitForced(reopened.append(List.of(bytes("third"))));
+        reopened.close();
+
+        replayed.clear();
+        TransactionJournal again = new TransactionJournal(true, directory, SEGMENT_SIZE, true);
+        again.open(record -> replayed.add(text(record)));
+        assertEquals(List.of("first", "third"), replayed);
+        again.close();
+    }
+
+    @Test
+    void should_encode_and_decode_accounts_and_transactions() {
+        Account account = Account.builder()
+                .accountNumber(UUID.randomUUID())
+                .ownerName("Journal é")
+                .initialBalanceInCents(10_00)
+                .createdAt(LocalDateTime.of(2022, 11, 12, 4, 20, 20, 123_456_789))
+                .build();
+        Transaction tx = Transaction.builder()
+                .txRef(UUID.randomUUID())
+                .txType(Transaction.TxType.WITHDRAWAL)
+                .amountInCents(3_00)
+                .postTxAccountBalanceInCents(7_00)
+                .sequence(4)
+                .transactionAt(LocalDateTime.of(2022, 11, 12, 4, 21, 0))
+                .description(null)
+                .idempotencyKey("key")
+                .account(account)
+                .build();
+        List<Object> decoded = new ArrayList<>();
+        JournalCodec.Handler handler = new JournalCodec.Handler() {
+            @Override
+            public void accountOpened(Account opened) {
+                decoded.add(opened);
+            }
+
+            @Override
+            public void transactionPosted(UUID accountNumber, Transaction posted) {
+                assertEquals(account.getAccountNumber(), accountNumber);
+                decoded.add(posted);
+            }
+        };
+        JournalCodec.decode(ByteBuffer.wrap(JournalCodec.encode(account)), handler);
+        JournalCodec.decode(ByteBuffer.wrap(JournalCodec.encode(tx)), handler);
+
+        Account opened = (Account) decoded.get(0);
+        assertEquals(account.getAccountNumber(), opened.getAccountNumber());
+        assertEquals(account.getOwnerName(), opened.getOwnerName());
+        assertEquals(10_00, opened.getCurrentBalanceInCents());
+        assertEquals(account.getCreatedAt(), opened.getCreatedAt());
+        Transaction posted = (Transaction) decoded.get(1);
+        assertEquals(tx.getTxRef(), posted.getTxRef());
+        assertEquals(Transaction.TxType.WITHDRAWAL, posted.getTxType());
+        assertEquals(7_00, posted.getPostTxAccountBalanceInCents());
+        assertEquals(4, posted.getSequence());
+        assertEquals(tx.getTransactionAt(), posted.getTransactionAt());
+        assertNull(posted.getDescription());
+        assertEquals("key", posted.getIdempotencyKey());
+    }
+
+    @Test
+    void should_replay_committed_operations_at_startup(@TempDir Path directory) {
+        UUID accountNumber;
+        List<String> history;
+        try (ConfigurableApplicationContext context = start(directory)) {
+            accountNumber = UUID.fromString(context.getBean(AccountService.class)
+                    .createNewAccount("Journal", 100_00).getAccountNumber());
+            TransactionService transactionService = context.getBean(TransactionService.class);
+            transactionService.doDepositOn(accountNumber, 20_00, "Deposit", null, "deposit-key");
+            transactionService.doWithdrawalOn(accountNumber, 50_00, "Withdrawal", null, null);
+            assertThrows(RuntimeException.class,
+                    () -> transactionService.doWithdrawalOn(accountNumber, 1_000_00, "Rejected", null, null));
+            history = historyOf(transactionService, accountNumber);
+        }
+
+        try (ConfigurableApplicationContext context = start(directory)) {
+            AccountDto account = context.getBean(AccountService.class).findByAccountNumber(accountNumber).orElseThrow();
+            assertEquals("70.00€", account.getCurrentBalance());
+            assertEquals(2, account.getVersion());
+            assertEquals(history, historyOf(context.getBean(TransactionService.class), accountNumber));
+            // Replayed transactions are not journaled again
+            assertEquals(3, new TransactionJournal(true, directory, 64 * 1024 * 1024, true).open(record -> {
+            }));
+        }
+    }
+
+    @Test
+    void should_replay_balance_of_commits_journaled_out_of_order(@TempDir Path directory) throws Exception {
+        Account account = Account.builder()
+                .accountNumber(UUID.randomUUID())
+                .ownerName("Journal")
+                .initialBalanceInCents(100_00)
+                .createdAt(LocalDateTime.of(2022, 11, 12, 4, 20, 20))
+                .build();
+        // Second commit on the account appended before the first one
+        TransactionJournal journal = new TransactionJournal(true, directory, SEGMENT_SIZE, true);
+        journal.open(record -> {
+        });
+        journal.awaitForced(journal.append(List.of(JournalCodec.encode(account),
+                JournalCodec.encode(deposit(account, 30_00, 150_00)),
+                JournalCodec.encode(deposit(account, 20_00, 120_00)))));
+        journal.close();
+
+        try (ConfigurableApplicationContext context = start(directory)) {
+            AccountDto replayed = context.getBean(AccountService.class)
+                    .findByAccountNumber(account.getAccountNumber()).orElseThrow();
+            assertEquals("150.00€", replayed.getCurrentBalance());
+            assertEquals(2, replayed.getVersion());
+        }
+    }
+
+    private static Transaction deposit(Account account, int amountInCents, int postTxBalanceInCents) {
+        return Transaction.builder()
+                .txRef(UUID.randomUUID())
+                .txType(Transaction.TxType.DEPOSIT)
+                .amountInCents(amountInCents)
+                .postTxAccountBalanceInCents(postTxBalanceInCents)
+                .transactionAt(LocalDateTime.of(2022, 11, 12, 4, 21, 0))
+                .account(account)
+                .build();
+    }
+
+    private static ConfigurableApplicationContext start(Path directory) {
+        return new SpringApplicationBuilder(JobKataApplication.class)
+                .run("--spring.main.web-application-type=none",
+                        "--spring.jmx.enabled=false",
+                        "--bank.journal.enabled=true",
+                        "--bank.journal.directory=" + directory);
+    }
+
+    private static List<String> historyOf(TransactionService transactionService, UUID accountNumber) {
+        return transactionService.getTransactionsHistoryFor(accountNumber, null, 10).getTransactions().stream()
+                .map(TransactionDto::toString)
+                .collect(Collectors.toList());
+    }
+
+    private static Path segment(Path directory) throws Exception {
+        try (Stream<Path> files = Files.list(directory)) {
+            return files.sorted().findFirst().orElseThrow();
+        }
+    }
+
+    private static byte[] bytes(String text) {
+        return text.getBytes(StandardCharsets.UTF_8);
+    }
+
+    private static String text(ByteBuffer record) {
+        byte[] bytes = new byte[record.remaining()];
+        record.get(bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+}
@@ -0,0 +1,43 @@
+package com.harington.kata.bank.load;
+
+import com.harington.kata.bank.JobKataApplication;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.context.ConfigurableApplicationContext;
+
+import java.nio.file.Paths;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+/**
+ * Runs the {@link LoadScenario} given by the {@code load.*} system properties against
+ * {@code load.base-url}, or an application started in the test JVM when not set :
+ * {@code mvn -Pload test -Dtest=ApiLoadTest -Dload.clients=64 -Dload.duration-seconds=60}.
+ * Latency distributions are written to {@code target/load-reports}. Fails on errors and on
+ * accounts whose balance doesn't match the operations posted.
+ */
+@Tag("load")
+class ApiLoadTest {
+
+    @Test
+    void run_load_scenario() throws Exception {
+        LoadScenario scenario = LoadScenario.fromSystemProperties();
+        LoadReport report;
+        if (scenario.getBaseUrl().isEmpty())
+            try (ConfigurableApplicationContext context = new SpringApplicationBuilder(JobKataApplication.class)
+                    // Command-line arguments, to override application.properties
+                    .run("--server.port=0", "--spring.jmx.enabled=false")) {
+                report = new LoadGenerator(scenario,
+                        "http://localhost:" + context.getEnvironment().getProperty("local.server.port")).run();
+            }
+        else
+            report = new LoadGenerator(scenario, scenario.getBaseUrl()).run();
+        report.print(System.out);
+        report.writeDistributions(Paths.get("target", "load-reports"));
+
+        assertEquals(0, report.getErrors());
+        assertEquals(0, report.getInconsistentAccounts());
+        assertEquals(report.getExpectedTotalInCents(), report.getActualTotalInCents());
+    }
+}
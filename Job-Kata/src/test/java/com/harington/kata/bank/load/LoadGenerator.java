@@ -0,0 +1,302 @@
+package com.harington.kata.bank.load;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.json.JsonMapper;
+import com.harington.kata.bank.entity.Transaction;
+import com.harington.kata.bank.entity.dto.AccountRequestDto;
+import com.harington.kata.bank.entity.dto.TransactionRequestDto;
+import com.harington.kata.bank.entity.dto.TransferRequestDto;
+import org.HdrHistogram.Histogram;
+
+import java.io.IOException;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.EnumMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.TreeMap;
+import java.util.UUID;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.locks.LockSupport;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+
+/**
+ * Drives the accounts API over HTTP as described by a {@link LoadScenario} : creates the accounts,
+ * runs the clients for the warm-up then for the measured duration, and finally checks every
+ * account's balance against the operations the clients got posted.
+ */
+public class LoadGenerator {
+    static final long HIGHEST_LATENCY_NANOS = TimeUnit.MINUTES.toNanos(1);
+    static final int LATENCY_DIGITS = 3;
+    static final int ACCOUNTS_PER_BULK = 1_000;
+    static final int MAX_AMOUNT_IN_CENTS = 10_00;
+    static final int HISTORY_PAGE_SIZE = 20;
+    static final int NO_RESPONSE = 0;
+    private final LoadScenario scenario;
+    private final String accountsUrl;
+    private final HttpClient client = HttpClient.newBuilder().version(HttpClient.Version.HTTP_1_1).build();
+    private final JsonMapper jsonMapper = new JsonMapper();
+    private final AtomicLong writes = new AtomicLong();
+    private final AtomicLong conflicts = new AtomicLong();
+    private final AtomicLong rejected = new AtomicLong();
+    private final AtomicLong errors = new AtomicLong();
+    /**
+     * Errors by HTTP status, {@value #NO_RESPONSE} when not answered
+     */
+    private final Map<Integer, AtomicLong> errorStatuses = new ConcurrentHashMap<>();
+    private List<UUID> accounts;
+    /**
+     * Net amount posted on each account by the clients
+     */
+    private AtomicLongArray postedInCents;
+
+    public enum Operation {
+        ACCOUNT_READ("account_read"), HISTORY_READ("history_read"), DEPOSIT("deposit"),
+        WITHDRAWAL("withdrawal"), TRANSFER("transfer");
+
+        final String tag;
+
+        Operation(String tag) {
+            this.tag = tag;
+        }
+    }
+
+    public LoadGenerator(LoadScenario scenario, String baseUrl) {
+        this.scenario = scenario;
+        this.accountsUrl = baseUrl + "/api/v1/accounts";
+    }
+
+    public LoadReport run() throws Exception {
+        scenario.validate();
+        accounts = createAccounts();
+        postedInCents = new AtomicLongArray(accounts.size());
+        if (scenario.getWarmupSeconds() > 0)
+            runClients(scenario.getWarmupSeconds());
+        writes.set(0);
+        conflicts.set(0);
+        rejected.set(0);
+        errors.set(0);
+        errorStatuses.clear();
+        long begin = System.nanoTime();
+        Map<Operation, Histogram> latencies = runClients(scenario.getDurationSeconds());
+        long elapsed = System.nanoTime() - begin;
+
+        LoadReport.LoadReportBuilder report = LoadReport.builder()
+                .scenario(scenario)
+                .elapsedNanos(elapsed)
+                .latencies(latencies)
+                .writes(writes.get())
+                .conflicts(conflicts.get())
+                .rejected(rejected.get())
+                .errors(errors.get())
+                .errorStatuses(errorStatuses.entrySet().stream()
+                        .collect(Collectors.toMap(Map.Entry::getKey, e -> e.getValue().get(), Long::sum, TreeMap::new)));
+        checkBalances(report);
+        return report.build();
+    }
+
+    private List<UUID> createAccounts() throws IOException, InterruptedException {
+        List<UUID> created = new ArrayList<>(scenario.getAccounts());
+        for (int from = 0; from < scenario.getAccounts(); from += ACCOUNTS_PER_BULK) {
+            List<AccountRequestDto> requests = IntStream.range(from, Math.min(from + ACCOUNTS_PER_BULK, scenario.getAccounts()))
+                    .mapToObj(i -> AccountRequestDto.builder()
+                            .ownerName("Load " + i)
+                            .initialBalanceInCents(scenario.getInitialBalanceInCents())
+                            .build())
+                    .collect(Collectors.toList());
+            HttpResponse<String> response = client.send(post(accountsUrl + "/bulk", "*", requests),
+                    HttpResponse.BodyHandlers.ofString());
+            if (response.statusCode() != 201)
+                throw new IllegalStateException("Accounts not created : " + response.statusCode() + " " + response.body());
+            for (JsonNode account : jsonMapper.readTree(response.body()))
+                created.add(UUID.fromString(account.get("accountNumber").asText()));
+        }
+        return created;
+    }
+
+    private Map<Operation, Histogram> runClients(int seconds) throws Exception {
+        ExecutorService threads = Executors.newFixedThreadPool(scenario.getClients());
+        try {
+            long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(seconds);
+            List<Future<Map<Operation, Histogram>>> clients = new ArrayList<>();
+            for (int c = 0; c < scenario.getClients(); c++)
+                clients.add(threads.submit(new Client(new Random(c), deadline)));
+            Map<Operation, Histogram> latencies = newHistograms();
+            for (Future<Map<Operation, Histogram>> future : clients)
+                future.get().forEach((operation, histogram) -> latencies.get(operation).add(histogram));
+            return latencies;
+        } finally {
+            threads.shutdownNow();
+        }
+    }
+
+    private void checkBalances(LoadReport.LoadReportBuilder report) throws IOException, InterruptedException {
+        int inconsistent = 0;
+        long expectedTotal = 0;
+        long actualTotal = 0;
+        for (int i = 0; i < accounts.size(); i++) {
+            HttpResponse<String> response = client.send(get(accountsUrl + "/" + accounts.get(i)),
+                    HttpResponse.BodyHandlers.ofString());
+            long expected = scenario.getInitialBalanceInCents() + postedInCents.get(i);
+            long actual = response.statusCode() == 200
+                    ? centsOf(jsonMapper.readTree(response.body()).get("currentBalance").asText())
+                    : 0;
+            if (actual != expected) inconsistent++;
+            expectedTotal += expected;
+            actualTotal += actual;
+        }
+        report.inconsistentAccounts(inconsistent)
+                .expectedTotalInCents(expectedTotal)
+                .actualTotalInCents(actualTotal);
+    }
+
+    /**
+     * @param balance formatted as {@code [-]units.cents€}
+     */
+    static long centsOf(String balance) {
+        return Long.parseLong(balance.replace("€", "").replace(".", ""));
+    }
+
+    private void error(int status) {
+        errors.incrementAndGet();
+        errorStatuses.computeIfAbsent(status, s -> new AtomicLong()).incrementAndGet();
+    }
+
+    private static Map<Operation, Histogram> newHistograms() {
+        Map<Operation, Histogram> histograms = new EnumMap<>(Operation.class);
+        for (Operation operation : Operation.values())
+            histograms.put(operation, new Histogram(HIGHEST_LATENCY_NANOS, LATENCY_DIGITS));
+        return histograms;
+    }
+
+    private HttpRequest get(String url) {
+        return HttpRequest.newBuilder(URI.create(url))
+                .header("Content-Type", "application/json")
+                .timeout(Duration.ofMinutes(1))
+                .GET()
+                .build();
+    }
+
+    private HttpRequest post(String url, String ifMatch, Object body) throws IOException {
+        return HttpRequest.newBuilder(URI.create(url))
+                .header("Content-Type", "application/json")
+                .header("If-Match", ifMatch)
+                .timeout(Duration.ofMinutes(1))
+                .POST(HttpRequest.BodyPublishers.ofString(jsonMapper.writeValueAsString(body)))
+                .build();
+    }
+
+    /**
+     * Sends requests one after the other until the deadline, latencies recorded in its own histograms
+     */
+    private class Client implements Callable<Map<Operation, Histogram>> {
+        final Random random;
+        final long deadline;
+        final Map<Operation, Histogram> latencies = newHistograms();
+
+        Client(Random random, long deadline) {
+            this.random = random;
+            this.deadline = deadline;
+        }
+
+        @Override
+        public Map<Operation, Histogram> call() {
+            long interval = scenario.getRatePerClient() > 0 ? (long) (1e9 / scenario.getRatePerClient()) : 0;
+            long intended = System.nanoTime();
+            while (intended < deadline && !Thread.currentThread().isInterrupted()) {
+                if (interval > 0) {
+                    long wait = intended - System.nanoTime();
+                    if (wait > 0) LockSupport.parkNanos(wait);
+                }
+                try {
+                    execute(interval > 0 ? intended : System.nanoTime());
+                } catch (IOException e) {
+                    error(NO_RESPONSE);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+                intended = interval > 0 ? intended + interval : System.nanoTime();
+            }
+            return latencies;
+        }
+
+        /**
+         * @param begin time from which the latency of the first request is measured
+         */
+        void execute(long begin) throws IOException, InterruptedException {
+            double draw = random.nextDouble();
+            int account = pickAccount();
+            if (draw < scenario.getReadShare()) {
+                if (random.nextBoolean())
+                    send(Operation.ACCOUNT_READ, begin, get(accountsUrl + "/" + accounts.get(account)));
+                else
+                    send(Operation.HISTORY_READ, begin, get(accountsUrl + "/" + accounts.get(account)
+                            + "/transactions?size=" + HISTORY_PAGE_SIZE));
+                return;
+            }
+            int amount = 1 + random.nextInt(MAX_AMOUNT_IN_CENTS);
+            writes.incrementAndGet();
+            if (draw < scenario.getReadShare() + scenario.getTransferShare()) {
+                int to = pickAccount();
+                while (to == account) to = pickAccount();
+                if (send(Operation.TRANSFER, begin, post(accountsUrl + "/transfers", "*", TransferRequestDto.builder()
+                        .fromAccountNumber(accounts.get(account))
+                        .toAccountNumber(accounts.get(to))
+                        .amountInCents(amount)
+                        .build())) != null) {
+                    postedInCents.addAndGet(account, -amount);
+                    postedInCents.addAndGet(to, amount);
+                }
+                return;
+            }
+            Operation operation = random.nextBoolean() ? Operation.DEPOSIT : Operation.WITHDRAWAL;
+            String ifMatch = "*";
+            if (scenario.isVersioned()) {
+                HttpResponse<Void> read = send(Operation.ACCOUNT_READ, begin, get(accountsUrl + "/" + accounts.get(account)));
+                if (read == null) return;
+                ifMatch = read.headers().firstValue("ETag").orElse("*");
+                begin = System.nanoTime();
+            }
+            if (send(operation, begin, post(accountsUrl + "/transactions", ifMatch, TransactionRequestDto.builder()
+                    .accountNumber(accounts.get(account))
+                    .operation(operation == Operation.DEPOSIT ? Transaction.TxType.DEPOSIT : Transaction.TxType.WITHDRAWAL)
+                    .amountInCents(amount)
+                    .description("Load")
+                    .build())) != null)
+                postedInCents.addAndGet(account, operation == Operation.DEPOSIT ? amount : -amount);
+        }
+
+        /**
+         * @return the response when successful, null when rejected or failed
+         */
+        HttpResponse<Void> send(Operation operation, long begin, HttpRequest request) throws IOException, InterruptedException {
+            HttpResponse<Void> response = client.send(request, HttpResponse.BodyHandlers.discarding());
+            latencies.get(operation).recordValue(Math.min(System.nanoTime() - begin, HIGHEST_LATENCY_NANOS));
+            int status = response.statusCode();
+            if (status < 300) return response;
+            if (status == 409 || status == 412) conflicts.incrementAndGet();
+            else if (status == 400) rejected.incrementAndGet();
+            else error(status);
+            return null;
+        }
+
+        int pickAccount() {
+            return random.nextDouble() < scenario.getHotShare()
+                    ? random.nextInt(scenario.getHotAccounts())
+                    : random.nextInt(accounts.size());
+        }
+    }
+}
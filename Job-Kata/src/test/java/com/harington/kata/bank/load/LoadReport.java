@@ -0,0 +1,100 @@
+package com.harington.kata.bank.load;
+
+import lombok.Builder;
+import lombok.Value;
+import org.HdrHistogram.Histogram;
+
+import java.io.IOException;
+import java.io.PrintStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Map;
+
+/**
+ * Outcome of a {@link LoadGenerator} run, measured after the warm-up
+ */
+@Value
+@Builder
+public class LoadReport {
+    static final double NANOS_PER_MILLI = 1e6;
+    LoadScenario scenario;
+    long elapsedNanos;
+    /**
+     * Latencies in nanoseconds by operation
+     */
+    Map<LoadGenerator.Operation, Histogram> latencies;
+    /**
+     * Deposits, withdrawals and transfers sent, and those answered with 412 or 409
+     */
+    long writes;
+    long conflicts;
+    /**
+     * Operations answered with 400 (insufficient funds...)
+     */
+    long rejected;
+    /**
+     * Operations answered with another error, or not answered
+     */
+    long errors;
+    /**
+     * Errors by HTTP status, {@value LoadGenerator#NO_RESPONSE} for requests not answered
+     */
+    Map<Integer, Long> errorStatuses;
+    /**
+     * Accounts whose balance is not their initial balance plus the operations posted by the clients
+     * (checked on all the accounts, including the operations of the warm-up)
+     */
+    int inconsistentAccounts;
+    long expectedTotalInCents;
+    long actualTotalInCents;
+
+    public Histogram total() {
+        Histogram total = new Histogram(LoadGenerator.HIGHEST_LATENCY_NANOS, LoadGenerator.LATENCY_DIGITS);
+        latencies.values().forEach(total::add);
+        return total;
+    }
+
+    public double conflictRate() {
+        return writes == 0 ? 0 : (double) conflicts / writes;
+    }
+
+    public void print(PrintStream out) {
+        double seconds = elapsedNanos / 1e9;
+        out.printf("%d clients, %d accounts (%d hot receiving %.0f%% of the requests), %.0f s measured%n",
+                scenario.getClients(), scenario.getAccounts(), scenario.getHotAccounts(), scenario.getHotShare() * 100, seconds);
+        out.printf("%-14s %9s %9s %9s %9s %9s %9s %9s%n", "operation", "count", "ops/s", "p50 ms", "p90 ms", "p99 ms", "p99.9 ms", "max ms");
+        latencies.forEach((operation, histogram) -> printRow(out, operation.tag, histogram, seconds));
+        printRow(out, "total", total(), seconds);
+        out.printf("conflicts : %d (%.2f%% of %d writes), rejected : %d, errors : %d %s%n",
+                conflicts, conflictRate() * 100, writes, rejected, errors, errors == 0 ? "" : "by status " + errorStatuses);
+        out.printf("consistency : %d inconsistent accounts, total balance %d cents (expected %d)%n",
+                inconsistentAccounts, actualTotalInCents, expectedTotalInCents);
+    }
+
+    private static void printRow(PrintStream out, String operation, Histogram histogram, double seconds) {
+        out.printf("%-14s %9d %9.0f %9.2f %9.2f %9.2f %9.2f %9.2f%n", operation, histogram.getTotalCount(),
+                histogram.getTotalCount() / seconds,
+                histogram.getValueAtPercentile(50) / NANOS_PER_MILLI,
+                histogram.getValueAtPercentile(90) / NANOS_PER_MILLI,
+                histogram.getValueAtPercentile(99) / NANOS_PER_MILLI,
+                histogram.getValueAtPercentile(99.9) / NANOS_PER_MILLI,
+                histogram.getMaxValue() / NANOS_PER_MILLI);
+    }
+
+    /**
+     * Writes the full latency distribution of each operation as {@code <operation>.hgrm} (milliseconds),
+     * the format read by HdrHistogram's plotter
+     */
+    public void writeDistributions(Path directory) throws IOException {
+        Files.createDirectories(directory);
+        for (Map.Entry<LoadGenerator.Operation, Histogram> entry : latencies.entrySet())
+            writeDistribution(directory.resolve(entry.getKey().tag + ".hgrm"), entry.getValue());
+        writeDistribution(directory.resolve("total.hgrm"), total());
+    }
+
+    private static void writeDistribution(Path file, Histogram histogram) throws IOException {
+        try (PrintStream out = new PrintStream(Files.newOutputStream(file), false, "UTF-8")) {
+            histogram.outputPercentileDistribution(out, NANOS_PER_MILLI);
+        }
+    }
+}
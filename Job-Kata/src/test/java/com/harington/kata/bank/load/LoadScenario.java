@@ -0,0 +1,76 @@
+package com.harington.kata.bank.load;
+
+import lombok.Builder;
+import lombok.Value;
+
+/**
+ * What {@link LoadGenerator} sends, read from {@code load.*} system properties
+ * (e.g. {@code mvn -Pload test -Dtest=ApiLoadTest -Dload.clients=64 -Dload.hot-share=0.9}).
+ */
+@Value
+@Builder
+public class LoadScenario {
+    /**
+     * Application to load, empty to start one in the test JVM
+     */
+    String baseUrl;
+    /**
+     * Concurrent clients, each one sending a request once the previous one is answered
+     */
+    int clients;
+    int warmupSeconds;
+    int durationSeconds;
+    /**
+     * Requests per second sent by each client, 0 for as fast as answered. With a rate, latencies are
+     * measured from the time each request should have been sent, so that a stalled server is not
+     * hidden by clients waiting for it (coordinated omission).
+     */
+    double ratePerClient;
+    int accounts;
+    /**
+     * The first {@code hotAccounts} accounts receive {@link #hotShare} of the requests
+     */
+    int hotAccounts;
+    double hotShare;
+    /**
+     * Share of account and history reads, half each
+     */
+    double readShare;
+    /**
+     * Share of transfers, the remaining requests being deposits and withdrawals, half each
+     */
+    double transferShare;
+    /**
+     * Deposits and withdrawals read the account first and send its ETag as If-Match : answered with
+     * 412 (counted as conflict) when another client updated the account in between. Otherwise they
+     * are sent with If-Match: *, only deposits losing the race at commit then conflict.
+     */
+    boolean versioned;
+    int initialBalanceInCents;
+
+    public static LoadScenario fromSystemProperties() {
+        return LoadScenario.builder()
+                .baseUrl(System.getProperty("load.base-url", ""))
+                .clients(Integer.getInteger("load.clients", 16))
+                .warmupSeconds(Integer.getInteger("load.warmup-seconds", 5))
+                .durationSeconds(Integer.getInteger("load.duration-seconds", 20))
+                .ratePerClient(Double.parseDouble(System.getProperty("load.rate-per-client", "0")))
+                .accounts(Integer.getInteger("load.accounts", 1_000))
+                .hotAccounts(Integer.getInteger("load.hot-accounts", 10))
+                .hotShare(Double.parseDouble(System.getProperty("load.hot-share", "0.5")))
+                .readShare(Double.parseDouble(System.getProperty("load.read-share", "0.5")))
+                .transferShare(Double.parseDouble(System.getProperty("load.transfer-share", "0.1")))
+                .versioned(Boolean.parseBoolean(System.getProperty("load.versioned", "true")))
+                .initialBalanceInCents(Integer.getInteger("load.initial-balance-in-cents", 1_000_00))
+                .build();
+    }
+
+    public void validate() {
+        if (clients < 1 || durationSeconds < 1 || warmupSeconds < 0 || ratePerClient < 0)
+            throw new IllegalArgumentException("load.clients and load.duration-seconds must be positive");
+        if (accounts < 2 || hotAccounts < 1 || hotAccounts > accounts)
+            throw new IllegalArgumentException("load.accounts must be at least 2 and hold load.hot-accounts");
+        if (hotShare < 0 || hotShare > 1 || readShare < 0 || transferShare < 0 || readShare + transferShare > 1)
+            throw new IllegalArgumentException("load.hot-share, read-share and transfer-share must be shares (0 to 1)");
+    }
+}
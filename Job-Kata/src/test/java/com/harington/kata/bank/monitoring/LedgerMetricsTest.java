@@ -0,0 +1,102 @@
+package com.harington.kata.bank.monitoring;
+
+import com.harington.kata.bank.entity.Transaction;
+import com.harington.kata.bank.exceptions.ConcurrentUpdateException;
+import com.harington.kata.bank.exceptions.EntityNotFoundException;
+import com.harington.kata.bank.exceptions.InsufficientFundsException;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.orm.ObjectOptimisticLockingFailureException;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class LedgerMetricsTest {
+    SimpleMeterRegistry meterRegistry;
+    LedgerMetrics ledgerMetrics;
+
+    @BeforeEach
+    void setup() {
+        meterRegistry = new SimpleMeterRegistry();
+        ledgerMetrics = new LedgerMetrics(meterRegistry);
+    }
+
+    long timed(String operation, String outcome) {
+        return meterRegistry.get(LedgerMetrics.OPERATIONS_TIMER)
+                .tag(LedgerMetrics.OPERATION_TAG, operation)
+                .tag(LedgerMetrics.OUTCOME_TAG, outcome)
+                .timer().count();
+    }
+
+    double counted(String name, String operation) {
+        return meterRegistry.get(name).tag(LedgerMetrics.OPERATION_TAG, operation).counter().count();
+    }
+
+    @Test
+    void should_time_posted_operations_by_type() {
+        assertEquals("ok", ledgerMetrics.record(Transaction.TxType.DEPOSIT, () -> "ok"));
+        ledgerMetrics.record(Transaction.TxType.DEPOSIT, () -> "ok");
+        ledgerMetrics.record(Transaction.TxType.WITHDRAWAL, () -> "ok");
+
+        assertEquals(2, timed("deposit", "posted"));
+        assertEquals(1, timed("withdrawal", "posted"));
+    }
+
+    @Test
+    void should_count_rejections_by_cause() {
+        assertThrows(InsufficientFundsException.class, () -> ledgerMetrics.record(Transaction.TxType.WITHDRAWAL,
+                () -> {throw new InsufficientFundsException("not enough");}));
+        assertThrows(ConcurrentUpdateException.class, () -> ledgerMetrics.record(Transaction.TxType.DEPOSIT,
+                () -> {throw new ConcurrentUpdateException("stale");}));
+        assertThrows(EntityNotFoundException.class, () -> ledgerMetrics.record(Transaction.TxType.DEPOSIT,
+                () -> {throw new EntityNotFoundException();}));
+        ledgerMetrics.notFound(LedgerMetrics.ACCOUNT_READ);
+
+        assertEquals(1, timed("withdrawal", "insufficient_funds"));
+        assertEquals(1, counted(LedgerMetrics.INSUFFICIENT_FUNDS_COUNTER, "withdrawal"));
+        assertEquals(1, counted(LedgerMetrics.CONFLICTS_COUNTER, "deposit"));
+        assertEquals(1, counted(LedgerMetrics.NOT_FOUND_COUNTER, "deposit"));
+        assertEquals(1, counted(LedgerMetrics.NOT_FOUND_COUNTER, LedgerMetrics.ACCOUNT_READ));
+    }
+
+    @Test
+    void should_count_only_optimistic_lock_failures_as_conflicts() {
+        assertThrows(ObjectOptimisticLockingFailureException.class, () -> ledgerMetrics.record(Transaction.TxType.DEPOSIT,
+                () -> {throw new ObjectOptimisticLockingFailureException("Account", 1L);}));
+        assertThrows(DataIntegrityViolationException.class, () -> ledgerMetrics.record(Transaction.TxType.DEPOSIT,
+                () -> {throw new DataIntegrityViolationException("duplicate idempotency key");}));
+
+        assertEquals(1, timed("deposit", "conflict"));
+        assertEquals(1, timed("deposit", "error"));
+        assertEquals(1, counted(LedgerMetrics.CONFLICTS_COUNTER, "deposit"));
+    }
+
+    @Test
+    void should_stop_timer_when_transaction_completes() {
+        TransactionSynchronizationManager.initSynchronization();
+        try {
+            ledgerMetrics.record(Transaction.TxType.DEPOSIT, () -> "ok");
+            assertNull(meterRegistry.find(LedgerMetrics.OPERATIONS_TIMER).timer());
+
+            TransactionSynchronizationManager.getSynchronizations()
+                    .forEach(s -> s.afterCompletion(TransactionSynchronization.STATUS_ROLLED_BACK));
+        } finally {
+            TransactionSynchronizationManager.clearSynchronization();
+        }
+
+        assertEquals(1, timed("deposit", "rolled_back"));
+        assertNull(meterRegistry.find(LedgerMetrics.CONFLICTS_COUNTER).counter());
+    }
+
+    @Test
+    void should_summarize_history_sizes() {
+        ledgerMetrics.historyRead(3);
+        ledgerMetrics.historyRead(7);
+
+        assertEquals(2, meterRegistry.get(LedgerMetrics.HISTORY_SIZE_SUMMARY).summary().count());
+        assertEquals(10, meterRegistry.get(LedgerMetrics.HISTORY_SIZE_SUMMARY).summary().totalAmount());
+    }
+}
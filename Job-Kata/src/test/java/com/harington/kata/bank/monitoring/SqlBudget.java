@@ -0,0 +1,50 @@
+package com.harington.kata.bank.monitoring;
+
+import org.springframework.test.web.servlet.ResultMatcher;
+
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * MockMvc matchers on the SQL work of a request, as counted by {@link SqlBudgetFilter}
+ */
+public final class SqlBudget {
+
+    private SqlBudget() {
+    }
+
+    /**
+     * The id sequence calls are left out : which request runs out of pooled ids depends on the
+     * previous ones, see {@link SqlStatistics.Snapshot#getIdAllocations()}
+     */
+    public static ResultMatcher statementsAtMost(int budget) {
+        return result -> {
+            SqlStatistics.Snapshot statistics = statisticsOf(result.getRequest().getAttribute(SqlBudgetFilter.STATISTICS_ATTRIBUTE));
+            int statements = statistics.getStatements() - statistics.getIdAllocations();
+            assertTrue(statements <= budget, () -> String.format("%s %s ran %d SQL statements (and %d id sequence calls), budget is %d",
+                    result.getRequest().getMethod(), result.getRequest().getRequestURI(), statements,
+                    statistics.getIdAllocations(), budget));
+        };
+    }
+
+    public static ResultMatcher entitiesLoadedAtMost(int budget) {
+        return result -> {
+            SqlStatistics.Snapshot statistics = statisticsOf(result.getRequest().getAttribute(SqlBudgetFilter.STATISTICS_ATTRIBUTE));
+            assertTrue(statistics.getEntitiesLoaded() <= budget, () -> String.format("%s %s loaded %d entities, budget is %d",
+                    result.getRequest().getMethod(), result.getRequest().getRequestURI(), statistics.getEntitiesLoaded(), budget));
+        };
+    }
+
+    public static ResultMatcher noCollectionFetched() {
+        return result -> {
+            SqlStatistics.Snapshot statistics = statisticsOf(result.getRequest().getAttribute(SqlBudgetFilter.STATISTICS_ATTRIBUTE));
+            assertTrue(statistics.getCollectionsFetched() == 0, () -> String.format("%s %s fetched %d lazy collections",
+                    result.getRequest().getMethod(), result.getRequest().getRequestURI(), statistics.getCollectionsFetched()));
+        };
+    }
+
+    private static SqlStatistics.Snapshot statisticsOf(Object attribute) {
+        assertNotNull(attribute, "The request didn't go through SqlBudgetFilter");
+        return (SqlStatistics.Snapshot) attribute;
+    }
+}
@@ -2,9 +2,13 @@ package com.harington.kata.bank.repository;
 
 import com.harington.kata.bank.entity.Account;
 import com.harington.kata.bank.entity.Transaction;
+import com.harington.kata.bank.entity.dto.AccountSummary;
 import org.junit.jupiter.api.*;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.data.domain.Page;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.data.domain.Sort;
 
 import java.time.LocalDateTime;
 import java.util.List;
@@ -101,4 +105,53 @@ class AccountRepositoryTest {
         assertNotNull(acc);
         assertEquals(accountNumber1, acc.getAccountNumber());
     }
-}
\ No newline at end of file
+
+    @Test
+    void should_return_accounts_with_balance_at_least_given_minimum() {
+        accountRepository.save(
+                Account.builder()
+                        .accountNumber(UUID.randomUUID())
+                        .initialBalanceInCents(0)
+                        .currentBalanceInCents(10_00)
+                        .ownerName("Jack Holding")
+                        .createdAt(LocalDateTime.now().minusYears(10))
+                        .build());
+
+        Page<AccountSummary> all = accountRepository.findAccountsWithBalanceAtLeast(0, PageRequest.of(0, 10));
+        assertEquals(3, all.getTotalElements());
+
+        Page<AccountSummary> rich = accountRepository.findAccountsWithBalanceAtLeast(100_00,
+                PageRequest.of(0, 1, Sort.by(Sort.Direction.DESC, "ownerName")));
+        assertEquals(2, rich.getTotalElements());
+        assertEquals(1, rich.getNumberOfElements());
+        assertEquals(accountNumber2, rich.getContent().get(0).getAccountNumber());
+
+        assertTrue(accountRepository.findAccountsWithBalanceAtLeast(100_01, PageRequest.of(0, 10)).isEmpty());
+    }
+
+    @Test
+    void should_withdraw_only_when_version_matches_and_funds_are_enough() {
+        int version = accountRepository.findOneByAccountNumber(accountNumber1).orElseThrow().getVersion();
+
+        assertTrue(accountRepository.withdrawIfEnoughFunds(accountNumber1, 100_01, version).isEmpty());
+        assertTrue(accountRepository.withdrawIfEnoughFunds(accountNumber1, 10_00, version + 1).isEmpty());
+        assertTrue(accountRepository.withdrawIfEnoughFunds(UUID.randomUUID(), 10_00, version).isEmpty());
+        Account debited = accountRepository.withdrawIfEnoughFunds(accountNumber1, 60_00, version).orElseThrow();
+        assertEquals(40_00, debited.getCurrentBalanceInCents());
+        assertEquals(version + 1, debited.getVersion());
+
+        Account acc = accountRepository.findOneByAccountNumber(accountNumber1).orElseThrow();
+        assertEquals(40_00, acc.getCurrentBalanceInCents());
+        assertEquals(version + 1, acc.getVersion());
+    }
+
+    @Test
+    void should_withdraw_whatever_the_version_when_none_is_given() {
+        int version = accountRepository.findOneByAccountNumber(accountNumber1).orElseThrow().getVersion();
+
+        assertTrue(accountRepository.withdrawIfEnoughFunds(accountNumber1, 100_01, null).isEmpty());
+        Account debited = accountRepository.withdrawIfEnoughFunds(accountNumber1, 100_00, null).orElseThrow();
+        assertEquals(0, debited.getCurrentBalanceInCents());
+        assertEquals(version + 1, debited.getVersion());
+    }
+}
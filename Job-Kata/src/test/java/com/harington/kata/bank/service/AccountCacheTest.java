@@ -0,0 +1,69 @@
+package com.harington.kata.bank.service;
+
+import com.harington.kata.bank.entity.dto.AccountDto;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.util.Optional;
+import java.util.UUID;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class AccountCacheTest {
+    SimpleMeterRegistry meterRegistry;
+    AccountCache accountCache;
+    AtomicInteger loads;
+    final UUID accountNumber = UUID.randomUUID();
+
+    @BeforeEach
+    void setup() {
+        meterRegistry = new SimpleMeterRegistry();
+        accountCache = new AccountCache(100, 60, meterRegistry);
+        loads = new AtomicInteger();
+    }
+
+    Optional<AccountDto> load(UUID number) {
+        loads.incrementAndGet();
+        return Optional.of(AccountDto.builder().accountNumber(number.toString()).build());
+    }
+
+    @Test
+    void should_load_once_then_serve_from_memory() {
+        accountCache.get(accountNumber, this::load);
+        Optional<AccountDto> dto = accountCache.get(accountNumber, this::load);
+
+        assertEquals(accountNumber.toString(), dto.orElseThrow().getAccountNumber());
+        assertEquals(1, loads.get());
+        assertEquals(1, meterRegistry.get("cache.gets").tag("cache", AccountCache.CACHE_NAME)
+                .tag("result", "hit").functionCounter().count());
+    }
+
+    @Test
+    void should_not_cache_missing_accounts() {
+        assertTrue(accountCache.get(accountNumber, number -> Optional.empty()).isEmpty());
+        accountCache.get(accountNumber, this::load);
+        assertEquals(1, loads.get());
+    }
+
+    @Test
+    void should_evict_when_transaction_completes() {
+        accountCache.get(accountNumber, this::load);
+        TransactionSynchronizationManager.initSynchronization();
+        try {
+            accountCache.evictAfterCompletion(accountNumber);
+            accountCache.get(accountNumber, this::load);
+            assertEquals(1, loads.get());
+            TransactionSynchronizationManager.getSynchronizations()
+                    .forEach(sync -> sync.afterCompletion(TransactionSynchronization.STATUS_COMMITTED));
+        } finally {
+            TransactionSynchronizationManager.clearSynchronization();
+        }
+
+        accountCache.get(accountNumber, this::load);
+        assertEquals(2, loads.get());
+    }
+}
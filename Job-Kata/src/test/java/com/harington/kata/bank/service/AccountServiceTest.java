@@ -2,6 +2,8 @@ package com.harington.kata.bank.service;
 
 import com.harington.kata.bank.entity.Account;
 import com.harington.kata.bank.entity.dto.AccountDto;
+import com.harington.kata.bank.entity.dto.AccountRequestDto;
+import com.harington.kata.bank.entity.dto.AccountSummary;
 import com.harington.kata.bank.exceptions.InvalidOperationException;
 import com.harington.kata.bank.repository.AccountRepository;
 import org.junit.jupiter.api.Test;
@@ -10,9 +12,15 @@ import org.mockito.Mockito;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.boot.test.context.SpringBootTest;
 import org.springframework.boot.test.mock.mockito.MockBean;
+import org.springframework.data.domain.Page;
+import org.springframework.data.domain.PageImpl;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.data.domain.Sort;
 
 import javax.validation.ConstraintViolationException;
 import java.time.LocalDateTime;
+import java.util.Arrays;
+import java.util.Collections;
 import java.util.List;
 import java.util.Optional;
 import java.util.UUID;
@@ -73,7 +81,9 @@ class AccountServiceTest {
 
     @Test
     void should_return_empty_list_when_no_account_exist() {
-        List<AccountDto> accounts = accountService.getAllAccounts();
+        Mockito.when(accountRepository.findAllSummaries(Mockito.any()))
+                .thenReturn(Page.empty());
+        Page<AccountDto> accounts = accountService.getAllAccounts(PageRequest.of(0, 20));
         assertNotNull(accounts);
         assertTrue(accounts.isEmpty());
     }
@@ -82,29 +92,31 @@ class AccountServiceTest {
     void should_return_accounts_list() {
         UUID accountNumber1 = UUID.randomUUID();
         UUID accountNumber2 = UUID.randomUUID();
-        Mockito.when(accountRepository.findAll())
-                .thenReturn(List.of(
-                        Account.builder()
-                                .id(1L)
-                                .accountNumber(accountNumber1)
-                                .initialBalanceInCents(10)
-                                .currentBalanceInCents(10)
-                                .ownerName("NOUNI EL Bachir")
-                                .createdAt(LocalDateTime.now())
-                                .build(),
-                        Account.builder()
-                                .id(2L)
-                                .accountNumber(accountNumber2)
-                                .initialBalanceInCents(100)
-                                .currentBalanceInCents(100)
-                                .ownerName("Anis BESSA")
-                                .createdAt(LocalDateTime.now())
-                                .build()
-                ));
-        List<AccountDto> accounts = accountService.getAllAccounts();
+        Mockito.when(accountRepository.findAllSummaries(Mockito.any()))
+                .thenReturn(new PageImpl<>(List.of(
+                        new AccountSummary(accountNumber1, 10, "NOUNI EL Bachir", LocalDateTime.now(), 0),
+                        new AccountSummary(accountNumber2, 100, "Anis BESSA", LocalDateTime.now(), 3)
+                )));
+        Page<AccountDto> accounts = accountService.getAllAccounts(PageRequest.of(0, 20));
         assertNotNull(accounts);
-        assertEquals(2, accounts.size());
-        assertEquals(accountNumber1.toString(), accounts.get(0).getAccountNumber());
+        assertEquals(2, accounts.getNumberOfElements());
+        assertEquals(accountNumber1.toString(), accounts.getContent().get(0).getAccountNumber());
+        assertEquals("0.10€", accounts.getContent().get(0).getCurrentBalance());
+    }
+
+    @Test
+    void should_append_id_to_accounts_sort() {
+        Mockito.when(accountRepository.findAllSummaries(Mockito.any()))
+                .thenReturn(Page.empty());
+        accountService.getAllAccounts(PageRequest.of(1, 10, Sort.by(Sort.Direction.DESC, "ownerName")));
+        Mockito.verify(accountRepository).findAllSummaries(
+                PageRequest.of(1, 10, Sort.by(Sort.Direction.DESC, "ownerName").and(Sort.by("id"))));
+    }
+
+    @Test
+    void should_return_error_when_sorting_accounts_by_unknown_property() {
+        assertThrows(InvalidOperationException.class, () ->
+                accountService.getAllAccounts(PageRequest.of(0, 10, Sort.by("transactions"))));
     }
 
     @Test
@@ -135,5 +147,45 @@ class AccountServiceTest {
         assertNotNull(dto);
         assertTrue(dto.isPresent());
         assertEquals(accountNumber.toString(), dto.get().getAccountNumber());
+        Mockito.verify(accountRepository, Mockito.never()).findAccountsWithBalanceAtLeast(Mockito.anyInt(), Mockito.any());
+    }
+
+    @Test
+    void should_return_error_when_min_balance_negative() {
+        assertThrows(InvalidOperationException.class, () ->
+                accountService.getAccountsWithBalanceAtLeast(-1, PageRequest.of(0, 10)));
+    }
+
+    @Test
+    void should_return_error_and_create_nothing_when_one_bulk_request_is_invalid() {
+        List<AccountRequestDto> requests = List.of(
+                AccountRequestDto.builder().ownerName("Anis BESSA").initialBalanceInCents(10).build(),
+                AccountRequestDto.builder().ownerName("ab").initialBalanceInCents(10).build());
+
+        InvalidOperationException error = assertThrows(InvalidOperationException.class,
+                () -> accountService.createNewAccounts(requests));
+        assertTrue(error.getMessage().startsWith("Account #1"));
+        Mockito.verify(accountRepository, Mockito.never()).saveAll(Mockito.any());
+    }
+
+    @Test
+    void should_return_error_and_create_nothing_when_one_bulk_request_is_null() {
+        List<AccountRequestDto> requests = Arrays.asList(
+                AccountRequestDto.builder().ownerName("Anis BESSA").initialBalanceInCents(10).build(),
+                null);
+
+        InvalidOperationException error = assertThrows(InvalidOperationException.class,
+                () -> accountService.createNewAccounts(requests));
+        assertTrue(error.getMessage().startsWith("Account #1"));
+        Mockito.verify(accountRepository, Mockito.never()).saveAll(Mockito.any());
+    }
+
+    @Test
+    void should_return_error_when_bulk_is_too_large() {
+        List<AccountRequestDto> requests = Collections.nCopies(AccountService.MAX_BULK_SIZE + 1,
+                AccountRequestDto.builder().ownerName("Anis BESSA").initialBalanceInCents(10).build());
+
+        assertThrows(InvalidOperationException.class, () -> accountService.createNewAccounts(requests));
+        Mockito.verifyNoInteractions(accountRepository);
     }
-}
\ No newline at end of file
+}
@@ -0,0 +1,100 @@
+package com.harington.kata.bank.service;
+
+import com.harington.kata.bank.exceptions.InvalidOperationException;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Supplier;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class AccountWriteSerializerTest {
+
+    @Test
+    void should_never_run_two_writes_of_a_same_account_at_once() throws Exception {
+        AccountWriteSerializer serializer = new AccountWriteSerializer(true, 16, 10_000);
+        UUID accountNumber = UUID.randomUUID();
+        AtomicInteger running = new AtomicInteger();
+        AtomicInteger maxRunning = new AtomicInteger();
+        ExecutorService pool = Executors.newFixedThreadPool(8);
+        try {
+            List<Future<?>> futures = new ArrayList<>();
+            for (int i = 0; i < 200; i++)
+                futures.add(pool.submit(() -> serializer.execute(accountNumber, () -> {
+                    maxRunning.accumulateAndGet(running.incrementAndGet(), Math::max);
+                    Thread.yield();
+                    return running.decrementAndGet();
+                })));
+            for (Future<?> future : futures)
+                future.get(1, TimeUnit.MINUTES);
+        } finally {
+            pool.shutdownNow();
+        }
+        assertEquals(1, maxRunning.get());
+    }
+
+    @Test
+    void should_serialize_transfers_crossing_each_other_with_the_writes_of_both_accounts() throws Exception {
+        AccountWriteSerializer serializer = new AccountWriteSerializer(true, 1024, 10_000);
+        UUID accountA = UUID.randomUUID();
+        UUID accountB = UUID.randomUUID();
+        AtomicInteger runningOnA = new AtomicInteger();
+        AtomicInteger maxRunningOnA = new AtomicInteger();
+        ExecutorService pool = Executors.newFixedThreadPool(8);
+        try {
+            List<Future<?>> futures = new ArrayList<>();
+            for (int i = 0; i < 300; i++) {
+                Supplier<Integer> writeOnA = () -> {
+                    maxRunningOnA.accumulateAndGet(runningOnA.incrementAndGet(), Math::max);
+                    Thread.yield();
+                    return runningOnA.decrementAndGet();
+                };
+                int kind = i % 3;
+                futures.add(pool.submit(() -> kind == 0 ? serializer.execute(accountA, accountB, writeOnA)
+                        : kind == 1 ? serializer.execute(accountB, accountA, writeOnA)
+                        : serializer.execute(accountA, writeOnA)));
+            }
+            // Crossing transfers would deadlock here
+            for (Future<?> future : futures)
+                future.get(1, TimeUnit.MINUTES);
+        } finally {
+            pool.shutdownNow();
+        }
+        assertEquals(1, maxRunningOnA.get());
+    }
+
+    @Test
+    void should_return_error_when_account_is_busy_for_too_long() throws Exception {
+        AccountWriteSerializer serializer = new AccountWriteSerializer(true, 16, 10);
+        UUID accountNumber = UUID.randomUUID();
+        CountDownLatch locked = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        Thread holder = new Thread(() -> serializer.execute(accountNumber, () -> {
+            locked.countDown();
+            try {
+                return release.await(1, TimeUnit.MINUTES);
+            } catch (InterruptedException e) {
+                return false;
+            }
+        }));
+        holder.start();
+        try {
+            locked.await(1, TimeUnit.MINUTES);
+            assertThrows(InvalidOperationException.class, () -> serializer.execute(accountNumber, () -> 1));
+        } finally {
+            release.countDown();
+            holder.join();
+        }
+    }
+
+    @Test
+    void should_run_straight_away_when_disabled() {
+        AccountWriteSerializer serializer = new AccountWriteSerializer(false, 16, 10);
+        assertFalse(serializer.isEnabled());
+        assertEquals(1, serializer.execute(UUID.randomUUID(), () -> 1));
+    }
+}
@@ -0,0 +1,71 @@
+package com.harington.kata.bank.service;
+
+import com.harington.kata.bank.exceptions.ConcurrentUpdateException;
+import com.harington.kata.bank.exceptions.InvalidOperationException;
+import com.harington.kata.bank.monitoring.LedgerMetrics;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.orm.ObjectOptimisticLockingFailureException;
+
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class ConflictRetryExecutorTest {
+    SimpleMeterRegistry meterRegistry;
+    ConflictRetryExecutor executor;
+
+    @BeforeEach
+    void setup() {
+        meterRegistry = new SimpleMeterRegistry();
+        executor = new ConflictRetryExecutor(3, 1, 2, new LedgerMetrics(meterRegistry));
+    }
+
+    double counted(String name) {
+        return meterRegistry.counter(name, LedgerMetrics.OPERATION_TAG, "deposit").count();
+    }
+
+    @Test
+    void should_retry_until_no_conflict() {
+        AtomicInteger attempts = new AtomicInteger();
+
+        String result = executor.execute("deposit", () -> {
+            if (attempts.incrementAndGet() == 1)
+                throw new ConcurrentUpdateException("Stale version");
+            if (attempts.get() == 2)
+                throw new ObjectOptimisticLockingFailureException("Account", 1L);
+            return "done";
+        });
+
+        assertEquals("done", result);
+        assertEquals(3, attempts.get());
+        assertEquals(2, counted(LedgerMetrics.RETRIES_COUNTER));
+        assertEquals(0, counted(LedgerMetrics.RETRIES_EXHAUSTED_COUNTER));
+    }
+
+    @Test
+    void should_give_up_after_max_attempts() {
+        AtomicInteger attempts = new AtomicInteger();
+
+        assertThrows(ConcurrentUpdateException.class, () -> executor.execute("deposit", () -> {
+            attempts.incrementAndGet();
+            throw new ConcurrentUpdateException("Stale version");
+        }));
+        assertEquals(3, attempts.get());
+        assertEquals(2, counted(LedgerMetrics.RETRIES_COUNTER));
+        assertEquals(1, counted(LedgerMetrics.RETRIES_EXHAUSTED_COUNTER));
+    }
+
+    @Test
+    void should_not_retry_other_errors() {
+        AtomicInteger attempts = new AtomicInteger();
+
+        assertThrows(InvalidOperationException.class, () -> executor.execute("deposit", () -> {
+            attempts.incrementAndGet();
+            throw new InvalidOperationException("Balance is not enough");
+        }));
+        assertEquals(1, attempts.get());
+        assertEquals(0, counted(LedgerMetrics.RETRIES_COUNTER));
+    }
+}
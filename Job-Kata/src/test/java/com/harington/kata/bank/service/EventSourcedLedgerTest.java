@@ -0,0 +1,236 @@
+package com.harington.kata.bank.service;
+
+import com.harington.kata.bank.entity.Account;
+import com.harington.kata.bank.entity.Transaction;
+import com.harington.kata.bank.entity.dto.AccountDto;
+import com.harington.kata.bank.entity.dto.BatchItemResultDto;
+import com.harington.kata.bank.entity.dto.TransactionRequestDto;
+import com.harington.kata.bank.entity.dto.TransferDto;
+import com.harington.kata.bank.entity.dto.TransferRequestDto;
+import com.harington.kata.bank.exceptions.ConcurrentUpdateException;
+import com.harington.kata.bank.exceptions.InsufficientFundsException;
+import com.harington.kata.bank.repository.AccountRepository;
+import com.harington.kata.bank.repository.AccountSnapshotRepository;
+import com.harington.kata.bank.repository.TransactionRepository;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.stream.Collectors;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+@SpringBootTest(properties = {"bank.event-sourcing.enabled=true", "bank.event-sourcing.snapshot-every=3"})
+class EventSourcedLedgerTest {
+    @Autowired
+    TransactionService transactionService;
+    @Autowired
+    AccountService accountService;
+    @Autowired
+    BalanceProjector balanceProjector;
+    @Autowired
+    AccountRepository accountRepository;
+    @Autowired
+    TransactionRepository transactionRepository;
+    @Autowired
+    AccountSnapshotRepository snapshotRepository;
+    @Autowired
+    AccountCache accountCache;
+    @Autowired
+    JdbcTemplate jdbcTemplate;
+
+    @Test
+    void should_append_operations_and_project_the_balance() {
+        UUID accountNumber = newAccount(100_00);
+
+        transactionService.doDepositOn(accountNumber, 10_00, "Deposit", 0, null);
+        transactionService.doWithdrawalOn(accountNumber, 30_00, "Withdrawal", 1, null);
+        transactionService.doDepositOn(accountNumber, 5_00, "Deposit", null, null);
+
+        List<Transaction> stream = streamOf(accountNumber);
+        assertEquals(List.of(1, 2, 3), stream.stream().map(Transaction::getSequence).collect(Collectors.toList()));
+        assertEquals(List.of(110_00, 80_00, 85_00), stream.stream()
+                .map(Transaction::getPostTxAccountBalanceInCents).collect(Collectors.toList()));
+
+        balanceProjector.projectPending();
+        Account account = accountRepository.findOneByAccountNumber(accountNumber).orElseThrow();
+        assertEquals(85_00, account.getCurrentBalanceInCents());
+        assertEquals(3, account.getVersion());
+        AccountDto dto = accountService.findByAccountNumber(accountNumber).orElseThrow();
+        assertEquals("85.00€", dto.getCurrentBalance());
+        assertEquals(3, dto.getVersion());
+    }
+
+    @Test
+    void should_reject_stale_version_and_insufficient_funds_without_appending() {
+        UUID accountNumber = newAccount(10_00);
+        transactionService.doDepositOn(accountNumber, 1_00, "Deposit", 0, null);
+
+        assertThrows(ConcurrentUpdateException.class,
+                () -> transactionService.doDepositOn(accountNumber, 1_00, "Deposit", 0, null));
+        assertThrows(InsufficientFundsException.class,
+                () -> transactionService.doWithdrawalOn(accountNumber, 11_01, "Withdrawal", 1, null));
+        transactionService.doWithdrawalOn(accountNumber, 11_00, "Withdrawal", 1, null);
+
+        assertEquals(List.of(1, 2), streamOf(accountNumber).stream()
+                .map(Transaction::getSequence).collect(Collectors.toList()));
+    }
+
+    @Test
+    void should_read_version_and_balance_from_the_stream_head_before_projection() {
+        UUID accountNumber = newAccount(100_00);
+        transactionService.doDepositOn(accountNumber, 10_00, "Deposit", 0, null);
+        balanceProjector.projectPending();
+        // Projection not there yet (or failed)
+        long accountId = accountRepository.findOneByAccountNumber(accountNumber).orElseThrow().getId();
+        jdbcTemplate.update("update account set current_balance_in_cents = ?, version = ? where id = ?", 100_00, 0, accountId);
+        accountCache.evictAll();
+
+        AccountDto dto = accountService.findByAccountNumber(accountNumber).orElseThrow();
+        assertEquals("110.00€", dto.getCurrentBalance());
+        assertEquals(1, dto.getVersion());
+        assertEquals(1, transactionService.getTransactionsHistoryFor(accountNumber, null, 10).getAccountVersion());
+        accountCache.evictAll();
+        assertEquals(1, accountService.findVersionByAccountNumber(accountNumber).orElseThrow());
+
+        transactionService.doWithdrawalOn(accountNumber, 110_00, "Withdrawal", dto.getVersion(), null);
+        assertEquals(2, accountService.findVersionByAccountNumber(accountNumber).orElseThrow());
+        assertEquals("0.00€", accountService.findByAccountNumber(accountNumber).orElseThrow().getCurrentBalance());
+    }
+
+    @Test
+    void should_snapshot_and_rebuild_balances() {
+        UUID accountNumber = newAccount(0);
+        UUID withoutSnapshot = newAccount(50_00);
+        UUID neverAppended = newAccount(20_00);
+        for (int i = 0; i < 7; i++) {
+            transactionService.doDepositOn(accountNumber, 1_00, "Deposit", null, null);
+            // Projected one append at a time, so that each multiple of 3 is crossed
+            balanceProjector.projectPending();
+        }
+        transactionService.doWithdrawalOn(withoutSnapshot, 5_00, "Withdrawal", null, null);
+        balanceProjector.projectPending();
+
+        Account account = accountRepository.findOneByAccountNumber(accountNumber).orElseThrow();
+        assertEquals(6, snapshotRepository.findFirstByAccountOrderBySequenceDesc(account).orElseThrow().getSequence());
+        assertEquals(6_00, snapshotRepository.findFirstByAccountOrderBySequenceDesc(account).orElseThrow().getBalanceInCents());
+
+        // Projections lost
+        accountRepository.resetBalance(account.getId(), 0, 7);
+        long withoutSnapshotId = accountRepository.findOneByAccountNumber(withoutSnapshot).orElseThrow().getId();
+        accountRepository.resetBalance(withoutSnapshotId, 0, 1);
+
+        assertTrue(balanceProjector.rebuildAll() >= 3);
+        assertEquals(7_00, accountRepository.findById(account.getId()).orElseThrow().getCurrentBalanceInCents());
+        assertEquals(45_00, accountRepository.findById(withoutSnapshotId).orElseThrow().getCurrentBalanceInCents());
+        Account untouched = accountRepository.findOneByAccountNumber(neverAppended).orElseThrow();
+        assertEquals(20_00, untouched.getCurrentBalanceInCents());
+        assertEquals(0, untouched.getVersion());
+    }
+
+    @Test
+    void should_let_one_of_concurrent_appends_at_a_same_position_win() throws Exception {
+        UUID accountNumber = newAccount(0);
+        int threads = 8;
+        int depositsPerThread = 25;
+        ExecutorService executor = Executors.newFixedThreadPool(threads);
+        List<Future<Integer>> posted = new ArrayList<>();
+        for (int t = 0; t < threads; t++)
+            posted.add(executor.submit(() -> {
+                int count = 0;
+                for (int i = 0; i < depositsPerThread; i++)
+                    try {
+                        transactionService.doDepositOn(accountNumber, 1_00, "Deposit", null, null);
+                        count++;
+                    } catch (ConcurrentUpdateException e) {
+                        // Lost the race for this position
+                    }
+                return count;
+            }));
+        int count = 0;
+        for (Future<Integer> future : posted)
+            count += future.get();
+        executor.shutdown();
+
+        assertTrue(count > 0);
+        List<Transaction> stream = streamOf(accountNumber);
+        assertEquals(count, stream.size());
+        for (int i = 0; i < stream.size(); i++) {
+            assertEquals(i + 1, stream.get(i).getSequence());
+            assertEquals((i + 1) * 1_00, stream.get(i).getPostTxAccountBalanceInCents());
+        }
+    }
+
+    @Test
+    void should_append_batch_operations() {
+        UUID accountNumber = newAccount(10_00);
+        List<BatchItemResultDto> results = transactionService.doBatch(List.of(
+                operation(accountNumber, Transaction.TxType.DEPOSIT, 5_00),
+                operation(accountNumber, Transaction.TxType.WITHDRAWAL, 20_00),
+                operation(UUID.randomUUID(), Transaction.TxType.DEPOSIT, 1_00),
+                operation(accountNumber, Transaction.TxType.WITHDRAWAL, 15_00)));
+
+        assertEquals(List.of(BatchItemResultDto.Status.POSTED, BatchItemResultDto.Status.REJECTED,
+                BatchItemResultDto.Status.REJECTED, BatchItemResultDto.Status.POSTED), results.stream()
+                .map(BatchItemResultDto::getStatus).collect(Collectors.toList()));
+        balanceProjector.projectPending();
+        Account account = accountRepository.findOneByAccountNumber(accountNumber).orElseThrow();
+        assertEquals(0, account.getCurrentBalanceInCents());
+        assertEquals(2, account.getVersion());
+    }
+
+    @Test
+    void should_append_both_legs_of_a_transfer() {
+        UUID from = newAccount(10_00);
+        UUID to = newAccount(0);
+
+        assertThrows(InsufficientFundsException.class, () -> transactionService.doTransfer(TransferRequestDto.builder()
+                .fromAccountNumber(from).toAccountNumber(to).amountInCents(10_01).build()));
+        TransferDto transfer = transactionService.doTransfer(TransferRequestDto.builder()
+                .fromAccountNumber(from).toAccountNumber(to).amountInCents(4_00).build());
+
+        assertEquals("6.00€", transfer.getDebit().getAccountBalance());
+        assertEquals("4.00€", transfer.getCredit().getAccountBalance());
+        assertEquals(List.of(1), streamOf(from).stream().map(Transaction::getSequence).collect(Collectors.toList()));
+        assertEquals(List.of(1), streamOf(to).stream().map(Transaction::getSequence).collect(Collectors.toList()));
+        balanceProjector.projectPending();
+        assertEquals(6_00, accountRepository.findOneByAccountNumber(from).orElseThrow().getCurrentBalanceInCents());
+        assertEquals(4_00, accountRepository.findOneByAccountNumber(to).orElseThrow().getCurrentBalanceInCents());
+    }
+
+    @Test
+    void should_read_the_bare_constraint_name_extracted_by_the_dialect() {
+        assertEquals(Transaction.ACCOUNT_SEQUENCE_UK, EventSourcedLedger.constraintNameOf(
+                "\"PUBLIC.TRANSACTIONS_ACCOUNT_SEQUENCE_UK_INDEX_F ON PUBLIC.TRANSACTION(ACCOUNT_ID NULLS FIRST,"
+                        + " SEQUENCE NULLS FIRST) VALUES ( /* key:2 */ CAST(1 AS BIGINT), 1)\"; SQL statement:"));
+        assertEquals("transactions_account_sequence_uk", EventSourcedLedger.constraintNameOf("transactions_account_sequence_uk"));
+    }
+
+    private UUID newAccount(int initialBalanceInCents) {
+        return UUID.fromString(accountService.createNewAccount("Event sourced", initialBalanceInCents).getAccountNumber());
+    }
+
+    private List<Transaction> streamOf(UUID accountNumber) {
+        Account account = accountRepository.findOneByAccountNumber(accountNumber).orElseThrow();
+        List<Transaction> stream = new ArrayList<>(transactionRepository.findLatestByAccount(account, PageRequest.ofSize(1_000)));
+        stream.sort((a, b) -> Integer.compare(a.getSequence(), b.getSequence()));
+        return stream;
+    }
+
+    private static TransactionRequestDto operation(UUID accountNumber, Transaction.TxType type, int amountInCents) {
+        return TransactionRequestDto.builder()
+                .accountNumber(accountNumber)
+                .operation(type)
+                .amountInCents(amountInCents)
+                .description("Batch")
+                .build();
+    }
+}
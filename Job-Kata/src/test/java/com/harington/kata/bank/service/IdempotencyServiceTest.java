@@ -0,0 +1,114 @@
+package com.harington.kata.bank.service;
+
+import com.harington.kata.bank.entity.Account;
+import com.harington.kata.bank.entity.Transaction;
+import com.harington.kata.bank.entity.dto.TransactionDto;
+import com.harington.kata.bank.entity.dto.TransactionRequestDto;
+import com.harington.kata.bank.exceptions.ConcurrentUpdateException;
+import com.harington.kata.bank.exceptions.InvalidOperationException;
+import com.harington.kata.bank.repository.TransactionRepository;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.Mockito;
+import org.springframework.dao.DataIntegrityViolationException;
+
+import java.time.LocalDateTime;
+import java.util.Optional;
+import java.util.UUID;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class IdempotencyServiceTest {
+    TransactionRepository transactionRepository;
+    IdempotencyService idempotencyService;
+    final UUID accountNumber = UUID.randomUUID();
+    final TransactionRequestDto request = TransactionRequestDto.builder()
+            .accountNumber(accountNumber)
+            .amountInCents(10_00)
+            .operation(Transaction.TxType.DEPOSIT)
+            .description("Deposit of 10€")
+            .build();
+
+    @BeforeEach
+    void setup() {
+        transactionRepository = Mockito.mock(TransactionRepository.class);
+        idempotencyService = new IdempotencyService(transactionRepository, 100, 60, new SimpleMeterRegistry());
+    }
+
+    @Test
+    void should_answer_retries_from_cache() {
+        AtomicInteger posts = new AtomicInteger();
+        TransactionDto dto = TransactionDto.builder().txRef(UUID.randomUUID().toString()).build();
+
+        TransactionDto first = idempotencyService.execute("key-1", request, () -> {
+            posts.incrementAndGet();
+            return dto;
+        });
+        TransactionDto retry = idempotencyService.execute("key-1", request, () -> {
+            posts.incrementAndGet();
+            return TransactionDto.builder().build();
+        });
+
+        assertSame(dto, first);
+        assertSame(dto, retry);
+        assertEquals(1, posts.get());
+        Mockito.verify(transactionRepository, Mockito.times(1)).findOneByIdempotencyKey("key-1");
+    }
+
+    @Test
+    void should_return_stored_transaction_when_key_is_not_cached_anymore() {
+        Transaction stored = storedTransaction("key-1");
+        Mockito.when(transactionRepository.findOneByIdempotencyKey("key-1"))
+                .thenReturn(Optional.of(stored));
+
+        // The first request changed the account : posting the retry again would be rejected
+        TransactionDto dto = idempotencyService.execute("key-1", request, () -> {
+            throw new ConcurrentUpdateException("Stale account version");
+        });
+
+        assertEquals(stored.getTxRef().toString(), dto.getTxRef());
+    }
+
+    @Test
+    void should_return_transaction_posted_by_a_concurrent_request() {
+        Transaction stored = storedTransaction("key-1");
+        Mockito.when(transactionRepository.findOneByIdempotencyKey("key-1"))
+                .thenReturn(Optional.empty())
+                .thenReturn(Optional.of(stored));
+
+        TransactionDto dto = idempotencyService.execute("key-1", request, () -> {
+            throw new DataIntegrityViolationException("TRANSACTIONS_IDEMPOTENCY_KEY_UK");
+        });
+
+        assertEquals(stored.getTxRef().toString(), dto.getTxRef());
+    }
+
+    @Test
+    void should_return_error_when_key_is_reused_for_another_operation() {
+        idempotencyService.execute("key-1", request, () -> TransactionDto.builder().build());
+        TransactionRequestDto other = TransactionRequestDto.builder()
+                .accountNumber(accountNumber)
+                .amountInCents(20_00)
+                .operation(Transaction.TxType.DEPOSIT)
+                .build();
+
+        assertThrows(InvalidOperationException.class, () -> idempotencyService.execute("key-1", other,
+                () -> TransactionDto.builder().build()));
+        assertThrows(InvalidOperationException.class, () -> idempotencyService.execute(" ", request,
+                () -> TransactionDto.builder().build()));
+    }
+
+    private Transaction storedTransaction(String idempotencyKey) {
+        return Transaction.builder()
+                .txRef(UUID.randomUUID())
+                .txType(Transaction.TxType.DEPOSIT)
+                .amountInCents(10_00)
+                .postTxAccountBalanceInCents(10_00)
+                .transactionAt(LocalDateTime.now())
+                .idempotencyKey(idempotencyKey)
+                .account(Account.builder().accountNumber(accountNumber).build())
+                .build();
+    }
+}
@@ -0,0 +1,89 @@
+package com.harington.kata.bank.service;
+
+import com.harington.kata.bank.entity.Transaction;
+import com.harington.kata.bank.entity.dto.BatchItemResultDto;
+import com.harington.kata.bank.entity.dto.TransactionRequestDto;
+import com.harington.kata.bank.exceptions.EntityNotFoundException;
+import org.hibernate.Session;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import javax.persistence.EntityManager;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.StringWriter;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+import java.util.UUID;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+@SpringBootTest
+class TransactionExportServiceTest {
+    @Autowired
+    TransactionExportService transactionExportService;
+    @Autowired
+    TransactionService transactionService;
+    @Autowired
+    AccountService accountService;
+    @Autowired
+    TransactionTemplate transactionTemplate;
+    @Autowired
+    EntityManager entityManager;
+
+    @Test
+    void should_export_whole_history_without_keeping_it_in_the_persistence_context() {
+        UUID accountNumber = UUID.fromString(accountService.createNewAccount("Export", 0).getAccountNumber());
+        int transactions = 2 * TransactionService.BATCH_CHUNK_SIZE + 1;
+        List<BatchItemResultDto> results = transactionService.doBatch(IntStream.range(0, transactions)
+                .mapToObj(i -> TransactionRequestDto.builder()
+                        .accountNumber(accountNumber)
+                        .operation(Transaction.TxType.DEPOSIT)
+                        .amountInCents(1_00)
+                        .description("Deposit " + i)
+                        .build())
+                .collect(Collectors.toList()));
+        assertTrue(results.stream().allMatch(result -> result.getStatus() == BatchItemResultDto.Status.POSTED));
+
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        int managedEntities = transactionTemplate.execute(status -> {
+            try {
+                assertEquals(transactions, transactionExportService.export(accountNumber, TransactionExportService.Format.NDJSON, out));
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+            return entityManager.unwrap(Session.class).getStatistics().getEntityCount();
+        });
+
+        // Only the account is left
+        assertEquals(1, managedEntities);
+        String[] lines = out.toString(StandardCharsets.UTF_8).split("\n");
+        assertEquals(transactions, lines.length);
+        assertTrue(lines[0].contains("\"accountBalance\":\"" + transactions + ".00€\""));
+        assertTrue(lines[transactions - 1].contains("\"accountBalance\":\"1.00€\""));
+    }
+
+    @Test
+    void should_reject_unknown_account_and_format() {
+        assertThrows(EntityNotFoundException.class, () -> transactionExportService.export(UUID.randomUUID(),
+                TransactionExportService.Format.CSV, new ByteArrayOutputStream()));
+        assertEquals(TransactionExportService.Format.CSV, TransactionExportService.Format.fromParameter("CSV"));
+        assertThrows(RuntimeException.class, () -> TransactionExportService.Format.fromParameter("xml"));
+    }
+
+    @Test
+    void should_quote_csv_fields_holding_separators() throws IOException {
+        StringWriter writer = new StringWriter();
+        TransactionExportService.writeCsvField(writer, "Rent");
+        writer.write(',');
+        TransactionExportService.writeCsvField(writer, "Rent, \"May\"\r\n");
+        writer.write(',');
+        TransactionExportService.writeCsvField(writer, null);
+        assertEquals("Rent,\"Rent, \"\"May\"\"\r\n\",", writer.toString());
+    }
+}
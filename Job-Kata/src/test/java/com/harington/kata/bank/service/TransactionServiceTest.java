@@ -2,7 +2,10 @@ package com.harington.kata.bank.service;
 
 import com.harington.kata.bank.entity.Account;
 import com.harington.kata.bank.entity.Transaction;
+import com.harington.kata.bank.entity.dto.HistoryCursor;
 import com.harington.kata.bank.entity.dto.TransactionDto;
+import com.harington.kata.bank.entity.dto.TransactionHistoryPage;
+import com.harington.kata.bank.entity.dto.TransactionRequestDto;
 import com.harington.kata.bank.exceptions.EntityNotFoundException;
 import com.harington.kata.bank.exceptions.InvalidOperationException;
 import com.harington.kata.bank.formatters.AmountFormatter;
@@ -16,6 +19,7 @@ import org.springframework.boot.test.mock.mockito.MockBean;
 
 import javax.validation.ConstraintViolationException;
 import java.time.LocalDateTime;
+import java.util.Collections;
 import java.util.List;
 import java.util.Objects;
 import java.util.Optional;
@@ -42,7 +46,7 @@ class TransactionServiceTest {
                 assertThrows(EntityNotFoundException.class, () -> {
                         transactionService.doDepositOn(UUID.randomUUID(),
                                 10000,
-                                "Deposit of 100€", 1);
+                                "Deposit of 100€", 1, null);
                 });
         }
 
@@ -51,19 +55,19 @@ class TransactionServiceTest {
                 assertThrows(ConstraintViolationException.class, () -> {
                         transactionService.doDepositOn(UUID.randomUUID(),
                                 0,
-                                "Deposit of 0€", 1);
+                                "Deposit of 0€", 1, null);
                 });
                 assertThrows(ConstraintViolationException.class, () -> {
                         transactionService.doDepositOn(UUID.randomUUID(),
                                 -1,
                                 "Deposit of -1€",
-                                1);
+                                1, null);
                 });
                 assertThrows(ConstraintViolationException.class, () -> {
                         transactionService.doDepositOn(null,
                                 10,
                                 "Deposit of 10€",
-                                1);
+                                1, null);
                 });
         }
 
@@ -85,10 +89,40 @@ class TransactionServiceTest {
                         transactionService.doWithdrawalOn(accountNumber,
                                 1000_00,
                                 "Withdrawal of 1000€",
-                                1);
+                                1, null);
                 });
         }
 
+        @Test
+        void should_return_error_when_do_withdrawal_on_changed_account() {
+                UUID accountNumber = UUID.randomUUID();
+                Account account = Account.builder()
+                        .id(2L)
+                        .version(3)
+                        .accountNumber(accountNumber)
+                        .initialBalanceInCents(100_00)
+                        .currentBalanceInCents(100_00)
+                        .ownerName("Anis BESSA")
+                        .createdAt(LocalDateTime.now())
+                        .build();
+                Mockito.when(accountRepository.findOneByAccountNumber(Mockito.any()))
+                        .thenReturn(Optional.of(account));
+
+                InvalidOperationException error = assertThrows(InvalidOperationException.class, () ->
+                        transactionService.doWithdrawalOn(accountNumber, 10_00, "Withdrawal of 10€", 1, null));
+                assertTrue(error.getMessage().contains("no longer valid"));
+                Mockito.verify(transactionRepository, Mockito.never()).saveAndFlush(Mockito.any());
+        }
+
+        @Test
+        void should_return_error_when_do_withdrawal_on_no_existing_account() {
+                Mockito.when(accountRepository.findOneByAccountNumber(Mockito.any()))
+                        .thenReturn(Optional.empty());
+
+                assertThrows(EntityNotFoundException.class, () ->
+                        transactionService.doWithdrawalOn(UUID.randomUUID(), 10_00, "Withdrawal of 10€", 1, null));
+        }
+
         @Test
         void should_return_tx_when_do_deposit_on_existing_account() {
                 int accountBalance = 200_00;// 200€
@@ -110,7 +144,7 @@ class TransactionServiceTest {
                 TransactionDto tx = transactionService.doDepositOn(accountNumber,
                         1000,
                         "Deposit of 00€",
-                        1);
+                        1, null);
 
                 assertNotNull(tx);
                 assertEquals("10.00€", tx.getAmount());
@@ -127,22 +161,20 @@ class TransactionServiceTest {
                 UUID accountNumber = UUID.randomUUID();
                 Account account = Account.builder()
                         .id(2L)
-                        .version(1)
+                        .version(2)
                                 .accountNumber(accountNumber)
                         .initialBalanceInCents(accountBalance)
-                        .currentBalanceInCents(accountBalance)
+                        .currentBalanceInCents(accountBalance - 1000)// As returned by the debit
                         .ownerName("Anis BESSA")
                         .createdAt(LocalDateTime.now())
                         .build();
-                Mockito.when(accountRepository.findOneByAccountNumber(Mockito.any()))
+                Mockito.when(accountRepository.withdrawIfEnoughFunds(accountNumber, 1000, 1))
                         .thenReturn(Optional.of(account));
-                Mockito.when(accountRepository.save(account))
-                        .thenReturn(account);
 
                 TransactionDto tx = transactionService.doWithdrawalOn(accountNumber,
                         1000,
                         "Withdrawal of 1000€",
-                        1);
+                        1, null);
 
                 assertNotNull(tx);
                 assertEquals("10.00€", tx.getAmount());
@@ -159,22 +191,20 @@ class TransactionServiceTest {
                 UUID accountNumber = UUID.randomUUID();
                 Account account = Account.builder()
                         .id(2L)
-                        .version(1)
+                        .version(2)
                                 .accountNumber(accountNumber)
                         .initialBalanceInCents(accountBalance)
-                        .currentBalanceInCents(accountBalance)
+                        .currentBalanceInCents(0)// As returned by the debit
                         .ownerName("Anis BESSA")
                         .createdAt(LocalDateTime.now())
                         .build();
-                Mockito.when(accountRepository.findOneByAccountNumber(Mockito.any()))
+                Mockito.when(accountRepository.withdrawIfEnoughFunds(accountNumber, accountBalance, 1))
                         .thenReturn(Optional.of(account));
-                Mockito.when(accountRepository.save(account))
-                        .thenReturn(account);
 
                 TransactionDto tx = transactionService.doWithdrawalOn(accountNumber,
                         accountBalance,
                         "Withdrawal ALL",
-                        1);
+                        1, null);
 
                 assertNotNull(tx);
                 assertEquals(AmountFormatter.formatCents(accountBalance), tx.getAmount());
@@ -185,10 +215,34 @@ class TransactionServiceTest {
                 assertEquals(Transaction.TxType.WITHDRAWAL.name(), tx.getOperation());
         }
 
+        @Test
+        void should_insert_tx_without_loading_account_history_when_do_deposit() {
+                UUID accountNumber = UUID.randomUUID();
+                Account account = Account.builder()
+                        .id(2L)
+                        .version(1)
+                        .accountNumber(accountNumber)
+                        .initialBalanceInCents(100_00)
+                        .currentBalanceInCents(100_00)
+                        .ownerName("Anis BESSA")
+                        .createdAt(LocalDateTime.now())
+                        .build();
+                Mockito.when(accountRepository.findOneByAccountNumber(Mockito.any()))
+                        .thenReturn(Optional.of(account));
+
+                transactionService.doDepositOn(accountNumber, 10_00, "Deposit of 10€", 1, null);
+
+                Mockito.verify(transactionRepository).saveAndFlush(Mockito.argThat(tx -> tx.getAccount() == account
+                        && tx.getPostTxAccountBalanceInCents() == 110_00));
+                Mockito.verify(accountRepository, Mockito.never()).save(Mockito.any());
+                assertEquals(110_00, account.getCurrentBalanceInCents());
+                assertTrue(account.getTransactions().isEmpty());
+        }
+
         @Test
         void should_return_error_when_requesting_history_for_no_existing_account() {
                 assertThrows(EntityNotFoundException.class, () -> {
-                        List<TransactionDto> txs = transactionService.getTransactionsHistoryFor(UUID.randomUUID());
+                        transactionService.getTransactionsHistoryFor(UUID.randomUUID(), null, 10);
                 });
         }
 
@@ -204,9 +258,10 @@ class TransactionServiceTest {
                                 .build();
                 Mockito.when(accountRepository.findOneByAccountNumber(Mockito.any()))
                                 .thenReturn(Optional.of(account));
-                List<TransactionDto> txs = transactionService.getTransactionsHistoryFor(UUID.randomUUID());
-                assertNotNull(txs);
-                assertEquals(0, txs.size());
+                TransactionHistoryPage page = transactionService.getTransactionsHistoryFor(UUID.randomUUID(), null, 10);
+                assertNotNull(page.getTransactions());
+                assertEquals(0, page.getTransactions().size());
+                assertNull(page.getNextCursor());
         }
 
         @Test
@@ -220,7 +275,7 @@ class TransactionServiceTest {
                                 .ownerName("Anis BESSA")
                                 .createdAt(LocalDateTime.now().minusMonths(10))
                                 .build();
-                List.of(
+                List<Transaction> history = List.of(
                                 Transaction.builder()
                                                 .txRef(UUID.randomUUID())
                                                 .transactionAt(LocalDateTime.now().minusDays(30))
@@ -252,13 +307,81 @@ class TransactionServiceTest {
                                                 .txType(Transaction.TxType.WITHDRAWAL)
                                                 .amountInCents(60_00)
                                                 .postTxAccountBalanceInCents(200_00)
-                                                .build())
-                                .forEach(account::addTx);
+                                                .build());
+                history.forEach(account::addTx);
                 Mockito.when(accountRepository.findOneByAccountNumber(Mockito.any()))
                                 .thenReturn(Optional.of(account));
-                List<TransactionDto> txs = transactionService.getTransactionsHistoryFor(accountNumber);
+                Mockito.when(transactionRepository.findLatestByAccount(Mockito.eq(account), Mockito.any()))
+                                .thenReturn(history);
+                TransactionHistoryPage page = transactionService.getTransactionsHistoryFor(accountNumber, null, 10);
+                List<TransactionDto> txs = page.getTransactions();
                 assertNotNull(txs);
                 assertEquals(4, txs.size());
                 assertTrue(txs.stream().allMatch(x -> Objects.equals(x.getAccountNumber(), accountNumber.toString())));
+                assertNull(page.getNextCursor());
+        }
+
+        @Test
+        void should_return_next_cursor_when_requesting_history_page_with_older_txs() {
+                UUID accountNumber = UUID.randomUUID();
+                Account account = Account.builder()
+                                .id(2L)
+                                .accountNumber(accountNumber)
+                                .initialBalanceInCents(0)
+                                .currentBalanceInCents(30_00)
+                                .ownerName("Anis BESSA")
+                                .createdAt(LocalDateTime.now().minusMonths(10))
+                                .build();
+                LocalDateTime now = LocalDateTime.now();
+                List<Transaction> newest = List.of(
+                                Transaction.builder().id(3L).txRef(UUID.randomUUID()).transactionAt(now)
+                                                .txType(Transaction.TxType.DEPOSIT).amountInCents(10_00)
+                                                .postTxAccountBalanceInCents(30_00).account(account).build(),
+                                Transaction.builder().id(2L).txRef(UUID.randomUUID()).transactionAt(now.minusDays(1))
+                                                .txType(Transaction.TxType.DEPOSIT).amountInCents(10_00)
+                                                .postTxAccountBalanceInCents(20_00).account(account).build(),
+                                Transaction.builder().id(1L).txRef(UUID.randomUUID()).transactionAt(now.minusDays(2))
+                                                .txType(Transaction.TxType.DEPOSIT).amountInCents(10_00)
+                                                .postTxAccountBalanceInCents(10_00).account(account).build());
+                Mockito.when(accountRepository.findOneByAccountNumber(accountNumber))
+                                .thenReturn(Optional.of(account));
+                Mockito.when(transactionRepository.findLatestByAccount(Mockito.eq(account), Mockito.any()))
+                                .thenReturn(newest);
+
+                TransactionHistoryPage page = transactionService.getTransactionsHistoryFor(accountNumber, null, 2);
+
+                assertEquals(2, page.getTransactions().size());
+                assertNotNull(page.getNextCursor());
+                HistoryCursor cursor = HistoryCursor.decode(page.getNextCursor());
+                assertEquals(now.minusDays(1), cursor.getTransactionAt());
+                assertEquals(2L, cursor.getId());
+
+                transactionService.getTransactionsHistoryFor(accountNumber, page.getNextCursor(), 2);
+                Mockito.verify(transactionRepository).findByAccountBefore(Mockito.eq(account),
+                                Mockito.eq(now.minusDays(1)), Mockito.eq(2L), Mockito.any());
+        }
+
+        @Test
+        void should_return_error_when_requesting_history_with_invalid_page() {
+                assertThrows(InvalidOperationException.class, () ->
+                                transactionService.getTransactionsHistoryFor(UUID.randomUUID(), null, 0));
+                assertThrows(InvalidOperationException.class, () ->
+                                transactionService.getTransactionsHistoryFor(UUID.randomUUID(), null,
+                                                TransactionService.MAX_HISTORY_PAGE_SIZE + 1));
+                assertThrows(InvalidOperationException.class, () ->
+                                transactionService.getTransactionsHistoryFor(UUID.randomUUID(), "not-a-cursor", 10));
+        }
+
+        @Test
+        void should_return_error_when_batch_is_too_large() {
+                List<TransactionRequestDto> batch = Collections.nCopies(TransactionService.MAX_BATCH_SIZE + 1,
+                        TransactionRequestDto.builder()
+                                .accountNumber(UUID.randomUUID())
+                                .amountInCents(10_00)
+                                .operation(Transaction.TxType.DEPOSIT)
+                                .build());
+
+                assertThrows(InvalidOperationException.class, () -> transactionService.doBatch(batch));
+                Mockito.verifyNoInteractions(accountRepository, transactionRepository);
         }
-}
\ No newline at end of file
+}
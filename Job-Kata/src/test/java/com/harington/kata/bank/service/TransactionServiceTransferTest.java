@@ -0,0 +1,138 @@
+package com.harington.kata.bank.service;
+
+import com.harington.kata.bank.entity.Account;
+import com.harington.kata.bank.entity.Transaction;
+import com.harington.kata.bank.entity.dto.TransferDto;
+import com.harington.kata.bank.entity.dto.TransferRequestDto;
+import com.harington.kata.bank.exceptions.EntityNotFoundException;
+import com.harington.kata.bank.exceptions.InsufficientFundsException;
+import com.harington.kata.bank.exceptions.InvalidOperationException;
+import com.harington.kata.bank.repository.AccountRepository;
+import com.harington.kata.bank.repository.TransactionRepository;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.data.domain.PageRequest;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.UUID;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+@SpringBootTest
+class TransactionServiceTransferTest {
+    @Autowired
+    TransactionService transactionService;
+    @Autowired
+    AccountService accountService;
+    @Autowired
+    AccountRepository accountRepository;
+    @Autowired
+    TransactionRepository transactionRepository;
+
+    @Test
+    void should_move_money_and_post_both_legs() {
+        UUID from = newAccount(100_00);
+        UUID to = newAccount(5_00);
+
+        TransferDto transfer = transactionService.doTransfer(transfer(from, to, 30_00));
+
+        assertEquals(Transaction.TxType.WITHDRAWAL.name(), transfer.getDebit().getOperation());
+        assertEquals(from.toString(), transfer.getDebit().getAccountNumber());
+        assertEquals("70.00€", transfer.getDebit().getAccountBalance());
+        assertEquals("Transfer to " + to, transfer.getDebit().getDescription());
+        assertEquals(Transaction.TxType.DEPOSIT.name(), transfer.getCredit().getOperation());
+        assertEquals(to.toString(), transfer.getCredit().getAccountNumber());
+        assertEquals("35.00€", transfer.getCredit().getAccountBalance());
+        assertEquals("Transfer from " + from, transfer.getCredit().getDescription());
+        Account debited = accountRepository.findOneByAccountNumber(from).orElseThrow();
+        assertEquals(70_00, debited.getCurrentBalanceInCents());
+        assertEquals(1, debited.getVersion());
+        assertEquals(35_00, accountRepository.findOneByAccountNumber(to).orElseThrow().getCurrentBalanceInCents());
+        assertEquals(1, transactionRepository.findLatestByAccount(debited, PageRequest.ofSize(10)).size());
+    }
+
+    @Test
+    void should_reject_invalid_transfers_without_posting() {
+        UUID from = newAccount(10_00);
+        UUID to = newAccount(0);
+
+        assertThrows(InsufficientFundsException.class, () -> transactionService.doTransfer(transfer(from, to, 10_01)));
+        assertThrows(InvalidOperationException.class, () -> transactionService.doTransfer(transfer(from, from, 1_00)));
+        assertThrows(EntityNotFoundException.class,
+                () -> transactionService.doTransfer(transfer(from, UUID.randomUUID(), 1_00)));
+
+        Account account = accountRepository.findOneByAccountNumber(from).orElseThrow();
+        assertEquals(10_00, account.getCurrentBalanceInCents());
+        assertEquals(0, account.getVersion());
+        assertTrue(transactionRepository.findLatestByAccount(account, PageRequest.ofSize(10)).isEmpty());
+    }
+
+    @Test
+    void should_not_deadlock_nor_lose_money_on_criss_cross_transfers() throws Exception {
+        int accountsCount = 4;
+        int threads = 8;
+        int transfersPerThread = 50;
+        List<UUID> accounts = new ArrayList<>();
+        for (int i = 0; i < accountsCount; i++)
+            accounts.add(newAccount(10_00));
+        ExecutorService executor = Executors.newFixedThreadPool(threads);
+        List<Future<Integer>> posted = new ArrayList<>();
+        for (int t = 0; t < threads; t++) {
+            Random random = new Random(t);
+            posted.add(executor.submit(() -> {
+                int count = 0;
+                for (int i = 0; i < transfersPerThread; i++) {
+                    int from = random.nextInt(accountsCount);
+                    int to = (from + 1 + random.nextInt(accountsCount - 1)) % accountsCount;
+                    try {
+                        transactionService.doTransfer(transfer(accounts.get(from), accounts.get(to), 1_00 + random.nextInt(3_00)));
+                        count++;
+                    } catch (InsufficientFundsException e) {
+                        // Source account drained by the other transfers
+                    }
+                }
+                return count;
+            }));
+        }
+        int count = 0;
+        for (Future<Integer> future : posted)
+            count += future.get(1, TimeUnit.MINUTES);
+        executor.shutdown();
+
+        assertTrue(count > 0);
+        int total = 0;
+        int versions = 0;
+        for (UUID accountNumber : accounts) {
+            Account account = accountRepository.findOneByAccountNumber(accountNumber).orElseThrow();
+            List<Transaction> txs = transactionRepository.findLatestByAccount(account, PageRequest.ofSize(1_000));
+            total += account.getCurrentBalanceInCents();
+            versions += account.getVersion();
+            assertEquals(account.getVersion(), txs.size());
+            int balance = 10_00;
+            for (Transaction tx : txs)
+                balance += tx.getTxType() == Transaction.TxType.DEPOSIT ? tx.getAmountInCents() : -tx.getAmountInCents();
+            assertEquals(balance, account.getCurrentBalanceInCents());
+        }
+        assertEquals(accountsCount * 10_00, total);
+        assertEquals(2 * count, versions);
+    }
+
+    private UUID newAccount(int initialBalanceInCents) {
+        return UUID.fromString(accountService.createNewAccount("Transfer", initialBalanceInCents).getAccountNumber());
+    }
+
+    private static TransferRequestDto transfer(UUID from, UUID to, int amountInCents) {
+        return TransferRequestDto.builder()
+                .fromAccountNumber(from)
+                .toAccountNumber(to)
+                .amountInCents(amountInCents)
+                .build();
+    }
+}